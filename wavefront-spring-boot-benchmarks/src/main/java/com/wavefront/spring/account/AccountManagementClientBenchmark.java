@@ -0,0 +1,137 @@
+package com.wavefront.spring.account;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Benchmark for {@link AccountManagementClient}, with a canned in-memory response so
+ * that only the building of the request URI, the exchange overhead and the parsing of
+ * the JSON response are measured.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountManagementClientBenchmark {
+
+  private static final byte[] RESPONSE = """
+      {"url":"/us/example","token":"ee479a71-abcd-abcd-abcd-62b0e8416989"}
+      """.getBytes(StandardCharsets.UTF_8);
+
+  private final AccountManagementClient client = new AccountManagementClient(
+      new RestTemplateBuilder().requestFactory(StaticResponseClientHttpRequestFactory::new), "3.2.1");
+
+  private final ApplicationTags applicationTags = new ApplicationTags.Builder("benchmark", "service")
+      .cluster("cluster").shard("shard").build();
+
+  @Benchmark
+  public AccountInfo provisionAccount() {
+    return this.client.provisionAccount("https://example.com", this.applicationTags);
+  }
+
+  @Benchmark
+  public AccountInfo getExistingAccount() {
+    return this.client.getExistingAccount("https://example.com", this.applicationTags,
+        "ee479a71-abcd-abcd-abcd-62b0e8416989");
+  }
+
+  /**
+   * A {@link ClientHttpRequestFactory} that always provides the same JSON response.
+   */
+  public static class StaticResponseClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    public void setConnectTimeout(int connectTimeout) {
+    }
+
+    public void setReadTimeout(int readTimeout) {
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+      return new AbstractClientHttpRequest() {
+
+        @Override
+        public HttpMethod getMethod() {
+          return httpMethod;
+        }
+
+        @Override
+        public URI getURI() {
+          return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+          return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) {
+          return new StaticClientHttpResponse();
+        }
+
+      };
+    }
+
+  }
+
+  private static class StaticClientHttpResponse implements ClientHttpResponse {
+
+    @Override
+    public HttpStatusCode getStatusCode() {
+      return HttpStatus.OK;
+    }
+
+    @Override
+    public String getStatusText() {
+      return "OK";
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+      return headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+      return new ByteArrayInputStream(RESPONSE);
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+}
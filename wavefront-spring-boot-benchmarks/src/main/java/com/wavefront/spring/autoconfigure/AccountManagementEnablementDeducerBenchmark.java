@@ -0,0 +1,63 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link AccountManagementEnablementDeducer} with stacks of various depths.
+ * {@code stackTrace} is the previous implementation that materializes the whole stack
+ * trace of the current thread.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountManagementEnablementDeducerBenchmark {
+
+  private static final String[] SKIPPED_STACK_ELEMENTS = { "org.junit.runners.", "org.junit.platform.",
+      "org.springframework.boot.test.", "cucumber.runtime." };
+
+  @Param({ "16", "128", "512" })
+  private int depth;
+
+  @Benchmark
+  public boolean stackTrace() {
+    return atDepth(this.depth, AccountManagementEnablementDeducerBenchmark::shouldEnableUsingStackTrace);
+  }
+
+  @Benchmark
+  public boolean stackWalker() {
+    return atDepth(this.depth, AccountManagementEnablementDeducer::deduce);
+  }
+
+  private static boolean atDepth(int depth, BooleanSupplier deducer) {
+    return (depth > 0) ? atDepth(depth - 1, deducer) : deducer.getAsBoolean();
+  }
+
+  private static boolean shouldEnableUsingStackTrace() {
+    for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+      for (String skipped : SKIPPED_STACK_ELEMENTS) {
+        if (element.getClassName().startsWith(skipped)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,86 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * Benchmark for {@link ApplicationTagsFactory#createFromEnvironment} with environments
+ * of various sizes. As in a Spring Boot application, configuration property sources are
+ * attached to the environment.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationTagsFactoryBenchmark {
+
+  @Param({ "5", "50" })
+  private int propertySourceCount;
+
+  @Param({ "200" })
+  private int propertiesPerSource;
+
+  private final ApplicationTagsFactory factory = new ApplicationTagsFactory();
+
+  private StandardEnvironment defaultEnvironment;
+
+  private StandardEnvironment configuredEnvironment;
+
+  @Setup
+  public void setup() {
+    this.defaultEnvironment = createEnvironment();
+    this.configuredEnvironment = createEnvironment();
+    Map<String, Object> applicationTags = new HashMap<>();
+    applicationTags.put("management.wavefront.application.name", "benchmark");
+    applicationTags.put("management.wavefront.application.service-name", "service");
+    applicationTags.put("management.wavefront.application.cluster-name", "cluster");
+    applicationTags.put("management.wavefront.application.shard-name", "shard");
+    this.configuredEnvironment.getPropertySources().addLast(new MapPropertySource("application", applicationTags));
+  }
+
+  private StandardEnvironment createEnvironment() {
+    StandardEnvironment environment = new StandardEnvironment();
+    for (int i = 0; i < this.propertySourceCount; i++) {
+      Map<String, Object> properties = new HashMap<>();
+      for (int j = 0; j < this.propertiesPerSource; j++) {
+        properties.put("benchmark.source" + i + ".property" + j, "value" + j);
+      }
+      environment.getPropertySources().addLast(new MapPropertySource("source" + i, properties));
+    }
+    ConfigurationPropertySources.attach(environment);
+    return environment;
+  }
+
+  @Benchmark
+  public ApplicationTags defaults() {
+    return this.factory.createFromEnvironment(this.defaultEnvironment);
+  }
+
+  @Benchmark
+  public ApplicationTags configured() {
+    return this.factory.createFromEnvironment(this.configuredEnvironment);
+  }
+
+}
@@ -0,0 +1,139 @@
+package com.wavefront.spring.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link WavefrontLineEncoder}, compared to the encoding of the Wavefront
+ * SDK. Run with {@code -prof gc} to compare the allocation rate of both approaches.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WavefrontLineEncoderBenchmark {
+
+  private static final Map<String, String> TAGS = Map.of("application", "benchmark", "service", "api", "cluster",
+      "us-west", "uri", "/api/v1/orders");
+
+  private static final List<Pair<Double, Integer>> CENTROIDS = List.of(new Pair<>(0.5, 3), new Pair<>(1.25, 10),
+      new Pair<>(12.75, 2));
+
+  private static final Set<HistogramGranularity> GRANULARITIES = Set.of(HistogramGranularity.MINUTE);
+
+  private static final UUID TRACE_ID = UUID.randomUUID();
+
+  private static final UUID SPAN_ID = UUID.randomUUID();
+
+  private static final List<Pair<String, String>> SPAN_TAGS = List.of(new Pair<>("application", "benchmark"),
+      new Pair<>("service", "api"), new Pair<>("http.method", "GET"));
+
+  private static final ApplicationTags APPLICATION_TAGS = new ApplicationTags.Builder("benchmark", "api")
+      .cluster("us-west").build();
+
+  private static final Map<String, String> TAGS_WITH_APPLICATION_TAGS = withApplicationTags();
+
+  private final WavefrontLineEncoder encoder = new WavefrontLineEncoder("benchmark-host");
+
+  private final WavefrontLineEncoder applicationTagsEncoder = new WavefrontLineEncoder("benchmark-host");
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+  private long timestamp = 1700000000000L;
+
+  private static Map<String, String> withApplicationTags() {
+    Map<String, String> tags = new HashMap<>(APPLICATION_TAGS.toPointTags());
+    tags.put("uri", "/api/v1/orders");
+    return tags;
+  }
+
+  @Setup
+  public void setup() {
+    this.applicationTagsEncoder.setApplicationTags(APPLICATION_TAGS);
+  }
+
+  @Benchmark
+  public boolean metricEncoder() {
+    this.buffer.clear();
+    return this.encoder.encodeMetric(this.buffer, "http.server.requests.count", 1234.5, this.timestamp++,
+        "benchmark-host", TAGS);
+  }
+
+  @Benchmark
+  public boolean metricEncoderWithApplicationTags() {
+    this.buffer.clear();
+    return this.applicationTagsEncoder.encodeMetric(this.buffer, "http.server.requests.count", 1234.5,
+        this.timestamp++, "benchmark-host", TAGS_WITH_APPLICATION_TAGS);
+  }
+
+  @Benchmark
+  public boolean metricEncoderWithoutApplicationTags() {
+    this.buffer.clear();
+    return this.encoder.encodeMetric(this.buffer, "http.server.requests.count", 1234.5, this.timestamp++,
+        "benchmark-host", TAGS_WITH_APPLICATION_TAGS);
+  }
+
+  @Benchmark
+  public ByteBuffer metricSdk() {
+    this.buffer.clear();
+    String line = Utils.metricToLineData("http.server.requests.count", 1234.5, this.timestamp++, "benchmark-host",
+        TAGS, "benchmark-host");
+    return this.buffer.put(line.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public boolean histogramEncoder() {
+    this.buffer.clear();
+    return this.encoder.encodeDistribution(this.buffer, "http.server.requests", CENTROIDS, GRANULARITIES,
+        this.timestamp++, "benchmark-host", TAGS);
+  }
+
+  @Benchmark
+  public ByteBuffer histogramSdk() {
+    this.buffer.clear();
+    String line = Utils.histogramToLineData("http.server.requests", CENTROIDS, GRANULARITIES, this.timestamp++,
+        "benchmark-host", TAGS, "benchmark-host");
+    return this.buffer.put(line.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public boolean spanEncoder() {
+    this.buffer.clear();
+    return this.encoder.encodeSpan(this.buffer, "GET /api/v1/orders", this.timestamp++, 25, "benchmark-host",
+        TRACE_ID, SPAN_ID, null, null, SPAN_TAGS, false);
+  }
+
+  @Benchmark
+  public ByteBuffer spanSdk() {
+    this.buffer.clear();
+    String line = Utils.tracingSpanToLineData("GET /api/v1/orders", this.timestamp++, 25, "benchmark-host",
+        TRACE_ID, SPAN_ID, null, null, SPAN_TAGS, null, "benchmark-host");
+    return this.buffer.put(line.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
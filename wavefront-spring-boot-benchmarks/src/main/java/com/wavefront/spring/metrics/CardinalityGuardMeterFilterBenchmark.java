@@ -0,0 +1,62 @@
+package com.wavefront.spring.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the lookup of a meter that is already registered, with and without a
+ * {@link CardinalityGuardMeterFilter}. Micrometer maps the id of the meter on every
+ * lookup so this measures the overhead of the filter on the recording path.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardinalityGuardMeterFilterBenchmark {
+
+  @Param({ "false", "true" })
+  private boolean guard;
+
+  private MeterRegistry registry;
+
+  @Setup
+  public void setup() {
+    this.registry = new SimpleMeterRegistry();
+    if (this.guard) {
+      this.registry.config().meterFilter(new CardinalityGuardMeterFilter(100));
+    }
+    this.registry.counter("http.server.requests", "uri", "/test", "status", "200", "method", "GET");
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Counter lookup1() {
+    return this.registry.counter("http.server.requests", "uri", "/test", "status", "200", "method", "GET");
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Counter lookup4() {
+    return this.registry.counter("http.server.requests", "uri", "/test", "status", "200", "method", "GET");
+  }
+
+}
@@ -0,0 +1,205 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import com.wavefront.spring.export.EncodedWavefrontSender;
+import com.wavefront.spring.export.ReportFormat;
+import com.wavefront.spring.export.WavefrontLineEncoder;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.push.PushMeterRegistry;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontPropertiesConfigAdapter;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+
+/**
+ * Benchmark for the publication of registries of various sizes using
+ * {@link MeterPublisher}, compared to the publication of the {@link WavefrontMeterRegistry}
+ * ({@code parallelism} of {@code 0}). Data is encoded in the Wavefront line protocol
+ * before being discarded.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeterPublisherBenchmark {
+
+  private static final MethodHandle PUBLISH;
+
+  static {
+    try {
+      PUBLISH = MethodHandles.privateLookupIn(PushMeterRegistry.class, MethodHandles.lookup())
+          .findVirtual(PushMeterRegistry.class, "publish", MethodType.methodType(void.class));
+    }
+    catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  @Param({ "1000", "10000", "100000" })
+  private int meterCount;
+
+  @Param({ "0", "2", "4", "8" })
+  private int parallelism;
+
+  private final EncodingWavefrontSender sender = new EncodingWavefrontSender();
+
+  private final DiscardingEncodedWavefrontSender encodedSender = new DiscardingEncodedWavefrontSender();
+
+  private PushMeterRegistry registry;
+
+  private MeterPublisher publisher;
+
+  @Setup
+  public void setup() {
+    WavefrontProperties properties = new WavefrontProperties();
+    properties.setApiToken("ee479a71-abcd-abcd-abcd-62b0e8416989");
+    properties.getMetrics().getExport().setEnabled(false);
+    WavefrontConfig config = new WavefrontPropertiesConfigAdapter(properties);
+    if (this.parallelism > 0) {
+      PublishingWavefrontMeterRegistry registry = new PublishingWavefrontMeterRegistry(config, Clock.SYSTEM,
+          this.encodedSender, this.parallelism);
+      this.publisher = registry.getPublisher();
+      this.registry = registry;
+    }
+    else {
+      this.registry = WavefrontMeterRegistry.builder(config).clock(Clock.SYSTEM).wavefrontSender(this.sender)
+          .build();
+    }
+    for (int i = 0; i < this.meterCount; i++) {
+      switch (i % 3) {
+        case 0 -> Counter.builder("benchmark.counter" + i).tags("application", "benchmark", "index", "c" + i)
+            .register(this.registry).increment(i);
+        case 1 -> Timer.builder("benchmark.timer" + i).tags("application", "benchmark", "index", "t" + i)
+            .register(this.registry).record(Duration.ofMillis(i));
+        default -> this.registry.gauge("benchmark.gauge" + i, new AtomicLong(i));
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.registry.close();
+  }
+
+  @Benchmark
+  public long publish() throws Throwable {
+    if (this.publisher != null) {
+      this.publisher.publish();
+      return this.encodedSender.count;
+    }
+    PUBLISH.invoke(this.registry);
+    return this.sender.count;
+  }
+
+  static class EncodingWavefrontSender implements WavefrontSender {
+
+    long count;
+
+    @Override
+    public String getClientId() {
+      return "benchmark";
+    }
+
+    @Override
+    public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+      this.count += Utils.metricToLineData(name, value, timestamp, source, tags, source).length();
+    }
+
+    @Override
+    public void sendFormattedMetric(String point) {
+      this.count += point.length();
+    }
+
+    @Override
+    public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+        Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags) {
+      this.count += Utils.histogramToLineData(name, centroids, histogramGranularities, timestamp, source, tags,
+          source).length();
+    }
+
+    @Override
+    public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+        UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+        List<SpanLog> spanLogs) {
+      this.count++;
+    }
+
+    @Override
+    public void sendEvent(String name, long startMillis, long endMillis, String source, Map<String, String> tags,
+        Map<String, String> annotations) {
+      this.count++;
+    }
+
+    @Override
+    public void sendLog(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+      this.count++;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+  static class DiscardingEncodedWavefrontSender extends EncodingWavefrontSender
+      implements EncodedWavefrontSender {
+
+    private final WavefrontLineEncoder encoder = new WavefrontLineEncoder("benchmark");
+
+    @Override
+    public WavefrontLineEncoder getLineEncoder() {
+      return this.encoder;
+    }
+
+    @Override
+    public void sendEncoded(ReportFormat format, ByteBuffer lines) {
+      this.count += lines.remaining();
+    }
+
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.wavefront.spring.metrics;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl.Distribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the recording of values in the Wavefront histogram of the Wavefront SDK
+ * and in a {@link PrimitiveHistogram}, and for a minute of values of a timer, from its
+ * creation to the flush of its distribution. Run with {@code -prof gc} to compare the
+ * allocation rates and, for {@code minute}, the memory used by a histogram.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveHistogramBenchmark {
+
+  private static final long MINUTE_MILLIS = 60_000;
+
+  private static final int VALUES_PER_MINUTE = 10_000;
+
+  @Param({ "wavefront", "primitive" })
+  private String backend;
+
+  private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+  private WavefrontHistogram histogram;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    this.histogram = createHistogram();
+  }
+
+  private WavefrontHistogram createHistogram() {
+    return ("primitive".equals(this.backend)) ? new PrimitiveHistogram(this.clock::get)
+        : WavefrontHistogram.of(new WavefrontHistogramImpl(this.clock::get));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void update1() {
+    this.histogram.update(ThreadLocalRandom.current().nextDouble(1000));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void update4() {
+    this.histogram.update(ThreadLocalRandom.current().nextDouble(1000));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<Distribution> minute() {
+    WavefrontHistogram histogram = createHistogram();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < VALUES_PER_MINUTE; i++) {
+      histogram.update(random.nextDouble(1000));
+    }
+    this.clock.addAndGet(MINUTE_MILLIS);
+    return histogram.flushDistributions();
+  }
+
+}
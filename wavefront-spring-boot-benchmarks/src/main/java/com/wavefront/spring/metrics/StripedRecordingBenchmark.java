@@ -0,0 +1,104 @@
+package com.wavefront.spring.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.observation.MeterObservationHandler;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontPropertiesConfigAdapter;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+
+/**
+ * Benchmark for the recording of the observation of the request path of the sample's
+ * {@code HomeController} by threads serving requests concurrently, using the default
+ * {@link MeterObservationHandler} or the {@link StripedMeterObservationHandler}.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedRecordingBenchmark {
+
+  private static final KeyValues HOME_KEY_VALUES = KeyValues.of("exception", "none", "method", "GET", "outcome",
+      "SUCCESS", "status", "200", "uri", "/");
+
+  @Param({ "default", "striped" })
+  private String mode;
+
+  private WavefrontMeterRegistry registry;
+
+  private ObservationRegistry observationRegistry;
+
+  @Setup
+  public void setup() {
+    WavefrontProperties properties = new WavefrontProperties();
+    properties.setApiToken("ee479a71-abcd-abcd-abcd-62b0e8416989");
+    properties.getMetrics().getExport().setEnabled(false);
+    WavefrontConfig config = new WavefrontPropertiesConfigAdapter(properties);
+    this.registry = WavefrontMeterRegistry.builder(config).clock(Clock.SYSTEM)
+        .wavefrontSender(new MeterPublisherBenchmark.EncodingWavefrontSender()).build();
+    MeterObservationHandler<Observation.Context> handler = ("striped".equals(this.mode))
+        ? new StripedMeterObservationHandler(this.registry, config.step().toMillis())
+        : new DefaultMeterObservationHandler(this.registry);
+    this.observationRegistry = ObservationRegistry.create();
+    this.observationRegistry.observationConfig().observationHandler(handler);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.registry.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public String home1() {
+    return home();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String home4() {
+    return home();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public String home16() {
+    return home();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public String home64() {
+    return home();
+  }
+
+  private String home() {
+    return Observation.createNotStarted("http.server.requests", this.observationRegistry)
+        .lowCardinalityKeyValues(HOME_KEY_VALUES).observe(() -> "Hello World!");
+  }
+
+}
@@ -0,0 +1,160 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.push.PushMeterRegistry;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontPropertiesConfigAdapter;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+
+/**
+ * Benchmark for the per-meter cost of publishing through a {@link WavefrontMeterRegistry}
+ * configured as the auto-configuration does. Data is handed over to a
+ * {@link WavefrontSender} that only counts what it receives.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WavefrontMeterRegistryBenchmark {
+
+  private static final int METER_COUNT = 1000;
+
+  private static final MethodHandle PUBLISH;
+
+  static {
+    try {
+      PUBLISH = MethodHandles.privateLookupIn(PushMeterRegistry.class, MethodHandles.lookup())
+          .findVirtual(PushMeterRegistry.class, "publish", MethodType.methodType(void.class));
+    }
+    catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private final CountingWavefrontSender sender = new CountingWavefrontSender();
+
+  private WavefrontMeterRegistry registry;
+
+  @Setup
+  public void setup() {
+    WavefrontProperties properties = new WavefrontProperties();
+    properties.setApiToken("ee479a71-abcd-abcd-abcd-62b0e8416989");
+    properties.getMetrics().getExport().setEnabled(false);
+    this.registry = WavefrontMeterRegistry.builder(new WavefrontPropertiesConfigAdapter(properties))
+        .clock(Clock.SYSTEM).wavefrontSender(this.sender).build();
+    for (int i = 0; i < METER_COUNT; i++) {
+      switch (i % 3) {
+        case 0 -> Counter.builder("benchmark.counter" + i).tags("application", "benchmark", "index", "c" + i)
+            .register(this.registry).increment(i);
+        case 1 -> Timer.builder("benchmark.timer" + i).tags("application", "benchmark", "index", "t" + i)
+            .register(this.registry).record(Duration.ofMillis(i));
+        default -> this.registry.gauge("benchmark.gauge" + i, new AtomicLong(i));
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.registry.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(METER_COUNT)
+  public long publish() throws Throwable {
+    PUBLISH.invoke(this.registry);
+    return this.sender.count;
+  }
+
+  static class CountingWavefrontSender implements WavefrontSender {
+
+    private long count;
+
+    @Override
+    public String getClientId() {
+      return "benchmark";
+    }
+
+    @Override
+    public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+      this.count += name.length() + tags.size();
+    }
+
+    @Override
+    public void sendFormattedMetric(String point) {
+      this.count += point.length();
+    }
+
+    @Override
+    public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+        Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags) {
+      this.count += name.length() + centroids.size();
+    }
+
+    @Override
+    public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+        UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+        List<SpanLog> spanLogs) {
+      this.count++;
+    }
+
+    @Override
+    public void sendEvent(String name, long startMillis, long endMillis, String source, Map<String, String> tags,
+        Map<String, String> annotations) {
+      this.count++;
+    }
+
+    @Override
+    public void sendLog(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+      this.count++;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+}
@@ -1,6 +1,9 @@
 package com.wavefront.spring.account;
 
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
 import java.time.Duration;
 import java.util.Map;
 
@@ -11,9 +14,10 @@ import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 /**
  * Manage a Wavefront {@linkplain AccountInfo account} based on an
@@ -23,6 +27,8 @@ import org.springframework.web.util.UriComponentsBuilder;
  */
 public class AccountManagementClient {
 
+  static final Duration TIMEOUT = Duration.ofSeconds(10);
+
   private final RestTemplate restTemplate;
 
   private final String version;
@@ -35,11 +41,58 @@ public class AccountManagementClient {
    * be determined.
    */
   public AccountManagementClient(RestTemplateBuilder restTemplateBuilder, String version) {
-    this.restTemplate = restTemplateBuilder.setConnectTimeout(Duration.ofSeconds(10))
-        .setReadTimeout(Duration.ofSeconds(10)).build();
+    this.restTemplate = restTemplateBuilder.setConnectTimeout(TIMEOUT).setReadTimeout(TIMEOUT).build();
+    this.version = version;
+  }
+
+  /**
+   * Create an instance using the specified {@link RestTemplateBuilder}, JDK
+   * {@link HttpClient} and starter {@code version}. Connections are managed by the
+   * {@link HttpClient} so that they can be reused by several instances, unless the
+   * builder specifies its own request factory, in which case it is used as is.
+   * @param restTemplateBuilder the builder to use to configure the {@link RestTemplate}.
+   * @param httpClient the {@link HttpClient} to use to perform requests
+   * @param version the version of the starter or {@code null} if the version could not
+   * be determined.
+   * @see #getSharedHttpClient()
+   */
+  public AccountManagementClient(RestTemplateBuilder restTemplateBuilder, HttpClient httpClient, String version) {
+    ClientHttpRequestFactory customRequestFactory = restTemplateBuilder.setConnectTimeout(TIMEOUT)
+        .setReadTimeout(TIMEOUT).detectRequestFactory(false).buildRequestFactory();
+    ClientHttpRequestFactory requestFactory = (customRequestFactory != null) ? customRequestFactory
+        : createRequestFactory(httpClient);
+    this.restTemplate = restTemplateBuilder.requestFactory((settings) -> requestFactory).build();
     this.version = version;
   }
 
+  /**
+   * Create an instance using the specified JDK {@link HttpClient} and starter
+   * {@code version}.
+   * @param httpClient the {@link HttpClient} to use to perform requests
+   * @param version the version of the starter or {@code null} if the version could not
+   * be determined.
+   * @see #getSharedHttpClient()
+   */
+  public AccountManagementClient(HttpClient httpClient, String version) {
+    this(new RestTemplateBuilder(), httpClient, version);
+  }
+
+  private static ClientHttpRequestFactory createRequestFactory(HttpClient httpClient) {
+    JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+    requestFactory.setReadTimeout(TIMEOUT);
+    return requestFactory;
+  }
+
+  /**
+   * Return the JDK {@link HttpClient} that is shared by the account management of the
+   * application. Uses HTTP/1.1, does not follow redirects, and keeps connections alive
+   * so that they are reused.
+   * @return the shared {@link HttpClient}
+   */
+  public static HttpClient getSharedHttpClient() {
+    return SharedHttpClient.INSTANCE;
+  }
+
   /**
    * Provision an account for the specified Wavefront cluster and application
    * information.
@@ -50,12 +103,12 @@ public class AccountManagementClient {
    * accounts
    */
   public AccountInfo provisionAccount(String clusterUri, ApplicationTags applicationTags) {
-    URI requestUri = accountManagementUri(clusterUri, applicationTags);
+    URI requestUri = AccountManagementRequests.accountManagementUri(clusterUri, applicationTags, this.version);
     try {
       String json = this.restTemplate.postForObject(requestUri, null, String.class);
       Map<String, Object> content = new BasicJsonParser().parseMap(json);
       return new AccountInfo((String) content.get("token"),
-          determineLoginUrl(clusterUri, (String) content.get("url")));
+          AccountManagementRequests.determineLoginUrl(clusterUri, (String) content.get("url")));
     } catch (HttpClientErrorException ex) {
       throw new AccountManagementFailedException(ex.getResponseBodyAsString());
     }
@@ -72,38 +125,25 @@ public class AccountManagementClient {
    * accounts
    */
   public AccountInfo getExistingAccount(String clusterUri, ApplicationTags applicationTags, String apiToken) {
-    URI requestUri = accountManagementUri(clusterUri, applicationTags);
+    URI requestUri = AccountManagementRequests.accountManagementUri(clusterUri, applicationTags, this.version);
     HttpHeaders headers = new HttpHeaders();
     headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + apiToken);
     try {
       String json = this.restTemplate
           .exchange(requestUri, HttpMethod.GET, new HttpEntity<>(headers), String.class).getBody();
       Map<String, Object> content = new BasicJsonParser().parseMap(json);
-      return new AccountInfo(apiToken, determineLoginUrl(clusterUri, (String) content.get("url")));
+      return new AccountInfo(apiToken,
+          AccountManagementRequests.determineLoginUrl(clusterUri, (String) content.get("url")));
     } catch (HttpClientErrorException ex) {
       throw new AccountManagementFailedException(ex.getResponseBodyAsString());
     }
   }
 
-  private URI accountManagementUri(String clusterUri, ApplicationTags applicationTags) {
-    UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromUriString(clusterUri)
-        .path("/api/v2/trial/spring-boot-autoconfigure")
-        .queryParam("application", applicationTags.getApplication())
-        .queryParam("service", applicationTags.getService());
-    if (applicationTags.getCluster() != null) {
-      uriComponentsBuilder.queryParam("cluster", applicationTags.getCluster());
-    }
-    if (applicationTags.getShard() != null) {
-      uriComponentsBuilder.queryParam("shard", applicationTags.getShard());
-    }
-    if (this.version != null) {
-      uriComponentsBuilder.queryParam("starterVersion", this.version);
-    }
-    return uriComponentsBuilder.build().toUri();
-  }
+  private static final class SharedHttpClient {
+
+    private static final HttpClient INSTANCE = HttpClient.newBuilder().version(Version.HTTP_1_1)
+        .connectTimeout(TIMEOUT).followRedirects(Redirect.NEVER).build();
 
-  private String determineLoginUrl(String clusterUri, String loginUri) {
-    return UriComponentsBuilder.fromUriString(clusterUri).path(loginUri).build().toUriString();
   }
 
 }
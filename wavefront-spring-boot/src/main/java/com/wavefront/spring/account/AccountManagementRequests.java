@@ -0,0 +1,41 @@
+package com.wavefront.spring.account;
+
+import java.net.URI;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Build the requests of the account management API, independently of the client that
+ * performs them.
+ *
+ * @author Stephane Nicoll
+ */
+final class AccountManagementRequests {
+
+  private AccountManagementRequests() {
+  }
+
+  static URI accountManagementUri(String clusterUri, ApplicationTags applicationTags, String version) {
+    UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromUriString(clusterUri)
+        .path("/api/v2/trial/spring-boot-autoconfigure")
+        .queryParam("application", applicationTags.getApplication())
+        .queryParam("service", applicationTags.getService());
+    if (applicationTags.getCluster() != null) {
+      uriComponentsBuilder.queryParam("cluster", applicationTags.getCluster());
+    }
+    if (applicationTags.getShard() != null) {
+      uriComponentsBuilder.queryParam("shard", applicationTags.getShard());
+    }
+    if (version != null) {
+      uriComponentsBuilder.queryParam("starterVersion", version);
+    }
+    return uriComponentsBuilder.build().toUri();
+  }
+
+  static String determineLoginUrl(String clusterUri, String loginUri) {
+    return UriComponentsBuilder.fromUriString(clusterUri).path(loginUri).build().toUriString();
+  }
+
+}
@@ -0,0 +1,102 @@
+package com.wavefront.spring.account;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Map;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.json.BasicJsonParser;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Manage a Wavefront {@linkplain AccountInfo account} based on an
+ * {@link ApplicationTags} without blocking.
+ *
+ * @author Stephane Nicoll
+ * @see AccountManagementClient
+ */
+public class ReactiveAccountManagementClient {
+
+  private final WebClient webClient;
+
+  private final String version;
+
+  /**
+   * Create an instance using the specified {@link WebClient.Builder} and starter
+   * {@code version}.
+   * @param webClientBuilder the builder to use to configure the {@link WebClient}.
+   * @param version the version of the starter or {@code null} if the version could not
+   * be determined.
+   */
+  public ReactiveAccountManagementClient(WebClient.Builder webClientBuilder, String version) {
+    this.webClient = webClientBuilder.build();
+    this.version = version;
+  }
+
+  /**
+   * Create an instance using the specified {@link WebClient.Builder}, JDK
+   * {@link HttpClient} and starter {@code version}. Connections are managed by the
+   * {@link HttpClient} so that they can be reused by several instances.
+   * @param webClientBuilder the builder to use to configure the {@link WebClient}.
+   * @param httpClient the {@link HttpClient} to use to perform requests
+   * @param version the version of the starter or {@code null} if the version could not
+   * be determined.
+   * @see AccountManagementClient#getSharedHttpClient()
+   */
+  public ReactiveAccountManagementClient(WebClient.Builder webClientBuilder, HttpClient httpClient, String version) {
+    this(webClientBuilder.clientConnector(new JdkClientHttpConnector(httpClient)), version);
+  }
+
+  /**
+   * Provision an account for the specified Wavefront cluster and application
+   * information.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param applicationTags the {@link ApplicationTags} to use
+   * @return a {@link Mono} of the provisioned account that fails with an
+   * {@link AccountManagementFailedException} if the cluster does not support freemium
+   * accounts
+   */
+  public Mono<AccountInfo> provisionAccount(String clusterUri, ApplicationTags applicationTags) {
+    URI requestUri = AccountManagementRequests.accountManagementUri(clusterUri, applicationTags, this.version);
+    return handleErrors(this.webClient.post().uri(requestUri).retrieve().bodyToMono(String.class))
+        .map((json) -> {
+          Map<String, Object> content = new BasicJsonParser().parseMap(json);
+          return new AccountInfo((String) content.get("token"),
+              AccountManagementRequests.determineLoginUrl(clusterUri, (String) content.get("url")));
+        });
+  }
+
+  /**
+   * Retrieve an existing account for the specified Wavefront cluster, application
+   * information and api token.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param applicationTags the {@link ApplicationTags} to use
+   * @param apiToken the api token to use
+   * @return a {@link Mono} of the existing account information that fails with an
+   * {@link AccountManagementFailedException} if the cluster does not support freemium
+   * accounts
+   */
+  public Mono<AccountInfo> getExistingAccount(String clusterUri, ApplicationTags applicationTags,
+      String apiToken) {
+    URI requestUri = AccountManagementRequests.accountManagementUri(clusterUri, applicationTags, this.version);
+    return handleErrors(this.webClient.get().uri(requestUri)
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiToken).retrieve().bodyToMono(String.class))
+        .map((json) -> {
+          Map<String, Object> content = new BasicJsonParser().parseMap(json);
+          return new AccountInfo(apiToken,
+              AccountManagementRequests.determineLoginUrl(clusterUri, (String) content.get("url")));
+        });
+  }
+
+  private Mono<String> handleErrors(Mono<String> response) {
+    return response.timeout(AccountManagementClient.TIMEOUT).onErrorMap(WebClientResponseException.class,
+        (ex) -> (ex.getStatusCode().is4xxClientError())
+            ? new AccountManagementFailedException(ex.getResponseBodyAsString()) : ex);
+  }
+
+}
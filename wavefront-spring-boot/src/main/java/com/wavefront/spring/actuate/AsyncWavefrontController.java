@@ -0,0 +1,77 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.web.annotation.ControllerEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ExecutorConfigurationSupport;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
+
+/**
+ * An endpoint that provides access to the Wavefront dashboard, resolving the link to the
+ * dashboard on an {@link Executor} so that the request thread is released while the
+ * cluster is contacted. If the executor rejects the task, the endpoint responds with
+ * {@code 503 Service Unavailable}.
+ *
+ * @author Stephane Nicoll
+ * @see WavefrontController
+ */
+@ControllerEndpoint(id = "wavefront")
+public class AsyncWavefrontController implements DisposableBean {
+
+  private final Supplier<URI> dashboardUrlSupplier;
+
+  private final Executor executor;
+
+  private final ExecutorConfigurationSupport dedicatedExecutor;
+
+  AsyncWavefrontController(Supplier<URI> dashboardUrlSupplier, Executor executor) {
+    this(dashboardUrlSupplier, executor, null);
+  }
+
+  private AsyncWavefrontController(Supplier<URI> dashboardUrlSupplier, Executor executor,
+      ExecutorConfigurationSupport dedicatedExecutor) {
+    this.dashboardUrlSupplier = dashboardUrlSupplier;
+    this.executor = executor;
+    this.dedicatedExecutor = dedicatedExecutor;
+  }
+
+  /**
+   * Create an instance that uses a dedicated executor, shut down with the controller.
+   * @param dashboardUrlSupplier the supplier of the link to the dashboard
+   * @param executor the executor to use
+   * @return a controller using the specified executor
+   */
+  static AsyncWavefrontController withDedicatedExecutor(Supplier<URI> dashboardUrlSupplier,
+      ThreadPoolTaskExecutor executor) {
+    return new AsyncWavefrontController(dashboardUrlSupplier, executor, executor);
+  }
+
+  @GetMapping("/")
+  public CompletableFuture<ResponseEntity<Void>> dashboard() {
+    try {
+      return CompletableFuture.supplyAsync(this.dashboardUrlSupplier, this.executor)
+          .thenApply((dashboardUrl) -> ResponseEntity.status(HttpStatus.FOUND)
+              .headers((headers) -> headers.setLocation(dashboardUrl))
+              .build());
+    }
+    catch (RejectedExecutionException ex) {
+      return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (this.dedicatedExecutor != null) {
+      this.dedicatedExecutor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Keep a bounded pool of one-time links to the dashboard that is refilled in the
+ * background. The pool is only filled once a link has been requested, so that an
+ * application whose endpoint is never used does not ask the cluster for links. Each link
+ * is handed out at most once, and is replaced shortly before it reaches the configured
+ * time to live as long as the pool has been used within that time. An idle pool is left
+ * to drain so that the cluster is not asked for links nobody uses. If the pool is empty,
+ * a link is fetched synchronously.
+ *
+ * @author Stephane Nicoll
+ */
+class PrefetchingDashboardUrlSupplier implements Supplier<URI>, DisposableBean {
+
+  private static final Log logger = LogFactory.getLog(PrefetchingDashboardUrlSupplier.class);
+
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+  private final Supplier<URI> delegate;
+
+  private final int size;
+
+  private final Duration timeToLive;
+
+  private final Duration refreshAfter;
+
+  private final Scheduler scheduler;
+
+  private final Clock clock;
+
+  private final BlockingQueue<Link> links;
+
+  private final AtomicInteger scheduled = new AtomicInteger();
+
+  private volatile Instant refillNotBefore = Instant.MIN;
+
+  private volatile Instant lastAccess = Instant.MIN;
+
+  PrefetchingDashboardUrlSupplier(Supplier<URI> delegate, int size, Duration timeToLive) {
+    this(delegate, size, timeToLive, new ExecutorScheduler(), Clock.systemUTC());
+  }
+
+  PrefetchingDashboardUrlSupplier(Supplier<URI> delegate, int size, Duration timeToLive, Scheduler scheduler,
+      Clock clock) {
+    this.delegate = delegate;
+    this.size = size;
+    this.timeToLive = timeToLive;
+    // Replace a link when 90% of its time to live has elapsed
+    this.refreshAfter = timeToLive.minus(timeToLive.dividedBy(10));
+    this.scheduler = scheduler;
+    this.clock = clock;
+    this.links = new LinkedBlockingQueue<>(Math.max(size, 1));
+  }
+
+  @Override
+  public URI get() {
+    try {
+      Instant now = this.clock.instant();
+      this.lastAccess = now;
+      Link link;
+      while ((link = this.links.poll()) != null) {
+        this.scheduled.decrementAndGet();
+        if (link.isValid(now)) {
+          return link.url();
+        }
+      }
+      return this.delegate.get();
+    }
+    finally {
+      refill();
+    }
+  }
+
+  private void refill() {
+    int current;
+    while (!this.clock.instant().isBefore(this.refillNotBefore) && (current = this.scheduled.get()) < this.size) {
+      if (this.scheduled.compareAndSet(current, current + 1)) {
+        try {
+          this.scheduler.schedule(this::fetch, Duration.ZERO);
+        }
+        catch (RejectedExecutionException ex) {
+          this.scheduled.decrementAndGet();
+          return;
+        }
+      }
+    }
+  }
+
+  private void fetch() {
+    try {
+      URI url = this.delegate.get();
+      Link link = new Link(url, this.clock.instant().plus(this.timeToLive));
+      if (this.links.offer(link)) {
+        this.scheduler.schedule(() -> expire(link), this.refreshAfter);
+      }
+      else {
+        this.scheduled.decrementAndGet();
+      }
+    }
+    catch (RuntimeException ex) {
+      this.scheduled.decrementAndGet();
+      this.refillNotBefore = this.clock.instant().plus(RETRY_DELAY);
+      logger.debug("Failed to prefetch a link to the Wavefront dashboard", ex);
+    }
+  }
+
+  private void expire(Link link) {
+    if (this.links.remove(link)) {
+      this.scheduled.decrementAndGet();
+      if (this.lastAccess.isAfter(this.clock.instant().minus(this.timeToLive))) {
+        refill();
+      }
+    }
+  }
+
+  /**
+   * Return the number of links that are available in the pool.
+   * @return the number of available links
+   */
+  int getAvailableLinks() {
+    return this.links.size();
+  }
+
+  @Override
+  public void destroy() {
+    if (this.scheduler instanceof ExecutorScheduler executorScheduler) {
+      executorScheduler.shutdown();
+    }
+  }
+
+  /**
+   * Strategy used to run the tasks that fetch and expire links.
+   */
+  @FunctionalInterface
+  interface Scheduler {
+
+    /**
+     * Run the specified task after the specified delay.
+     * @param task the task to run
+     * @param delay the delay before running the task, possibly zero
+     * @throws RejectedExecutionException if the task cannot be scheduled
+     */
+    void schedule(Runnable task, Duration delay);
+
+  }
+
+  private static final class ExecutorScheduler implements Scheduler {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+      Thread thread = new Thread(runnable, "wavefront-dashboard-links");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    @Override
+    public void schedule(Runnable task, Duration delay) {
+      this.executor.schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    void shutdown() {
+      this.executor.shutdownNow();
+    }
+
+  }
+
+  private record Link(URI url, Instant expiresAt) {
+
+    boolean isValid(Instant now) {
+      return now.isBefore(this.expiresAt);
+    }
+
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.util.function.Supplier;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.account.ReactiveAccountManagementClient;
+import io.micrometer.wavefront.WavefrontConfig;
+import reactor.core.publisher.Mono;
+
+/**
+ * Provide a one time link to the dashboard of an account that was auto-negotiated,
+ * without blocking.
+ *
+ * @author Stephane Nicoll
+ */
+class ReactiveOneTimeDashboardUrlSupplier implements Supplier<Mono<URI>> {
+
+  private final ReactiveAccountManagementClient accountManagementClient;
+
+  private final WavefrontConfig wavefrontConfig;
+
+  private final ApplicationTags applicationTags;
+
+  ReactiveOneTimeDashboardUrlSupplier(ReactiveAccountManagementClient accountManagementClient,
+      WavefrontConfig wavefrontConfig, ApplicationTags applicationTags) {
+    this.accountManagementClient = accountManagementClient;
+    this.wavefrontConfig = wavefrontConfig;
+    this.applicationTags = applicationTags;
+  }
+
+  @Override
+  public Mono<URI> get() {
+    return this.accountManagementClient.getExistingAccount(this.wavefrontConfig.uri(), this.applicationTags,
+        this.wavefrontConfig.apiToken()).map((account) -> URI.create(account.loginUrl()));
+  }
+
+}
@@ -0,0 +1,35 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.actuate.endpoint.web.annotation.ControllerEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+
+/**
+ * A reactive endpoint that provides access to the Wavefront dashboard.
+ *
+ * @author Stephane Nicoll
+ * @see WavefrontController
+ */
+@ControllerEndpoint(id = "wavefront")
+public class ReactiveWavefrontController {
+
+  private final Supplier<Mono<URI>> dashboardUrlSupplier;
+
+  ReactiveWavefrontController(Supplier<Mono<URI>> dashboardUrlSupplier) {
+    this.dashboardUrlSupplier = dashboardUrlSupplier;
+  }
+
+  @GetMapping("/")
+  public Mono<ResponseEntity<Void>> dashboard() {
+    return this.dashboardUrlSupplier.get().map((dashboardUrl) -> ResponseEntity.status(HttpStatus.FOUND)
+        .headers((headers) -> headers.setLocation(dashboardUrl))
+        .build());
+  }
+
+}
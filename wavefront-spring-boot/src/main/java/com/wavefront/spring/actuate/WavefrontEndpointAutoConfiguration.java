@@ -1,13 +1,20 @@
 package com.wavefront.spring.actuate;
 
 import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import com.wavefront.sdk.common.Utils;
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.spring.account.AccountManagementClient;
+import com.wavefront.spring.account.ReactiveAccountManagementClient;
+import com.wavefront.spring.actuate.WavefrontEndpointProperties.Prefetch;
 
 import io.micrometer.wavefront.WavefrontConfig;
+import reactor.core.publisher.Mono;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.tracing.wavefront.WavefrontTracingAutoConfiguration;
@@ -16,48 +23,176 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.autoconfigure.condition.NoneNestedConditions;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
 import static com.wavefront.spring.autoconfigure.AccountManagementEnvironmentPostProcessor.FREEMIUM_ACCOUNT_PROPERTY;
+import static org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME;
 
 /**
- * {@link EnableAutoConfiguration Auto-configuration} for {@link WavefrontController}.
+ * {@link EnableAutoConfiguration Auto-configuration} for {@link WavefrontController}. A
+ * {@link ReactiveWavefrontController} is used instead in a reactive web application.
  *
  * @author Stephane Nicoll
  */
 @Configuration(proxyBeanMethods = false)
 @ConditionalOnClass({ RestTemplate.class, WavefrontConfig.class, ApplicationTags.class })
-@ConditionalOnBean({ RestTemplateBuilder.class, WavefrontConfig.class, ApplicationTags.class })
+@ConditionalOnBean({ WavefrontConfig.class, ApplicationTags.class })
 @ConditionalOnAvailableEndpoint(endpoint = WavefrontController.class)
-@AutoConfigureAfter({ WavefrontMetricsExportAutoConfiguration.class, WavefrontTracingAutoConfiguration.class, RestTemplateAutoConfiguration.class })
+@AutoConfigureAfter({ WavefrontMetricsExportAutoConfiguration.class, WavefrontTracingAutoConfiguration.class,
+    RestTemplateAutoConfiguration.class, WebClientAutoConfiguration.class, TaskExecutionAutoConfiguration.class })
+@EnableConfigurationProperties(WavefrontEndpointProperties.class)
 public class WavefrontEndpointAutoConfiguration {
 
-  @Bean
-  @ConditionalOnMissingBean
-  public AccountManagementClient accountManagementClient(RestTemplateBuilder restTemplateBuilder) {
-    return new AccountManagementClient(restTemplateBuilder,
-        Utils.getVersion("wavefront-spring-boot").orElse(null));
-  }
+  private static final int DASHBOARD_EXECUTOR_POOL_SIZE = 4;
 
-  @Bean
-  @ConditionalOnMissingBean
-  WavefrontController wavefrontController(Environment environment,
-      AccountManagementClient accountManagementClient, WavefrontConfig wavefrontConfig,
-      ApplicationTags applicationTags) {
-    if (isFreemium(environment)) {
-      return new WavefrontController(new OneTimeDashboardUrlSupplier(
-          accountManagementClient, wavefrontConfig, applicationTags));
-    }
-    return new WavefrontController(() -> URI.create(wavefrontConfig.uri()));
+  private static final int DASHBOARD_EXECUTOR_QUEUE_CAPACITY = 100;
+
+  private static String getVersion() {
+    return Utils.getVersion("wavefront-spring-boot").orElse(null);
   }
 
   private static boolean isFreemium(Environment environment) {
     return Boolean.TRUE.equals(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY, Boolean.class, Boolean.FALSE));
   }
 
+
+  @Configuration(proxyBeanMethods = false)
+  @Conditional(OnBlockingStackCondition.class)
+  static class WavefrontControllerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AccountManagementClient accountManagementClient(ObjectProvider<RestTemplateBuilder> restTemplateBuilder) {
+      return new AccountManagementClient(restTemplateBuilder.getIfAvailable(RestTemplateBuilder::new),
+          AccountManagementClient.getSharedHttpClient(), getVersion());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "management.endpoint.wavefront", name = "async", havingValue = "false",
+        matchIfMissing = true)
+    WavefrontController wavefrontController(Environment environment, AccountManagementClient accountManagementClient,
+        WavefrontConfig wavefrontConfig, ApplicationTags applicationTags,
+        ObjectProvider<PrefetchingDashboardUrlSupplier> prefetchingUrlSupplier) {
+      return new WavefrontController(dashboardUrlSupplier(environment, accountManagementClient, wavefrontConfig,
+          applicationTags, prefetchingUrlSupplier));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "management.endpoint.wavefront", name = "async", havingValue = "true")
+    AsyncWavefrontController asyncWavefrontController(Environment environment,
+        AccountManagementClient accountManagementClient, WavefrontConfig wavefrontConfig,
+        ApplicationTags applicationTags, ObjectProvider<PrefetchingDashboardUrlSupplier> prefetchingUrlSupplier,
+        @Qualifier(APPLICATION_TASK_EXECUTOR_BEAN_NAME) ObjectProvider<Executor> executor) {
+      Supplier<URI> dashboardUrlSupplier = dashboardUrlSupplier(environment, accountManagementClient,
+          wavefrontConfig, applicationTags, prefetchingUrlSupplier);
+      Executor applicationTaskExecutor = executor.getIfAvailable();
+      if (applicationTaskExecutor != null) {
+        return new AsyncWavefrontController(dashboardUrlSupplier, applicationTaskExecutor);
+      }
+      return AsyncWavefrontController.withDedicatedExecutor(dashboardUrlSupplier, createExecutor(environment));
+    }
+
+    private ThreadPoolTaskExecutor createExecutor(Environment environment) {
+      ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+      executor.setThreadNamePrefix("wavefront-dashboard-");
+      executor.setCorePoolSize(DASHBOARD_EXECUTOR_POOL_SIZE);
+      executor.setMaxPoolSize(DASHBOARD_EXECUTOR_POOL_SIZE);
+      executor.setQueueCapacity(DASHBOARD_EXECUTOR_QUEUE_CAPACITY);
+      executor.setDaemon(true);
+      if (Threading.VIRTUAL.isActive(environment)) {
+        executor.setThreadFactory(new VirtualThreadTaskExecutor("wavefront-dashboard-").getVirtualThreadFactory());
+      }
+      executor.initialize();
+      return executor;
+    }
+
+    private Supplier<URI> dashboardUrlSupplier(Environment environment,
+        AccountManagementClient accountManagementClient, WavefrontConfig wavefrontConfig,
+        ApplicationTags applicationTags, ObjectProvider<PrefetchingDashboardUrlSupplier> prefetchingUrlSupplier) {
+      if (isFreemium(environment)) {
+        Supplier<URI> dashboardUrlSupplier = prefetchingUrlSupplier.getIfAvailable();
+        return (dashboardUrlSupplier != null) ? dashboardUrlSupplier
+            : new OneTimeDashboardUrlSupplier(accountManagementClient, wavefrontConfig, applicationTags);
+      }
+      return () -> URI.create(wavefrontConfig.uri());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = FREEMIUM_ACCOUNT_PROPERTY, havingValue = "true")
+    static class PrefetchConfiguration {
+
+      @Bean
+      @ConditionalOnProperty(prefix = "management.endpoint.wavefront.prefetch", name = "enabled", havingValue = "true")
+      PrefetchingDashboardUrlSupplier prefetchingDashboardUrlSupplier(WavefrontEndpointProperties properties,
+          AccountManagementClient accountManagementClient, WavefrontConfig wavefrontConfig,
+          ApplicationTags applicationTags) {
+        Prefetch prefetch = properties.getPrefetch();
+        return new PrefetchingDashboardUrlSupplier(new OneTimeDashboardUrlSupplier(accountManagementClient,
+            wavefrontConfig, applicationTags), prefetch.getSize(), prefetch.getTimeToLive());
+      }
+
+    }
+
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnWebApplication(type = Type.REACTIVE)
+  @ConditionalOnClass(WebClient.class)
+  static class ReactiveWavefrontControllerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveAccountManagementClient reactiveAccountManagementClient(
+        ObjectProvider<WebClient.Builder> webClientBuilder) {
+      return new ReactiveAccountManagementClient(webClientBuilder.getIfAvailable(WebClient::builder),
+          AccountManagementClient.getSharedHttpClient(), getVersion());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    ReactiveWavefrontController reactiveWavefrontController(Environment environment,
+        ReactiveAccountManagementClient accountManagementClient, WavefrontConfig wavefrontConfig,
+        ApplicationTags applicationTags) {
+      if (isFreemium(environment)) {
+        return new ReactiveWavefrontController(new ReactiveOneTimeDashboardUrlSupplier(
+            accountManagementClient, wavefrontConfig, applicationTags));
+      }
+      return new ReactiveWavefrontController(() -> Mono.just(URI.create(wavefrontConfig.uri())));
+    }
+
+  }
+
+  static class OnBlockingStackCondition extends NoneNestedConditions {
+
+    OnBlockingStackCondition() {
+      super(ConfigurationPhase.PARSE_CONFIGURATION);
+    }
+
+    @ConditionalOnWebApplication(type = Type.REACTIVE)
+    @ConditionalOnClass(name = "org.springframework.web.reactive.function.client.WebClient")
+    static class ReactiveStack {
+
+    }
+
+  }
+
 }
@@ -0,0 +1,82 @@
+package com.wavefront.spring.actuate;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the Wavefront endpoint.
+ *
+ * @author Stephane Nicoll
+ */
+@ConfigurationProperties("management.endpoint.wavefront")
+public class WavefrontEndpointProperties {
+
+  /**
+   * Whether to resolve the link to the dashboard asynchronously, using the application
+   * task executor, rather than on the request thread.
+   */
+  private boolean async;
+
+  private final Prefetch prefetch = new Prefetch();
+
+  public boolean isAsync() {
+    return this.async;
+  }
+
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  public Prefetch getPrefetch() {
+    return this.prefetch;
+  }
+
+  /**
+   * Prefetching of the one-time links to the dashboard of a freemium account.
+   */
+  public static class Prefetch {
+
+    /**
+     * Whether to keep a pool of one-time links to the dashboard, refilled in the
+     * background, so that the endpoint does not wait for the cluster.
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum number of links to keep in the pool.
+     */
+    private int size = 5;
+
+    /**
+     * Time after which a link in the pool is no longer used.
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getSize() {
+      return this.size;
+    }
+
+    public void setSize(int size) {
+      this.size = size;
+    }
+
+    public Duration getTimeToLive() {
+      return this.timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+      this.timeToLive = timeToLive;
+    }
+
+  }
+
+}
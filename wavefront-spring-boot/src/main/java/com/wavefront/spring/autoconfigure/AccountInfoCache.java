@@ -0,0 +1,161 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Properties;
+
+import com.wavefront.spring.account.AccountInfo;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * A local cache of the {@link AccountInfo} of an existing account. As the login url is a
+ * one time link, an entry is consumed when it is read so that a link is never provided
+ * twice.
+ * <p>
+ * An entry is only valid for the cluster and api token it has been created for and for a
+ * limited amount of time. Each entry has a checksum so that a corrupted or tampered file
+ * is ignored.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountInfoCache {
+
+  private static final String CLUSTER_URI = "cluster-uri";
+
+  private static final String API_TOKEN_DIGEST = "api-token-digest";
+
+  private static final String LOGIN_URL = "login-url";
+
+  private static final String TIMESTAMP = "timestamp";
+
+  private static final String CHECKSUM = "checksum";
+
+  private final Resource resource;
+
+  private final Duration timeToLive;
+
+  private final Clock clock;
+
+  AccountInfoCache(Resource resource, Duration timeToLive, Clock clock) {
+    this.resource = resource;
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+  }
+
+  AccountInfoCache(Resource resource, Duration timeToLive) {
+    this(resource, timeToLive, Clock.systemUTC());
+  }
+
+  /**
+   * Return and consume the cached {@link AccountInfo} for the specified cluster and api
+   * token.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param apiToken the api token of the account
+   * @return the cached account information or {@code null} if no valid entry exists
+   */
+  AccountInfo consume(String clusterUri, String apiToken) {
+    Properties entry = load();
+    if (entry == null) {
+      return null;
+    }
+    evict();
+    if (!isValid(entry, clusterUri, apiToken)) {
+      return null;
+    }
+    return new AccountInfo(apiToken, entry.getProperty(LOGIN_URL));
+  }
+
+  /**
+   * Store the specified {@link AccountInfo} for the specified cluster.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param accountInfo the account information to store
+   * @throws IOException if the entry could not be written
+   */
+  void put(String clusterUri, AccountInfo accountInfo) throws IOException {
+    if (!this.resource.isFile()) {
+      return;
+    }
+    Properties entry = new Properties();
+    entry.setProperty(CLUSTER_URI, clusterUri);
+    entry.setProperty(API_TOKEN_DIGEST, digest(accountInfo.apiToken()));
+    entry.setProperty(LOGIN_URL, accountInfo.loginUrl());
+    entry.setProperty(TIMESTAMP, String.valueOf(this.clock.millis()));
+    entry.setProperty(CHECKSUM, checksum(entry));
+    Path target = this.resource.getFile().toPath();
+    Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      entry.store(out, null);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private boolean isValid(Properties entry, String clusterUri, String apiToken) {
+    if (!checksum(entry).equals(entry.getProperty(CHECKSUM))) {
+      return false;
+    }
+    if (!clusterUri.equals(entry.getProperty(CLUSTER_URI))
+        || !digest(apiToken).equals(entry.getProperty(API_TOKEN_DIGEST))) {
+      return false;
+    }
+    try {
+      Instant expiry = Instant.ofEpochMilli(Long.parseLong(entry.getProperty(TIMESTAMP))).plus(this.timeToLive);
+      return this.clock.instant().isBefore(expiry);
+    }
+    catch (NumberFormatException ex) {
+      return false;
+    }
+  }
+
+  private Properties load() {
+    if (!this.resource.isReadable()) {
+      return null;
+    }
+    try (InputStream in = this.resource.getInputStream()) {
+      Properties entry = new Properties();
+      entry.load(in);
+      return entry;
+    }
+    catch (IOException ex) {
+      return null;
+    }
+  }
+
+  private void evict() {
+    try {
+      if (this.resource.isFile()) {
+        Files.deleteIfExists(this.resource.getFile().toPath());
+      }
+    }
+    catch (IOException ex) {
+      // Entry will be ignored or replaced
+    }
+  }
+
+  private static String checksum(Properties entry) {
+    return digest(String.join("\n", entry.getProperty(CLUSTER_URI, ""), entry.getProperty(API_TOKEN_DIGEST, ""),
+        entry.getProperty(LOGIN_URL, ""), entry.getProperty(TIMESTAMP, "")));
+  }
+
+  private static String digest(String value) {
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(messageDigest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+}
@@ -1,12 +1,21 @@
 package com.wavefront.spring.autoconfigure;
 
+import java.lang.StackWalker.StackFrame;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Utility to deduce if the {@link AccountManagementEnvironmentPostProcessor} should be
  * enabled in the current context.
+ * <p>
+ * The stack of the current thread is walked lazily, stopping at the first frame of a
+ * test framework. The outcome is deliberately not memoized per thread: a
+ * {@link ThreadLocal} that is never cleared would pin the class loader of the starter to
+ * long-lived pooled threads, and would go stale when such a thread later starts a
+ * context from a different entry point.
  *
  * @author Madhura Bhave
  */
@@ -23,6 +32,10 @@ final class AccountManagementEnablementDeducer {
     SKIPPED_STACK_ELEMENTS = Collections.unmodifiableSet(skipped);
   }
 
+  private static final PrefixMatcher SKIPPED_STACK_ELEMENTS_MATCHER = new PrefixMatcher(SKIPPED_STACK_ELEMENTS);
+
+  private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
   private AccountManagementEnablementDeducer() {
   }
 
@@ -33,21 +46,52 @@ final class AccountManagementEnablementDeducer {
    * @return {@code true} if account management should be enabled
    */
   public static boolean shouldEnable(Thread thread) {
-    for (StackTraceElement element : thread.getStackTrace()) {
-      if (isSkippedStackElement(element)) {
-        return false;
-      }
+    if (thread != Thread.currentThread()) {
+      return Arrays.stream(thread.getStackTrace()).map(StackTraceElement::getClassName)
+          .noneMatch(SKIPPED_STACK_ELEMENTS_MATCHER::matches);
     }
-    return true;
+    return deduce();
+  }
+
+  /**
+   * Walk the stack of the current thread, stopping at the first skipped element.
+   * @return {@code true} if account management should be enabled
+   */
+  static boolean deduce() {
+    return STACK_WALKER.walk(AccountManagementEnablementDeducer::hasNoSkippedStackElement);
+  }
+
+  private static boolean hasNoSkippedStackElement(Stream<StackFrame> frames) {
+    return frames.map(StackFrame::getClassName).noneMatch(SKIPPED_STACK_ELEMENTS_MATCHER::matches);
   }
 
-  private static boolean isSkippedStackElement(StackTraceElement element) {
-    for (String skipped : SKIPPED_STACK_ELEMENTS) {
-      if (element.getClassName().startsWith(skipped)) {
+  /**
+   * Match a class name against a set of package prefixes using a binary search. Prefixes
+   * that are covered by a shorter one are removed so that the greatest prefix that sorts
+   * before a candidate is the only one that can match it.
+   */
+  static final class PrefixMatcher {
+
+    private final String[] prefixes;
+
+    PrefixMatcher(Set<String> prefixes) {
+      this.prefixes = prefixes.stream().filter((prefix) -> !isCovered(prefixes, prefix)).sorted()
+          .toArray(String[]::new);
+    }
+
+    private static boolean isCovered(Set<String> prefixes, String prefix) {
+      return prefixes.stream().anyMatch((other) -> !other.equals(prefix) && prefix.startsWith(other));
+    }
+
+    boolean matches(String className) {
+      int index = Arrays.binarySearch(this.prefixes, className);
+      if (index >= 0) {
         return true;
       }
+      int candidate = -index - 2;
+      return candidate >= 0 && className.startsWith(this.prefixes[candidate]);
     }
-    return false;
+
   }
 
 }
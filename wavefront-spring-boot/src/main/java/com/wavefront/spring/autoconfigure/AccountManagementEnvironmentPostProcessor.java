@@ -7,8 +7,11 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
@@ -22,22 +25,45 @@ import org.springframework.boot.context.event.ApplicationFailedEvent;
 import org.springframework.boot.context.event.ApplicationPreparedEvent;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.boot.env.EnvironmentPostProcessor;
 import org.springframework.boot.logging.DeferredLog;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.ApplicationListener;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
 import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.lang.NonNull;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.ResourceAccessException;
 
 /**
  * An {@link EnvironmentPostProcessor} that auto-negotiates an api token for Wavefront if
  * necessary. If an account was already provisioned and the api token is available from
  * disk, retrieves a one time link url to the Wavefront dashboard.
+ * <p>
+ * If {@value #ASYNC_NEGOTIATION_PROPERTY} is set, the exchange with the Wavefront cluster
+ * happens in the background so that the startup of the application is not delayed. A
+ * negotiated api token is published to the environment once it is available, see
+ * {@link AccountNegotiationAutoConfiguration}.
+ * <p>
+ * If {@value #ACCOUNT_CACHE_ENABLED_PROPERTY} is set, the information of an existing
+ * account is cached locally so that a restart does not have to wait for the cluster. The
+ * cache is refreshed in the background for the next restart.
+ * <p>
+ * A cluster that could not be reached is recorded locally for a limited amount of time,
+ * see {@value #UNREACHABLE_CLUSTER_CACHE_TIME_TO_LIVE_PROPERTY}. Restarts within that
+ * window skip the exchange with the cluster and try again in the background.
+ * <p>
+ * Once an account has been configured, it is reused if the application restarts in the
+ * same JVM, for instance when using DevTools.
+ * <p>
+ * Each phase is recorded as a {@code wavefront.account.*} step of the
+ * {@link ApplicationStartup} and a summary of the timings is displayed with the outcome.
  *
  * @author Stephane Nicoll
  */
@@ -52,11 +78,35 @@ public class AccountManagementEnvironmentPostProcessor
 
   public static final String FREEMIUM_ACCOUNT_PROPERTY = "wavefront.freemium-account";
 
+  public static final String ASYNC_NEGOTIATION_PROPERTY = "wavefront.account.async-negotiation";
+
+  public static final String ACCOUNT_CACHE_ENABLED_PROPERTY = "wavefront.account.cache.enabled";
+
+  public static final String ACCOUNT_CACHE_TIME_TO_LIVE_PROPERTY = "wavefront.account.cache.time-to-live";
+
+  private static final Duration DEFAULT_ACCOUNT_CACHE_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+  public static final String UNREACHABLE_CLUSTER_CACHE_ENABLED_PROPERTY =
+      "wavefront.account.unreachable-cluster-cache.enabled";
+
+  public static final String UNREACHABLE_CLUSTER_CACHE_TIME_TO_LIVE_PROPERTY =
+      "wavefront.account.unreachable-cluster-cache.time-to-live";
+
+  private static final Duration DEFAULT_UNREACHABLE_CLUSTER_CACHE_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+  static final String ACCOUNT_NEGOTIATION_BEAN_NAME = "wavefrontAccountNegotiation";
+
+  private static final String PROPERTY_SOURCE_NAME = "wavefront";
+
   private static final String DEFAULT_CLUSTER_URI = "https://wavefront.surf";
 
   private final DeferredLog logger = new DeferredLog();
 
-  private Supplier<String> accountConfigurationOutcome;
+  private CompletableFuture<Supplier<String>> accountConfigurationOutcome;
+
+  private AccountNegotiation accountNegotiation;
+
+  private AccountManagementStartup startup = new AccountManagementStartup(ApplicationStartup.DEFAULT);
 
   @Override
   public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
@@ -64,27 +114,93 @@ public class AccountManagementEnvironmentPostProcessor
       return;
     }
     application.addListeners(this);
+    this.startup = new AccountManagementStartup(application.getApplicationStartup());
     String clusterUri = environment.getProperty(URI_PROPERTY, DEFAULT_CLUSTER_URI);
+    boolean async = environment.getProperty(ASYNC_NEGOTIATION_PROPERTY, Boolean.class, false);
     if (!isApiTokenRequired(environment)) {
-      this.accountConfigurationOutcome = validateExistingConfiguration(environment, clusterUri);
+      if (isConfiguredAlready(clusterUri, environment.getProperty(API_TOKEN_PROPERTY))) {
+        return;
+      }
+      this.accountConfigurationOutcome = negotiate(async, skipIfUnreachable(environment, clusterUri,
+          () -> validateExistingConfiguration(environment, clusterUri)));
+      return;
+    }
+    String configuredApiToken = AccountManagementState.getApiToken(clusterUri);
+    if (configuredApiToken != null) {
+      this.logger.debug("Reusing Wavefront account configured previously for " + clusterUri);
+      registerApiToken(environment, configuredApiToken);
       return;
     }
     Resource localApiTokenResource = getLocalApiTokenResource();
     String existingApiToken = readExistingApiToken(localApiTokenResource);
     if (existingApiToken != null) {
-      this.accountConfigurationOutcome = configureExistingAccount(environment, clusterUri,
-          existingApiToken, localApiTokenResource);
+      this.logger.debug("Existing Wavefront api token found from " + localApiTokenResource);
+      registerApiToken(environment, existingApiToken);
+      this.accountConfigurationOutcome = negotiate(async, skipIfUnreachable(environment, clusterUri,
+          () -> configureExistingAccount(environment, clusterUri, existingApiToken)));
     }
     else {
-      this.accountConfigurationOutcome = configureNewAccount(environment, clusterUri, localApiTokenResource);
+      if (async) {
+        this.accountNegotiation = new AccountNegotiation();
+        getWavefrontSettings(environment);
+      }
+      this.accountConfigurationOutcome = negotiate(async, skipIfUnreachable(environment, clusterUri,
+          () -> configureNewAccount(environment, clusterUri, localApiTokenResource)));
+      if (this.accountNegotiation != null) {
+        this.accountConfigurationOutcome.whenComplete((outcome, ex) -> this.accountNegotiation.abandon());
+      }
     }
   }
 
+  private CompletableFuture<Supplier<String>> negotiate(boolean async, Supplier<Supplier<String>> negotiation) {
+    if (!async) {
+      return CompletableFuture.completedFuture(negotiation.get());
+    }
+    this.logger.debug("Negotiating Wavefront account in the background");
+    return CompletableFuture.supplyAsync(() -> {
+      this.startup.negotiateOnCurrentThread();
+      return negotiation.get();
+    }, createBackgroundExecutor());
+  }
+
+  private Supplier<Supplier<String>> skipIfUnreachable(ConfigurableEnvironment environment, String clusterUri,
+      Supplier<Supplier<String>> negotiation) {
+    UnreachableClusterCache unreachableClusters = getUnreachableClusterCache(environment);
+    if (unreachableClusters == null || !unreachableClusters.isUnreachable(clusterUri)) {
+      return negotiation;
+    }
+    return () -> {
+      this.logger.debug("Wavefront cluster " + clusterUri + " was not reachable recently, retrying in the background");
+      CompletableFuture.supplyAsync(negotiation, createBackgroundExecutor()).thenAccept(this::printOutcome);
+      String message = String.format("%nSkipped Wavefront account negotiation as %s could not be reached "
+          + "recently. A new attempt is made in the background.%n", clusterUri);
+      return () -> message;
+    };
+  }
+
+  private static Executor createBackgroundExecutor() {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("wavefront-account-");
+    executor.setDaemon(true);
+    return executor;
+  }
+
+  private boolean isConfiguredAlready(String clusterUri, String apiToken) {
+    if (StringUtils.hasText(apiToken) && AccountManagementState.isConfigured(clusterUri, apiToken)) {
+      this.logger.debug("Wavefront account for " + clusterUri + " has been configured previously");
+      return true;
+    }
+    return false;
+  }
+
   private boolean shouldRun(ConfigurableEnvironment environment) {
     if (environment.getPropertySources().contains("bootstrap")) {
       // Do not run in the bootstrap phase as the user configuration is not available yet
       return false;
     }
+    if (Boolean.getBoolean("spring.aot.processing")) {
+      // Do not contact the cluster while the application is optimized at build time
+      return false;
+    }
     Boolean freemiumAccount = environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY, Boolean.class);
     if (freemiumAccount != null) {
       return freemiumAccount;
@@ -97,12 +213,33 @@ public class AccountManagementEnvironmentPostProcessor
 
   @Override
   public void onApplicationEvent(@NonNull SpringApplicationEvent event) {
-    if (event instanceof ApplicationPreparedEvent) {
+    if (event instanceof ApplicationPreparedEvent preparedEvent) {
       this.logger.switchTo(AccountManagementEnvironmentPostProcessor.class);
+      if (this.accountNegotiation != null && this.accountNegotiation.getApiToken() == null) {
+        preparedEvent.getApplicationContext().getBeanFactory()
+            .registerSingleton(ACCOUNT_NEGOTIATION_BEAN_NAME, this.accountNegotiation);
+      }
     }
     if (event instanceof ApplicationStartedEvent || event instanceof ApplicationFailedEvent) {
       if (this.accountConfigurationOutcome != null) {
-        System.out.println(this.accountConfigurationOutcome.get());
+        if (this.accountConfigurationOutcome.isDone()) {
+          printOutcome(this.accountConfigurationOutcome.join());
+        }
+        else {
+          System.out.printf("%nWavefront account negotiation is still in progress, "
+              + "details will be displayed once available.%n");
+          this.accountConfigurationOutcome.thenAccept(this::printOutcome);
+        }
+      }
+    }
+  }
+
+  private void printOutcome(Supplier<String> outcome) {
+    if (outcome != null) {
+      System.out.println(outcome.get());
+      String summary = this.startup.getSummary();
+      if (summary != null) {
+        System.out.println(summary);
       }
     }
   }
@@ -114,7 +251,7 @@ public class AccountManagementEnvironmentPostProcessor
       return false;
     }
     URI uri = environment.getProperty(URI_PROPERTY, URI.class);
-    if (uri != null && "proxy".equals(uri.getScheme())) {
+    if (uri != null && ("proxy".equals(uri.getScheme()) || "unix".equals(uri.getScheme()))) {
       this.logger.debug("Pushing to a Wavefront proxy does not require an api token.");
       return false;
     }
@@ -128,8 +265,8 @@ public class AccountManagementEnvironmentPostProcessor
       return null;
     }
     try {
-      AccountInfo accountInfo = invokeAccountManagementClient(environment,
-          (client, applicationTags) -> getExistingAccount(client, clusterUri, applicationTags, apiToken));
+      AccountInfo accountInfo = retrieveExistingAccount(environment, clusterUri, apiToken);
+      AccountManagementState.registerAccount(clusterUri, apiToken);
       StringBuilder sb = new StringBuilder();
       sb.append(String.format("%nConnect to your Wavefront dashboard using this one-time use link:%n%s%n",
           accountInfo.loginUrl()));
@@ -143,12 +280,10 @@ public class AccountManagementEnvironmentPostProcessor
   }
 
   private Supplier<String> configureExistingAccount(ConfigurableEnvironment environment, String clusterUri,
-      String apiToken, Resource localApiTokenResource) {
+      String apiToken) {
     try {
-      this.logger.debug("Existing Wavefront api token found from " + localApiTokenResource);
-      registerApiToken(environment, apiToken);
-      AccountInfo accountInfo = invokeAccountManagementClient(environment,
-          (client, applicationTags) -> getExistingAccount(client, clusterUri, applicationTags, apiToken));
+      AccountInfo accountInfo = retrieveExistingAccount(environment, clusterUri, apiToken);
+      AccountManagementState.registerAccount(clusterUri, apiToken);
       return accountManagementSuccess("Your existing Wavefront account information has been restored from disk.",
           clusterUri, accountInfo);
     }
@@ -159,13 +294,71 @@ public class AccountManagementEnvironmentPostProcessor
     }
   }
 
+  private AccountInfo retrieveExistingAccount(ConfigurableEnvironment environment, String clusterUri,
+      String apiToken) {
+    AccountInfoCache cache = getAccountInfoCache(environment);
+    if (cache == null) {
+      return fetchExistingAccount(environment, clusterUri, apiToken);
+    }
+    AccountInfo accountInfo = cache.consume(clusterUri, apiToken);
+    if (accountInfo != null) {
+      this.logger.debug("Using cached Wavefront account information from " + getLocalAccountInfoCacheResource());
+    }
+    else {
+      accountInfo = fetchExistingAccount(environment, clusterUri, apiToken);
+    }
+    refreshAccountInfoCache(environment, cache, clusterUri, apiToken);
+    return accountInfo;
+  }
+
+  private void refreshAccountInfoCache(ConfigurableEnvironment environment, AccountInfoCache cache,
+      String clusterUri, String apiToken) {
+    createBackgroundExecutor().execute(() -> {
+      try {
+        cache.put(clusterUri, fetchExistingAccount(environment, clusterUri, apiToken));
+      }
+      catch (Exception ex) {
+        this.logger.debug("Failed to refresh cached Wavefront account information", ex);
+      }
+    });
+  }
+
+  private AccountInfo fetchExistingAccount(ConfigurableEnvironment environment, String clusterUri,
+      String apiToken) {
+    return invokeAccountManagementClient(environment, clusterUri,
+        (client, applicationTags) -> getExistingAccount(client, clusterUri, applicationTags, apiToken));
+  }
+
+  private AccountInfoCache getAccountInfoCache(ConfigurableEnvironment environment) {
+    if (!environment.getProperty(ACCOUNT_CACHE_ENABLED_PROPERTY, Boolean.class, false)) {
+      return null;
+    }
+    String timeToLive = environment.getProperty(ACCOUNT_CACHE_TIME_TO_LIVE_PROPERTY);
+    return new AccountInfoCache(getLocalAccountInfoCacheResource(), StringUtils.hasText(timeToLive)
+        ? DurationStyle.detectAndParse(timeToLive) : DEFAULT_ACCOUNT_CACHE_TIME_TO_LIVE);
+  }
+
+  private UnreachableClusterCache getUnreachableClusterCache(ConfigurableEnvironment environment) {
+    if (!environment.getProperty(UNREACHABLE_CLUSTER_CACHE_ENABLED_PROPERTY, Boolean.class, false)) {
+      return null;
+    }
+    String timeToLive = environment.getProperty(UNREACHABLE_CLUSTER_CACHE_TIME_TO_LIVE_PROPERTY);
+    return new UnreachableClusterCache(getLocalUnreachableClusterCacheResource(), StringUtils.hasText(timeToLive)
+        ? DurationStyle.detectAndParse(timeToLive) : DEFAULT_UNREACHABLE_CLUSTER_CACHE_TIME_TO_LIVE);
+  }
+
   private Supplier<String> configureNewAccount(ConfigurableEnvironment environment, String clusterUri,
       Resource localApiTokenResource) {
     try {
-      AccountInfo accountInfo = invokeAccountManagementClient(environment,
+      AccountInfo accountInfo = invokeAccountManagementClient(environment, clusterUri,
           (client, applicationInfo) -> provisionAccount(client, clusterUri, applicationInfo));
       registerApiToken(environment, accountInfo.apiToken());
       writeApiTokenToDisk(localApiTokenResource, accountInfo.apiToken());
+      AccountManagementState.registerAccount(clusterUri, accountInfo.apiToken());
+      AccountInfoCache cache = getAccountInfoCache(environment);
+      if (cache != null) {
+        refreshAccountInfoCache(environment, cache, clusterUri, accountInfo.apiToken());
+      }
       return accountManagementSuccess(
           "A Wavefront account has been provisioned successfully and the API token has been saved to disk.",
           clusterUri, accountInfo);
@@ -196,6 +389,14 @@ public class AccountManagementEnvironmentPostProcessor
   }
 
   private String readExistingApiToken(Resource localApiTokenResource) {
+    return this.startup.record("api-token.read", "api token read", (step) -> {
+      String apiToken = doReadExistingApiToken(localApiTokenResource);
+      step.tag("found", String.valueOf(apiToken != null));
+      return apiToken;
+    });
+  }
+
+  private String doReadExistingApiToken(Resource localApiTokenResource) {
     if (localApiTokenResource.isReadable()) {
       try (InputStream in = localApiTokenResource.getInputStream()) {
         return StreamUtils.copyToString(in, StandardCharsets.UTF_8).trim();
@@ -208,35 +409,82 @@ public class AccountManagementEnvironmentPostProcessor
   }
 
   private void writeApiTokenToDisk(Resource localApiTokenResource, String apiToken) {
-    if (localApiTokenResource.isFile()) {
-      try (OutputStream out = new FileOutputStream(localApiTokenResource.getFile())) {
-        StreamUtils.copy(apiToken, StandardCharsets.UTF_8, out);
+    this.startup.record("api-token.write", "api token write", (step) -> {
+      if (localApiTokenResource.isFile()) {
+        try (OutputStream out = new FileOutputStream(localApiTokenResource.getFile())) {
+          StreamUtils.copy(apiToken, StandardCharsets.UTF_8, out);
+        }
+        catch (IOException ex) {
+          throw new IllegalStateException(ex);
+        }
       }
-      catch (IOException ex) {
-        throw new IllegalStateException(ex);
-      }
-    }
+      return null;
+    });
   }
 
-  private AccountInfo invokeAccountManagementClient(ConfigurableEnvironment environment,
+  private AccountInfo invokeAccountManagementClient(ConfigurableEnvironment environment, String clusterUri,
       BiFunction<AccountManagementClient, ApplicationTags, AccountInfo> accountProvider) {
-    RestTemplateBuilder restTemplateBuilder = new RestTemplateBuilder();
-    AccountManagementClient client = new AccountManagementClient(restTemplateBuilder,
-        Utils.getVersion("wavefront-spring-boot").orElse(null));
-    ApplicationTags applicationTags = new ApplicationTagsFactory().createFromEnvironment(environment);
-    return accountProvider.apply(client, applicationTags);
+    AccountManagementClient client = this.startup.record("client", "client",
+        (step) -> AccountManagementState.getClient(() -> new AccountManagementClient(
+            AccountManagementClient.getSharedHttpClient(), Utils.getVersion("wavefront-spring-boot").orElse(null))));
+    ApplicationTags applicationTags = this.startup.record("application-tags", "application tags",
+        (step) -> new ApplicationTagsFactory().createFromEnvironment(environment));
+    UnreachableClusterCache unreachableClusters = getUnreachableClusterCache(environment);
+    return this.startup.record("exchange", "exchange with " + clusterUri, (step) -> {
+      step.tag("cluster", clusterUri);
+      try {
+        AccountInfo accountInfo = accountProvider.apply(client, applicationTags);
+        recordReachability(unreachableClusters, clusterUri, true);
+        return accountInfo;
+      }
+      catch (ResourceAccessException ex) {
+        recordReachability(unreachableClusters, clusterUri, false);
+        throw ex;
+      }
+    });
+  }
+
+  private void recordReachability(UnreachableClusterCache unreachableClusters, String clusterUri,
+      boolean reachable) {
+    if (unreachableClusters == null) {
+      return;
+    }
+    try {
+      if (reachable) {
+        unreachableClusters.markReachable(clusterUri);
+      }
+      else {
+        unreachableClusters.markUnreachable(clusterUri);
+      }
+    }
+    catch (IOException ex) {
+      this.logger.debug("Failed to record reachability of Wavefront cluster " + clusterUri, ex);
+    }
   }
 
   private void registerApiToken(ConfigurableEnvironment environment, String apiToken) {
-    Map<String, Object> wavefrontSettings = new HashMap<>();
+    getWavefrontSettings(environment).put(API_TOKEN_PROPERTY, apiToken);
+    if (this.accountNegotiation != null) {
+      this.accountNegotiation.complete(apiToken);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> getWavefrontSettings(ConfigurableEnvironment environment) {
+    PropertySource<?> existing = environment.getPropertySources().get(PROPERTY_SOURCE_NAME);
+    if (existing instanceof MapPropertySource) {
+      return (Map<String, Object>) existing.getSource();
+    }
+    // Concurrent as the api token may be published while the context is refreshing
+    Map<String, Object> wavefrontSettings = new ConcurrentHashMap<>();
     wavefrontSettings.put(FREEMIUM_ACCOUNT_PROPERTY, true);
-    wavefrontSettings.put(API_TOKEN_PROPERTY, apiToken);
     String configuredClusterUri = environment.getProperty(URI_PROPERTY);
     if (!StringUtils.hasText(configuredClusterUri)) {
       wavefrontSettings.put(URI_PROPERTY, DEFAULT_CLUSTER_URI);
     }
-    MapPropertySource wavefrontPropertySource = new MapPropertySource("wavefront", wavefrontSettings);
+    MapPropertySource wavefrontPropertySource = new MapPropertySource(PROPERTY_SOURCE_NAME, wavefrontSettings);
     environment.getPropertySources().addLast(wavefrontPropertySource);
+    return wavefrontSettings;
   }
 
   protected boolean shouldEnableAccountManagement(Thread thread) {
@@ -247,6 +495,14 @@ public class AccountManagementEnvironmentPostProcessor
     return new PathResource(Paths.get(System.getProperty("user.home"), ".wavefront_freemium"));
   }
 
+  protected Resource getLocalAccountInfoCacheResource() {
+    return new PathResource(Paths.get(System.getProperty("user.home"), ".wavefront_freemium.cache"));
+  }
+
+  protected Resource getLocalUnreachableClusterCacheResource() {
+    return new PathResource(Paths.get(System.getProperty("user.home"), ".wavefront_freemium.unreachable"));
+  }
+
   protected AccountInfo getExistingAccount(AccountManagementClient client, String clusterUri,
       ApplicationTags applicationTags, String apiToken) {
     this.logger.debug("Retrieving existing account from " + clusterUri);
@@ -0,0 +1,103 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * Record the phases of the account management as {@link StartupStep steps} and keep track
+ * of their timings so that a summary can be displayed with the outcome.
+ * <p>
+ * Only the phases that run on the thread that negotiates the account are recorded. As
+ * {@link ApplicationStartup} implementations keep track of the current step, phases that
+ * run in the background are timed but not reported as {@link StartupStep steps}.
+ *
+ * @author Stephane Nicoll
+ */
+final class AccountManagementStartup {
+
+  private static final String STEP_PREFIX = "wavefront.account.";
+
+  private final ApplicationStartup applicationStartup;
+
+  private final Thread startupThread;
+
+  private final List<Timing> timings = new ArrayList<>();
+
+  private volatile Thread negotiationThread;
+
+  AccountManagementStartup(ApplicationStartup applicationStartup) {
+    this.applicationStartup = (applicationStartup != null) ? applicationStartup : ApplicationStartup.DEFAULT;
+    this.startupThread = Thread.currentThread();
+    this.negotiationThread = this.startupThread;
+  }
+
+  /**
+   * Specify that the account is negotiated on the current thread from now on.
+   */
+  void negotiateOnCurrentThread() {
+    this.negotiationThread = Thread.currentThread();
+  }
+
+  /**
+   * Record the specified phase. The step is tagged with its outcome, additional tags can
+   * be added by the phase itself.
+   * @param name the name of the phase, used as a suffix of the step name
+   * @param description the description of the phase for the summary
+   * @param phase the phase to run
+   * @param <T> the result type of the phase
+   * @return the result of the phase
+   */
+  <T> T record(String name, String description, Function<StartupStep, T> phase) {
+    if (Thread.currentThread() != this.negotiationThread) {
+      return phase.apply(ApplicationStartup.DEFAULT.start(STEP_PREFIX + name));
+    }
+    ApplicationStartup startup = (Thread.currentThread() == this.startupThread) ? this.applicationStartup
+        : ApplicationStartup.DEFAULT;
+    StartupStep step = startup.start(STEP_PREFIX + name);
+    long start = System.nanoTime();
+    String outcome = "failure";
+    try {
+      T result = phase.apply(step);
+      outcome = "success";
+      return result;
+    }
+    finally {
+      step.tag("outcome", outcome);
+      step.end();
+      synchronized (this.timings) {
+        this.timings.add(new Timing(description, Duration.ofNanos(System.nanoTime() - start)));
+      }
+    }
+  }
+
+  /**
+   * Return a summary of the timings of the phases that have been recorded.
+   * @return a summary or {@code null} if no phase has been recorded
+   */
+  String getSummary() {
+    synchronized (this.timings) {
+      if (this.timings.isEmpty()) {
+        return null;
+      }
+      Duration total = this.timings.stream().map(Timing::duration).reduce(Duration.ZERO, Duration::plus);
+      return String.format("Wavefront account management took %dms (%s).", total.toMillis(),
+          this.timings.stream().map(Timing::toString).collect(Collectors.joining(", ")));
+    }
+  }
+
+  private record Timing(String description, Duration duration) {
+
+    @Override
+    public String toString() {
+      return this.description + ": " + this.duration.toMillis() + "ms";
+    }
+
+  }
+
+}
@@ -0,0 +1,87 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.wavefront.spring.account.AccountManagementClient;
+
+/**
+ * Process-wide account management state. Keeps track of the accounts that have been
+ * configured and of the {@link AccountManagementClient} so that an application that is
+ * restarted in the same JVM, for instance using DevTools, does not negotiate its account
+ * again.
+ * <p>
+ * This relies on the starter being loaded by a class loader that outlives the
+ * application, which is the case for DevTools as jar files are not reloaded.
+ *
+ * @author Stephane Nicoll
+ */
+final class AccountManagementState {
+
+  private static final Map<String, String> apiTokens = new ConcurrentHashMap<>();
+
+  private static volatile AccountManagementClient client;
+
+  private AccountManagementState() {
+  }
+
+  /**
+   * Return the api token of the account that has been configured for the specified
+   * cluster, if any.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @return the api token or {@code null} if no account has been configured yet
+   */
+  static String getApiToken(String clusterUri) {
+    return apiTokens.get(clusterUri);
+  }
+
+  /**
+   * Specify if an account with the specified api token has been configured for the
+   * specified cluster.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param apiToken the api token of the account
+   * @return {@code true} if the account has been configured already
+   */
+  static boolean isConfigured(String clusterUri, String apiToken) {
+    return apiToken.equals(apiTokens.get(clusterUri));
+  }
+
+  /**
+   * Record that the account with the specified api token has been configured for the
+   * specified cluster.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @param apiToken the api token of the account
+   */
+  static void registerAccount(String clusterUri, String apiToken) {
+    apiTokens.put(clusterUri, apiToken);
+  }
+
+  /**
+   * Return the shared {@link AccountManagementClient}, creating it if necessary.
+   * @param factory the factory to use to create the client
+   * @return the client
+   */
+  static AccountManagementClient getClient(Supplier<AccountManagementClient> factory) {
+    AccountManagementClient existing = client;
+    if (existing == null) {
+      synchronized (AccountManagementState.class) {
+        existing = client;
+        if (existing == null) {
+          existing = factory.get();
+          client = existing;
+        }
+      }
+    }
+    return existing;
+  }
+
+  /**
+   * Reset the state.
+   */
+  static void reset() {
+    apiTokens.clear();
+    client = null;
+  }
+
+}
@@ -0,0 +1,43 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Handle on the negotiation of an api token that happens in the background.
+ *
+ * @author Stephane Nicoll
+ * @see AccountManagementEnvironmentPostProcessor
+ */
+final class AccountNegotiation {
+
+  private final CompletableFuture<String> apiToken = new CompletableFuture<>();
+
+  /**
+   * Return the negotiated api token.
+   * @return the api token or {@code null} if the negotiation is still in progress or
+   * has failed
+   */
+  String getApiToken() {
+    return (this.apiToken.isDone() && !this.apiToken.isCompletedExceptionally()) ? this.apiToken.join() : null;
+  }
+
+  /**
+   * Register an action to invoke once the negotiation has completed. If the negotiation
+   * has already completed, the action is invoked immediately.
+   * @param action the action to invoke with the api token, or {@code null} if the
+   * negotiation failed
+   */
+  void whenCompleted(Consumer<String> action) {
+    this.apiToken.whenComplete((apiToken, ex) -> action.accept(apiToken));
+  }
+
+  void complete(String apiToken) {
+    this.apiToken.complete(apiToken);
+  }
+
+  void abandon() {
+    this.apiToken.completeExceptionally(new IllegalStateException("Failed to negotiate a Wavefront api token"));
+  }
+
+}
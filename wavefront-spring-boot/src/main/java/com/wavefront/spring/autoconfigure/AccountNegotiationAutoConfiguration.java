@@ -0,0 +1,96 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.time.Duration;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.clients.WavefrontClient;
+import io.micrometer.wavefront.WavefrontConfig;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.export.ConditionalOnEnabledMetricsExport;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontPropertiesConfigAdapter;
+import org.springframework.boot.actuate.autoconfigure.tracing.ConditionalOnEnabledTracing;
+import org.springframework.boot.actuate.autoconfigure.tracing.wavefront.WavefrontTracingAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for an api token that is negotiated
+ * in the background. Data is held by the {@link WavefrontSender} until the api token is
+ * available.
+ *
+ * @author Stephane Nicoll
+ * @see AccountManagementEnvironmentPostProcessor
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ WavefrontSender.class, WavefrontConfig.class })
+@ConditionalOnBean(AccountNegotiation.class)
+@AutoConfigureBefore({ WavefrontMetricsExportAutoConfiguration.class, WavefrontTracingAutoConfiguration.class })
+@EnableConfigurationProperties(WavefrontProperties.class)
+public class AccountNegotiationAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  @Conditional(WavefrontTracingOrMetricsCondition.class)
+  WavefrontSender wavefrontSender(WavefrontProperties properties, AccountNegotiation accountNegotiation) {
+    return new DeferredWavefrontSender(accountNegotiation, (apiToken) -> createSender(properties, apiToken),
+        properties.getSender().getMaxQueueSize());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnEnabledMetricsExport("wavefront")
+  WavefrontConfig wavefrontConfig(WavefrontProperties properties, AccountNegotiation accountNegotiation) {
+    return new WavefrontPropertiesConfigAdapter(properties) {
+
+      @Override
+      public String apiToken() {
+        String apiToken = accountNegotiation.getApiToken();
+        return (apiToken != null) ? apiToken : super.apiToken();
+      }
+
+    };
+  }
+
+  private static WavefrontSender createSender(WavefrontProperties properties, String apiToken) {
+    WavefrontClient.Builder builder = new WavefrontClient.Builder(properties.getEffectiveUri().toString(),
+        properties.getWavefrontApiTokenType(), apiToken);
+    PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+    WavefrontProperties.Sender sender = properties.getSender();
+    map.from(sender.getMaxQueueSize()).to(builder::maxQueueSize);
+    map.from(sender.getFlushInterval()).asInt(Duration::getSeconds).to(builder::flushIntervalSeconds);
+    map.from(sender.getMessageSize()).asInt(DataSize::toBytes).to(builder::messageSizeBytes);
+    map.from(sender.getBatchSize()).to(builder::batchSize);
+    return builder.build();
+  }
+
+  static final class WavefrontTracingOrMetricsCondition extends AnyNestedCondition {
+
+    WavefrontTracingOrMetricsCondition() {
+      super(ConfigurationPhase.REGISTER_BEAN);
+    }
+
+    @ConditionalOnEnabledTracing
+    static class TracingCondition {
+
+    }
+
+    @ConditionalOnEnabledMetricsExport("wavefront")
+    static class MetricsCondition {
+
+    }
+
+  }
+
+}
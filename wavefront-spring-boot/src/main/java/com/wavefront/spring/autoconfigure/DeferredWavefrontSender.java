@@ -0,0 +1,192 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.clients.WavefrontNoOpClient;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link WavefrontSender} that holds data in a bounded buffer until an api token has
+ * been negotiated. Once the api token is available, the actual sender is created and the
+ * buffered data is replayed. If the negotiation fails, buffered data is discarded and
+ * any further data is ignored.
+ *
+ * @author Stephane Nicoll
+ */
+class DeferredWavefrontSender implements WavefrontSender {
+
+  private static final Log logger = LogFactory.getLog(DeferredWavefrontSender.class);
+
+  private final Object monitor = new Object();
+
+  private final BlockingQueue<SenderAction> pending;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private volatile WavefrontSender delegate;
+
+  private boolean closed;
+
+  /**
+   * Create an instance.
+   * @param accountNegotiation the negotiation that provides the api token
+   * @param senderFactory the factory to use to create the sender for an api token
+   * @param capacity the maximum number of items to hold until the api token is available
+   */
+  DeferredWavefrontSender(AccountNegotiation accountNegotiation, Function<String, WavefrontSender> senderFactory,
+      int capacity) {
+    this.pending = new ArrayBlockingQueue<>(capacity);
+    accountNegotiation.whenCompleted((apiToken) -> activate(() -> (apiToken != null)
+        ? senderFactory.apply(apiToken) : new WavefrontNoOpClient()));
+  }
+
+  private void activate(Supplier<WavefrontSender> senderFactory) {
+    synchronized (this.monitor) {
+      if (this.closed) {
+        return;
+      }
+      WavefrontSender sender = senderFactory.get();
+      List<SenderAction> actions = new ArrayList<>(this.pending.size());
+      this.pending.drainTo(actions);
+      for (SenderAction action : actions) {
+        try {
+          action.sendTo(sender);
+        }
+        catch (IOException ex) {
+          logger.debug("Failed to replay buffered Wavefront data", ex);
+        }
+      }
+      this.delegate = sender;
+    }
+    long droppedCount = this.dropped.get();
+    if (droppedCount > 0) {
+      logger.warn(String.format("Dropped %d Wavefront items while the api token was negotiated", droppedCount));
+    }
+  }
+
+  /**
+   * Return the number of items that were dropped as the buffer was full.
+   * @return the number of dropped items
+   */
+  long getDroppedCount() {
+    return this.dropped.get();
+  }
+
+  /**
+   * Return the number of items waiting for the api token to be available.
+   * @return the number of pending items
+   */
+  int getPendingCount() {
+    return this.pending.size();
+  }
+
+  private void dispatch(SenderAction action) throws IOException {
+    WavefrontSender sender = this.delegate;
+    if (sender == null) {
+      synchronized (this.monitor) {
+        sender = this.delegate;
+        if (sender == null) {
+          if (!this.pending.offer(action)) {
+            this.dropped.incrementAndGet();
+          }
+          return;
+        }
+      }
+    }
+    action.sendTo(sender);
+  }
+
+  @Override
+  public String getClientId() {
+    WavefrontSender sender = this.delegate;
+    return (sender != null) ? sender.getClientId() : "deferred";
+  }
+
+  @Override
+  public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags)
+      throws IOException {
+    dispatch((sender) -> sender.sendMetric(name, value, timestamp, source, tags));
+  }
+
+  @Override
+  public void sendFormattedMetric(String point) throws IOException {
+    dispatch((sender) -> sender.sendFormattedMetric(point));
+  }
+
+  @Override
+  public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+      Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags)
+      throws IOException {
+    dispatch((sender) -> sender.sendDistribution(name, centroids, histogramGranularities, timestamp, source, tags));
+  }
+
+  @Override
+  public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+      UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+      List<SpanLog> spanLogs) throws IOException {
+    dispatch((sender) -> sender.sendSpan(name, startMillis, durationMillis, source, traceId, spanId, parents,
+        followsFrom, tags, spanLogs));
+  }
+
+  @Override
+  public void sendEvent(String name, long startMillis, long endMillis, String source, Map<String, String> tags,
+      Map<String, String> annotations) throws IOException {
+    dispatch((sender) -> sender.sendEvent(name, startMillis, endMillis, source, tags, annotations));
+  }
+
+  @Override
+  public void sendLog(String name, double value, Long timestamp, String source, Map<String, String> tags)
+      throws IOException {
+    dispatch((sender) -> sender.sendLog(name, value, timestamp, source, tags));
+  }
+
+  @Override
+  public void flush() throws IOException {
+    WavefrontSender sender = this.delegate;
+    if (sender != null) {
+      sender.flush();
+    }
+  }
+
+  @Override
+  public int getFailureCount() {
+    WavefrontSender sender = this.delegate;
+    return (sender != null) ? sender.getFailureCount() : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    WavefrontSender sender;
+    synchronized (this.monitor) {
+      this.closed = true;
+      this.pending.clear();
+      sender = this.delegate;
+    }
+    if (sender != null) {
+      sender.close();
+    }
+  }
+
+  @FunctionalInterface
+  private interface SenderAction {
+
+    void sendTo(WavefrontSender sender) throws IOException;
+
+  }
+
+}
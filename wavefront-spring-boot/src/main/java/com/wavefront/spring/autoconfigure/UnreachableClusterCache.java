@@ -0,0 +1,108 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * A local record of the Wavefront clusters that could not be reached recently, keyed by
+ * cluster URI. A cluster stays recorded for a limited amount of time so that subsequent
+ * restarts do not have to wait for a connection timeout.
+ *
+ * @author Stephane Nicoll
+ */
+class UnreachableClusterCache {
+
+  private final Resource resource;
+
+  private final Duration timeToLive;
+
+  private final Clock clock;
+
+  UnreachableClusterCache(Resource resource, Duration timeToLive, Clock clock) {
+    this.resource = resource;
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+  }
+
+  UnreachableClusterCache(Resource resource, Duration timeToLive) {
+    this(resource, timeToLive, Clock.systemUTC());
+  }
+
+  /**
+   * Specify if the specified cluster has been recorded as unreachable and the record has
+   * not expired yet.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @return {@code true} if the cluster should be considered unreachable
+   */
+  synchronized boolean isUnreachable(String clusterUri) {
+    String expiry = load().getProperty(clusterUri);
+    if (expiry == null) {
+      return false;
+    }
+    try {
+      return this.clock.instant().isBefore(Instant.ofEpochMilli(Long.parseLong(expiry)));
+    }
+    catch (NumberFormatException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Record that the specified cluster could not be reached.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @throws IOException if the record could not be written
+   */
+  synchronized void markUnreachable(String clusterUri) throws IOException {
+    Properties entries = load();
+    entries.setProperty(clusterUri, String.valueOf(this.clock.instant().plus(this.timeToLive).toEpochMilli()));
+    store(entries);
+  }
+
+  /**
+   * Record that the specified cluster could be reached.
+   * @param clusterUri the URI of the Wavefront cluster
+   * @throws IOException if the record could not be written
+   */
+  synchronized void markReachable(String clusterUri) throws IOException {
+    Properties entries = load();
+    if (entries.remove(clusterUri) != null) {
+      store(entries);
+    }
+  }
+
+  private Properties load() {
+    Properties entries = new Properties();
+    if (this.resource.isReadable()) {
+      try (InputStream in = this.resource.getInputStream()) {
+        entries.load(in);
+      }
+      catch (IOException ex) {
+        // Corrupted records are ignored
+      }
+    }
+    return entries;
+  }
+
+  private void store(Properties entries) throws IOException {
+    if (!this.resource.isFile()) {
+      return;
+    }
+    Path target = this.resource.getFile().toPath();
+    Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      entries.store(out, null);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+}
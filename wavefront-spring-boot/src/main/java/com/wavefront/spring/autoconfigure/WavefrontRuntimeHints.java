@@ -0,0 +1,20 @@
+package com.wavefront.spring.autoconfigure;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * {@link RuntimeHintsRegistrar} for the Wavefront starter.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontRuntimeHints implements RuntimeHintsRegistrar {
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    // Version of the starter, see Utils#getVersion
+    hints.resources().registerResourceBundle("META-INF/wavefront-spring-boot/build");
+    hints.resources().registerPattern("META-INF/wavefront-spring-boot/build.properties");
+  }
+
+}
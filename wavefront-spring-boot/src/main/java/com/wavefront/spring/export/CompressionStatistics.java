@@ -0,0 +1,104 @@
+package com.wavefront.spring.export;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keep track of the compression of the batches that are sent to Wavefront.
+ * <p>
+ * A smoothed compression ratio is maintained for each {@link ReportFormat format} so that
+ * the size of a batch can be adapted to reach a target compressed size. When bound to a
+ * {@link MeterRegistry}, the compression ratio and the time to compress a batch are
+ * recorded as well.
+ *
+ * @author Stephane Nicoll
+ */
+class CompressionStatistics implements MeterBinder {
+
+  private static final double SMOOTHING_FACTOR = 0.2;
+
+  private final AtomicLongArray ratios = new AtomicLongArray(ReportFormat.values().length);
+
+  private final List<Map<ReportFormat, Meters>> meters = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Map<ReportFormat, Meters> formatMeters = new EnumMap<>(ReportFormat.class);
+    for (ReportFormat format : ReportFormat.values()) {
+      formatMeters.put(format, new Meters(registry, format));
+    }
+    this.meters.add(formatMeters);
+  }
+
+  /**
+   * Record the compression of a batch.
+   * @param format the format of the batch
+   * @param size the size of the batch, in bytes
+   * @param compressedSize the size of the compressed batch, in bytes
+   * @param compressionNanos the time it took to compress the batch, in nanoseconds
+   */
+  void record(ReportFormat format, int size, int compressedSize, long compressionNanos) {
+    if (size <= 0 || compressedSize <= 0) {
+      return;
+    }
+    double ratio = (double) size / compressedSize;
+    int index = format.ordinal();
+    long current;
+    long updated;
+    do {
+      current = this.ratios.get(index);
+      double smoothed = (current != 0)
+          ? Double.longBitsToDouble(current) + SMOOTHING_FACTOR * (ratio - Double.longBitsToDouble(current))
+          : ratio;
+      updated = Double.doubleToLongBits(smoothed);
+    }
+    while (!this.ratios.compareAndSet(index, current, updated));
+    for (Map<ReportFormat, Meters> formatMeters : this.meters) {
+      formatMeters.get(format).record(ratio, compressionNanos);
+    }
+  }
+
+  /**
+   * Return the smoothed compression ratio of the specified format, that is the size of a
+   * batch divided by its compressed size.
+   * @param format the format of the data
+   * @return the compression ratio or {@link Double#NaN} if no batch of that format has
+   * been compressed yet
+   */
+  double getCompressionRatio(ReportFormat format) {
+    long ratio = this.ratios.get(format.ordinal());
+    return (ratio != 0) ? Double.longBitsToDouble(ratio) : Double.NaN;
+  }
+
+  private static final class Meters {
+
+    private final DistributionSummary ratio;
+
+    private final Timer compression;
+
+    Meters(MeterRegistry registry, ReportFormat format) {
+      this.ratio = DistributionSummary.builder("wavefront.export.compression.ratio")
+          .description("Size of the batches sent to Wavefront divided by their compressed size")
+          .tag("format", format.getId()).register(registry);
+      this.compression = Timer.builder("wavefront.export.compression")
+          .description("Time taken to compress the batches sent to Wavefront").tag("format", format.getId())
+          .register(registry);
+    }
+
+    void record(double ratio, long compressionNanos) {
+      this.ratio.record(ratio);
+      this.compression.record(compressionNanos, TimeUnit.NANOSECONDS);
+    }
+
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+/**
+ * A {@link WavefrontSender} that also accepts data that is already encoded in the
+ * Wavefront line protocol, so that callers can encode data concurrently and hand it over
+ * in bulk.
+ *
+ * @author Stephane Nicoll
+ */
+public interface EncodedWavefrontSender extends WavefrontSender {
+
+  /**
+   * Return the {@link WavefrontLineEncoder} that this sender uses, so that data encoded
+   * by a caller is identical to the data this sender would have encoded itself.
+   * @return the line encoder
+   */
+  WavefrontLineEncoder getLineEncoder();
+
+  /**
+   * Send data that is already encoded. Lines are kept together as long as they fit in a
+   * single batch.
+   * @param format the format of the data
+   * @param lines the lines to send, each terminated by a line feed
+   * @throws IOException if the data cannot be sent
+   */
+  void sendEncoded(ReportFormat format, ByteBuffer lines) throws IOException;
+
+}
@@ -0,0 +1,196 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.wavefront.sdk.common.clients.service.ReportingService;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * A {@link ReportTransport} that sends gzip-compressed batches to the report API of a
+ * Wavefront cluster or proxy using the JDK {@link HttpClient}.
+ * <p>
+ * {@link Deflater} instances and compression buffers are pooled and reused across
+ * batches. The outcome of the compression of each batch can be recorded in a
+ * {@link CompressionStatistics}.
+ * <p>
+ * A batch that is rejected with a client error status, other than {@code 408} and
+ * {@code 429}, results in a {@link ReportRejectedException}.
+ *
+ * @author Stephane Nicoll
+ */
+class HttpReportTransport implements ReportTransport {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final HttpClient httpClient;
+
+  private final URI uri;
+
+  private final String apiToken;
+
+  private final CompressionStatistics statistics;
+
+  private final Queue<GzipCompressor> compressors = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean closed;
+
+  HttpReportTransport(HttpClient httpClient, URI uri, String apiToken) {
+    this(httpClient, uri, apiToken, null);
+  }
+
+  HttpReportTransport(HttpClient httpClient, URI uri, String apiToken, CompressionStatistics statistics) {
+    this.httpClient = httpClient;
+    this.uri = uri;
+    this.apiToken = apiToken;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void send(ReportFormat format, ByteBuffer batch) throws IOException {
+    GzipCompressor compressor = this.compressors.poll();
+    if (compressor == null) {
+      compressor = new GzipCompressor();
+    }
+    try {
+      int size = batch.remaining();
+      long start = System.nanoTime();
+      int compressedSize = compressor.compress(batch);
+      if (this.statistics != null) {
+        this.statistics.record(format, size, compressedSize, System.nanoTime() - start);
+      }
+      // The request is sent synchronously so the buffer of the compressor can be used
+      send(format, BodyPublishers.ofByteArray(compressor.output, 0, compressedSize));
+    }
+    finally {
+      release(compressor);
+    }
+  }
+
+  private void send(ReportFormat format, HttpRequest.BodyPublisher body) throws IOException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(getReportingUri(format)).timeout(TIMEOUT)
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+        .header(HttpHeaders.CONTENT_ENCODING, "gzip").POST(body);
+    if (this.apiToken != null) {
+      request.header(HttpHeaders.AUTHORIZATION, "Bearer " + this.apiToken);
+    }
+    try {
+      int status = this.httpClient.send(request.build(), BodyHandlers.discarding()).statusCode();
+      if (status < 200 || status >= 300) {
+        String message = "Failed to report " + format.getId() + " data to " + this.uri + ", status " + status;
+        throw (isRetryable(status)) ? new IOException(message) : new ReportRejectedException(message);
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reporting data to " + this.uri, ex);
+    }
+  }
+
+  private static boolean isRetryable(int status) {
+    return status == 408 || status == 429 || status >= 500;
+  }
+
+  private void release(GzipCompressor compressor) {
+    if (this.closed) {
+      compressor.end();
+    }
+    else {
+      this.compressors.offer(compressor);
+    }
+  }
+
+  private URI getReportingUri(ReportFormat format) throws IOException {
+    try {
+      return ReportingService.getReportingUrl(this.uri, format.getId()).toURI();
+    }
+    catch (URISyntaxException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    GzipCompressor compressor;
+    while ((compressor = this.compressors.poll()) != null) {
+      compressor.end();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.uri.toString();
+  }
+
+  /**
+   * A reusable gzip compressor, writing to a buffer that grows as needed.
+   */
+  private static final class GzipCompressor {
+
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private static final int TRAILER_SIZE = 8;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    private final CRC32 crc = new CRC32();
+
+    private byte[] output = new byte[8192];
+
+    /**
+     * Compress the specified batch in the {@link #output} buffer.
+     * @param batch the batch to compress
+     * @return the size of the compressed content
+     */
+    int compress(ByteBuffer batch) {
+      int size = batch.remaining();
+      this.crc.reset();
+      this.crc.update(batch.duplicate());
+      this.deflater.reset();
+      this.deflater.setInput(batch.duplicate());
+      this.deflater.finish();
+      System.arraycopy(HEADER, 0, this.output, 0, HEADER.length);
+      int length = HEADER.length;
+      while (!this.deflater.finished()) {
+        if (length == this.output.length) {
+          this.output = Arrays.copyOf(this.output, this.output.length * 2);
+        }
+        length += this.deflater.deflate(this.output, length, this.output.length - length);
+      }
+      if (length + TRAILER_SIZE > this.output.length) {
+        this.output = Arrays.copyOf(this.output, length + TRAILER_SIZE);
+      }
+      writeInt(length, (int) this.crc.getValue());
+      writeInt(length + 4, size);
+      return length + TRAILER_SIZE;
+    }
+
+    private void writeInt(int offset, int value) {
+      this.output[offset] = (byte) value;
+      this.output[offset + 1] = (byte) (value >> 8);
+      this.output[offset + 2] = (byte) (value >> 16);
+      this.output[offset + 3] = (byte) (value >> 24);
+    }
+
+    void end() {
+      this.deflater.end();
+    }
+
+  }
+
+}
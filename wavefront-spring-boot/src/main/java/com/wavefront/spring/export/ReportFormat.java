@@ -0,0 +1,46 @@
+package com.wavefront.spring.export;
+
+import com.wavefront.sdk.common.Constants;
+
+/**
+ * The formats of the data that can be reported to Wavefront.
+ *
+ * @author Stephane Nicoll
+ */
+public enum ReportFormat {
+
+  /**
+   * Metric points.
+   */
+  METRIC(Constants.WAVEFRONT_METRIC_FORMAT),
+
+  /**
+   * Histogram distributions.
+   */
+  HISTOGRAM(Constants.WAVEFRONT_HISTOGRAM_FORMAT),
+
+  /**
+   * Tracing spans.
+   */
+  SPAN(Constants.WAVEFRONT_TRACING_SPAN_FORMAT),
+
+  /**
+   * Logs attached to tracing spans.
+   */
+  SPAN_LOG(Constants.WAVEFRONT_SPAN_LOG_FORMAT);
+
+  private final String id;
+
+  ReportFormat(String id) {
+    this.id = id;
+  }
+
+  /**
+   * Return the identifier of the format, as expected by the report API.
+   * @return the identifier of the format
+   */
+  public String getId() {
+    return this.id;
+  }
+
+}
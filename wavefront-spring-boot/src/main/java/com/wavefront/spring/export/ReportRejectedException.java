@@ -0,0 +1,22 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link ReportTransport} when a batch has been rejected by the cluster or
+ * proxy, for instance because the API token is invalid or the batch is malformed, so
+ * that sending the same batch again would fail the same way.
+ *
+ * @author Stephane Nicoll
+ */
+public class ReportRejectedException extends IOException {
+
+  /**
+   * Create a new instance.
+   * @param message the detail message
+   */
+  public ReportRejectedException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,28 @@
+package com.wavefront.spring.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Transport of batches of data in the Wavefront line protocol, one item per line.
+ *
+ * @author Stephane Nicoll
+ */
+public interface ReportTransport extends Closeable {
+
+  /**
+   * Send the specified batch. The content of the batch is only valid for the duration of
+   * the call.
+   * @param format the format of the data in the batch
+   * @param batch the batch, from its position to its limit
+   * @throws IOException if the batch could not be sent, or a
+   * {@link ReportRejectedException} if sending it again would fail the same way
+   */
+  void send(ReportFormat format, ByteBuffer batch) throws IOException;
+
+  @Override
+  default void close() throws IOException {
+  }
+
+}
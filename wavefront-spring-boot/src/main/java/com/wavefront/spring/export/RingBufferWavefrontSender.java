@@ -0,0 +1,691 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link WavefrontSender} that batches data in preallocated off-heap buffers.
+ * <p>
+ * Each {@link ReportFormat format} has a ring of fixed-size batches that is allocated
+ * the first time data of that format is sent. Items are encoded in the current batch of
+ * their format using a {@link WavefrontLineEncoder}. A batch is sent using a
+ * {@link ReportTransport} once it is full, or periodically, and is then made available
+ * again. If no batch is available, the sender waits up to the configured backpressure
+ * timeout before dropping the item. The ring is not locked while waiting, so that other
+ * producers and flushes can proceed. Sealed batches of a ring are sent by one thread at a
+ * time, so that a flush waits for the batches that are being sent by the background
+ * thread rather than sending other batches concurrently. Dropped items are accounted for
+ * and, when bound to a {@link MeterRegistry}, published as the
+ * {@code wavefront.export.dropped} counter.
+ * <p>
+ * Data that is {@link #sendEncoded(ReportFormat, ByteBuffer) already encoded} is copied in
+ * the current batch of its format, line by line.
+ * <p>
+ * Events and logs are not supported: they are dropped, and a warning is logged the first
+ * time one of them is sent.
+ *
+ * @author Stephane Nicoll
+ */
+class RingBufferWavefrontSender implements EncodedWavefrontSender, MeterBinder {
+
+  private static final Log logger = LogFactory.getLog(RingBufferWavefrontSender.class);
+
+  private static final int MIN_BATCH_LIMIT = 1024;
+
+  private final ReportTransport transport;
+
+  private final String clientId;
+
+  private final int batchSize;
+
+  private final int batchCount;
+
+  private final long backpressureTimeoutNanos;
+
+  private final String defaultSource;
+
+  private final WavefrontLineEncoder encoder;
+
+  private final Map<ReportFormat, BatchRing> rings = new EnumMap<>(ReportFormat.class);
+
+  private final ScheduledExecutorService scheduler;
+
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  private final AtomicBoolean eventDropLogged = new AtomicBoolean();
+
+  private final AtomicBoolean logDropLogged = new AtomicBoolean();
+
+  private volatile CompressionStatistics compressionStatistics;
+
+  private volatile int targetCompressedSize;
+
+  private volatile boolean closed;
+
+  /**
+   * Create an instance.
+   * @param transport the transport to use to send batches
+   * @param clientId the identifier of the sender
+   * @param batchSize the size of a batch, in bytes
+   * @param batchCount the number of batches of each format
+   * @param flushInterval the maximum time an item is held before it is sent
+   * @param backpressureTimeout the maximum time to wait for a batch to be available
+   */
+  RingBufferWavefrontSender(ReportTransport transport, String clientId, int batchSize, int batchCount,
+      Duration flushInterval, Duration backpressureTimeout) {
+    if (batchSize <= 0 || batchCount <= 0 || (long) batchSize * batchCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid batch size " + batchSize + " and batch count " + batchCount);
+    }
+    this.transport = transport;
+    this.clientId = clientId;
+    this.batchSize = batchSize;
+    this.batchCount = batchCount;
+    this.backpressureTimeoutNanos = backpressureTimeout.toNanos();
+    this.defaultSource = getDefaultSource();
+    this.encoder = new WavefrontLineEncoder(this.defaultSource);
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+      Thread thread = new Thread(runnable, "wavefront-sender");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    this.scheduler = scheduler;
+    long interval = flushInterval.toMillis();
+    this.scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  private static String getDefaultSource() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    }
+    catch (UnknownHostException ex) {
+      return "unknown";
+    }
+  }
+
+  /**
+   * Set the {@link ApplicationTags} that are attached to every metric and span so that
+   * their encoded form can be reused.
+   * @param applicationTags the application tags
+   * @see WavefrontLineEncoder#setApplicationTags(ApplicationTags)
+   */
+  void setApplicationTags(ApplicationTags applicationTags) {
+    this.encoder.setApplicationTags(applicationTags);
+  }
+
+  /**
+   * Adapt the size of the batches so that their compressed size is close to the
+   * specified target, based on the compression ratio observed so far. A batch never
+   * exceeds the configured batch size.
+   * @param targetCompressedSize the target compressed size of a batch, in bytes
+   * @param compressionStatistics the statistics of the compression of the batches
+   */
+  void setTargetCompressedSize(int targetCompressedSize, CompressionStatistics compressionStatistics) {
+    this.targetCompressedSize = targetCompressedSize;
+    this.compressionStatistics = compressionStatistics;
+  }
+
+  private int getBatchLimit(ReportFormat format) {
+    CompressionStatistics statistics = this.compressionStatistics;
+    if (statistics == null) {
+      return this.batchSize;
+    }
+    double ratio = statistics.getCompressionRatio(format);
+    if (Double.isNaN(ratio)) {
+      return this.batchSize;
+    }
+    long limit = (long) (this.targetCompressedSize * ratio);
+    return (int) Math.max(Math.min(limit, this.batchSize), Math.min(MIN_BATCH_LIMIT, this.batchSize));
+  }
+
+  @Override
+  public String getClientId() {
+    return this.clientId;
+  }
+
+  @Override
+  public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags)
+      throws IOException {
+    append(ReportFormat.METRIC,
+        (buffer) -> this.encoder.encodeMetric(buffer, name, value, timestamp, source, tags));
+  }
+
+  @Override
+  public void sendFormattedMetric(String point) throws IOException {
+    if (point == null || point.isEmpty()) {
+      throw new IOException("point must be non-null and in Wavefront data format");
+    }
+    String line = point.endsWith("\n") ? point : point + "\n";
+    BatchRing ring = getRing(ReportFormat.METRIC);
+    append(ring, (buffer) -> ring.encode(line, buffer));
+  }
+
+  @Override
+  public WavefrontLineEncoder getLineEncoder() {
+    return this.encoder;
+  }
+
+  @Override
+  public void sendEncoded(ReportFormat format, ByteBuffer lines) throws IOException {
+    ByteBuffer content = lines.duplicate();
+    if (this.closed) {
+      this.dropped.addAndGet(countLines(content));
+      return;
+    }
+    try {
+      long dropped = getRing(format).appendLines(content);
+      if (dropped > 0) {
+        this.dropped.addAndGet(dropped);
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      this.dropped.addAndGet(countLines(content));
+      throw new IOException("Interrupted while waiting for a batch to be available", ex);
+    }
+  }
+
+  private static int countLines(ByteBuffer lines) {
+    int count = 0;
+    for (int i = lines.position(); i < lines.limit(); i++) {
+      if (lines.get(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+      Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags)
+      throws IOException {
+    append(ReportFormat.HISTOGRAM, (buffer) -> this.encoder.encodeDistribution(buffer, name, centroids,
+        histogramGranularities, timestamp, source, tags));
+  }
+
+  @Override
+  public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+      UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+      List<SpanLog> spanLogs) throws IOException {
+    boolean hasSpanLogs = spanLogs != null && !spanLogs.isEmpty();
+    append(ReportFormat.SPAN, (buffer) -> this.encoder.encodeSpan(buffer, name, startMillis, durationMillis, source,
+        traceId, spanId, parents, followsFrom, tags, hasSpanLogs));
+    if (hasSpanLogs) {
+      // Span logs are rare and require the span line, encode them using the SDK
+      String spanLogsLine;
+      try {
+        String line = Utils.tracingSpanToLineData(name, startMillis, durationMillis, source, traceId, spanId,
+            parents, followsFrom, tags, spanLogs, this.defaultSource);
+        spanLogsLine = Utils.spanLogsToLineData(traceId, spanId, spanLogs, line);
+      }
+      catch (IllegalArgumentException | JsonProcessingException ex) {
+        throw new IOException(ex);
+      }
+      BatchRing ring = getRing(ReportFormat.SPAN_LOG);
+      append(ring, (buffer) -> ring.encode(spanLogsLine, buffer));
+    }
+  }
+
+  @Override
+  public void sendEvent(String name, long startMillis, long endMillis, String source, Map<String, String> tags,
+      Map<String, String> annotations) {
+    dropUnsupported("Events", this.eventDropLogged);
+  }
+
+  @Override
+  public void sendLog(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+    dropUnsupported("Logs", this.logDropLogged);
+  }
+
+  private void dropUnsupported(String items, AtomicBoolean logged) {
+    this.dropped.incrementAndGet();
+    if (logged.compareAndSet(false, true)) {
+      logger.warn(items + " are not supported by the Wavefront export and are dropped");
+    }
+  }
+
+  private void append(ReportFormat format, Item item) throws IOException {
+    append(getRing(format), item);
+  }
+
+  private void append(BatchRing ring, Item item) throws IOException {
+    if (this.closed) {
+      this.dropped.incrementAndGet();
+      return;
+    }
+    try {
+      if (!ring.append(item)) {
+        this.dropped.incrementAndGet();
+      }
+    }
+    catch (IllegalArgumentException ex) {
+      throw new IOException(ex);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      this.dropped.incrementAndGet();
+      throw new IOException("Interrupted while waiting for a batch to be available", ex);
+    }
+  }
+
+  private BatchRing getRing(ReportFormat format) {
+    synchronized (this.rings) {
+      return this.rings.computeIfAbsent(format, BatchRing::new);
+    }
+  }
+
+  private void scheduleDrain() {
+    if (this.drainScheduled.compareAndSet(false, true)) {
+      try {
+        this.scheduler.execute(() -> {
+          this.drainScheduled.set(false);
+          drain();
+        });
+      }
+      catch (RuntimeException ex) {
+        this.drainScheduled.set(false);
+      }
+    }
+  }
+
+  private void drain() {
+    for (BatchRing ring : getRings()) {
+      ring.drain();
+    }
+  }
+
+  private BatchRing[] getRings() {
+    synchronized (this.rings) {
+      return this.rings.values().toArray(new BatchRing[0]);
+    }
+  }
+
+  @Override
+  public void flush() {
+    for (BatchRing ring : getRings()) {
+      ring.seal();
+      ring.drain();
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    }
+    catch (RuntimeException ex) {
+      logger.debug("Failed to flush Wavefront data", ex);
+    }
+  }
+
+  /**
+   * Return the number of items that have been dropped, either because no batch was
+   * available or because the batch they belong to could not be sent.
+   * @return the number of dropped items
+   */
+  long getDroppedCount() {
+    return this.dropped.get();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("wavefront.export.dropped", this, RingBufferWavefrontSender::getDroppedCount)
+        .description("Number of items that were dropped rather than sent to Wavefront").register(registry);
+    if (this.transport instanceof MeterBinder binder) {
+      binder.bindTo(registry);
+    }
+  }
+
+  @Override
+  public int getFailureCount() {
+    return (int) Math.min(this.failures.get(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.scheduler.shutdown();
+    try {
+      this.scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    this.transport.close();
+  }
+
+  /**
+   * An item to write in a batch.
+   */
+  @FunctionalInterface
+  private interface Item {
+
+    /**
+     * Write this item to the specified buffer. If the item does not fit, the position of
+     * the buffer must be left unchanged.
+     * @param buffer the buffer to write to
+     * @return whether the item has been written
+     * @throws IllegalArgumentException if the item is invalid
+     */
+    boolean writeTo(ByteBuffer buffer);
+
+  }
+
+  /**
+   * A ring of preallocated batches for a given {@link ReportFormat}.
+   */
+  private final class BatchRing {
+
+    private final ReportFormat format;
+
+    private final BlockingQueue<Batch> available;
+
+    private final BlockingQueue<Batch> sealed;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition batchReleased = this.lock.newCondition();
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    private Batch current;
+
+    BatchRing(ReportFormat format) {
+      this.format = format;
+      int size = RingBufferWavefrontSender.this.batchSize;
+      int count = RingBufferWavefrontSender.this.batchCount;
+      this.available = new ArrayBlockingQueue<>(count);
+      this.sealed = new ArrayBlockingQueue<>(count);
+      ByteBuffer memory = ByteBuffer.allocateDirect(size * count);
+      for (int i = 0; i < count; i++) {
+        this.available.add(new Batch(memory.slice(i * size, size)));
+      }
+    }
+
+    boolean append(Item item) throws InterruptedException {
+      this.lock.lock();
+      try {
+        while (true) {
+          if (this.current == null && !acquireCurrent()) {
+            return false;
+          }
+          if (this.current.write(item)) {
+            return true;
+          }
+          if (this.current.isEmpty()) {
+            // An item larger than the adapted batch size can still use the whole batch
+            return this.current.expand() && this.current.write(item);
+          }
+          sealCurrent();
+          scheduleDrain();
+        }
+      }
+      finally {
+        this.lock.unlock();
+      }
+    }
+
+    /**
+     * Copy as many lines as possible in the current batch, sealing batches as they fill
+     * up. A line that is larger than a batch is dropped.
+     * @param lines the lines to copy, each terminated by a line feed
+     * @return the number of lines that have been dropped
+     * @throws InterruptedException if interrupted while waiting for a batch
+     */
+    long appendLines(ByteBuffer lines) throws InterruptedException {
+      this.lock.lock();
+      try {
+        long dropped = 0;
+        while (lines.hasRemaining()) {
+          if (this.current == null && !acquireCurrent()) {
+            return dropped + countLines(lines);
+          }
+          if (this.current.writeLines(lines)) {
+            continue;
+          }
+          if (this.current.isEmpty()) {
+            if (!this.current.expand()) {
+              skipLine(lines);
+              dropped++;
+            }
+            continue;
+          }
+          sealCurrent();
+          scheduleDrain();
+        }
+        return dropped;
+      }
+      finally {
+        this.lock.unlock();
+      }
+    }
+
+    private void skipLine(ByteBuffer lines) {
+      while (lines.hasRemaining() && lines.get() != '\n') {
+        // Skip the content of the line
+      }
+    }
+
+    /**
+     * Encode a line that is already formatted. Must be called while holding the lock of
+     * this ring as the encoder is shared.
+     * @param line the line to encode
+     * @param buffer the buffer to write to
+     * @return whether the line has been written
+     */
+    boolean encode(CharSequence line, ByteBuffer buffer) {
+      int position = buffer.position();
+      this.encoder.reset();
+      CoderResult result = this.encoder.encode(CharBuffer.wrap(line), buffer, true);
+      if (!result.isOverflow()) {
+        result = this.encoder.flush(buffer);
+      }
+      if (result.isOverflow()) {
+        buffer.position(position);
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Make a batch the current one, waiting up to the backpressure timeout for one to be
+     * released. The lock is released while waiting, so another producer may have set the
+     * current batch in the meantime. Must be called while holding the lock of this ring.
+     * @return whether a current batch is available
+     * @throws InterruptedException if interrupted while waiting for a batch
+     */
+    private boolean acquireCurrent() throws InterruptedException {
+      long remaining = RingBufferWavefrontSender.this.backpressureTimeoutNanos;
+      while (this.current == null) {
+        Batch batch = this.available.poll();
+        if (batch != null) {
+          batch.limit(getBatchLimit(this.format));
+          this.current = batch;
+          return true;
+        }
+        if (remaining <= 0) {
+          return false;
+        }
+        scheduleDrain();
+        remaining = this.batchReleased.awaitNanos(remaining);
+      }
+      return true;
+    }
+
+    void seal() {
+      this.lock.lock();
+      try {
+        if (this.current != null && !this.current.isEmpty()) {
+          sealCurrent();
+        }
+      }
+      finally {
+        this.lock.unlock();
+      }
+    }
+
+    private void sealCurrent() {
+      this.sealed.add(this.current);
+      this.current = null;
+    }
+
+    /**
+     * Send the sealed batches of this ring. If another thread is already sending them,
+     * wait for it to complete first so that batches are sent one at a time and in order.
+     */
+    void drain() {
+      this.drainLock.lock();
+      try {
+        Batch batch;
+        while ((batch = this.sealed.poll()) != null) {
+          send(batch);
+        }
+      }
+      finally {
+        this.drainLock.unlock();
+      }
+    }
+
+    private void send(Batch batch) {
+      try {
+        RingBufferWavefrontSender.this.transport.send(this.format, batch.content());
+      }
+      catch (IOException | RuntimeException ex) {
+        RingBufferWavefrontSender.this.failures.incrementAndGet();
+        RingBufferWavefrontSender.this.dropped.addAndGet(batch.items);
+        logger.debug("Failed to send Wavefront " + this.format.getId() + " data", ex);
+      }
+      finally {
+        batch.clear();
+        this.available.add(batch);
+        signalBatchReleased();
+      }
+    }
+
+    private void signalBatchReleased() {
+      this.lock.lock();
+      try {
+        this.batchReleased.signalAll();
+      }
+      finally {
+        this.lock.unlock();
+      }
+    }
+
+  }
+
+  /**
+   * A batch of items, backed by a region of the off-heap memory of a ring.
+   */
+  private static final class Batch {
+
+    private final ByteBuffer buffer;
+
+    private int items;
+
+    Batch(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean write(Item item) {
+      if (!item.writeTo(this.buffer)) {
+        return false;
+      }
+      this.items++;
+      return true;
+    }
+
+    /**
+     * Copy the complete lines that fit in this batch and move the position of the
+     * specified buffer after the last copied line.
+     * @param lines the lines to copy
+     * @return whether at least one line has been copied
+     */
+    boolean writeLines(ByteBuffer lines) {
+      int start = lines.position();
+      int limit = start + Math.min(lines.remaining(), this.buffer.remaining());
+      int end = -1;
+      int count = 0;
+      for (int i = start; i < limit; i++) {
+        if (lines.get(i) == '\n') {
+          end = i + 1;
+          count++;
+        }
+      }
+      if (end == -1) {
+        return false;
+      }
+      this.buffer.put(lines.slice(start, end - start));
+      lines.position(end);
+      this.items += count;
+      return true;
+    }
+
+    boolean isEmpty() {
+      return this.items == 0;
+    }
+
+    ByteBuffer content() {
+      return this.buffer.duplicate().flip();
+    }
+
+    void limit(int limit) {
+      this.buffer.limit(limit);
+    }
+
+    boolean expand() {
+      if (this.buffer.limit() == this.buffer.capacity()) {
+        return false;
+      }
+      this.buffer.limit(this.buffer.capacity());
+      return true;
+    }
+
+    void clear() {
+      this.buffer.clear();
+      this.items = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,575 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link ReportTransport} that spills batches to disk when they cannot be sent, and
+ * replays them once the cluster or proxy is reachable again.
+ * <p>
+ * Only batches that failed with a transient error are spilled: a batch that has been
+ * {@link ReportRejectedException rejected} would be rejected again, so it is dropped.
+ * Batches are appended to memory-mapped segment files of a fixed size in a dedicated
+ * directory. Once a batch has failed, subsequent batches are spilled directly for the
+ * configured retry interval, without waiting for the delegate to time out. Afterwards,
+ * new batches are sent to the delegate first, so that spilled batches may be replayed
+ * after more recent ones. A background thread replays spilled batches, no faster than
+ * the configured rate. When the total size of the segments would exceed the configured
+ * maximum, the oldest segment is discarded. If a batch of that segment is being replayed,
+ * its file is only deleted once the replay has completed. Segments are flushed to disk
+ * when a new segment is created and when the transport is closed, and those that have
+ * not been replayed by then are replayed on the next start.
+ * <p>
+ * Each segment records the identifier of the destination its batches were meant for.
+ * Segments of another destination are left untouched, so that batches are never
+ * replayed to a cluster or proxy they were not meant for.
+ * <p>
+ * When bound to a {@link MeterRegistry}, the number of dropped batches and of batches
+ * waiting to be replayed are published as the {@code wavefront.export.spill.dropped}
+ * and {@code wavefront.export.spill.pending} meters.
+ * <p>
+ * A lock file guards the directory. If another process, or another transport, already
+ * uses it, batches are not spilled.
+ *
+ * @author Stephane Nicoll
+ */
+class SpilloverReportTransport implements ReportTransport, MeterBinder {
+
+  private static final Log logger = LogFactory.getLog(SpilloverReportTransport.class);
+
+  private static final String SEGMENT_PREFIX = "segment-";
+
+  private static final String SEGMENT_SUFFIX = ".dat";
+
+  private static final ReportFormat[] FORMATS = ReportFormat.values();
+
+  private final ReportTransport delegate;
+
+  private final long destinationId;
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final int maxSegments;
+
+  private final long replayNanosPerByte;
+
+  private final Duration retryInterval;
+
+  private final Deque<Segment> segments = new ArrayDeque<>();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final ScheduledExecutorService scheduler;
+
+  private final FileChannel lockChannel;
+
+  private final FileLock lock;
+
+  private long nextSequence;
+
+  private boolean replayScheduled;
+
+  private Segment replaying;
+
+  private volatile long delegateAvailableAfter = System.nanoTime();
+
+  private volatile boolean closed;
+
+  /**
+   * Create an instance.
+   * @param delegate the transport to use to send batches
+   * @param destination the cluster or proxy the delegate sends batches to
+   * @param directory the directory of the segment files
+   * @param segmentSize the size of a segment file, in bytes
+   * @param maxSize the maximum size of all segment files, in bytes
+   * @param replayRate the maximum number of bytes replayed per second
+   * @param retryInterval the time to wait before trying to replay again after a failure
+   * @throws IOException if the directory could not be initialized
+   */
+  SpilloverReportTransport(ReportTransport delegate, String destination, Path directory, int segmentSize,
+      long maxSize, long replayRate, Duration retryInterval) throws IOException {
+    this.delegate = delegate;
+    this.destinationId = getDestinationId(destination);
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = (int) Math.max(1, maxSize / segmentSize);
+    this.replayNanosPerByte = Math.max(1, TimeUnit.SECONDS.toNanos(1) / Math.max(1, replayRate));
+    this.retryInterval = retryInterval;
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+      Thread thread = new Thread(runnable, "wavefront-spillover");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    this.scheduler = scheduler;
+    Files.createDirectories(directory);
+    this.lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    this.lock = tryLock(this.lockChannel);
+    if (this.lock == null) {
+      logger.warn("Spillover directory " + directory + " is already in use, batches will not be spilled to disk");
+      return;
+    }
+    synchronized (this) {
+      restoreSegments();
+      if (!this.segments.isEmpty()) {
+        scheduleReplay(0);
+      }
+    }
+  }
+
+  /**
+   * Return a stable identifier for the specified destination.
+   * @param destination the cluster or proxy batches are sent to
+   * @return the identifier of the destination
+   */
+  static UUID getDestinationUuid(String destination) {
+    return UUID.nameUUIDFromBytes(destination.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static long getDestinationId(String destination) {
+    UUID uuid = getDestinationUuid(destination);
+    return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    }
+    catch (OverlappingFileLockException ex) {
+      return null;
+    }
+  }
+
+  private void restoreSegments() throws IOException {
+    List<Path> files;
+    try (Stream<Path> candidates = Files.list(this.directory)) {
+      files = candidates.filter(SpilloverReportTransport::isSegment).sorted().toList();
+    }
+    for (Path file : files) {
+      this.nextSequence = Math.max(this.nextSequence, getSequence(file) + 1);
+      Segment segment = Segment.open(file);
+      if (segment != null && segment.destinationId() != this.destinationId) {
+        logger.info("Ignoring spilled segment " + file + " as it belongs to another destination");
+        segment.close();
+        continue;
+      }
+      if (segment != null && segment.hasNext()) {
+        this.segments.add(segment);
+      }
+      else {
+        if (segment != null) {
+          segment.close();
+        }
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static boolean isSegment(Path file) {
+    String name = file.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+  private static long getSequence(Path file) {
+    String name = file.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+
+  @Override
+  public void send(ReportFormat format, ByteBuffer batch) throws IOException {
+    if (this.lock == null || this.closed) {
+      this.delegate.send(format, batch);
+      return;
+    }
+    if (System.nanoTime() - this.delegateAvailableAfter < 0) {
+      synchronized (this) {
+        spill(format, batch, null);
+        return;
+      }
+    }
+    ByteBuffer content = batch.duplicate();
+    try {
+      this.delegate.send(format, batch);
+    }
+    catch (ReportRejectedException ex) {
+      throw ex;
+    }
+    catch (IOException ex) {
+      logger.debug("Failed to send " + format.getId() + " data, spilling to disk", ex);
+      markDelegateUnavailable();
+      synchronized (this) {
+        spill(format, content, ex);
+      }
+    }
+  }
+
+  private void markDelegateUnavailable() {
+    this.delegateAvailableAfter = System.nanoTime() + this.retryInterval.toNanos();
+  }
+
+  private void spill(ReportFormat format, ByteBuffer batch, IOException failure) throws IOException {
+    if (batch.remaining() > this.segmentSize - Segment.HEADER_SIZE - Segment.RECORD_HEADER_SIZE) {
+      this.dropped.incrementAndGet();
+      if (failure != null) {
+        throw failure;
+      }
+      return;
+    }
+    Segment segment = this.segments.peekLast();
+    if (segment == null || !segment.append(format, batch)) {
+      if (segment != null) {
+        segment.force();
+      }
+      segment = createSegment();
+      segment.append(format, batch);
+    }
+    scheduleReplay(0);
+  }
+
+  private Segment createSegment() throws IOException {
+    while (this.segments.size() >= this.maxSegments) {
+      Segment oldest = this.segments.removeFirst();
+      logger.debug("Spillover directory is full, discarding " + oldest);
+      if (oldest == this.replaying) {
+        this.dropped.addAndGet(oldest.remaining() - 1);
+        oldest.discard();
+      }
+      else {
+        this.dropped.addAndGet(oldest.remaining());
+        oldest.delete();
+      }
+    }
+    Path file = this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, this.nextSequence++,
+        SEGMENT_SUFFIX));
+    Segment segment = Segment.create(file, this.segmentSize, this.destinationId);
+    this.segments.addLast(segment);
+    return segment;
+  }
+
+  private void scheduleReplay(long delayNanos) {
+    if (!this.replayScheduled && !this.closed) {
+      this.replayScheduled = true;
+      this.scheduler.schedule(this::replay, delayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void replay() {
+    Segment segment;
+    Record record;
+    synchronized (this) {
+      segment = this.segments.peekFirst();
+      record = (segment != null) ? segment.next() : null;
+      if (record == null) {
+        this.replayScheduled = false;
+        return;
+      }
+      this.replaying = segment;
+    }
+    boolean failed = false;
+    try {
+      this.delegate.send(record.format(), record.content());
+    }
+    catch (ReportRejectedException ex) {
+      logger.debug("Spilled " + record.format().getId() + " data has been rejected, dropping it", ex);
+      this.dropped.incrementAndGet();
+    }
+    catch (IOException | RuntimeException ex) {
+      logger.debug("Failed to replay " + record.format().getId() + " data", ex);
+      markDelegateUnavailable();
+      failed = true;
+    }
+    synchronized (this) {
+      this.replaying = null;
+      this.replayScheduled = false;
+      if (segment.isDiscarded()) {
+        if (failed) {
+          this.dropped.incrementAndGet();
+        }
+        segment.delete();
+      }
+      else if (!failed) {
+        segment.advance(record);
+        releaseIfReplayed(segment);
+      }
+      if (failed) {
+        scheduleReplay(this.retryInterval.toNanos());
+      }
+      else if (!this.segments.isEmpty()) {
+        scheduleReplay(record.size() * this.replayNanosPerByte);
+      }
+    }
+  }
+
+  private void releaseIfReplayed(Segment segment) {
+    if (!segment.hasNext()) {
+      this.segments.remove(segment);
+      segment.delete();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("wavefront.export.spill.dropped", this, SpilloverReportTransport::getDroppedCount)
+        .description("Number of batches that were dropped rather than spilled to disk or replayed")
+        .register(registry);
+    Gauge.builder("wavefront.export.spill.pending", this, SpilloverReportTransport::getSpilledCount)
+        .description("Number of batches spilled to disk that are waiting to be replayed").register(registry);
+  }
+
+  /**
+   * Return the number of batches that have been dropped, either because they were too
+   * large to be spilled, because the oldest segment was discarded, or because they were
+   * rejected when replayed.
+   * @return the number of dropped batches
+   */
+  long getDroppedCount() {
+    return this.dropped.get();
+  }
+
+  /**
+   * Return the number of batches that are waiting to be replayed.
+   * @return the number of spilled batches
+   */
+  synchronized int getSpilledCount() {
+    return this.segments.stream().mapToInt(Segment::remaining).sum();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.scheduler.shutdownNow();
+    try {
+      this.scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      for (Segment segment : this.segments) {
+        segment.close();
+      }
+      this.segments.clear();
+    }
+    if (this.lock != null) {
+      this.lock.release();
+    }
+    this.lockChannel.close();
+    this.delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return this.delegate + " (spillover to " + this.directory + ")";
+  }
+
+  /**
+   * A spilled batch.
+   */
+  private record Record(ReportFormat format, ByteBuffer content, int size) {
+
+  }
+
+  /**
+   * An append-only memory-mapped segment file. The first bytes of the file hold the
+   * positions of the next record to write and of the next record to replay, and the
+   * identifier of the destination of its records.
+   */
+  private static final class Segment {
+
+    static final int HEADER_SIZE = 16;
+
+    static final int RECORD_HEADER_SIZE = 5;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private int writePosition;
+
+    private int readPosition;
+
+    private int remaining;
+
+    private boolean discarded;
+
+    private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+      this.file = file;
+      this.channel = channel;
+      this.buffer = buffer;
+      this.writePosition = buffer.getInt(0);
+      this.readPosition = buffer.getInt(4);
+    }
+
+    static Segment create(Path file, int size, long destinationId) throws IOException {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(0, HEADER_SIZE).putInt(4, HEADER_SIZE).putLong(8, destinationId);
+      return new Segment(file, channel, buffer);
+    }
+
+    static Segment open(Path file) throws IOException {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        channel.close();
+        return null;
+      }
+      Segment segment = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+      if (!segment.countRemaining()) {
+        segment.close();
+        return null;
+      }
+      return segment;
+    }
+
+    private boolean countRemaining() {
+      int limit = this.buffer.capacity();
+      if (this.readPosition < HEADER_SIZE || this.writePosition > limit || this.readPosition > this.writePosition) {
+        return false;
+      }
+      int position = this.readPosition;
+      while (position < this.writePosition) {
+        int length = this.buffer.getInt(position);
+        int format = this.buffer.get(position + 4);
+        if (length < 0 || format < 0 || format >= FORMATS.length
+            || position + RECORD_HEADER_SIZE + length > this.writePosition) {
+          return false;
+        }
+        position += RECORD_HEADER_SIZE + length;
+        this.remaining++;
+      }
+      return true;
+    }
+
+    long destinationId() {
+      return this.buffer.getLong(8);
+    }
+
+    boolean append(ReportFormat format, ByteBuffer batch) {
+      int length = batch.remaining();
+      if (this.writePosition + RECORD_HEADER_SIZE + length > this.buffer.capacity()) {
+        return false;
+      }
+      this.buffer.putInt(this.writePosition, length);
+      this.buffer.put(this.writePosition + 4, (byte) format.ordinal());
+      this.buffer.put(this.writePosition + RECORD_HEADER_SIZE, batch, batch.position(), length);
+      this.writePosition += RECORD_HEADER_SIZE + length;
+      this.buffer.putInt(0, this.writePosition);
+      this.remaining++;
+      return true;
+    }
+
+    boolean hasNext() {
+      return this.readPosition < this.writePosition;
+    }
+
+    Record next() {
+      if (!hasNext()) {
+        return null;
+      }
+      int length = this.buffer.getInt(this.readPosition);
+      ReportFormat format = FORMATS[this.buffer.get(this.readPosition + 4)];
+      ByteBuffer content = this.buffer.slice(this.readPosition + RECORD_HEADER_SIZE, length).asReadOnlyBuffer();
+      return new Record(format, content, RECORD_HEADER_SIZE + length);
+    }
+
+    void advance(Record record) {
+      this.readPosition += record.size();
+      this.buffer.putInt(4, this.readPosition);
+      this.remaining--;
+    }
+
+    int remaining() {
+      return this.remaining;
+    }
+
+    /**
+     * Mark this segment as discarded while one of its records is being replayed, so that
+     * it is deleted once the replay has completed.
+     */
+    void discard() {
+      this.discarded = true;
+    }
+
+    boolean isDiscarded() {
+      return this.discarded;
+    }
+
+    void force() {
+      try {
+        this.buffer.force();
+      }
+      catch (UncheckedIOException ex) {
+        logger.debug("Failed to flush " + this.file, ex);
+      }
+    }
+
+    void close() {
+      force();
+      closeChannel();
+    }
+
+    private void closeChannel() {
+      try {
+        this.channel.close();
+      }
+      catch (IOException ex) {
+        logger.debug("Failed to close " + this.file, ex);
+      }
+    }
+
+    void delete() {
+      closeChannel();
+      try {
+        Files.deleteIfExists(this.file);
+      }
+      catch (IOException ex) {
+        logger.debug("Failed to delete " + this.file, ex);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return this.file.toString();
+    }
+
+  }
+
+}
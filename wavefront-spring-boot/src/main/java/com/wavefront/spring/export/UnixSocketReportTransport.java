@@ -0,0 +1,159 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A {@link ReportTransport} that writes batches to a co-located Wavefront proxy over a
+ * Unix domain socket, for instance when the proxy runs as a sidecar. Batches are written
+ * as is, one item per line, as the proxy accepts them on its plain text port.
+ * <p>
+ * Each {@link ReportFormat format} has its own connection, the same way the HTTP
+ * transport has an endpoint per format, so that formats are written independently. A
+ * connection is opened on first use and reused for subsequent batches of its format.
+ * Writes are non-blocking: if the socket buffer is full, the transport waits for the
+ * channel to be writable up to a timeout. If a batch is not written completely, for
+ * instance on timeout, the connection is closed so that the partial line it ends with
+ * is not followed by the content of another batch, and a new connection is opened for
+ * the next batch.
+ *
+ * @author Stephane Nicoll
+ */
+class UnixSocketReportTransport implements ReportTransport {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final Path path;
+
+  private final long timeoutNanos;
+
+  private final Map<ReportFormat, Connection> connections = new EnumMap<>(ReportFormat.class);
+
+  UnixSocketReportTransport(Path path) {
+    this(path, TIMEOUT);
+  }
+
+  UnixSocketReportTransport(Path path, Duration timeout) {
+    this.path = path;
+    this.timeoutNanos = timeout.toNanos();
+    for (ReportFormat format : ReportFormat.values()) {
+      this.connections.put(format, new Connection());
+    }
+  }
+
+  @Override
+  public void send(ReportFormat format, ByteBuffer batch) throws IOException {
+    this.connections.get(format).send(batch.duplicate());
+  }
+
+  @Override
+  public void close() {
+    for (Connection connection : this.connections.values()) {
+      connection.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "unix://" + this.path;
+  }
+
+  /**
+   * A connection to the proxy used for the batches of a single format.
+   */
+  private final class Connection {
+
+    private SocketChannel channel;
+
+    private Selector selector;
+
+    private boolean closed;
+
+    synchronized void send(ByteBuffer content) throws IOException {
+      if (this.closed) {
+        throw new IOException("Transport to " + UnixSocketReportTransport.this + " is closed");
+      }
+      boolean written = false;
+      try {
+        SocketChannel channel = connect();
+        long deadline = System.nanoTime() + UnixSocketReportTransport.this.timeoutNanos;
+        while (content.hasRemaining()) {
+          if (channel.write(content) == 0) {
+            awaitWritable(deadline);
+          }
+        }
+        written = true;
+      }
+      finally {
+        if (!written) {
+          disconnect();
+        }
+      }
+    }
+
+    private SocketChannel connect() throws IOException {
+      if (this.channel == null) {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+          channel.connect(UnixDomainSocketAddress.of(UnixSocketReportTransport.this.path));
+          channel.configureBlocking(false);
+          this.selector = Selector.open();
+          channel.register(this.selector, SelectionKey.OP_WRITE);
+        }
+        catch (IOException ex) {
+          channel.close();
+          if (this.selector != null) {
+            this.selector.close();
+            this.selector = null;
+          }
+          throw ex;
+        }
+        this.channel = channel;
+      }
+      return this.channel;
+    }
+
+    private void awaitWritable(long deadline) throws IOException {
+      long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+      if (remainingMillis <= 0) {
+        throw new IOException("Timed out writing to " + UnixSocketReportTransport.this);
+      }
+      this.selector.select(remainingMillis);
+      this.selector.selectedKeys().clear();
+    }
+
+    private void disconnect() {
+      try {
+        if (this.channel != null) {
+          this.channel.close();
+        }
+        if (this.selector != null) {
+          this.selector.close();
+        }
+      }
+      catch (IOException ex) {
+        // The connection is discarded anyway
+      }
+      finally {
+        this.channel = null;
+        this.selector = null;
+      }
+    }
+
+    synchronized void close() {
+      this.closed = true;
+      disconnect();
+    }
+
+  }
+
+}
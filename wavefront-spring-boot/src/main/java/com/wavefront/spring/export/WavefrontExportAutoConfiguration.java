@@ -0,0 +1,168 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.common.clients.service.token.TokenService;
+import com.wavefront.spring.account.AccountManagementClient;
+import com.wavefront.spring.autoconfigure.AccountNegotiationAutoConfiguration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.ConditionalOnEnabledMetricsExport;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.ConditionalOnEnabledTracing;
+import org.springframework.boot.actuate.autoconfigure.tracing.wavefront.WavefrontTracingAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.source.InvalidConfigurationPropertyValueException;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for a {@link WavefrontSender} that
+ * batches data in preallocated off-heap buffers. Also used when data is sent to a
+ * co-located proxy over a Unix domain socket, using a {@code unix://} URI.
+ *
+ * @author Stephane Nicoll
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(WavefrontSender.class)
+@ConditionalOnMissingBean(WavefrontSender.class)
+@Conditional({ WavefrontExportAutoConfiguration.BufferOrUnixSocketCondition.class,
+    WavefrontExportAutoConfiguration.WavefrontTracingOrMetricsCondition.class })
+@AutoConfigureAfter(AccountNegotiationAutoConfiguration.class)
+@AutoConfigureBefore({ WavefrontMetricsExportAutoConfiguration.class, WavefrontTracingAutoConfiguration.class })
+@EnableConfigurationProperties({ WavefrontProperties.class, WavefrontExportProperties.class })
+public class WavefrontExportAutoConfiguration {
+
+  private static final String UNIX_SCHEME = "unix";
+
+  @Bean
+  CompressionStatistics wavefrontExportCompressionStatistics() {
+    return new CompressionStatistics();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ReportTransport wavefrontReportTransport(WavefrontProperties properties, CompressionStatistics statistics) {
+    URI uri = properties.getUri();
+    if (isUnixSocket(uri)) {
+      if (!StringUtils.hasText(uri.getPath())) {
+        throw new InvalidConfigurationPropertyValueException("management.wavefront.uri", uri,
+            "A unix URI must specify the path of the socket of the proxy");
+      }
+      return new UnixSocketReportTransport(Paths.get(uri.getPath()));
+    }
+    TokenService.Type tokenType = properties.getWavefrontApiTokenType();
+    if (tokenType != TokenService.Type.WAVEFRONT_API_TOKEN && tokenType != TokenService.Type.NO_TOKEN) {
+      throw new InvalidConfigurationPropertyValueException("management.wavefront.api-token-type", tokenType,
+          "Only Wavefront api tokens are supported when wavefront.export.buffer.enabled is set");
+    }
+    String apiToken = (tokenType != TokenService.Type.NO_TOKEN) ? properties.getApiTokenOrThrow() : null;
+    return new HttpReportTransport(AccountManagementClient.getSharedHttpClient(), properties.getEffectiveUri(),
+        apiToken, statistics);
+  }
+
+  @Bean
+  RingBufferWavefrontSender wavefrontSender(WavefrontProperties properties, WavefrontExportProperties exportProperties,
+      ReportTransport reportTransport, CompressionStatistics statistics,
+      ObjectProvider<ApplicationTags> applicationTags) throws IOException {
+    WavefrontExportProperties.Buffer buffer = exportProperties.getBuffer();
+    String destination = properties.getEffectiveUri().toString();
+    ReportTransport transport = spillover(reportTransport, destination, exportProperties.getSpill());
+    RingBufferWavefrontSender sender = new RingBufferWavefrontSender(transport, destination,
+        (int) buffer.getBatchSize().toBytes(), buffer.getBatches(), buffer.getFlushInterval(),
+        buffer.getBackpressureTimeout());
+    if (buffer.getTargetCompressedSize() != null) {
+      sender.setTargetCompressedSize((int) buffer.getTargetCompressedSize().toBytes(), statistics);
+    }
+    applicationTags.ifAvailable(sender::setApplicationTags);
+    return sender;
+  }
+
+  private ReportTransport spillover(ReportTransport reportTransport, String destination,
+      WavefrontExportProperties.Spill spill) throws IOException {
+    if (!spill.isEnabled()) {
+      return reportTransport;
+    }
+    Path directory = (spill.getDirectory() != null) ? spill.getDirectory()
+        : Paths.get(System.getProperty("user.home"), ".wavefront_freemium.spill",
+            SpilloverReportTransport.getDestinationUuid(destination).toString());
+    return new SpilloverReportTransport(reportTransport, destination, directory,
+        (int) spill.getSegmentSize().toBytes(), spill.getMaxSize().toBytes(), spill.getReplayRate().toBytes(),
+        spill.getRetryInterval());
+  }
+
+  private static boolean isUnixSocket(URI uri) {
+    return uri != null && UNIX_SCHEME.equals(uri.getScheme());
+  }
+
+  static final class BufferOrUnixSocketCondition extends AnyNestedCondition {
+
+    BufferOrUnixSocketCondition() {
+      super(ConfigurationPhase.PARSE_CONFIGURATION);
+    }
+
+    @ConditionalOnProperty(prefix = "wavefront.export.buffer", name = "enabled", havingValue = "true")
+    static class BufferCondition {
+
+    }
+
+    @Conditional(UnixSocketUriCondition.class)
+    static class UnixSocketCondition {
+
+    }
+
+  }
+
+  static final class UnixSocketUriCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+      ConditionMessage.Builder message = ConditionMessage.forCondition("Wavefront unix socket");
+      String uri = context.getEnvironment().getProperty("management.wavefront.uri");
+      if (uri != null && uri.startsWith(UNIX_SCHEME + ":")) {
+        return ConditionOutcome.match(message.found("unix URI").items(uri));
+      }
+      return ConditionOutcome.noMatch(message.didNotFind("unix URI").atAll());
+    }
+
+  }
+
+  static final class WavefrontTracingOrMetricsCondition extends AnyNestedCondition {
+
+    WavefrontTracingOrMetricsCondition() {
+      super(ConfigurationPhase.PARSE_CONFIGURATION);
+    }
+
+    @ConditionalOnEnabledTracing
+    static class TracingCondition {
+
+    }
+
+    @ConditionalOnEnabledMetricsExport("wavefront")
+    static class MetricsCondition {
+
+    }
+
+  }
+
+}
@@ -0,0 +1,230 @@
+package com.wavefront.spring.export;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.source.InvalidConfigurationPropertyValueException;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration properties for the export of data to Wavefront.
+ *
+ * @author Stephane Nicoll
+ */
+@ConfigurationProperties("wavefront.export")
+public class WavefrontExportProperties implements InitializingBean {
+
+  private final Buffer buffer = new Buffer();
+
+  private final Spill spill = new Spill();
+
+  public Buffer getBuffer() {
+    return this.buffer;
+  }
+
+  public Spill getSpill() {
+    return this.spill;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    this.buffer.validate();
+  }
+
+  /**
+   * Batching of data in preallocated off-heap buffers.
+   */
+  public static class Buffer {
+
+    /**
+     * Whether to batch data in preallocated off-heap buffers rather than using the
+     * sender of the Wavefront SDK.
+     */
+    private boolean enabled;
+
+    /**
+     * Size of a batch.
+     */
+    private DataSize batchSize = DataSize.ofKilobytes(64);
+
+    /**
+     * Number of batches of each kind of data (metrics, histograms, spans, span logs).
+     */
+    private int batches = 4;
+
+    /**
+     * Maximum time data is held before it is sent.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Maximum time to wait for a batch to be available before data is dropped.
+     */
+    private Duration backpressureTimeout = Duration.ZERO;
+
+    /**
+     * Target size of a compressed batch. When set, batches are sent once their
+     * estimated compressed size reaches this target, based on the compression ratio
+     * observed so far. A batch never exceeds the batch size.
+     */
+    private DataSize targetCompressedSize;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public DataSize getBatchSize() {
+      return this.batchSize;
+    }
+
+    public void setBatchSize(DataSize batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public int getBatches() {
+      return this.batches;
+    }
+
+    public void setBatches(int batches) {
+      this.batches = batches;
+    }
+
+    public Duration getFlushInterval() {
+      return this.flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+      this.flushInterval = flushInterval;
+    }
+
+    public Duration getBackpressureTimeout() {
+      return this.backpressureTimeout;
+    }
+
+    public void setBackpressureTimeout(Duration backpressureTimeout) {
+      this.backpressureTimeout = backpressureTimeout;
+    }
+
+    public DataSize getTargetCompressedSize() {
+      return this.targetCompressedSize;
+    }
+
+    public void setTargetCompressedSize(DataSize targetCompressedSize) {
+      this.targetCompressedSize = targetCompressedSize;
+    }
+
+    void validate() {
+      long batchSize = this.batchSize.toBytes();
+      if (batchSize <= 0 || batchSize > Integer.MAX_VALUE) {
+        throw new InvalidConfigurationPropertyValueException("wavefront.export.buffer.batch-size", this.batchSize,
+            "The size of a batch must be positive and less than 2GB");
+      }
+      if (this.batches <= 0) {
+        throw new InvalidConfigurationPropertyValueException("wavefront.export.buffer.batches", this.batches,
+            "The number of batches must be positive");
+      }
+      if (batchSize * this.batches > Integer.MAX_VALUE) {
+        throw new InvalidConfigurationPropertyValueException("wavefront.export.buffer.batches", this.batches,
+            "The batches of a format are allocated in a single buffer, so batch-size multiplied by batches "
+                + "must be less than 2GB");
+      }
+    }
+
+  }
+
+  /**
+   * Spilling of batches to disk when the cluster or proxy cannot be reached. Requires
+   * batching in off-heap buffers.
+   */
+  public static class Spill {
+
+    /**
+     * Whether to spill batches to disk when they cannot be sent, and replay them once the
+     * cluster or proxy is reachable again.
+     */
+    private boolean enabled;
+
+    /**
+     * Directory of the segment files. Defaults to a directory per cluster or proxy in
+     * ".wavefront_freemium.spill" in the home directory.
+     */
+    private Path directory;
+
+    /**
+     * Size of a segment file.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(8);
+
+    /**
+     * Maximum size of all segment files. When reached, the oldest segment is discarded.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Maximum amount of spilled data replayed per second.
+     */
+    private DataSize replayRate = DataSize.ofMegabytes(1);
+
+    /**
+     * Time to wait before trying to send or replay data again after a failure. In the
+     * meantime, new batches are spilled directly.
+     */
+    private Duration retryInterval = Duration.ofSeconds(5);
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+      return this.directory;
+    }
+
+    public void setDirectory(Path directory) {
+      this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+      return this.segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+      this.segmentSize = segmentSize;
+    }
+
+    public DataSize getMaxSize() {
+      return this.maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public DataSize getReplayRate() {
+      return this.replayRate;
+    }
+
+    public void setReplayRate(DataSize replayRate) {
+      this.replayRate = replayRate;
+    }
+
+    public Duration getRetryInterval() {
+      return this.retryInterval;
+    }
+
+    public void setRetryInterval(Duration retryInterval) {
+      this.retryInterval = retryInterval;
+    }
+
+  }
+
+}
@@ -0,0 +1,571 @@
+package com.wavefront.spring.export;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+
+/**
+ * Encode metrics, histograms and spans in the Wavefront line protocol straight into a
+ * {@link ByteBuffer}.
+ * <p>
+ * Names, tag keys and tag values are escaped using the rules of the Wavefront SDK, and
+ * the escaped form is cached so that encoding a point that has been seen already does
+ * not allocate. Numbers are written digit by digit rather than via their
+ * {@link String} representation.
+ * <p>
+ * The point tags of the {@link #setApplicationTags(ApplicationTags) application tags},
+ * that are attached to every metric and span, are encoded once. Points that have all of
+ * them are written with the pre-encoded form rather than by iterating over their tags.
+ * <p>
+ * If the target buffer is too small, or if the item is invalid, the position of the
+ * buffer is left unchanged so that the caller can retry with another buffer. This class
+ * is thread-safe.
+ *
+ * @author Stephane Nicoll
+ */
+public class WavefrontLineEncoder {
+
+  private static final int MAX_CACHED_ENTRIES = 10_000;
+
+  private static final byte[] SOURCE = " source=".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] TRACE_ID = " traceId=".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SPAN_ID = " spanId=".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] PARENT = " parent=".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] FOLLOWS_FROM = " followsFrom=".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SPAN_LOGS_TAG = " \"_spanLogs\"=\"true\"".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final long[] POWERS_OF_TEN = new long[18];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private static final double MAX_EXACT_LONG = 1L << 53;
+
+  private static final double PLAIN_NOTATION_MIN = 1e-3;
+
+  private static final double PLAIN_NOTATION_MAX = 1e7;
+
+  private final Map<String, byte[]> names = new ConcurrentHashMap<>();
+
+  private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+
+  private final String defaultSource;
+
+  private volatile ApplicationTagsSuffix applicationTagsSuffix;
+
+  /**
+   * Create an instance.
+   * @param defaultSource the source to use if none is specified
+   */
+  public WavefrontLineEncoder(String defaultSource) {
+    this.defaultSource = defaultSource;
+  }
+
+  /**
+   * Set the {@link ApplicationTags} that are attached to every point. Their encoded form
+   * is computed once, and only computed again if a different instance is specified.
+   * @param applicationTags the application tags, or {@code null} to encode the tags of
+   * every point individually
+   */
+  public void setApplicationTags(ApplicationTags applicationTags) {
+    ApplicationTagsSuffix current = this.applicationTagsSuffix;
+    if (current == null || current.applicationTags != applicationTags) {
+      this.applicationTagsSuffix = (applicationTags != null) ? ApplicationTagsSuffix.of(applicationTags) : null;
+    }
+  }
+
+  /**
+   * Encode a metric point.
+   * @param target the buffer to write to
+   * @param name the name of the metric
+   * @param value the value of the metric
+   * @param timestamp the timestamp in milliseconds, or {@code null} to let the server
+   * assign one
+   * @param source the source, or {@code null} to use the default source
+   * @param tags the point tags, or {@code null}
+   * @return {@code true} if the point has been written, {@code false} if the buffer is
+   * too small
+   * @throws IllegalArgumentException if the point is invalid
+   */
+  public boolean encodeMetric(ByteBuffer target, String name, double value, Long timestamp, String source,
+      Map<String, String> tags) {
+    if (isBlank(name)) {
+      throw new IllegalArgumentException("metrics name cannot be blank");
+    }
+    String actualSource = getSource(source, "source cannot be blank");
+    int position = target.position();
+    try {
+      target.put(escapeName(name));
+      target.put((byte) ' ');
+      writeDouble(target, value);
+      if (timestamp != null) {
+        target.put((byte) ' ');
+        writeLong(target, timestamp);
+      }
+      target.put(SOURCE).put(escapeValue(actualSource));
+      writeTags(target, tags, "metric");
+      target.put((byte) '\n');
+      return true;
+    }
+    catch (BufferOverflowException ex) {
+      target.position(position);
+      return false;
+    }
+    catch (IllegalArgumentException ex) {
+      target.position(position);
+      throw ex;
+    }
+  }
+
+  /**
+   * Encode a distribution, as one line per granularity.
+   * @param target the buffer to write to
+   * @param name the name of the histogram
+   * @param centroids the centroids of the distribution
+   * @param granularities the granularities of the distribution
+   * @param timestamp the timestamp in milliseconds, or {@code null} to let the server
+   * assign one
+   * @param source the source, or {@code null} to use the default source
+   * @param tags the point tags, or {@code null}
+   * @return {@code true} if the distribution has been written, {@code false} if the
+   * buffer is too small
+   * @throws IllegalArgumentException if the distribution is invalid
+   */
+  public boolean encodeDistribution(ByteBuffer target, String name, List<Pair<Double, Integer>> centroids,
+      Set<HistogramGranularity> granularities, Long timestamp, String source, Map<String, String> tags) {
+    if (isBlank(name)) {
+      throw new IllegalArgumentException("histogram name cannot be blank");
+    }
+    String actualSource = getSource(source, "histogram source cannot be blank");
+    if (granularities == null || granularities.isEmpty()) {
+      throw new IllegalArgumentException("Histogram granularities cannot be null or empty");
+    }
+    if (centroids == null || centroids.isEmpty()) {
+      throw new IllegalArgumentException("A distribution should have at least one centroid");
+    }
+    int position = target.position();
+    try {
+      for (HistogramGranularity granularity : granularities) {
+        writeAscii(target, granularity.identifier);
+        if (timestamp != null) {
+          target.put((byte) ' ');
+          writeLong(target, timestamp);
+        }
+        target.put((byte) ' ');
+        writeCentroids(target, centroids);
+        target.put(escapeName(name));
+        target.put(SOURCE).put(escapeValue(actualSource));
+        writeTags(target, tags, "histogram");
+        target.put((byte) '\n');
+      }
+      return true;
+    }
+    catch (BufferOverflowException ex) {
+      target.position(position);
+      return false;
+    }
+    catch (IllegalArgumentException ex) {
+      target.position(position);
+      throw ex;
+    }
+  }
+
+  /**
+   * Encode a span.
+   * @param target the buffer to write to
+   * @param name the name of the span
+   * @param startMillis the start of the span in milliseconds
+   * @param durationMillis the duration of the span in milliseconds
+   * @param source the source, or {@code null} to use the default source
+   * @param traceId the identifier of the trace
+   * @param spanId the identifier of the span
+   * @param parents the identifiers of the parent spans, or {@code null}
+   * @param followsFrom the identifiers of the spans this span follows from, or
+   * {@code null}
+   * @param tags the span tags, or {@code null}
+   * @param hasSpanLogs whether logs are attached to the span
+   * @return {@code true} if the span has been written, {@code false} if the buffer is too
+   * small
+   * @throws IllegalArgumentException if the span is invalid
+   */
+  public boolean encodeSpan(ByteBuffer target, String name, long startMillis, long durationMillis, String source,
+      UUID traceId, UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+      boolean hasSpanLogs) {
+    if (isBlank(name)) {
+      throw new IllegalArgumentException("span name cannot be blank");
+    }
+    String actualSource = getSource(source, "span source cannot be blank");
+    int position = target.position();
+    try {
+      target.put(escapeValue(name));
+      target.put(SOURCE).put(escapeValue(actualSource));
+      target.put(TRACE_ID);
+      writeUuid(target, traceId);
+      target.put(SPAN_ID);
+      writeUuid(target, spanId);
+      if (parents != null) {
+        for (int i = 0; i < parents.size(); i++) {
+          target.put(PARENT);
+          writeUuid(target, parents.get(i));
+        }
+      }
+      if (followsFrom != null) {
+        for (int i = 0; i < followsFrom.size(); i++) {
+          target.put(FOLLOWS_FROM);
+          writeUuid(target, followsFrom.get(i));
+        }
+      }
+      writeTags(target, tags);
+      if (hasSpanLogs) {
+        target.put(SPAN_LOGS_TAG);
+      }
+      target.put((byte) ' ');
+      writeLong(target, startMillis);
+      target.put((byte) ' ');
+      writeLong(target, durationMillis);
+      target.put((byte) '\n');
+      return true;
+    }
+    catch (BufferOverflowException ex) {
+      target.position(position);
+      return false;
+    }
+    catch (IllegalArgumentException ex) {
+      target.position(position);
+      throw ex;
+    }
+  }
+
+  private String getSource(String source, String message) {
+    String actualSource = isBlank(source) ? this.defaultSource : source;
+    if (isBlank(actualSource)) {
+      throw new IllegalArgumentException(message);
+    }
+    return actualSource;
+  }
+
+  private void writeTags(ByteBuffer target, Map<String, String> tags, String kind) {
+    if (tags == null) {
+      return;
+    }
+    ApplicationTagsSuffix suffix = this.applicationTagsSuffix;
+    if (suffix == null || !suffix.isCoveredBy(tags)) {
+      for (Map.Entry<String, String> tag : tags.entrySet()) {
+        writeTag(target, tag.getKey(), tag.getValue(), kind);
+      }
+      return;
+    }
+    target.put(suffix.content);
+    if (tags.size() > suffix.keys.length) {
+      for (Map.Entry<String, String> tag : tags.entrySet()) {
+        if (!suffix.contains(tag.getKey(), tag.getValue())) {
+          writeTag(target, tag.getKey(), tag.getValue(), kind);
+        }
+      }
+    }
+  }
+
+  private void writeTags(ByteBuffer target, List<Pair<String, String>> tags) {
+    if (tags == null) {
+      return;
+    }
+    ApplicationTagsSuffix suffix = this.applicationTagsSuffix;
+    boolean covered = suffix != null && suffix.isCoveredBy(tags);
+    if (covered) {
+      target.put(suffix.content);
+    }
+    for (int i = 0; i < tags.size(); i++) {
+      Pair<String, String> tag = tags.get(i);
+      if (!covered || !suffix.contains(tag._1, tag._2)) {
+        writeTag(target, tag._1, tag._2, "span");
+      }
+    }
+  }
+
+  private void writeTag(ByteBuffer target, String key, String value, String kind) {
+    if (isBlank(key)) {
+      throw new IllegalArgumentException(kind + " tag key cannot be blank");
+    }
+    if (isBlank(value)) {
+      throw new IllegalArgumentException(kind + " tag value cannot be blank for tag key: " + key);
+    }
+    target.put((byte) ' ').put(escapeName(key)).put((byte) '=').put(escapeValue(value));
+  }
+
+  private void writeCentroids(ByteBuffer target, List<Pair<Double, Integer>> centroids) {
+    // Consecutive centroids with the same value are merged, as done by the SDK
+    double value = 0;
+    int count = 0;
+    boolean pending = false;
+    for (int i = 0; i < centroids.size(); i++) {
+      Pair<Double, Integer> centroid = centroids.get(i);
+      double centroidValue = centroid._1;
+      int centroidCount = centroid._2;
+      if (pending && Double.compare(value, centroidValue) == 0) {
+        count += centroidCount;
+        continue;
+      }
+      if (pending) {
+        writeCentroid(target, value, count);
+      }
+      value = centroidValue;
+      count = centroidCount;
+      pending = true;
+    }
+    if (pending) {
+      writeCentroid(target, value, count);
+    }
+  }
+
+  private void writeCentroid(ByteBuffer target, double value, int count) {
+    target.put((byte) '#');
+    writeLong(target, count);
+    target.put((byte) ' ');
+    writeDouble(target, value);
+    target.put((byte) ' ');
+  }
+
+  private byte[] escapeName(String name) {
+    return escape(this.names, name, Utils::sanitize);
+  }
+
+  private byte[] escapeValue(String value) {
+    return escape(this.values, value, Utils::sanitizeValue);
+  }
+
+  private static byte[] escape(Map<String, byte[]> cache, String text, Function<String, String> escaper) {
+    byte[] escaped = cache.get(text);
+    if (escaped == null) {
+      escaped = escaper.apply(text).getBytes(StandardCharsets.UTF_8);
+      if (cache.size() < MAX_CACHED_ENTRIES) {
+        cache.put(text, escaped);
+      }
+    }
+    return escaped;
+  }
+
+  static void writeLong(ByteBuffer target, long value) {
+    if (value == Long.MIN_VALUE) {
+      writeAscii(target, Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      target.put((byte) '-');
+      value = -value;
+    }
+    int length = digits(value);
+    int end = target.position() + length;
+    if (end > target.limit()) {
+      throw new BufferOverflowException();
+    }
+    for (int index = end - 1; index >= target.position(); index--) {
+      target.put(index, (byte) ('0' + (value % 10)));
+      value /= 10;
+    }
+    target.position(end);
+  }
+
+  /**
+   * Write the specified {@code double} as {@link Double#toString(double)} does. Values
+   * that {@link Double#toString(double)} writes without an exponent, that is values
+   * whose magnitude is between {@code 1e-3} (included) and {@code 1e7} (excluded), are
+   * written digit by digit if they are integral or can be represented exactly by a
+   * short decimal. Other values fall back to {@link Double#toString(double)}.
+   * @param target the buffer to write to
+   * @param value the value to write
+   */
+  static void writeDouble(ByteBuffer target, double value) {
+    if (Double.isFinite(value) && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+      double magnitude = Math.abs(value);
+      if (value == 0 || (magnitude >= PLAIN_NOTATION_MIN && magnitude < PLAIN_NOTATION_MAX)) {
+        if (value == Math.rint(value)) {
+          writeLong(target, (long) value);
+          target.put((byte) '.').put((byte) '0');
+          return;
+        }
+        for (int scale = 1; scale < POWERS_OF_TEN.length; scale++) {
+          double scaled = magnitude * POWERS_OF_TEN[scale];
+          if (scaled >= MAX_EXACT_LONG) {
+            break;
+          }
+          long unscaled = (long) Math.rint(scaled);
+          if (unscaled / (double) POWERS_OF_TEN[scale] == magnitude) {
+            if (value < 0) {
+              target.put((byte) '-');
+            }
+            writeDecimal(target, unscaled, scale);
+            return;
+          }
+        }
+      }
+    }
+    writeAscii(target, Double.toString(value));
+  }
+
+  private static void writeDecimal(ByteBuffer target, long unscaled, int scale) {
+    long integral = unscaled / POWERS_OF_TEN[scale];
+    long fraction = unscaled % POWERS_OF_TEN[scale];
+    writeLong(target, integral);
+    target.put((byte) '.');
+    for (int i = digits(fraction); i < scale; i++) {
+      target.put((byte) '0');
+    }
+    writeLong(target, fraction);
+  }
+
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+
+  private static void writeUuid(ByteBuffer target, UUID uuid) {
+    if (target.remaining() < 36) {
+      throw new BufferOverflowException();
+    }
+    long msb = uuid.getMostSignificantBits();
+    long lsb = uuid.getLeastSignificantBits();
+    writeHex(target, msb >>> 32, 8);
+    target.put((byte) '-');
+    writeHex(target, msb >>> 16, 4);
+    target.put((byte) '-');
+    writeHex(target, msb, 4);
+    target.put((byte) '-');
+    writeHex(target, lsb >>> 48, 4);
+    target.put((byte) '-');
+    writeHex(target, lsb, 12);
+  }
+
+  private static void writeHex(ByteBuffer target, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      target.put(HEX_DIGITS[(int) ((value >>> shift) & 0xF)]);
+    }
+  }
+
+  private static void writeAscii(ByteBuffer target, String text) {
+    if (target.remaining() < text.length()) {
+      throw new BufferOverflowException();
+    }
+    for (int i = 0; i < text.length(); i++) {
+      target.put((byte) text.charAt(i));
+    }
+  }
+
+  private static boolean isBlank(String text) {
+    return text == null || text.isEmpty();
+  }
+
+  /**
+   * The pre-encoded point tags of an {@link ApplicationTags}.
+   */
+  private static final class ApplicationTagsSuffix {
+
+    private static final int MAX_TAGS = 64;
+
+    private final ApplicationTags applicationTags;
+
+    private final String[] keys;
+
+    private final String[] values;
+
+    private final byte[] content;
+
+    private ApplicationTagsSuffix(ApplicationTags applicationTags, String[] keys, String[] values, byte[] content) {
+      this.applicationTags = applicationTags;
+      this.keys = keys;
+      this.values = values;
+      this.content = content;
+    }
+
+    static ApplicationTagsSuffix of(ApplicationTags applicationTags) {
+      Map<String, String> pointTags = applicationTags.toPointTags();
+      int size = pointTags.size();
+      String[] keys = new String[size];
+      String[] values = new String[size];
+      StringBuilder content = new StringBuilder();
+      int index = 0;
+      for (Map.Entry<String, String> tag : pointTags.entrySet()) {
+        keys[index] = tag.getKey();
+        values[index] = tag.getValue();
+        index++;
+        content.append(' ').append(Utils.sanitize(tag.getKey())).append('=')
+            .append(Utils.sanitizeValue(tag.getValue()));
+      }
+      if (size > MAX_TAGS || Arrays.stream(keys).anyMatch(WavefrontLineEncoder::isBlank)
+          || Arrays.stream(values).anyMatch(WavefrontLineEncoder::isBlank)) {
+        // Let invalid tags be reported, or large sets be handled, point by point
+        return new ApplicationTagsSuffix(applicationTags, new String[0], new String[0], null);
+      }
+      return new ApplicationTagsSuffix(applicationTags, keys, values,
+          content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean isCoveredBy(Map<String, String> tags) {
+      if (this.content == null || tags.size() < this.keys.length) {
+        return false;
+      }
+      for (int i = 0; i < this.keys.length; i++) {
+        if (!this.values[i].equals(tags.get(this.keys[i]))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean isCoveredBy(List<Pair<String, String>> tags) {
+      if (this.content == null || tags.size() < this.keys.length) {
+        return false;
+      }
+      long matches = 0;
+      for (int i = 0; i < tags.size(); i++) {
+        Pair<String, String> tag = tags.get(i);
+        int index = indexOf(tag._1, tag._2);
+        if (index >= 0) {
+          matches |= 1L << index;
+        }
+      }
+      return matches == ((this.keys.length == MAX_TAGS) ? -1L : (1L << this.keys.length) - 1);
+    }
+
+    boolean contains(String key, String value) {
+      return indexOf(key, value) >= 0;
+    }
+
+    private int indexOf(String key, String value) {
+      for (int i = 0; i < this.keys.length; i++) {
+        if (this.keys[i].equals(key)) {
+          return this.values[i].equals(value) ? i : -1;
+        }
+      }
+      return -1;
+    }
+
+  }
+
+}
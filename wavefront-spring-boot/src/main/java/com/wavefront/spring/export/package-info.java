@@ -0,0 +1,4 @@
+/**
+ * Export of metrics, histograms and spans to Wavefront.
+ */
+package com.wavefront.spring.export;
@@ -0,0 +1,319 @@
+package com.wavefront.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link MeterFilter} that limits the number of distinct values of each tag of a
+ * meter. Once a tag of a meter has reached the maximum number of distinct values, any
+ * other value is replaced by {@value #OVERFLOW_TAG_VALUE}.
+ * <p>
+ * Values that have been accepted are tracked by their 64-bit hash, so that the memory
+ * used by a tag is bounded by the maximum number of distinct values. Once a tag is
+ * capped, the number of distinct values it would have had is estimated using a
+ * HyperLogLog sketch. Capped meters are logged and their number is available as the
+ * {@code wavefront.metrics.cardinality.capped} metric.
+ * <p>
+ * Micrometer maps the id of a meter every time it is looked up, including when the meter
+ * is already registered. Values that have been accepted are therefore checked without
+ * allocating or locking, and a lock is only taken to accept a new value.
+ *
+ * @author Stephane Nicoll
+ */
+class CardinalityGuardMeterFilter implements MeterFilter, MeterBinder {
+
+  /**
+   * The value of a tag that has reached the maximum number of distinct values.
+   */
+  static final String OVERFLOW_TAG_VALUE = "other";
+
+  private static final Log logger = LogFactory.getLog(CardinalityGuardMeterFilter.class);
+
+  private static final int MAX_TRACKED_TAGS = 10_000;
+
+  private final int maxTagValues;
+
+  private final Map<String, Map<String, TagValues>> tagValues = new ConcurrentHashMap<>();
+
+  private final AtomicInteger trackedTags = new AtomicInteger();
+
+  private final AtomicBoolean trackingLimitReached = new AtomicBoolean();
+
+  /**
+   * Create an instance.
+   * @param maxTagValues the maximum number of distinct values of a tag of a meter
+   */
+  CardinalityGuardMeterFilter(int maxTagValues) {
+    if (maxTagValues < 1) {
+      throw new IllegalArgumentException("Maximum number of tag values must be at least 1");
+    }
+    this.maxTagValues = maxTagValues;
+  }
+
+  @Override
+  public Meter.Id map(Meter.Id id) {
+    List<Tag> mapped = null;
+    Map<String, TagValues> meterTagValues = null;
+    int index = 0;
+    for (Tag tag : id.getTagsAsIterable()) {
+      if (meterTagValues == null) {
+        meterTagValues = getMeterTagValues(id.getName());
+      }
+      TagValues values = getTagValues(meterTagValues, id.getName(), tag.getKey());
+      if (values != null && !values.accept(tag.getValue())) {
+        if (mapped == null) {
+          mapped = new ArrayList<>(id.getTags().subList(0, index));
+        }
+        mapped.add(Tag.of(tag.getKey(), OVERFLOW_TAG_VALUE));
+      }
+      else if (mapped != null) {
+        mapped.add(tag);
+      }
+      index++;
+    }
+    return (mapped != null) ? id.replaceTags(mapped) : id;
+  }
+
+  private Map<String, TagValues> getMeterTagValues(String name) {
+    Map<String, TagValues> meterTagValues = this.tagValues.get(name);
+    if (meterTagValues != null || this.trackedTags.get() >= MAX_TRACKED_TAGS) {
+      return (meterTagValues != null) ? meterTagValues : Collections.emptyMap();
+    }
+    return this.tagValues.computeIfAbsent(name, (candidate) -> new ConcurrentHashMap<>());
+  }
+
+  private TagValues getTagValues(Map<String, TagValues> meterTagValues, String name, String key) {
+    TagValues values = meterTagValues.get(key);
+    if (values != null) {
+      return values;
+    }
+    if (this.trackedTags.get() >= MAX_TRACKED_TAGS) {
+      if (this.trackingLimitReached.compareAndSet(false, true)) {
+        logger.warn(String.format("More than %d tags are tracked, the values of other tags are not limited",
+            MAX_TRACKED_TAGS));
+      }
+      return null;
+    }
+    return meterTagValues.computeIfAbsent(key, (candidate) -> {
+      this.trackedTags.incrementAndGet();
+      return new TagValues(new MeterTag(name, candidate));
+    });
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("wavefront.metrics.cardinality.capped", this, (filter) -> filter.getCappedTags().size())
+        .description("Number of meter tags whose distinct values are capped").register(registry);
+  }
+
+  /**
+   * Return the tags that have reached the maximum number of distinct values, mapped to
+   * the estimated number of distinct values they would have had otherwise.
+   * @return the capped tags, keyed by {@code meterName:tagKey}
+   */
+  Map<String, Long> getCappedTags() {
+    Map<String, Long> capped = new TreeMap<>();
+    this.tagValues.values().forEach((meterTagValues) -> meterTagValues.values().forEach((values) -> {
+      long cardinality = values.getCappedCardinality();
+      if (cardinality > 0) {
+        capped.put(values.meterTag.name() + ":" + values.meterTag.key(), cardinality);
+      }
+    }));
+    return capped;
+  }
+
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+    }
+    hash ^= (hash >>> 33);
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= (hash >>> 33);
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  private record MeterTag(String name, String key) {
+  }
+
+  /**
+   * The distinct values of a tag of a meter. Accepted values are kept in an open-addressing
+   * table that is copied when a value is added, so that it can be read without locking.
+   */
+  private final class TagValues {
+
+    private final MeterTag meterTag;
+
+    private volatile long[] accepted = new long[8];
+
+    private int size;
+
+    private volatile HyperLogLog sketch;
+
+    TagValues(MeterTag meterTag) {
+      this.meterTag = meterTag;
+    }
+
+    boolean accept(String value) {
+      long key = key(hash(value));
+      if (contains(this.accepted, key)) {
+        return true;
+      }
+      HyperLogLog sketch = this.sketch;
+      if (sketch != null && sketch.contains(key)) {
+        return false;
+      }
+      boolean capped;
+      synchronized (this) {
+        if (contains(this.accepted, key)) {
+          return true;
+        }
+        if (this.size < CardinalityGuardMeterFilter.this.maxTagValues) {
+          add(key);
+          return true;
+        }
+        capped = (this.sketch == null);
+        if (capped) {
+          HyperLogLog initial = new HyperLogLog();
+          for (long candidate : this.accepted) {
+            if (candidate != 0) {
+              initial.add(candidate);
+            }
+          }
+          this.sketch = initial;
+        }
+        this.sketch.add(key);
+      }
+      if (capped) {
+        logger.warn(String.format("Meter '%s' has more than %d distinct values for tag '%s', other values are "
+            + "reported as '%s'", this.meterTag.name(), CardinalityGuardMeterFilter.this.maxTagValues,
+            this.meterTag.key(), OVERFLOW_TAG_VALUE));
+      }
+      return false;
+    }
+
+    synchronized long getCappedCardinality() {
+      return (this.sketch != null) ? this.sketch.estimate() : 0;
+    }
+
+    private static long key(long hash) {
+      return (hash != 0) ? hash : 1;
+    }
+
+    private static boolean contains(long[] accepted, long key) {
+      int mask = accepted.length - 1;
+      int index = (int) key & mask;
+      while (accepted[index] != 0) {
+        if (accepted[index] == key) {
+          return true;
+        }
+        index = (index + 1) & mask;
+      }
+      return false;
+    }
+
+    private void add(long key) {
+      long[] current = this.accepted;
+      int length = ((this.size + 1) * 2 > current.length) ? current.length * 2 : current.length;
+      long[] accepted = new long[length];
+      if (length == current.length) {
+        System.arraycopy(current, 0, accepted, 0, length);
+      }
+      else {
+        for (long candidate : current) {
+          if (candidate != 0) {
+            insert(accepted, candidate);
+          }
+        }
+      }
+      insert(accepted, key);
+      this.accepted = accepted;
+      this.size++;
+    }
+
+    private static void insert(long[] accepted, long key) {
+      int mask = accepted.length - 1;
+      int index = (int) key & mask;
+      while (accepted[index] != 0) {
+        index = (index + 1) & mask;
+      }
+      accepted[index] = key;
+    }
+
+  }
+
+  /**
+   * A HyperLogLog sketch with 1024 registers, for a standard error of about 3%.
+   */
+  static final class HyperLogLog {
+
+    private static final int PRECISION = 10;
+
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    void add(long hash) {
+      int index = index(hash);
+      byte rank = rank(hash);
+      if (rank > this.registers[index]) {
+        this.registers[index] = rank;
+      }
+    }
+
+    /**
+     * Return whether adding the specified hash would leave the sketch unchanged. May be
+     * called without holding the lock used to {@link #add(long) add} hashes as a register
+     * is only ever increased.
+     * @param hash the hash to check
+     * @return {@code true} if the hash does not change the estimate of the sketch
+     */
+    boolean contains(long hash) {
+      return rank(hash) <= this.registers[index(hash)];
+    }
+
+    private static int index(long hash) {
+      return (int) (hash >>> (Long.SIZE - PRECISION));
+    }
+
+    private static byte rank(long hash) {
+      return (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+    }
+
+    long estimate() {
+      double sum = 0;
+      int zeros = 0;
+      for (byte register : this.registers) {
+        sum += 1.0 / (1L << register);
+        if (register == 0) {
+          zeros++;
+        }
+      }
+      double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+      if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+        estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+      }
+      return Math.round(estimate);
+    }
+
+  }
+
+}
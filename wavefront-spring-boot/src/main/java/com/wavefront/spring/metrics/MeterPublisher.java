@@ -0,0 +1,471 @@
+package com.wavefront.spring.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import com.wavefront.spring.export.EncodedWavefrontSender;
+import com.wavefront.spring.export.ReportFormat;
+import com.wavefront.spring.export.WavefrontLineEncoder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.wavefront.WavefrontConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Publish the meters of a registry to Wavefront, the same way
+ * {@link io.micrometer.wavefront.WavefrontMeterRegistry} does.
+ * <p>
+ * Meters are encoded in the Wavefront line protocol in buffers that are then handed to
+ * the sender. If more than one thread is used, meters are partitioned in chunks that are
+ * encoded independently using a {@link ForkJoinPool}, each in its own buffers, and the
+ * buffers are handed to the sender in the order of the meters of the registry. If the
+ * sender is an {@link EncodedWavefrontSender}, the buffers are sent as is. Otherwise,
+ * metrics are sent line by line and distributions are sent individually.
+ * <p>
+ * If {@link MeterSnapshots} are set, meters whose values have not changed since they were
+ * last published are skipped, and {@link ReleasableMeter releasable} meters whose observed
+ * object has been garbage collected can be removed from the registry once their values
+ * have not changed for a grace period. Meters are never removed based on their age or
+ * activity alone: counters, timers, and meters whose object is still referenced are kept
+ * as the application may hold a reference to them.
+ *
+ * @author Stephane Nicoll
+ */
+final class MeterPublisher implements Closeable {
+
+  private static final Log logger = LogFactory.getLog(MeterPublisher.class);
+
+  private static final int MIN_CHUNK_SIZE = 256;
+
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static final int BYTES_PER_METER = 128;
+
+  private final MeterRegistry registry;
+
+  private final TimeUnit baseTimeUnit;
+
+  private final WavefrontSender sender;
+
+  private final WavefrontLineEncoder encoder;
+
+  private final String source;
+
+  private final Set<HistogramGranularity> histogramGranularities;
+
+  private final int parallelism;
+
+  private final ForkJoinPool pool;
+
+  private volatile MeterSnapshots snapshots;
+
+  private volatile long releasedMeterGracePeriodMillis;
+
+  private final AtomicLong releasedMeterRemovals = new AtomicLong();
+
+  /**
+   * Create an instance.
+   * @param registry the registry whose meters should be published
+   * @param config the configuration of the registry
+   * @param baseTimeUnit the base time unit of the registry
+   * @param sender the sender to use
+   * @param parallelism the number of threads to use to encode meters
+   */
+  MeterPublisher(MeterRegistry registry, WavefrontConfig config, TimeUnit baseTimeUnit, WavefrontSender sender,
+      int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.registry = registry;
+    this.baseTimeUnit = baseTimeUnit;
+    this.sender = sender;
+    this.encoder = (sender instanceof EncodedWavefrontSender encodedSender) ? encodedSender.getLineEncoder()
+        : new WavefrontLineEncoder(config.source());
+    this.source = config.source();
+    this.histogramGranularities = getHistogramGranularities(config);
+    this.parallelism = parallelism;
+    this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+  }
+
+  private static Set<HistogramGranularity> getHistogramGranularities(WavefrontConfig config) {
+    Set<HistogramGranularity> granularities = EnumSet.noneOf(HistogramGranularity.class);
+    if (config.reportMinuteDistribution()) {
+      granularities.add(HistogramGranularity.MINUTE);
+    }
+    if (config.reportHourDistribution()) {
+      granularities.add(HistogramGranularity.HOUR);
+    }
+    if (config.reportDayDistribution()) {
+      granularities.add(HistogramGranularity.DAY);
+    }
+    return Collections.unmodifiableSet(granularities);
+  }
+
+  /**
+   * Only publish meters whose values have changed since they were last published, or
+   * whose heartbeat interval has elapsed.
+   * @param snapshots the snapshots of the meters
+   */
+  void setMeterSnapshots(MeterSnapshots snapshots) {
+    this.registry.config().onMeterRemoved(snapshots::remove);
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * Remove {@link ReleasableMeter releasable} meters whose observed object has been
+   * garbage collected from the registry, once their values have not changed for the
+   * specified grace period. Requires {@link #setMeterSnapshots(MeterSnapshots) meter
+   * snapshots}. The number of removed meters is available as the
+   * {@code wavefront.metrics.released.removed} metric.
+   * @param gracePeriod the time during which the last values of a released meter are
+   * still published
+   */
+  void setReleasedMeterGracePeriod(Duration gracePeriod) {
+    if (this.snapshots == null) {
+      throw new IllegalStateException("Meter snapshots are required to remove released meters");
+    }
+    if (this.releasedMeterGracePeriodMillis == 0) {
+      FunctionCounter.builder("wavefront.metrics.released.removed", this.releasedMeterRemovals, AtomicLong::get)
+          .description("Number of meters removed as the object they observed was garbage collected")
+          .register(this.registry);
+    }
+    this.releasedMeterGracePeriodMillis = gracePeriod.toMillis();
+  }
+
+  /**
+   * Return the number of released meters that have been removed from the registry.
+   * @return the number of removed meters
+   */
+  long getReleasedMeterRemovalCount() {
+    return this.releasedMeterRemovals.get();
+  }
+
+  /**
+   * Publish the meters of the registry.
+   */
+  synchronized void publish() {
+    if (this.registry.isClosed()) {
+      return;
+    }
+    List<Meter> meters = this.registry.getMeters();
+    long wallTime = this.registry.config().clock().wallTime();
+    if (this.pool == null) {
+      send(encode(meters, wallTime));
+      return;
+    }
+    int chunkSize = Math.max(MIN_CHUNK_SIZE,
+        (meters.size() + this.parallelism * CHUNKS_PER_THREAD - 1) / (this.parallelism * CHUNKS_PER_THREAD));
+    List<Future<Chunk>> chunks = new ArrayList<>();
+    for (int start = 0; start < meters.size(); start += chunkSize) {
+      List<Meter> meterChunk = meters.subList(start, Math.min(start + chunkSize, meters.size()));
+      chunks.add(this.pool.submit(() -> encode(meterChunk, wallTime)));
+    }
+    for (int i = 0; i < chunks.size(); i++) {
+      try {
+        send(chunks.get(i).get());
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        chunks.subList(i, chunks.size()).forEach((remaining) -> remaining.cancel(true));
+        return;
+      }
+      catch (ExecutionException ex) {
+        logger.warn("Failed to publish metrics to Wavefront", ex.getCause());
+      }
+    }
+  }
+
+  private Chunk encode(List<Meter> meters, long wallTime) {
+    Chunk chunk = new Chunk(meters.size(), this.registry.config().namingConvention(), wallTime);
+    MeterSnapshots snapshots = this.snapshots;
+    long gracePeriodMillis = this.releasedMeterGracePeriodMillis;
+    for (Meter meter : meters) {
+      chunk.mark();
+      try {
+        if (snapshots != null) {
+          boolean publish = snapshots.shouldPublish(meter, wallTime);
+          if (isRemovable(meter, gracePeriodMillis) && snapshots.isIdle(meter, wallTime, gracePeriodMillis)) {
+            this.registry.remove(meter);
+            this.releasedMeterRemovals.incrementAndGet();
+            continue;
+          }
+          if (!publish) {
+            continue;
+          }
+        }
+        chunk.write(meter);
+      }
+      catch (RuntimeException ex) {
+        chunk.reset();
+        logger.warn("Failed to publish meter '" + meter.getId().getName() + "' to Wavefront", ex);
+      }
+    }
+    return chunk;
+  }
+
+  private boolean isRemovable(Meter meter, long gracePeriodMillis) {
+    return gracePeriodMillis > 0 && meter instanceof ReleasableMeter releasable && releasable.isReleased();
+  }
+
+  private void send(Chunk chunk) {
+    int failures = chunk.send();
+    if (failures > 0) {
+      logger.warn(String.format("Failed to report %d metrics to Wavefront", failures));
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this.pool != null) {
+      this.pool.shutdownNow();
+    }
+  }
+
+  private static ByteBuffer grow(ByteBuffer buffer) {
+    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+    return larger.put(buffer.flip());
+  }
+
+  /**
+   * The meters of a chunk, encoded in the Wavefront line protocol.
+   */
+  private final class Chunk {
+
+    private final NamingConvention namingConvention;
+
+    private final long wallTime;
+
+    private ByteBuffer metrics;
+
+    private ByteBuffer histograms;
+
+    private final List<DistributionItem> distributions;
+
+    private int metricsMark;
+
+    private int histogramsMark;
+
+    private int distributionsMark;
+
+    Chunk(int size, NamingConvention namingConvention, long wallTime) {
+      this.namingConvention = namingConvention;
+      this.wallTime = wallTime;
+      this.metrics = ByteBuffer.allocate(Math.max(size, 1) * BYTES_PER_METER);
+      this.histograms = ByteBuffer.allocate(BYTES_PER_METER * 8);
+      this.distributions = (MeterPublisher.this.sender instanceof EncodedWavefrontSender) ? null
+          : new ArrayList<>();
+    }
+
+    void mark() {
+      this.metricsMark = this.metrics.position();
+      this.histogramsMark = this.histograms.position();
+      this.distributionsMark = (this.distributions != null) ? this.distributions.size() : 0;
+    }
+
+    void reset() {
+      this.metrics.position(this.metricsMark);
+      this.histograms.position(this.histogramsMark);
+      if (this.distributions != null) {
+        this.distributions.subList(this.distributionsMark, this.distributions.size()).clear();
+      }
+    }
+
+    void write(Meter meter) {
+      TimeUnit baseTimeUnit = MeterPublisher.this.baseTimeUnit;
+      Meter.Id id = meter.getId();
+      if (meter instanceof Timer timer) {
+        if (meter instanceof WavefrontHistogramMeter histogramMeter && histogramMeter.isPublishingHistogram()) {
+          writeDistributions(id, histogramMeter.flushDistributions());
+          return;
+        }
+        Map<String, String> tags = getTags(id);
+        writeMetric(id, "sum", timer.totalTime(baseTimeUnit), tags);
+        writeMetric(id, "count", timer.count(), tags);
+        writeMetric(id, "avg", timer.mean(baseTimeUnit), tags);
+        writeMetric(id, "max", timer.max(baseTimeUnit), tags);
+      }
+      else if (meter instanceof DistributionSummary summary) {
+        if (meter instanceof WavefrontHistogramMeter histogramMeter && histogramMeter.isPublishingHistogram()) {
+          writeDistributions(id, histogramMeter.flushDistributions());
+          return;
+        }
+        Map<String, String> tags = getTags(id);
+        writeMetric(id, "sum", summary.totalAmount(), tags);
+        writeMetric(id, "count", summary.count(), tags);
+        writeMetric(id, "avg", summary.mean(), tags);
+        writeMetric(id, "max", summary.max(), tags);
+      }
+      else if (meter instanceof LongTaskTimer longTaskTimer) {
+        if (meter instanceof WavefrontHistogramMeter histogramMeter && histogramMeter.isPublishingHistogram()) {
+          writeDistributions(id, histogramMeter.flushDistributions());
+          return;
+        }
+        Map<String, String> tags = getTags(id);
+        writeMetric(id, "avg", longTaskTimer.mean(baseTimeUnit), tags);
+        writeMetric(id, "max", longTaskTimer.max(baseTimeUnit), tags);
+        writeMetric(id, "duration", longTaskTimer.duration(baseTimeUnit), tags);
+        writeMetric(id, "active", longTaskTimer.activeTasks(), tags);
+      }
+      else if (meter instanceof FunctionTimer functionTimer) {
+        Map<String, String> tags = getTags(id);
+        writeMetric(id, "count", functionTimer.count(), tags);
+        writeMetric(id, "avg", functionTimer.mean(baseTimeUnit), tags);
+        writeMetric(id, "sum", functionTimer.totalTime(baseTimeUnit), tags);
+      }
+      else {
+        for (Measurement measurement : meter.measure()) {
+          Meter.Id measurementId = id.withTag(measurement.getStatistic());
+          writeMetric(measurementId, null, measurement.getValue(), getTags(measurementId));
+        }
+      }
+    }
+
+    private void writeMetric(Meter.Id id, String suffix, double value, Map<String, String> tags) {
+      if (!Double.isFinite(value)) {
+        return;
+      }
+      String name = (suffix != null)
+          ? this.namingConvention.name(id.getName() + "." + suffix, id.getType(), id.getBaseUnit())
+          : id.getConventionName(this.namingConvention);
+      WavefrontLineEncoder encoder = MeterPublisher.this.encoder;
+      while (!encoder.encodeMetric(this.metrics, name, value, this.wallTime, MeterPublisher.this.source, tags)) {
+        this.metrics = grow(this.metrics);
+      }
+    }
+
+    private void writeDistributions(Meter.Id id, List<WavefrontHistogramImpl.Distribution> distributions) {
+      if (distributions.isEmpty()) {
+        return;
+      }
+      String name = id.getConventionName(this.namingConvention);
+      Map<String, String> tags = getTags(id);
+      WavefrontLineEncoder encoder = MeterPublisher.this.encoder;
+      for (WavefrontHistogramImpl.Distribution distribution : distributions) {
+        if (this.distributions != null) {
+          this.distributions.add(new DistributionItem(name, distribution, tags));
+          continue;
+        }
+        while (!encoder.encodeDistribution(this.histograms, name, distribution.centroids,
+            MeterPublisher.this.histogramGranularities, distribution.timestamp, MeterPublisher.this.source,
+            tags)) {
+          this.histograms = grow(this.histograms);
+        }
+      }
+    }
+
+    private Map<String, String> getTags(Meter.Id id) {
+      List<Tag> tags = id.getConventionTags(this.namingConvention);
+      Map<String, String> result = new HashMap<>(tags.size() * 2);
+      for (Tag tag : tags) {
+        result.put(tag.getKey(), tag.getValue());
+      }
+      return result;
+    }
+
+    /**
+     * Hand the content of this chunk to the sender.
+     * @return the number of items that could not be sent
+     */
+    int send() {
+      WavefrontSender sender = MeterPublisher.this.sender;
+      this.metrics.flip();
+      this.histograms.flip();
+      if (sender instanceof EncodedWavefrontSender encodedSender) {
+        return sendEncoded(encodedSender, ReportFormat.METRIC, this.metrics)
+            + sendEncoded(encodedSender, ReportFormat.HISTOGRAM, this.histograms);
+      }
+      int failures = 0;
+      byte[] content = this.metrics.array();
+      int start = 0;
+      for (int i = 0; i < this.metrics.limit(); i++) {
+        if (content[i] == '\n') {
+          try {
+            sender.sendFormattedMetric(new String(content, start, i + 1 - start, StandardCharsets.UTF_8));
+          }
+          catch (IOException ex) {
+            failures++;
+          }
+          start = i + 1;
+        }
+      }
+      for (DistributionItem item : this.distributions) {
+        try {
+          sender.sendDistribution(item.name, item.distribution.centroids,
+              MeterPublisher.this.histogramGranularities, item.distribution.timestamp, MeterPublisher.this.source,
+              item.tags);
+        }
+        catch (IOException ex) {
+          failures++;
+        }
+      }
+      return failures;
+    }
+
+    private int sendEncoded(EncodedWavefrontSender sender, ReportFormat format, ByteBuffer lines) {
+      if (!lines.hasRemaining()) {
+        return 0;
+      }
+      try {
+        sender.sendEncoded(format, lines);
+        return 0;
+      }
+      catch (IOException ex) {
+        int lineCount = 0;
+        for (int i = lines.position(); i < lines.limit(); i++) {
+          if (lines.get(i) == '\n') {
+            lineCount++;
+          }
+        }
+        return lineCount;
+      }
+    }
+
+  }
+
+  /**
+   * A distribution to hand to a sender that does not accept encoded data.
+   */
+  private static final class DistributionItem {
+
+    private final String name;
+
+    private final WavefrontHistogramImpl.Distribution distribution;
+
+    private final Map<String, String> tags;
+
+    DistributionItem(String name, WavefrontHistogramImpl.Distribution distribution, Map<String, String> tags) {
+      this.name = name;
+      this.distribution = distribution;
+      this.tags = tags;
+    }
+
+  }
+
+}
@@ -0,0 +1,51 @@
+package com.wavefront.spring.metrics;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.AutoConfigurationMetadata;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+/**
+ * An {@link AutoConfigurationImportFilter} that skips
+ * {@link WavefrontMetricsExportAutoConfiguration} when meters are published by a
+ * {@link PublishingWavefrontMeterRegistry}, as the registry auto-configured by Spring Boot
+ * would otherwise publish the same meters.
+ *
+ * @author Stephane Nicoll
+ * @see WavefrontMetricsAutoConfiguration
+ */
+final class MeterPublisherAutoConfigurationImportFilter implements AutoConfigurationImportFilter, EnvironmentAware {
+
+  private static final List<String> ENABLED_PROPERTIES = List.of("wavefront.metrics.parallel-publish.enabled",
+      "wavefront.metrics.change-only.enabled", "wavefront.metrics.released-meter-removal.enabled",
+      "wavefront.metrics.primitive-histograms.enabled");
+
+  private static final String METRICS_EXPORT_AUTO_CONFIGURATION = WavefrontMetricsExportAutoConfiguration.class
+      .getName();
+
+  private Environment environment;
+
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  @Override
+  public boolean[] match(String[] autoConfigurationClasses, AutoConfigurationMetadata autoConfigurationMetadata) {
+    boolean publishing = isPublishing();
+    boolean[] match = new boolean[autoConfigurationClasses.length];
+    for (int i = 0; i < autoConfigurationClasses.length; i++) {
+      match[i] = !(publishing && METRICS_EXPORT_AUTO_CONFIGURATION.equals(autoConfigurationClasses[i]));
+    }
+    return match;
+  }
+
+  private boolean isPublishing() {
+    return ENABLED_PROPERTIES.stream()
+        .anyMatch((property) -> this.environment.getProperty(property, Boolean.class, false));
+  }
+
+}
@@ -0,0 +1,215 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+
+/**
+ * Compact snapshot of the values that were last published for each meter, used to skip
+ * meters whose values have not changed since. A meter is published nonetheless once the
+ * heartbeat interval has elapsed so that it does not appear to be gone. The time at which
+ * the values of a meter last changed is tracked as well, so that
+ * {@link #isIdle(Meter, long, long) idle} meters can be identified.
+ * <p>
+ * The values of a meter are reduced to a single fingerprint. Snapshots are held in
+ * primitive arrays, split in stripes to limit contention when meters are published by
+ * several threads.
+ *
+ * @author Stephane Nicoll
+ */
+final class MeterSnapshots {
+
+  private static final int STRIPES = 16;
+
+  private final long heartbeatMillis;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /**
+   * Create an instance.
+   * @param heartbeatInterval the maximum time between two publications of a meter, or
+   * {@link Duration#ZERO} to publish meters even if their values have not changed
+   */
+  MeterSnapshots(Duration heartbeatInterval) {
+    this.heartbeatMillis = heartbeatInterval.toMillis();
+    for (int i = 0; i < STRIPES; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Return whether the specified meter should be published, that is if its values have
+   * changed since it was last published or if the heartbeat interval has elapsed. If it
+   * should, its current values are recorded as the last published ones.
+   * @param meter the meter about to be published
+   * @param wallTime the current wall time, in milliseconds
+   * @return {@code true} if the meter should be published
+   */
+  boolean shouldPublish(Meter meter, long wallTime) {
+    int hash = hash(meter);
+    return this.stripes[hash & (STRIPES - 1)].update(meter, hash, fingerprint(meter), wallTime,
+        this.heartbeatMillis);
+  }
+
+  /**
+   * Return whether the values of the specified meter have not changed for the specified
+   * time. Only the publications of the meter are taken into account.
+   * @param meter the meter to check
+   * @param wallTime the current wall time, in milliseconds
+   * @param idleMillis the time after which a meter whose values have not changed is
+   * idle, in milliseconds
+   * @return {@code true} if the meter is idle
+   * @see #shouldPublish(Meter, long)
+   */
+  boolean isIdle(Meter meter, long wallTime, long idleMillis) {
+    int hash = hash(meter);
+    return this.stripes[hash & (STRIPES - 1)].isIdle(meter, hash, wallTime, idleMillis);
+  }
+
+  /**
+   * Remove the snapshot of the specified meter.
+   * @param meter the meter that has been removed
+   */
+  void remove(Meter meter) {
+    int hash = hash(meter);
+    this.stripes[hash & (STRIPES - 1)].remove(meter, hash);
+  }
+
+  /**
+   * Return the number of meters that have a snapshot.
+   * @return the number of snapshots
+   */
+  int size() {
+    int size = 0;
+    for (Stripe stripe : this.stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  private static int hash(Meter meter) {
+    int hash = System.identityHashCode(meter);
+    return hash ^ (hash >>> 16);
+  }
+
+  static long fingerprint(Meter meter) {
+    long fingerprint = 0;
+    int count = 0;
+    for (Measurement measurement : meter.measure()) {
+      long bits = Double.doubleToLongBits(measurement.getValue());
+      fingerprint = (count == 0) ? bits : (Long.rotateLeft(fingerprint, 31) ^ bits) * 0x9E3779B97F4A7C15L;
+      count++;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Open-addressing table of the snapshots of a subset of the meters.
+   */
+  private static final class Stripe {
+
+    private Meter[] meters = new Meter[16];
+
+    private long[] fingerprints = new long[16];
+
+    private long[] publishedAt = new long[16];
+
+    private long[] changedAt = new long[16];
+
+    private int size;
+
+    synchronized boolean update(Meter meter, int hash, long fingerprint, long wallTime, long heartbeatMillis) {
+      int index = indexOf(meter, hash);
+      if (this.meters[index] == null) {
+        this.meters[index] = meter;
+        this.fingerprints[index] = fingerprint;
+        this.publishedAt[index] = wallTime;
+        this.changedAt[index] = wallTime;
+        if (++this.size > this.meters.length * 3 / 4) {
+          resize();
+        }
+        return true;
+      }
+      if (this.fingerprints[index] == fingerprint) {
+        if (wallTime - this.publishedAt[index] < heartbeatMillis) {
+          return false;
+        }
+      }
+      else {
+        this.fingerprints[index] = fingerprint;
+        this.changedAt[index] = wallTime;
+      }
+      this.publishedAt[index] = wallTime;
+      return true;
+    }
+
+    synchronized boolean isIdle(Meter meter, int hash, long wallTime, long idleMillis) {
+      int index = indexOf(meter, hash);
+      return this.meters[index] != null && wallTime - this.changedAt[index] >= idleMillis;
+    }
+
+    synchronized void remove(Meter meter, int hash) {
+      int index = indexOf(meter, hash);
+      if (this.meters[index] == null) {
+        return;
+      }
+      this.meters[index] = null;
+      this.size--;
+      int mask = this.meters.length - 1;
+      int next = (index + 1) & mask;
+      while (this.meters[next] != null) {
+        Meter candidate = this.meters[next];
+        int slot = slot(hash(candidate), mask);
+        if (((next - slot) & mask) >= ((next - index) & mask)) {
+          this.meters[index] = candidate;
+          this.fingerprints[index] = this.fingerprints[next];
+          this.publishedAt[index] = this.publishedAt[next];
+          this.changedAt[index] = this.changedAt[next];
+          this.meters[next] = null;
+          index = next;
+        }
+        next = (next + 1) & mask;
+      }
+    }
+
+    synchronized int size() {
+      return this.size;
+    }
+
+    private int indexOf(Meter meter, int hash) {
+      int mask = this.meters.length - 1;
+      int index = slot(hash, mask);
+      while (this.meters[index] != null && this.meters[index] != meter) {
+        index = (index + 1) & mask;
+      }
+      return index;
+    }
+
+    private static int slot(int hash, int mask) {
+      return (hash >>> 4) & mask;
+    }
+
+    private void resize() {
+      Meter[] meters = this.meters;
+      long[] fingerprints = this.fingerprints;
+      long[] publishedAt = this.publishedAt;
+      long[] changedAt = this.changedAt;
+      this.meters = new Meter[meters.length * 2];
+      this.fingerprints = new long[meters.length * 2];
+      this.publishedAt = new long[meters.length * 2];
+      this.changedAt = new long[meters.length * 2];
+      for (int i = 0; i < meters.length; i++) {
+        if (meters[i] != null) {
+          int index = indexOf(meters[i], hash(meters[i]));
+          this.meters[index] = meters[i];
+          this.fingerprints[index] = fingerprints[i];
+          this.publishedAt[index] = publishedAt[i];
+          this.changedAt[index] = changedAt[i];
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,449 @@
+package com.wavefront.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl.Distribution;
+
+/**
+ * A {@link WavefrontHistogram} that keeps its centroids in primitive arrays rather than
+ * in a tree of objects per thread and per minute as {@link WavefrontHistogramImpl} does.
+ * Values are accumulated in minute bins and {@link #flushDistributions() flushed} once
+ * their minute has elapsed, as the Wavefront histogram does, with the same accuracy.
+ * <p>
+ * Values are recorded in striped bins, each owning a buffer of values that is sorted and
+ * merged into its centroids once full. When a new minute starts, the bin of the previous
+ * minute is merged into the completed bins of the histogram. The arrays of a bin are
+ * allocated on first use and reused afterwards, so that neither recording values nor
+ * merging bins allocates.
+ *
+ * @author Stephane Nicoll
+ */
+final class PrimitiveHistogram implements WavefrontHistogram {
+
+  static final int COMPRESSION = 32;
+
+  static final int MAX_CENTROIDS = 2 * COMPRESSION;
+
+  private static final int BUFFER_SIZE = 5 * COMPRESSION;
+
+  private static final int MAX_BINS = 10;
+
+  private static final int MAX_STRIPES = 8;
+
+  private static final long MINUTE_MILLIS = 60_000;
+
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private final LongSupplier clockMillis;
+
+  private final Stripe[] stripes;
+
+  private final Bin[] completed = new Bin[MAX_BINS];
+
+  /**
+   * Create an instance.
+   * @param clockMillis the supplier of the current wall time, in milliseconds
+   */
+  PrimitiveHistogram(LongSupplier clockMillis) {
+    this.clockMillis = clockMillis;
+    int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    this.stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public void update(double value) {
+    long minute = currentMinuteMillis();
+    Stripe stripe = stripe();
+    synchronized (stripe) {
+      rotate(stripe, minute);
+      stripe.add(value);
+    }
+  }
+
+  /**
+   * Record the specified centroids in the bin of the current minute.
+   * @param means the means of the centroids
+   * @param counts the weights of the centroids
+   */
+  void bulkUpdate(List<Double> means, List<Integer> counts) {
+    if (means == null || counts == null) {
+      return;
+    }
+    long minute = currentMinuteMillis();
+    Stripe stripe = stripe();
+    synchronized (stripe) {
+      rotate(stripe, minute);
+      for (int i = 0; i < Math.min(means.size(), counts.size()); i++) {
+        stripe.add(means.get(i), counts.get(i));
+      }
+    }
+  }
+
+  private long currentMinuteMillis() {
+    return (this.clockMillis.getAsLong() / MINUTE_MILLIS) * MINUTE_MILLIS;
+  }
+
+  private Stripe stripe() {
+    long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return this.stripes[(int) (hash >>> 32) & (this.stripes.length - 1)];
+  }
+
+  private void rotate(Stripe stripe, long minute) {
+    if (stripe.minute != minute) {
+      complete(stripe);
+      stripe.reset(minute);
+    }
+  }
+
+  private void complete(Stripe stripe) {
+    if (stripe.minute == EMPTY) {
+      return;
+    }
+    stripe.flushBuffer();
+    if (stripe.size > 0) {
+      synchronized (this.completed) {
+        completedBin(stripe.minute).merge(stripe);
+      }
+    }
+  }
+
+  private Bin completedBin(long minute) {
+    int candidate = -1;
+    for (int i = 0; i < MAX_BINS; i++) {
+      Bin bin = this.completed[i];
+      if (bin == null) {
+        this.completed[i] = new Bin(2 * MAX_CENTROIDS);
+        this.completed[i].reset(minute);
+        return this.completed[i];
+      }
+      if (bin.minute == minute) {
+        return bin;
+      }
+      if (candidate == -1 || bin.minute < this.completed[candidate].minute) {
+        candidate = i;
+      }
+    }
+    // Drop the oldest minute, as the Wavefront histogram does
+    Bin bin = this.completed[candidate];
+    bin.reset(minute);
+    return bin;
+  }
+
+  @Override
+  public List<Distribution> flushDistributions() {
+    long minute = currentMinuteMillis();
+    for (Stripe stripe : this.stripes) {
+      synchronized (stripe) {
+        if (stripe.minute != EMPTY && stripe.minute < minute) {
+          complete(stripe);
+          stripe.reset(EMPTY);
+        }
+      }
+    }
+    List<Distribution> distributions = new ArrayList<>();
+    synchronized (this.completed) {
+      for (Bin bin : this.completed) {
+        if (bin != null && bin.minute != EMPTY && bin.minute < minute) {
+          if (bin.size > 0) {
+            distributions.add(bin.toDistribution());
+          }
+          bin.reset(EMPTY);
+        }
+      }
+    }
+    distributions.sort((left, right) -> Long.compare(left.timestamp, right.timestamp));
+    return distributions;
+  }
+
+  /**
+   * Return the number of values that have not been flushed yet.
+   * @return the number of values
+   */
+  long getCount() {
+    return (long) summarize().count;
+  }
+
+  /**
+   * Return the maximum of the values that have not been flushed yet.
+   * @return the maximum value, or {@link Double#NaN} if there is none
+   */
+  double getMax() {
+    Summary summary = summarize();
+    return (summary.count > 0) ? summary.max : Double.NaN;
+  }
+
+  /**
+   * Return the minimum of the values that have not been flushed yet.
+   * @return the minimum value, or {@link Double#NaN} if there is none
+   */
+  double getMin() {
+    Summary summary = summarize();
+    return (summary.count > 0) ? summary.min : Double.NaN;
+  }
+
+  /**
+   * Return the mean of the values that have not been flushed yet.
+   * @return the mean value, or {@link Double#NaN} if there is none
+   */
+  double getMean() {
+    Summary summary = summarize();
+    return (summary.count > 0) ? summary.sum / summary.count : Double.NaN;
+  }
+
+  /**
+   * Return the sum of the values that have not been flushed yet.
+   * @return the sum of the values
+   */
+  double getSum() {
+    return summarize().sum;
+  }
+
+  /**
+   * Return the standard deviation of the values that have not been flushed yet.
+   * @return the standard deviation of the values
+   */
+  double stdDev() {
+    Summary summary = summarize();
+    if (summary.count == 0) {
+      return 0;
+    }
+    double mean = summary.sum / summary.count;
+    return Math.sqrt(Math.max(0, summary.sumOfSquares / summary.count - mean * mean));
+  }
+
+  private Summary summarize() {
+    Summary summary = new Summary();
+    for (Stripe stripe : this.stripes) {
+      synchronized (stripe) {
+        summary.add(stripe);
+        for (int i = 0; i < stripe.bufferSize; i++) {
+          summary.add(stripe.buffer[i], 1);
+        }
+      }
+    }
+    synchronized (this.completed) {
+      for (Bin bin : this.completed) {
+        if (bin != null) {
+          summary.add(bin);
+        }
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * The centroids of the values recorded during a minute, sorted by mean.
+   */
+  private static class Bin {
+
+    private final int capacity;
+
+    long minute = EMPTY;
+
+    double[] means;
+
+    int[] weights;
+
+    int size;
+
+    double min;
+
+    double max;
+
+    Bin(int capacity) {
+      this.capacity = capacity;
+    }
+
+    void reset(long minute) {
+      this.minute = minute;
+      this.size = 0;
+      this.min = Double.POSITIVE_INFINITY;
+      this.max = Double.NEGATIVE_INFINITY;
+      if (minute != EMPTY && this.means == null) {
+        this.means = new double[this.capacity];
+        this.weights = new int[this.capacity];
+      }
+    }
+
+    void merge(Bin other) {
+      merge(other.means, other.weights, other.size);
+      this.min = Math.min(this.min, other.min);
+      this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * Merge the specified centroids, sorted by mean, in place and compress the result.
+     * @param means the means of the centroids to merge
+     * @param weights the weights of the centroids to merge, or {@code null} if they all
+     * have a weight of one
+     * @param count the number of centroids to merge
+     */
+    void merge(double[] means, int[] weights, int count) {
+      int i = this.size - 1;
+      int j = count - 1;
+      for (int k = this.size + count - 1; j >= 0; k--) {
+        if (i >= 0 && this.means[i] > means[j]) {
+          this.means[k] = this.means[i];
+          this.weights[k] = this.weights[i--];
+        }
+        else {
+          this.means[k] = means[j];
+          this.weights[k] = (weights != null) ? weights[j] : 1;
+          j--;
+        }
+      }
+      this.size += count;
+      compress();
+    }
+
+    /**
+     * Merge adjacent centroids as long as their combined span on the arcsine scale of a
+     * t-digest with the compression of the histogram does not exceed one. This bounds the
+     * number of centroids to twice the compression.
+     */
+    private void compress() {
+      if (this.size == 0) {
+        return;
+      }
+      long total = 0;
+      for (int i = 0; i < this.size; i++) {
+        total += this.weights[i];
+      }
+      long before = 0;
+      double limit = weightLimit(before, total);
+      double mean = this.means[0];
+      long weight = this.weights[0];
+      int compressed = 0;
+      for (int i = 1; i < this.size; i++) {
+        long proposed = weight + this.weights[i];
+        if (before + proposed <= limit) {
+          mean += (this.means[i] - mean) * this.weights[i] / proposed;
+          weight = proposed;
+        }
+        else {
+          this.means[compressed] = mean;
+          this.weights[compressed++] = (int) weight;
+          before += weight;
+          limit = weightLimit(before, total);
+          mean = this.means[i];
+          weight = this.weights[i];
+        }
+      }
+      this.means[compressed] = mean;
+      this.weights[compressed++] = (int) weight;
+      this.size = compressed;
+    }
+
+    private static double weightLimit(long before, long total) {
+      double k = COMPRESSION / Math.PI * Math.asin(2.0 * before / total - 1) + 1;
+      double q = (k >= COMPRESSION / 2.0) ? 1 : (Math.sin(k * Math.PI / COMPRESSION) + 1) / 2;
+      return q * total;
+    }
+
+    Distribution toDistribution() {
+      List<Pair<Double, Integer>> centroids = new ArrayList<>(this.size);
+      for (int i = 0; i < this.size; i++) {
+        centroids.add(new Pair<>(this.means[i], this.weights[i]));
+      }
+      return new Distribution(this.minute, centroids);
+    }
+
+  }
+
+  /**
+   * The {@link Bin} of the current minute of a subset of the recording threads, with a
+   * buffer of values that have not been merged yet.
+   */
+  private static final class Stripe extends Bin {
+
+    private final double[] buffer = new double[BUFFER_SIZE];
+
+    private final int[] weight = new int[1];
+
+    private int bufferSize;
+
+    Stripe() {
+      super(MAX_CENTROIDS + BUFFER_SIZE);
+    }
+
+    @Override
+    void reset(long minute) {
+      super.reset(minute);
+      this.bufferSize = 0;
+    }
+
+    void add(double value) {
+      this.buffer[this.bufferSize++] = value;
+      this.min = Math.min(this.min, value);
+      this.max = Math.max(this.max, value);
+      if (this.bufferSize == BUFFER_SIZE) {
+        flushBuffer();
+      }
+    }
+
+    void add(double mean, int weight) {
+      if (weight <= 0) {
+        return;
+      }
+      flushBuffer();
+      this.buffer[0] = mean;
+      this.weight[0] = weight;
+      merge(this.buffer, this.weight, 1);
+      this.min = Math.min(this.min, mean);
+      this.max = Math.max(this.max, mean);
+    }
+
+    void flushBuffer() {
+      if (this.bufferSize > 0) {
+        Arrays.sort(this.buffer, 0, this.bufferSize);
+        merge(this.buffer, null, this.bufferSize);
+        this.bufferSize = 0;
+      }
+    }
+
+  }
+
+  /**
+   * Summary statistics of the centroids that have not been flushed yet.
+   */
+  private static final class Summary {
+
+    double count;
+
+    double sum;
+
+    double sumOfSquares;
+
+    double min = Double.POSITIVE_INFINITY;
+
+    double max = Double.NEGATIVE_INFINITY;
+
+    void add(Bin bin) {
+      for (int i = 0; i < bin.size; i++) {
+        add(bin.means[i], bin.weights[i]);
+      }
+      if (bin.size > 0) {
+        this.min = Math.min(this.min, bin.min);
+        this.max = Math.max(this.max, bin.max);
+      }
+    }
+
+    void add(double mean, int weight) {
+      this.count += weight;
+      this.sum += mean * weight;
+      this.sumOfSquares += mean * mean * weight;
+      this.min = Math.min(this.min, mean);
+      this.max = Math.max(this.max, mean);
+    }
+
+  }
+
+}
@@ -0,0 +1,185 @@
+package com.wavefront.spring.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.cumulative.CumulativeCounter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.HistogramGauges;
+import io.micrometer.core.instrument.distribution.pause.PauseDetector;
+import io.micrometer.core.instrument.internal.DefaultMeter;
+import io.micrometer.core.instrument.push.PushMeterRegistry;
+import io.micrometer.core.instrument.util.NamedThreadFactory;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontNamingConvention;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link PushMeterRegistry} that creates meters the same way
+ * {@link io.micrometer.wavefront.WavefrontMeterRegistry} does, and whose meters are
+ * published by a {@link MeterPublisher}. Gauges and function meters are
+ * {@link ReleasableMeter releasable} so that the publisher can tell when the object they
+ * observe is gone.
+ * <p>
+ * The registry uses the {@link WavefrontSender} it is given, which Micrometer's registry
+ * only allows through its {@link io.micrometer.wavefront.WavefrontMeterRegistry.Builder
+ * builder}, hence a registry of its own.
+ *
+ * @author Stephane Nicoll
+ */
+class PublishingWavefrontMeterRegistry extends PushMeterRegistry {
+
+  private static final Log logger = LogFactory.getLog(PublishingWavefrontMeterRegistry.class);
+
+  private final WavefrontConfig config;
+
+  private final WavefrontSender sender;
+
+  private final MeterPublisher publisher;
+
+  private volatile boolean primitiveHistograms;
+
+  /**
+   * Create an instance.
+   * @param config the configuration of the registry
+   * @param clock the clock to use
+   * @param sender the sender to use, closed with the registry
+   * @param parallelism the number of threads to use to encode meters
+   */
+  PublishingWavefrontMeterRegistry(WavefrontConfig config, Clock clock, WavefrontSender sender, int parallelism) {
+    super(config, clock);
+    this.config = config;
+    this.sender = sender;
+    this.publisher = new MeterPublisher(this, config, getBaseTimeUnit(), sender, parallelism);
+    config().namingConvention(new WavefrontNamingConvention(config.globalPrefix()));
+    start(new NamedThreadFactory("wavefront-metrics-publisher"));
+  }
+
+  MeterPublisher getPublisher() {
+    return this.publisher;
+  }
+
+  /**
+   * Keep the Wavefront histograms of the meters that are created from now on in
+   * {@link PrimitiveHistogram primitive histograms}.
+   * @param primitiveHistograms whether to use primitive histograms
+   */
+  void setPrimitiveHistograms(boolean primitiveHistograms) {
+    this.primitiveHistograms = primitiveHistograms;
+  }
+
+  @Override
+  protected void publish() {
+    this.publisher.publish();
+  }
+
+  @Override
+  protected Counter newCounter(Meter.Id id) {
+    return new CumulativeCounter(id);
+  }
+
+  @Override
+  protected Meter newMeter(Meter.Id id, Meter.Type type, Iterable<Measurement> measurements) {
+    return new DefaultMeter(id, type, measurements);
+  }
+
+  @Override
+  protected <T> Gauge newGauge(Meter.Id id, T obj, ToDoubleFunction<T> valueFunction) {
+    return new ReleasableGauge<>(id, obj, valueFunction);
+  }
+
+  @Override
+  protected <T> FunctionCounter newFunctionCounter(Meter.Id id, T obj, ToDoubleFunction<T> countFunction) {
+    return new ReleasableFunctionCounter<>(id, obj, countFunction);
+  }
+
+  @Override
+  protected <T> FunctionTimer newFunctionTimer(Meter.Id id, T obj, ToLongFunction<T> countFunction,
+      ToDoubleFunction<T> totalTimeFunction, TimeUnit totalTimeFunctionUnit) {
+    return new ReleasableFunctionTimer<>(id, obj, countFunction, totalTimeFunction, totalTimeFunctionUnit,
+        getBaseTimeUnit());
+  }
+
+  @Override
+  protected Timer newTimer(Meter.Id id, DistributionStatisticConfig distributionStatisticConfig,
+      PauseDetector pauseDetector) {
+    WavefrontHistogramTimer timer = new WavefrontHistogramTimer(id, this.clock, distributionStatisticConfig,
+        pauseDetector, getBaseTimeUnit(), createHistogram(distributionStatisticConfig));
+    if (!timer.isPublishingHistogram()) {
+      HistogramGauges.registerWithCommonFormat(timer, this);
+    }
+    return timer;
+  }
+
+  @Override
+  protected DistributionSummary newDistributionSummary(Meter.Id id,
+      DistributionStatisticConfig distributionStatisticConfig, double scale) {
+    WavefrontHistogramDistributionSummary summary = new WavefrontHistogramDistributionSummary(id, this.clock,
+        distributionStatisticConfig, scale, createHistogram(distributionStatisticConfig));
+    if (!summary.isPublishingHistogram()) {
+      HistogramGauges.registerWithCommonFormat(summary, this);
+    }
+    return summary;
+  }
+
+  @Override
+  protected LongTaskTimer newLongTaskTimer(Meter.Id id, DistributionStatisticConfig distributionStatisticConfig) {
+    return new WavefrontHistogramLongTaskTimer(id, this.clock, distributionStatisticConfig, getBaseTimeUnit(),
+        createHistogram(distributionStatisticConfig));
+  }
+
+  private WavefrontHistogram createHistogram(DistributionStatisticConfig distributionStatisticConfig) {
+    if (!distributionStatisticConfig.isPublishingHistogram()) {
+      return null;
+    }
+    return (this.primitiveHistograms) ? new PrimitiveHistogram(this.clock::wallTime)
+        : WavefrontHistogram.of(new WavefrontHistogramImpl(this.clock::wallTime));
+  }
+
+  @Override
+  protected TimeUnit getBaseTimeUnit() {
+    return TimeUnit.SECONDS;
+  }
+
+  @Override
+  protected DistributionStatisticConfig defaultHistogramConfig() {
+    return DistributionStatisticConfig.builder().expiry(this.config.step()).build()
+        .merge(DistributionStatisticConfig.DEFAULT);
+  }
+
+  @Override
+  public void close() {
+    try {
+      super.close();
+    }
+    finally {
+      this.publisher.close();
+      closeSender();
+    }
+  }
+
+  private void closeSender() {
+    try {
+      this.sender.close();
+    }
+    catch (IOException ex) {
+      logger.warn("Unable to close Wavefront sender", ex);
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.cumulative.CumulativeFunctionCounter;
+
+/**
+ * A {@link CumulativeFunctionCounter} that can tell once the object it observes has been
+ * garbage collected.
+ *
+ * @param <T> the type of the observed object
+ * @author Stephane Nicoll
+ */
+class ReleasableFunctionCounter<T> extends CumulativeFunctionCounter<T> implements ReleasableMeter {
+
+  private final WeakReference<T> ref;
+
+  ReleasableFunctionCounter(Id id, T obj, ToDoubleFunction<T> countFunction) {
+    super(id, obj, countFunction);
+    this.ref = new WeakReference<>(obj);
+  }
+
+  @Override
+  public boolean isReleased() {
+    return this.ref.get() == null;
+  }
+
+}
@@ -0,0 +1,32 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import io.micrometer.core.instrument.cumulative.CumulativeFunctionTimer;
+
+/**
+ * A {@link CumulativeFunctionTimer} that can tell once the object it observes has been
+ * garbage collected.
+ *
+ * @param <T> the type of the observed object
+ * @author Stephane Nicoll
+ */
+class ReleasableFunctionTimer<T> extends CumulativeFunctionTimer<T> implements ReleasableMeter {
+
+  private final WeakReference<T> ref;
+
+  ReleasableFunctionTimer(Id id, T obj, ToLongFunction<T> countFunction, ToDoubleFunction<T> totalTimeFunction,
+      TimeUnit totalTimeFunctionUnit, TimeUnit baseTimeUnit) {
+    super(id, obj, countFunction, totalTimeFunction, totalTimeFunctionUnit, baseTimeUnit);
+    this.ref = new WeakReference<>(obj);
+  }
+
+  @Override
+  public boolean isReleased() {
+    return this.ref.get() == null;
+  }
+
+}
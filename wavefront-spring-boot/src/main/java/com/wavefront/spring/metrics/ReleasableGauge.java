@@ -0,0 +1,29 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.internal.DefaultGauge;
+
+/**
+ * A {@link DefaultGauge} that can tell once the object it observes has been garbage
+ * collected.
+ *
+ * @param <T> the type of the observed object
+ * @author Stephane Nicoll
+ */
+class ReleasableGauge<T> extends DefaultGauge<T> implements ReleasableMeter {
+
+  private final WeakReference<T> ref;
+
+  ReleasableGauge(Id id, T obj, ToDoubleFunction<T> value) {
+    super(id, obj, value);
+    this.ref = new WeakReference<>(obj);
+  }
+
+  @Override
+  public boolean isReleased() {
+    return this.ref.get() == null;
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.wavefront.spring.metrics;
+
+import io.micrometer.core.instrument.Meter;
+
+/**
+ * A {@link Meter} that observes an object it only references weakly, and can tell once
+ * that object has been garbage collected.
+ *
+ * @author Stephane Nicoll
+ */
+interface ReleasableMeter extends Meter {
+
+  /**
+   * Return whether the object this meter observes has been garbage collected, in which
+   * case its values no longer change and nothing can look it up again.
+   * @return {@code true} if the observed object has been released
+   */
+  boolean isReleased();
+
+}
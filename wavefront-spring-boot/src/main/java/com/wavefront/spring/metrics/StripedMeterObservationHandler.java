@@ -0,0 +1,174 @@
+package com.wavefront.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.observation.Observation;
+
+/**
+ * A {@link DefaultMeterObservationHandler} that records the duration of observations in
+ * {@link StripedTimer striped timers} rather than in the timers of the registry, so that
+ * threads stopping observations concurrently do not contend on shared state.
+ * <p>
+ * Each timer is registered as a {@link FunctionTimer}, publishing the same count, sum and
+ * average as a regular timer, and a {@link TimeGauge} with a {@code .max} suffix for the
+ * maximum duration of the previous step. As the maximum is a gauge rather than a
+ * statistic of the timer, it is published with a {@code statistic} tag, unlike the
+ * maximum of a regular timer. A striped timer has no distribution, so timers that the
+ * specified {@link MeterFilter meter filters} configure with percentiles, a percentile
+ * histogram or service level objectives are regular timers of the registry. The long
+ * task timers and the counters of events are recorded as the default handler does.
+ * <p>
+ * Timers are looked up by the id that the meter filters map them to, so that tags that
+ * the filters remove or cap do not retain an entry per distinct value, and are forgotten
+ * once their meter is removed from the registry.
+ *
+ * @author Stephane Nicoll
+ */
+class StripedMeterObservationHandler extends DefaultMeterObservationHandler {
+
+  private final MeterRegistry registry;
+
+  private final long stepMillis;
+
+  private final List<MeterFilter> meterFilters;
+
+  private final Map<Meter.Id, TimerRegistration> timers = new ConcurrentHashMap<>();
+
+  private final Map<Meter.Id, StripedTimer> registeredTimers = new ConcurrentHashMap<>();
+
+  /**
+   * Create an instance.
+   * @param registry the registry to use
+   * @param stepMillis the step of the registry, in milliseconds
+   * @param meterFilters the meter filters of the registry, in order
+   */
+  StripedMeterObservationHandler(MeterRegistry registry, long stepMillis, List<MeterFilter> meterFilters) {
+    super(registry);
+    this.registry = registry;
+    this.stepMillis = stepMillis;
+    this.meterFilters = meterFilters;
+    registry.config().onMeterRemoved(this::onMeterRemoved);
+  }
+
+  @Override
+  public void onStart(Observation.Context context) {
+    context.put(Start.class, new Start(this.registry.config().clock().monotonicTime()));
+    LongTaskTimer.Sample longTaskSample = LongTaskTimer.builder(context.getName() + ".active")
+        .tags(createTags(context)).register(this.registry).start();
+    context.put(LongTaskTimer.Sample.class, longTaskSample);
+  }
+
+  @Override
+  public void onStop(Observation.Context context) {
+    Start start = context.getRequired(Start.class);
+    long duration = this.registry.config().clock().monotonicTime() - start.nanos();
+    List<Tag> tags = createTags(context);
+    tags.add(Tag.of("error", getErrorValue(context)));
+    getTimer(context.getName(), tags).record(duration);
+    LongTaskTimer.Sample longTaskSample = context.getRequired(LongTaskTimer.Sample.class);
+    longTaskSample.stop();
+  }
+
+  private DurationRecorder getTimer(String name, List<Tag> tags) {
+    Meter.Id id = new Meter.Id(name, Tags.of(tags), null, null, Meter.Type.TIMER);
+    Meter.Id mappedId = map(id);
+    TimerRegistration timer = this.timers.get(mappedId);
+    if (timer == null) {
+      timer = this.timers.computeIfAbsent(mappedId, (key) -> register(id, key));
+    }
+    return timer.recorder();
+  }
+
+  private Meter.Id map(Meter.Id id) {
+    Meter.Id mappedId = id;
+    for (MeterFilter filter : this.meterFilters) {
+      mappedId = filter.map(mappedId);
+    }
+    return mappedId;
+  }
+
+  private TimerRegistration register(Meter.Id id, Meter.Id mappedId) {
+    if (hasDistribution(mappedId)) {
+      Timer timer = Timer.builder(id.getName()).tags(id.getTagsAsIterable()).register(this.registry);
+      return new TimerRegistration(timer.getId(), (nanos) -> timer.record(nanos, TimeUnit.NANOSECONDS));
+    }
+    return registerStriped(id);
+  }
+
+  private boolean hasDistribution(Meter.Id mappedId) {
+    DistributionStatisticConfig config = DistributionStatisticConfig.NONE;
+    for (MeterFilter filter : this.meterFilters) {
+      DistributionStatisticConfig filtered = filter.configure(mappedId, config);
+      if (filtered != null) {
+        config = filtered;
+      }
+    }
+    return config.isPublishingPercentiles() || config.isPublishingHistogram();
+  }
+
+  private TimerRegistration registerStriped(Meter.Id id) {
+    StripedTimer candidate = new StripedTimer(this.registry.config().clock(), this.stepMillis);
+    FunctionTimer timer = FunctionTimer
+        .builder(id.getName(), candidate, StripedTimer::count, (t) -> t.totalTime(TimeUnit.NANOSECONDS),
+            TimeUnit.NANOSECONDS)
+        .tags(id.getTagsAsIterable()).register(this.registry);
+    // Several ids can be mapped to the same meter by a MeterFilter of the registry
+    StripedTimer stripedTimer = this.registeredTimers.computeIfAbsent(timer.getId(), (meterId) -> {
+      TimeGauge.builder(id.getName() + ".max", candidate, TimeUnit.NANOSECONDS, (t) -> t.max(TimeUnit.NANOSECONDS))
+          .tags(id.getTagsAsIterable()).register(this.registry);
+      return candidate;
+    });
+    return new TimerRegistration(timer.getId(), stripedTimer::record);
+  }
+
+  private void onMeterRemoved(Meter meter) {
+    if (meter instanceof FunctionTimer || meter instanceof Timer) {
+      Meter.Id meterId = meter.getId();
+      this.registeredTimers.remove(meterId);
+      this.timers.values().removeIf((timer) -> timer.meterId().equals(meterId));
+    }
+  }
+
+  private static String getErrorValue(Observation.Context context) {
+    Throwable error = context.getError();
+    return (error != null) ? error.getClass().getSimpleName() : "none";
+  }
+
+  private static List<Tag> createTags(Observation.Context context) {
+    List<Tag> tags = new ArrayList<>();
+    for (KeyValue keyValue : context.getLowCardinalityKeyValues()) {
+      tags.add(Tag.of(keyValue.getKey(), keyValue.getValue()));
+    }
+    return tags;
+  }
+
+  private record Start(long nanos) {
+  }
+
+  private record TimerRegistration(Meter.Id meterId, DurationRecorder recorder) {
+  }
+
+  @FunctionalInterface
+  private interface DurationRecorder {
+
+    void record(long nanos);
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.wavefront.spring.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Clock;
+
+/**
+ * Accumulate the duration of events in striped cells, each padded to its own cache line,
+ * so that threads recording concurrently do not contend on shared state. The cells are
+ * only merged when the count, total time and maximum are read, typically when meters
+ * are published.
+ * <p>
+ * The maximum is tracked per step: once a step has elapsed, {@link #max(TimeUnit)}
+ * returns the maximum duration recorded during the previous step.
+ *
+ * @author Stephane Nicoll
+ */
+final class StripedTimer {
+
+  private static final int MAX_STRIPES = 64;
+
+  private static final VarHandle COUNT;
+
+  private static final VarHandle TOTAL;
+
+  private static final VarHandle MAX;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      COUNT = lookup.findVarHandle(CellValues.class, "count", long.class);
+      TOTAL = lookup.findVarHandle(CellValues.class, "totalNanos", long.class);
+      MAX = lookup.findVarHandle(CellValues.class, "maxNanos", long.class);
+    }
+    catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final Clock clock;
+
+  private final long stepMillis;
+
+  private final Cell[] cells;
+
+  /**
+   * Create an instance.
+   * @param clock the clock to use to identify the current step
+   * @param stepMillis the duration of a step, in milliseconds
+   */
+  StripedTimer(Clock clock, long stepMillis) {
+    this.clock = clock;
+    this.stepMillis = stepMillis;
+    int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+    this.cells = new Cell[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.cells[i] = new Cell();
+    }
+  }
+
+  /**
+   * Record the duration of an event.
+   * @param nanos the duration of the event, in nanoseconds
+   */
+  void record(long nanos) {
+    if (nanos < 0) {
+      return;
+    }
+    Cell cell = this.cells[index(Thread.currentThread().getId())];
+    COUNT.getAndAdd(cell, 1L);
+    TOTAL.getAndAdd(cell, nanos);
+    long step = this.clock.wallTime() / this.stepMillis;
+    if (cell.maxStep != step) {
+      cell.rotate(step);
+    }
+    long max = (long) MAX.getVolatile(cell);
+    while (nanos > max && !MAX.compareAndSet(cell, max, nanos)) {
+      max = (long) MAX.getVolatile(cell);
+    }
+  }
+
+  private int index(long threadId) {
+    long hash = threadId * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & (this.cells.length - 1);
+  }
+
+  /**
+   * Return the number of recorded events.
+   * @return the number of events
+   */
+  long count() {
+    long count = 0;
+    for (Cell cell : this.cells) {
+      count += (long) COUNT.getVolatile(cell);
+    }
+    return count;
+  }
+
+  /**
+   * Return the total duration of the recorded events.
+   * @param unit the unit of the result
+   * @return the total duration
+   */
+  double totalTime(TimeUnit unit) {
+    long total = 0;
+    for (Cell cell : this.cells) {
+      total += (long) TOTAL.getVolatile(cell);
+    }
+    return (double) total / unit.toNanos(1);
+  }
+
+  /**
+   * Return the maximum duration of the events recorded during the previous step.
+   * @param unit the unit of the result
+   * @return the maximum duration
+   */
+  double max(TimeUnit unit) {
+    long step = this.clock.wallTime() / this.stepMillis;
+    long max = 0;
+    for (Cell cell : this.cells) {
+      max = Math.max(max, cell.previousMax(step));
+    }
+    return (double) max / unit.toNanos(1);
+  }
+
+  /**
+   * Padding before the values of a cell.
+   */
+  @SuppressWarnings("unused")
+  private static class CellPadding {
+
+    long p01, p02, p03, p04, p05, p06, p07;
+
+  }
+
+  /**
+   * The values of a cell.
+   */
+  private static class CellValues extends CellPadding {
+
+    volatile long count;
+
+    volatile long totalNanos;
+
+    volatile long maxNanos;
+
+    volatile long maxStep;
+
+    long previousMaxNanos;
+
+  }
+
+  /**
+   * A cell, padded so that no two cells share a cache line.
+   */
+  @SuppressWarnings("unused")
+  private static final class Cell extends CellValues {
+
+    long p11, p12, p13, p14, p15, p16, p17;
+
+    synchronized void rotate(long step) {
+      if (this.maxStep != step) {
+        this.previousMaxNanos = (this.maxStep == step - 1) ? this.maxNanos : 0;
+        this.maxNanos = 0;
+        this.maxStep = step;
+      }
+    }
+
+    synchronized long previousMax(long step) {
+      if (this.maxStep == step) {
+        return this.previousMaxNanos;
+      }
+      return (this.maxStep == step - 1) ? this.maxNanos : 0;
+    }
+
+  }
+
+}
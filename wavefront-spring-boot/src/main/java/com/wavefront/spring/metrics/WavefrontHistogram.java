@@ -0,0 +1,52 @@
+package com.wavefront.spring.metrics;
+
+import java.util.List;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl.Distribution;
+
+/**
+ * The storage of the values of a {@link WavefrontHistogramMeter}, accumulated in minute
+ * bins that are published as Wavefront histogram distributions.
+ *
+ * @author Stephane Nicoll
+ * @see PrimitiveHistogram
+ */
+interface WavefrontHistogram {
+
+  /**
+   * Record the specified value in the bin of the current minute.
+   * @param value the value to record
+   */
+  void update(double value);
+
+  /**
+   * Return the distributions of the minutes that have elapsed since they were last
+   * flushed.
+   * @return the distributions to publish
+   */
+  List<Distribution> flushDistributions();
+
+  /**
+   * Return a {@link WavefrontHistogram} that stores its values in the specified
+   * {@link WavefrontHistogramImpl}.
+   * @param histogram the histogram of the Wavefront SDK
+   * @return a histogram backed by the specified one
+   */
+  static WavefrontHistogram of(WavefrontHistogramImpl histogram) {
+    return new WavefrontHistogram() {
+
+      @Override
+      public void update(double value) {
+        histogram.update(value);
+      }
+
+      @Override
+      public List<Distribution> flushDistributions() {
+        return histogram.flushDistributions();
+      }
+
+    };
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.wavefront.spring.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.cumulative.CumulativeDistributionSummary;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+
+/**
+ * A {@link CumulativeDistributionSummary} that also records amounts in a Wavefront
+ * histogram when it publishes a percentile histogram.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontHistogramDistributionSummary extends CumulativeDistributionSummary
+    implements WavefrontHistogramMeter {
+
+  private final WavefrontHistogram histogram;
+
+  WavefrontHistogramDistributionSummary(Id id, Clock clock, DistributionStatisticConfig distributionStatisticConfig,
+      double scale, WavefrontHistogram histogram) {
+    super(id, clock, distributionStatisticConfig, scale, false);
+    this.histogram = histogram;
+  }
+
+  @Override
+  protected void recordNonNegative(double amount) {
+    super.recordNonNegative(amount);
+    if (this.histogram != null) {
+      this.histogram.update(amount);
+    }
+  }
+
+  @Override
+  public boolean isPublishingHistogram() {
+    return this.histogram != null;
+  }
+
+  @Override
+  public List<WavefrontHistogramImpl.Distribution> flushDistributions() {
+    return (this.histogram != null) ? this.histogram.flushDistributions() : Collections.emptyList();
+  }
+
+}
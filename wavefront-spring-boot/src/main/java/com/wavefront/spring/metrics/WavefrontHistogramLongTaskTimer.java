@@ -0,0 +1,42 @@
+package com.wavefront.spring.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.internal.DefaultLongTaskTimer;
+
+/**
+ * A {@link DefaultLongTaskTimer} that records the durations of its active tasks in a
+ * Wavefront histogram when it publishes a percentile histogram.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontHistogramLongTaskTimer extends DefaultLongTaskTimer implements WavefrontHistogramMeter {
+
+  private final WavefrontHistogram histogram;
+
+  WavefrontHistogramLongTaskTimer(Id id, Clock clock, DistributionStatisticConfig distributionStatisticConfig,
+      TimeUnit baseTimeUnit, WavefrontHistogram histogram) {
+    super(id, clock, baseTimeUnit, distributionStatisticConfig, false);
+    this.histogram = histogram;
+  }
+
+  @Override
+  public boolean isPublishingHistogram() {
+    return this.histogram != null;
+  }
+
+  @Override
+  public List<WavefrontHistogramImpl.Distribution> flushDistributions() {
+    if (this.histogram == null) {
+      return Collections.emptyList();
+    }
+    forEachActive((sample) -> this.histogram.update(sample.duration(baseTimeUnit())));
+    return this.histogram.flushDistributions();
+  }
+
+}
@@ -0,0 +1,29 @@
+package com.wavefront.spring.metrics;
+
+import java.util.List;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import io.micrometer.core.instrument.Meter;
+
+/**
+ * A {@link Meter} that can publish its values as Wavefront histogram distributions.
+ *
+ * @author Stephane Nicoll
+ */
+interface WavefrontHistogramMeter extends Meter {
+
+  /**
+   * Return whether this meter publishes Wavefront histogram distributions rather than
+   * its statistics.
+   * @return {@code true} if distributions should be published
+   */
+  boolean isPublishingHistogram();
+
+  /**
+   * Return the distributions of the minutes that have elapsed since they were last
+   * flushed.
+   * @return the distributions to publish
+   */
+  List<WavefrontHistogramImpl.Distribution> flushDistributions();
+
+}
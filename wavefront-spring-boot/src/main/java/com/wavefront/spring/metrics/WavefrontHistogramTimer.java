@@ -0,0 +1,48 @@
+package com.wavefront.spring.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.cumulative.CumulativeTimer;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.pause.PauseDetector;
+import io.micrometer.core.instrument.util.TimeUtils;
+
+/**
+ * A {@link CumulativeTimer} that also records durations in a Wavefront histogram when
+ * it publishes a percentile histogram.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontHistogramTimer extends CumulativeTimer implements WavefrontHistogramMeter {
+
+  private final WavefrontHistogram histogram;
+
+  WavefrontHistogramTimer(Id id, Clock clock, DistributionStatisticConfig distributionStatisticConfig,
+      PauseDetector pauseDetector, TimeUnit baseTimeUnit, WavefrontHistogram histogram) {
+    super(id, clock, distributionStatisticConfig, pauseDetector, baseTimeUnit, false);
+    this.histogram = histogram;
+  }
+
+  @Override
+  protected void recordNonNegative(long amount, TimeUnit unit) {
+    super.recordNonNegative(amount, unit);
+    if (this.histogram != null) {
+      this.histogram.update(TimeUtils.convert((double) amount, unit, baseTimeUnit()));
+    }
+  }
+
+  @Override
+  public boolean isPublishingHistogram() {
+    return this.histogram != null;
+  }
+
+  @Override
+  public List<WavefrontHistogramImpl.Distribution> flushDistributions() {
+    return (this.histogram != null) ? this.histogram.flushDistributions() : Collections.emptyList();
+  }
+
+}
@@ -0,0 +1,156 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+import java.util.List;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.AccountNegotiationAutoConfiguration;
+import com.wavefront.spring.export.WavefrontExportAutoConfiguration;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.ConditionalOnEnabledMetricsExport;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontPropertiesConfigAdapter;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
+import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontSenderConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for the publication of metrics to
+ * Wavefront. Provides a registry that publishes its meters using several threads, only
+ * when their values have changed, that removes meters whose observed object has been
+ * garbage collected, or that stores Wavefront histograms in primitive arrays, and a
+ * {@link MeterFilter} that limits the number of distinct values of meter tags.
+ * <p>
+ * The registry replaces the {@link WavefrontMeterRegistry} of Spring Boot, whose
+ * auto-configuration is skipped by {@link MeterPublisherAutoConfigurationImportFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ WavefrontMeterRegistry.class, WavefrontSender.class })
+@ConditionalOnEnabledMetricsExport("wavefront")
+@AutoConfigureAfter({ MetricsAutoConfiguration.class, AccountNegotiationAutoConfiguration.class,
+    WavefrontExportAutoConfiguration.class, WavefrontAutoConfiguration.class })
+@AutoConfigureBefore({ WavefrontMetricsExportAutoConfiguration.class, CompositeMeterRegistryAutoConfiguration.class,
+    SimpleMetricsExportAutoConfiguration.class })
+@EnableConfigurationProperties(WavefrontMetricsProperties.class)
+public class WavefrontMetricsAutoConfiguration {
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnBean(Clock.class)
+  @ConditionalOnMissingBean(WavefrontMeterRegistry.class)
+  @Conditional(MeterPublisherCondition.class)
+  @EnableConfigurationProperties(WavefrontProperties.class)
+  @Import(WavefrontSenderConfiguration.class)
+  static class MeterPublisherConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    WavefrontConfig wavefrontConfig(WavefrontProperties properties) {
+      return new WavefrontPropertiesConfigAdapter(properties);
+    }
+
+    @Bean
+    PublishingWavefrontMeterRegistry wavefrontMeterRegistry(WavefrontConfig wavefrontConfig, Clock clock,
+        WavefrontSender wavefrontSender, WavefrontMetricsProperties properties) {
+      PublishingWavefrontMeterRegistry registry = new PublishingWavefrontMeterRegistry(wavefrontConfig, clock,
+          wavefrontSender, getParallelism(properties.getParallelPublish()));
+      MeterPublisher publisher = registry.getPublisher();
+      WavefrontMetricsProperties.ChangeOnly changeOnly = properties.getChangeOnly();
+      WavefrontMetricsProperties.ReleasedMeterRemoval releasedMeterRemoval = properties.getReleasedMeterRemoval();
+      if (changeOnly.isEnabled() || releasedMeterRemoval.isEnabled()) {
+        publisher.setMeterSnapshots(
+            new MeterSnapshots(changeOnly.isEnabled() ? changeOnly.getHeartbeatInterval() : Duration.ZERO));
+      }
+      if (releasedMeterRemoval.isEnabled()) {
+        publisher.setReleasedMeterGracePeriod(
+            wavefrontConfig.step().multipliedBy(releasedMeterRemoval.getGraceSteps()));
+      }
+      registry.setPrimitiveHistograms(properties.getPrimitiveHistograms().isEnabled());
+      return registry;
+    }
+
+    @Bean
+    @ConditionalOnBean(ApplicationTags.class)
+    MeterRegistryCustomizer<PublishingWavefrontMeterRegistry> wavefrontApplicationTagsCustomizer(
+        ApplicationTags applicationTags) {
+      List<Tag> tags = applicationTags.toPointTags().entrySet().stream()
+          .map((entry) -> Tag.of(entry.getKey(), entry.getValue())).toList();
+      return (registry) -> registry.config().commonTags(tags);
+    }
+
+    private int getParallelism(WavefrontMetricsProperties.ParallelPublish parallelPublish) {
+      if (!parallelPublish.isEnabled()) {
+        return 1;
+      }
+      Integer parallelism = parallelPublish.getParallelism();
+      return (parallelism != null) ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnProperty(prefix = "wavefront.metrics.cardinality-guard", name = "enabled", havingValue = "true")
+  static class CardinalityGuardConfiguration {
+
+    @Bean
+    CardinalityGuardMeterFilter wavefrontCardinalityGuardMeterFilter(WavefrontMetricsProperties properties) {
+      return new CardinalityGuardMeterFilter(properties.getCardinalityGuard().getMaxTagValues());
+    }
+
+  }
+
+  static final class MeterPublisherCondition extends AnyNestedCondition {
+
+    MeterPublisherCondition() {
+      super(ConfigurationPhase.PARSE_CONFIGURATION);
+    }
+
+    @ConditionalOnProperty(prefix = "wavefront.metrics.parallel-publish", name = "enabled", havingValue = "true")
+    static class ParallelPublishCondition {
+
+    }
+
+    @ConditionalOnProperty(prefix = "wavefront.metrics.change-only", name = "enabled", havingValue = "true")
+    static class ChangeOnlyCondition {
+
+    }
+
+    @ConditionalOnProperty(prefix = "wavefront.metrics.released-meter-removal", name = "enabled",
+        havingValue = "true")
+    static class ReleasedMeterRemovalCondition {
+
+    }
+
+    @ConditionalOnProperty(prefix = "wavefront.metrics.primitive-histograms", name = "enabled",
+        havingValue = "true")
+    static class PrimitiveHistogramsCondition {
+
+    }
+
+  }
+
+}
@@ -0,0 +1,230 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the publication of metrics to Wavefront.
+ *
+ * @author Stephane Nicoll
+ */
+@ConfigurationProperties("wavefront.metrics")
+public class WavefrontMetricsProperties {
+
+  private final ParallelPublish parallelPublish = new ParallelPublish();
+
+  private final ChangeOnly changeOnly = new ChangeOnly();
+
+  private final CardinalityGuard cardinalityGuard = new CardinalityGuard();
+
+  private final ReleasedMeterRemoval releasedMeterRemoval = new ReleasedMeterRemoval();
+
+  private final StripedRecording stripedRecording = new StripedRecording();
+
+  private final PrimitiveHistograms primitiveHistograms = new PrimitiveHistograms();
+
+  public ParallelPublish getParallelPublish() {
+    return this.parallelPublish;
+  }
+
+  public ChangeOnly getChangeOnly() {
+    return this.changeOnly;
+  }
+
+  public CardinalityGuard getCardinalityGuard() {
+    return this.cardinalityGuard;
+  }
+
+  public ReleasedMeterRemoval getReleasedMeterRemoval() {
+    return this.releasedMeterRemoval;
+  }
+
+  public StripedRecording getStripedRecording() {
+    return this.stripedRecording;
+  }
+
+  public PrimitiveHistograms getPrimitiveHistograms() {
+    return this.primitiveHistograms;
+  }
+
+  /**
+   * Publication of meters using several threads.
+   */
+  public static class ParallelPublish {
+
+    /**
+     * Whether to publish meters using several threads rather than a single one.
+     */
+    private boolean enabled;
+
+    /**
+     * Number of threads to use to publish meters. Defaults to the number of available
+     * processors.
+     */
+    private Integer parallelism;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Integer getParallelism() {
+      return this.parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+      this.parallelism = parallelism;
+    }
+
+  }
+
+  /**
+   * Publication of meters only when their values have changed.
+   */
+  public static class ChangeOnly {
+
+    /**
+     * Whether to skip meters whose values have not changed since they were last
+     * published.
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum time between two publications of a meter whose values have not changed.
+     */
+    private Duration heartbeatInterval = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Duration getHeartbeatInterval() {
+      return this.heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+      this.heartbeatInterval = heartbeatInterval;
+    }
+
+  }
+
+  /**
+   * Limitation of the number of distinct values of meter tags.
+   */
+  public static class CardinalityGuard {
+
+    /**
+     * Whether to limit the number of distinct values of each tag of a meter.
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum number of distinct values of a tag of a meter. Other values are reported as
+     * 'other'.
+     */
+    private int maxTagValues = 100;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxTagValues() {
+      return this.maxTagValues;
+    }
+
+    public void setMaxTagValues(int maxTagValues) {
+      this.maxTagValues = maxTagValues;
+    }
+
+  }
+
+  /**
+   * Removal of meters whose observed object has been garbage collected.
+   */
+  public static class ReleasedMeterRemoval {
+
+    /**
+     * Whether to remove gauges and function meters from the registry once the object
+     * they observe has been garbage collected.
+     */
+    private boolean enabled;
+
+    /**
+     * Number of steps during which the last values of a meter whose observed object has
+     * been garbage collected are still published before it is removed.
+     */
+    private int graceSteps = 60;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getGraceSteps() {
+      return this.graceSteps;
+    }
+
+    public void setGraceSteps(int graceSteps) {
+      this.graceSteps = graceSteps;
+    }
+
+  }
+
+  /**
+   * Recording of the duration of observations in striped cells.
+   */
+  public static class StripedRecording {
+
+    /**
+     * Whether to record the duration of observations in striped, per-thread cells that
+     * are merged when meters are published, rather than in shared timers.
+     */
+    private boolean enabled;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+  }
+
+  /**
+   * Storage of the Wavefront histograms of timers and distribution summaries.
+   */
+  public static class PrimitiveHistograms {
+
+    /**
+     * Whether to keep the centroids of Wavefront histograms in primitive arrays rather
+     * than in objects.
+     */
+    private boolean enabled;
+
+    public boolean isEnabled() {
+      return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.wavefront.spring.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.observation.MeterObservationHandler;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.ConditionalOnEnabledMetricsExport;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for the recording of observations
+ * as Wavefront metrics. Provides a {@link MeterObservationHandler} that records the
+ * duration of observations in striped cells, in place of the default one.
+ *
+ * @author Stephane Nicoll
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ WavefrontMeterRegistry.class, MeterObservationHandler.class })
+@ConditionalOnEnabledMetricsExport("wavefront")
+@ConditionalOnProperty(prefix = "wavefront.metrics.striped-recording", name = "enabled", havingValue = "true")
+@AutoConfigureAfter({ WavefrontMetricsExportAutoConfiguration.class, CompositeMeterRegistryAutoConfiguration.class })
+@AutoConfigureBefore(ObservationAutoConfiguration.class)
+public class WavefrontObservationAutoConfiguration {
+
+  @Bean
+  @ConditionalOnBean({ MeterRegistry.class, WavefrontConfig.class })
+  @ConditionalOnMissingBean(MeterObservationHandler.class)
+  StripedMeterObservationHandler wavefrontStripedMeterObservationHandler(MeterRegistry meterRegistry,
+      WavefrontConfig wavefrontConfig, ObjectProvider<MeterFilter> meterFilters) {
+    return new StripedMeterObservationHandler(meterRegistry, wavefrontConfig.step().toMillis(),
+        meterFilters.orderedStream().toList());
+  }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Publication of metrics to Wavefront.
+ */
+package com.wavefront.spring.metrics;
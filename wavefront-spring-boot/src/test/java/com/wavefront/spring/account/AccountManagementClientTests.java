@@ -1,5 +1,16 @@
 package com.wavefront.spring.account;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpServer;
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.spring.autoconfigure.ApplicationTagsFactory;
 import org.junit.jupiter.api.Test;
@@ -10,8 +21,12 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -131,6 +146,65 @@ class AccountManagementClientTests {
     assertThat(accountInfo.loginUrl()).isEqualTo("https://example.com/us/test123");
   }
 
+  @Test
+  void retrieveAccountWithSharedHttpClientReusesConnection() throws IOException {
+    Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/api/v2/trial/spring-boot-autoconfigure", (exchange) -> {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      byte[] body = "{\"url\":\"/us/test123\"}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    try {
+      String clusterUri = "http://localhost:" + server.getAddress().getPort();
+      AccountManagementClient first = new AccountManagementClient(AccountManagementClient.getSharedHttpClient(),
+          "1.0.0");
+      AccountManagementClient second = new AccountManagementClient(AccountManagementClient.getSharedHttpClient(),
+          "1.0.0");
+      assertThat(first.getExistingAccount(clusterUri, createDefaultApplicationTags(), "abc-123").loginUrl())
+          .isEqualTo(clusterUri + "/us/test123");
+      assertThat(second.getExistingAccount(clusterUri, createDefaultApplicationTags(), "abc-123").loginUrl())
+          .isEqualTo(clusterUri + "/us/test123");
+      assertThat(clientPorts).hasSize(1);
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void createWithHttpClientUsesHttpClient() {
+    AccountManagementClient client = new AccountManagementClient(new RestTemplateBuilder(),
+        AccountManagementClient.getSharedHttpClient(), "1.0.0");
+    assertThat(getRestTemplate(client).getRequestFactory()).isInstanceOf(JdkClientHttpRequestFactory.class)
+        .hasFieldOrPropertyWithValue("httpClient", AccountManagementClient.getSharedHttpClient());
+  }
+
+  @Test
+  void createWithHttpClientAndCustomRequestFactoryUsesRequestFactory() {
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    AccountManagementClient client = new AccountManagementClient(
+        new RestTemplateBuilder().requestFactory(() -> requestFactory), AccountManagementClient.getSharedHttpClient(),
+        "1.0.0");
+    assertThat(getRestTemplate(client).getRequestFactory()).isSameAs(requestFactory);
+  }
+
+  @Test
+  void getSharedHttpClientReturnsSameInstance() {
+    assertThat(AccountManagementClient.getSharedHttpClient()).isSameAs(AccountManagementClient.getSharedHttpClient());
+    assertThat(AccountManagementClient.getSharedHttpClient().version()).isEqualTo(Version.HTTP_1_1);
+    assertThat(AccountManagementClient.getSharedHttpClient().followRedirects()).isEqualTo(Redirect.NEVER);
+  }
+
+  private RestTemplate getRestTemplate(AccountManagementClient client) {
+    return (RestTemplate) ReflectionTestUtils.getField(client, "restTemplate");
+  }
+
   private ApplicationTags createDefaultApplicationTags() {
     return new ApplicationTagsFactory().createFromEnvironment(new MockEnvironment());
   }
@@ -0,0 +1,96 @@
+package com.wavefront.spring.account;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.ApplicationTagsFactory;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link ReactiveAccountManagementClient}.
+ *
+ * @author Stephane Nicoll
+ */
+class ReactiveAccountManagementClientTests {
+
+  private final List<ClientRequest> requests = new ArrayList<>();
+
+  @Test
+  void provisionAccountOnSupportedCluster() {
+    ReactiveAccountManagementClient client = createClient(HttpStatus.OK,
+        "{\"url\":\"/us/test123\",\"token\":\"ee479a71-abcd-abcd-abcd-62b0e8416989\"}\n");
+    AccountInfo accountInfo = client.provisionAccount("https://example.com", createDefaultApplicationTags()).block();
+    assertThat(accountInfo.apiToken()).isEqualTo("ee479a71-abcd-abcd-abcd-62b0e8416989");
+    assertThat(accountInfo.loginUrl()).isEqualTo("https://example.com/us/test123");
+    assertThat(this.requests).singleElement().satisfies((request) -> {
+      assertThat(request.method()).isEqualTo(HttpMethod.POST);
+      assertThat(request.url()).isEqualTo(URI.create("https://example.com/api/v2/trial/spring-boot-autoconfigure"
+          + "?application=unnamed_application&service=unnamed_service&starterVersion=1.0.0"));
+    });
+  }
+
+  @Test
+  void provisionAccountOnUnsupportedCluster() {
+    ReactiveAccountManagementClient client = createClient(HttpStatus.NOT_ACCEPTABLE, "test failure");
+    assertThatThrownBy(() -> client.provisionAccount("https://example.com", createDefaultApplicationTags()).block())
+        .hasMessageContaining("test failure").isInstanceOf(AccountManagementFailedException.class);
+  }
+
+  @Test
+  void provisionAccountIsLazy() {
+    ReactiveAccountManagementClient client = createClient(HttpStatus.OK, "{}");
+    client.provisionAccount("https://example.com", createDefaultApplicationTags());
+    assertThat(this.requests).isEmpty();
+  }
+
+  @Test
+  void retrieveAccountOnSupportedCluster() {
+    ReactiveAccountManagementClient client = createClient(HttpStatus.OK, "{\"url\":\"/us/test123\"}\n");
+    AccountInfo accountInfo = client.getExistingAccount("https://example.com", createDefaultApplicationTags(),
+        "ee479a71-abcd-abcd-abcd-62b0e8416989").block();
+    assertThat(accountInfo.apiToken()).isEqualTo("ee479a71-abcd-abcd-abcd-62b0e8416989");
+    assertThat(accountInfo.loginUrl()).isEqualTo("https://example.com/us/test123");
+    assertThat(this.requests).singleElement().satisfies((request) -> {
+      assertThat(request.method()).isEqualTo(HttpMethod.GET);
+      assertThat(request.headers().getFirst(HttpHeaders.AUTHORIZATION))
+          .isEqualTo("Bearer ee479a71-abcd-abcd-abcd-62b0e8416989");
+    });
+  }
+
+  @Test
+  void retrieveAccountWithWrongApiToken() {
+    ReactiveAccountManagementClient client = createClient(HttpStatus.UNAUTHORIZED, "test failure");
+    assertThatThrownBy(() -> client.getExistingAccount("https://example.com", createDefaultApplicationTags(),
+        "wrong-token").block()).hasMessageContaining("test failure")
+        .isInstanceOf(AccountManagementFailedException.class);
+  }
+
+  private ReactiveAccountManagementClient createClient(HttpStatus status, String body) {
+    WebClient.Builder webClientBuilder = WebClient.builder().exchangeFunction((request) -> {
+      this.requests.add(request);
+      return Mono.just(ClientResponse.create(status).header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+          .body(body).build());
+    });
+    return new ReactiveAccountManagementClient(webClientBuilder, "1.0.0");
+  }
+
+  private ApplicationTags createDefaultApplicationTags() {
+    return new ApplicationTagsFactory().createFromEnvironment(new MockEnvironment());
+  }
+
+}
@@ -0,0 +1,65 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AsyncWavefrontController}.
+ *
+ * @author Stephane Nicoll
+ */
+class AsyncWavefrontControllerTests {
+
+  @Test
+  void dashboardResolvesUrlOnExecutor() {
+    List<Runnable> tasks = new ArrayList<>();
+    AsyncWavefrontController controller = new AsyncWavefrontController(
+        () -> URI.create("https://example.com/go"), tasks::add);
+    CompletableFuture<ResponseEntity<Void>> response = controller.dashboard();
+    assertThat(response).isNotDone();
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    assertThat(response).isCompletedWithValueMatching((entity) -> entity.getStatusCode() == HttpStatus.FOUND
+        && URI.create("https://example.com/go").equals(entity.getHeaders().getLocation()));
+  }
+
+  @Test
+  void dashboardWithFailureCompletesExceptionally() {
+    AsyncWavefrontController controller = new AsyncWavefrontController(() -> {
+      throw new IllegalStateException("test");
+    }, Runnable::run);
+    assertThat(controller.dashboard()).isCompletedExceptionally();
+  }
+
+  @Test
+  void destroyShutsDownDedicatedExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.initialize();
+    AsyncWavefrontController controller = AsyncWavefrontController
+        .withDedicatedExecutor(() -> URI.create("https://example.com/go"), executor);
+    controller.destroy();
+    assertThat(executor.getThreadPoolExecutor().isShutdown()).isTrue();
+  }
+
+  @Test
+  void dashboardWhenExecutorRejectsTaskRespondsWithServiceUnavailable() {
+    AsyncWavefrontController controller = new AsyncWavefrontController(() -> URI.create("https://example.com/go"),
+        (task) -> {
+          throw new RejectedExecutionException("test");
+        });
+    assertThat(controller.dashboard()).isCompletedWithValueMatching(
+        (entity) -> entity.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+}
@@ -0,0 +1,205 @@
+package com.wavefront.spring.actuate;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * Tests for {@link PrefetchingDashboardUrlSupplier}.
+ *
+ * @author Stephane Nicoll
+ */
+class PrefetchingDashboardUrlSupplierTests {
+
+  private final CountingUrlSupplier delegate = new CountingUrlSupplier();
+
+  private final List<Runnable> tasks = new ArrayList<>();
+
+  private final List<DelayedTask> delayedTasks = new ArrayList<>();
+
+  private Instant now = Instant.parse("2023-01-01T10:00:00Z");
+
+  @Test
+  void createDoesNotFillPool() {
+    PrefetchingDashboardUrlSupplier supplier = createSupplier(3, Duration.ofMinutes(5));
+    assertThat(this.tasks).isEmpty();
+    assertThat(this.delegate.count).hasValue(0);
+    assertThat(supplier.getAvailableLinks()).isZero();
+  }
+
+  @Test
+  void firstGetFillsPoolInBackground() {
+    PrefetchingDashboardUrlSupplier supplier = createSupplier(3, Duration.ofMinutes(5));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/1"));
+    assertThat(this.tasks).hasSize(3);
+    runTasks();
+    assertThat(supplier.getAvailableLinks()).isEqualTo(3);
+  }
+
+  @Test
+  void getHandsOutEachLinkOnce() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(2, Duration.ofMinutes(5));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/2"));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/3"));
+    assertThat(this.delegate.count).hasValue(3);
+  }
+
+  @Test
+  void getRefillsPoolInBackground() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(2, Duration.ofMinutes(5));
+    supplier.get();
+    assertThat(this.tasks).hasSize(1);
+    runTasks();
+    assertThat(supplier.getAvailableLinks()).isEqualTo(2);
+  }
+
+  @Test
+  void getWithEmptyPoolFetchesSynchronously() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(1, Duration.ofMinutes(5));
+    supplier.get();
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/3"));
+    assertThat(this.tasks).hasSize(1);
+  }
+
+  @Test
+  void getDiscardsExpiredLinks() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(2, Duration.ofMinutes(5));
+    this.now = this.now.plus(Duration.ofMinutes(6));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/4"));
+    assertThat(supplier.getAvailableLinks()).isZero();
+    assertThat(this.tasks).hasSize(2);
+  }
+
+  @Test
+  void linksAreReplacedBeforeTheyExpire() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(2, Duration.ofMinutes(5));
+    assertThat(this.delayedTasks).extracting(DelayedTask::delay)
+        .containsExactly(Duration.ofSeconds(270), Duration.ofSeconds(270));
+    this.now = this.now.plus(Duration.ofSeconds(270));
+    runDelayedTasks();
+    assertThat(supplier.getAvailableLinks()).isZero();
+    assertThat(this.tasks).hasSize(2);
+    runTasks();
+    assertThat(supplier.getAvailableLinks()).isEqualTo(2);
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/4"));
+  }
+
+  @Test
+  void linksOfIdlePoolAreNotReplaced() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(2, Duration.ofMinutes(5));
+    this.now = this.now.plus(Duration.ofSeconds(270));
+    runDelayedTasks();
+    runTasks();
+    this.now = this.now.plus(Duration.ofSeconds(270));
+    runDelayedTasks();
+    assertThat(supplier.getAvailableLinks()).isZero();
+    assertThat(this.tasks).isEmpty();
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/6"));
+    assertThat(this.tasks).hasSize(2);
+  }
+
+  @Test
+  void linkThatWasHandedOutIsNotExpired() {
+    PrefetchingDashboardUrlSupplier supplier = createFilledSupplier(1, Duration.ofMinutes(5));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/2"));
+    assertThat(this.tasks).hasSize(1);
+    this.now = this.now.plus(Duration.ofSeconds(270));
+    runDelayedTasks();
+    assertThat(this.tasks).hasSize(1);
+  }
+
+  @Test
+  void refillAfterFailureIsDelayed() {
+    this.delegate.fail = true;
+    PrefetchingDashboardUrlSupplier supplier = createSupplier(2, Duration.ofMinutes(5));
+    assertThatIllegalStateException().isThrownBy(supplier::get);
+    assertThat(this.tasks).hasSize(2);
+    runTasks();
+    assertThat(supplier.getAvailableLinks()).isZero();
+    assertThatIllegalStateException().isThrownBy(supplier::get);
+    assertThat(this.tasks).isEmpty();
+    this.delegate.fail = false;
+    this.now = this.now.plus(Duration.ofSeconds(11));
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/1"));
+    assertThat(this.tasks).hasSize(2);
+  }
+
+  private PrefetchingDashboardUrlSupplier createFilledSupplier(int size, Duration timeToLive) {
+    PrefetchingDashboardUrlSupplier supplier = createSupplier(size, timeToLive);
+    assertThat(supplier.get()).isEqualTo(URI.create("https://example.com/1"));
+    runTasks();
+    return supplier;
+  }
+
+  private PrefetchingDashboardUrlSupplier createSupplier(int size, Duration timeToLive) {
+    Clock clock = new Clock() {
+      @Override
+      public ZoneOffset getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return PrefetchingDashboardUrlSupplierTests.this.now;
+      }
+    };
+    return new PrefetchingDashboardUrlSupplier(this.delegate, size, timeToLive, (task, delay) -> {
+      if (delay.isZero()) {
+        this.tasks.add(task);
+      }
+      else {
+        this.delayedTasks.add(new DelayedTask(task, delay));
+      }
+    }, clock);
+  }
+
+  private void runTasks() {
+    List<Runnable> current = new ArrayList<>(this.tasks);
+    this.tasks.clear();
+    current.forEach(Runnable::run);
+  }
+
+  private void runDelayedTasks() {
+    List<DelayedTask> current = new ArrayList<>(this.delayedTasks);
+    this.delayedTasks.clear();
+    current.forEach((delayedTask) -> delayedTask.task().run());
+  }
+
+  record DelayedTask(Runnable task, Duration delay) {
+
+  }
+
+  static class CountingUrlSupplier implements Supplier<URI> {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private volatile boolean fail;
+
+    @Override
+    public URI get() {
+      if (this.fail) {
+        throw new IllegalStateException("Cluster not available");
+      }
+      return URI.create("https://example.com/" + this.count.incrementAndGet());
+    }
+
+  }
+
+}
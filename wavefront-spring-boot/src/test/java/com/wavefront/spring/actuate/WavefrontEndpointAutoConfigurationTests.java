@@ -1,26 +1,38 @@
 package com.wavefront.spring.actuate;
 
 import java.net.URI;
+import java.util.concurrent.Executor;
 
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.spring.account.AccountInfo;
 import com.wavefront.spring.account.AccountManagementClient;
+import com.wavefront.spring.account.ReactiveAccountManagementClient;
 
 import io.micrometer.wavefront.WavefrontConfig;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
 
 import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
 import org.springframework.boot.actuate.cache.CachesEndpoint;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.lang.Nullable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -39,7 +51,61 @@ class WavefrontEndpointAutoConfigurationTests {
   void runShouldHaveEndpointBean() {
     this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
         .withPropertyValues("management.endpoints.web.exposure.include=wavefront")
-        .run((context) -> assertThat(context).hasSingleBean(WavefrontController.class));
+        .run((context) -> assertThat(context).hasSingleBean(WavefrontController.class)
+            .doesNotHaveBean(ReactiveWavefrontController.class));
+  }
+
+  @Test
+  void runShouldHaveAccountManagementClientUsingSharedHttpClient() {
+    this.contextRunner.withUserConfiguration(WavefrontConfiguration.class)
+        .withPropertyValues("management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> {
+          assertThat(context).hasSingleBean(AccountManagementClient.class);
+          RestTemplate restTemplate = (RestTemplate) ReflectionTestUtils
+              .getField(context.getBean(AccountManagementClient.class), "restTemplate");
+          assertThat(restTemplate.getRequestFactory()).isInstanceOf(JdkClientHttpRequestFactory.class)
+              .hasFieldOrPropertyWithValue("httpClient", AccountManagementClient.getSharedHttpClient());
+        });
+  }
+
+  @Test
+  void runWithoutRestTemplateBuilderShouldHaveEndpointBean() {
+    new ApplicationContextRunner().withConfiguration(AutoConfigurations.of(WavefrontEndpointAutoConfiguration.class))
+        .withUserConfiguration(WavefrontConfiguration.class)
+        .withPropertyValues("management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context).hasSingleBean(WavefrontController.class)
+            .hasSingleBean(AccountManagementClient.class));
+  }
+
+  @Test
+  void runWithReactiveWebApplicationShouldHaveReactiveEndpointBean() {
+    new ReactiveWebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(WebClientAutoConfiguration.class,
+            WavefrontEndpointAutoConfiguration.class))
+        .withUserConfiguration(WavefrontConfiguration.class)
+        .withPropertyValues("management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> {
+          assertThat(context).hasSingleBean(ReactiveWavefrontController.class)
+              .hasSingleBean(ReactiveAccountManagementClient.class)
+              .doesNotHaveBean(WavefrontController.class).doesNotHaveBean(AccountManagementClient.class);
+          assertThat(context.getBean(ReactiveWavefrontController.class).dashboard().block().getHeaders()
+              .getLocation()).isEqualTo(URI.create("https://example.com"));
+        });
+  }
+
+  @Test
+  void runWithReactiveWebApplicationAndFreemiumAccount() {
+    ReactiveAccountManagementClient client = mock(ReactiveAccountManagementClient.class);
+    given(client.getExistingAccount(eq("https://example.com"), any(), eq("abc-123")))
+        .willReturn(Mono.just(new AccountInfo("abc-123", "https://example.com/go")));
+    new ReactiveWebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(WavefrontEndpointAutoConfiguration.class))
+        .withUserConfiguration(WavefrontConfiguration.class)
+        .withBean(ReactiveAccountManagementClient.class, () -> client)
+        .withPropertyValues("wavefront.freemium-account=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context.getBean(ReactiveWavefrontController.class).dashboard().block()
+            .getHeaders().getLocation()).isEqualTo(URI.create("https://example.com/go")));
   }
 
   @Test
@@ -84,6 +150,93 @@ class WavefrontEndpointAutoConfigurationTests {
         });
   }
 
+  @Test
+  void runWithFreemiumAccountAndPrefetchEnabled() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("wavefront.freemium-account=true", "management.endpoint.wavefront.prefetch.enabled=true",
+            "management.endpoint.wavefront.prefetch.size=2",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> {
+          assertThat(context).hasSingleBean(PrefetchingDashboardUrlSupplier.class);
+          assertThat(context.getBean(WavefrontController.class).dashboard().getHeaders()
+              .getLocation()).isEqualTo(URI.create("https://example.com/go"));
+        });
+  }
+
+  @Test
+  void runWithFreemiumAccountRequestsOneTimeLink() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("wavefront.freemium-account=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context.getBean(WavefrontController.class))
+            .extracting("dashboardUrlSupplier").isInstanceOf(OneTimeDashboardUrlSupplier.class));
+  }
+
+  @Test
+  void runWithFreemiumAccountAndPrefetchEnabledRequestsOneTimeLinks() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("wavefront.freemium-account=true", "management.endpoint.wavefront.prefetch.enabled=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context.getBean(PrefetchingDashboardUrlSupplier.class))
+            .extracting("delegate").isInstanceOf(OneTimeDashboardUrlSupplier.class));
+  }
+
+  @Test
+  void runWithNonFreemiumAccountAndPrefetchEnabled() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("management.endpoint.wavefront.prefetch.enabled=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context).doesNotHaveBean(PrefetchingDashboardUrlSupplier.class));
+  }
+
+  @Test
+  void runWithFreemiumAccountDoesNotPrefetchByDefault() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("wavefront.freemium-account=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context).doesNotHaveBean(PrefetchingDashboardUrlSupplier.class));
+  }
+
+  @Test
+  void runWithAsyncShouldHaveAsyncEndpointBean() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("wavefront.freemium-account=true", "management.endpoint.wavefront.async=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> {
+          assertThat(context).hasSingleBean(AsyncWavefrontController.class)
+              .doesNotHaveBean(WavefrontController.class);
+          assertThat(context.getBean(AsyncWavefrontController.class).dashboard().get().getHeaders()
+              .getLocation()).isEqualTo(URI.create("https://example.com/go"));
+        });
+  }
+
+  @Test
+  void runWithAsyncUsesApplicationTaskExecutor() {
+    this.contextRunner.withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+        .withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("management.endpoint.wavefront.async=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> assertThat(context.getBean(AsyncWavefrontController.class))
+            .hasFieldOrPropertyWithValue("executor",
+                context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)));
+  }
+
+  @Test
+  void runWithAsyncAndNoApplicationTaskExecutorUsesBoundedExecutor() {
+    this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
+        .withPropertyValues("management.endpoint.wavefront.async=true",
+            "management.endpoints.web.exposure.include=wavefront")
+        .run((context) -> {
+          assertThat(context).doesNotHaveBean(Executor.class);
+          ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) ReflectionTestUtils
+              .getField(context.getBean(AsyncWavefrontController.class), "executor");
+          assertThat(executor.getMaxPoolSize()).isEqualTo(4);
+          assertThat(executor.getQueueCapacity()).isEqualTo(100);
+          context.close();
+          assertThat(executor.getThreadPoolExecutor().isShutdown()).isTrue();
+        });
+  }
+
   @Test
   void runWithNonFreemiumAccount() {
     this.contextRunner.withUserConfiguration(AccountManagementConfiguration.class)
@@ -121,6 +274,21 @@ class WavefrontEndpointAutoConfigurationTests {
 
   }
 
+  @Configuration(proxyBeanMethods = false)
+  static class WavefrontConfiguration {
+
+    @Bean
+    ApplicationTags applicationTags() {
+      return mock(ApplicationTags.class);
+    }
+
+    @Bean
+    WavefrontConfig wavefrontConfig() {
+      return testWavefrontConfig("https://example.com", "abc-123");
+    }
+
+  }
+
   private static WavefrontConfig testWavefrontConfig(String uri, String apiToken) {
     return new WavefrontConfig() {
       @Override
@@ -0,0 +1,97 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import com.wavefront.spring.account.AccountInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.PathResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AccountInfoCache}.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountInfoCacheTests {
+
+  private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void consumeWithNoEntry() {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    assertThat(cache.consume("https://example.com", "abc-def")).isNull();
+  }
+
+  @Test
+  void consumeMatchingEntry() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    assertThat(cache.consume("https://example.com", "abc-def"))
+        .isEqualTo(new AccountInfo("abc-def", "https://example.com/us/test"));
+  }
+
+  @Test
+  void consumeRemovesEntry() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    assertThat(cache.consume("https://example.com", "abc-def")).isNotNull();
+    assertThat(cache.consume("https://example.com", "abc-def")).isNull();
+    assertThat(this.directory.resolve("test.cache")).doesNotExist();
+  }
+
+  @Test
+  void consumeWithExpiredEntry() throws IOException {
+    createCache(Clock.fixed(NOW, ZoneOffset.UTC)).put("https://example.com",
+        new AccountInfo("abc-def", "https://example.com/us/test"));
+    AccountInfoCache cache = createCache(Clock.fixed(NOW.plus(Duration.ofMinutes(11)), ZoneOffset.UTC));
+    assertThat(cache.consume("https://example.com", "abc-def")).isNull();
+  }
+
+  @Test
+  void consumeWithEntryForAnotherCluster() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    assertThat(cache.consume("https://another.example.com", "abc-def")).isNull();
+  }
+
+  @Test
+  void consumeWithEntryForAnotherApiToken() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    assertThat(cache.consume("https://example.com", "another")).isNull();
+  }
+
+  @Test
+  void consumeWithTamperedEntry() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    Path file = this.directory.resolve("test.cache");
+    Files.writeString(file, Files.readString(file).replace("/us/test", "/us/other"));
+    assertThat(cache.consume("https://example.com", "abc-def")).isNull();
+  }
+
+  @Test
+  void entryDoesNotContainApiToken() throws IOException {
+    AccountInfoCache cache = createCache(Clock.fixed(NOW, ZoneOffset.UTC));
+    cache.put("https://example.com", new AccountInfo("abc-def", "https://example.com/us/test"));
+    assertThat(Files.readString(this.directory.resolve("test.cache"))).doesNotContain("abc-def");
+  }
+
+  private AccountInfoCache createCache(Clock clock) {
+    return new AccountInfoCache(new PathResource(this.directory.resolve("test.cache")), Duration.ofMinutes(10),
+        clock);
+  }
+
+}
@@ -0,0 +1,63 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.wavefront.spring.autoconfigure.AccountManagementEnablementDeducer.PrefixMatcher;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AccountManagementEnablementDeducer}.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountManagementEnablementDeducerTests {
+
+  @Test
+  void shouldEnableInTestIsFalse() {
+    assertThat(AccountManagementEnablementDeducer.shouldEnable(Thread.currentThread())).isFalse();
+    assertThat(AccountManagementEnablementDeducer.deduce()).isFalse();
+  }
+
+  @Test
+  void shouldEnableInRegularThreadIsTrue() throws InterruptedException {
+    AtomicBoolean outcome = new AtomicBoolean();
+    Thread thread = new Thread(
+        () -> outcome.set(AccountManagementEnablementDeducer.shouldEnable(Thread.currentThread())));
+    thread.start();
+    thread.join();
+    assertThat(outcome).isTrue();
+  }
+
+  @Test
+  void shouldEnableWithAnotherThreadUsesItsStackTrace() {
+    Thread thread = new Thread(() -> {
+    });
+    assertThat(AccountManagementEnablementDeducer.shouldEnable(thread)).isTrue();
+  }
+
+  @Test
+  void prefixMatcherMatchesPrefix() {
+    PrefixMatcher matcher = new PrefixMatcher(Set.of("org.junit.runners.", "org.junit.platform.", "cucumber."));
+    assertThat(matcher.matches("org.junit.runners.Test")).isTrue();
+    assertThat(matcher.matches("org.junit.platform.Test")).isTrue();
+    assertThat(matcher.matches("cucumber.runtime.Test")).isTrue();
+    assertThat(matcher.matches("cucumber.")).isTrue();
+    assertThat(matcher.matches("org.junit.Test")).isFalse();
+    assertThat(matcher.matches("org.junit.runnersTest")).isFalse();
+    assertThat(matcher.matches("com.example.Test")).isFalse();
+    assertThat(matcher.matches("a")).isFalse();
+  }
+
+  @Test
+  void prefixMatcherWithOverlappingPrefixes() {
+    PrefixMatcher matcher = new PrefixMatcher(Set.of("org.junit.", "org.junit.runners.", "org.junit.z"));
+    assertThat(matcher.matches("org.junit.runners.Test")).isTrue();
+    assertThat(matcher.matches("org.junit.s.Test")).isTrue();
+    assertThat(matcher.matches("org.junit.zz")).isTrue();
+    assertThat(matcher.matches("org.junix")).isFalse();
+  }
+
+}
@@ -6,27 +6,37 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.spring.account.AccountInfo;
 import com.wavefront.spring.account.AccountManagementClient;
 import com.wavefront.spring.account.AccountManagementFailedException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.core.metrics.StartupStep.Tag;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.ResourceAccessException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -49,8 +59,17 @@ class AccountManagementEnvironmentPostProcessorTests {
 
   private static final String FREEMIUM_ACCOUNT_PROPERTY = "wavefront.freemium-account";
 
+  private static final String ASYNC_NEGOTIATION_PROPERTY = "wavefront.account.async-negotiation";
+
+  private static final String ACCOUNT_CACHE_ENABLED_PROPERTY = "wavefront.account.cache.enabled";
+
   private final SpringApplication application = mock(SpringApplication.class);
 
+  @BeforeEach
+  void resetAccountManagementState() {
+    AccountManagementState.reset();
+  }
+
   @Test
   void accountProvisioningIsNotNeededWhenApiTokenExists() {
     MockEnvironment environment = new MockEnvironment().withProperty(API_TOKEN_PROPERTY, "test");
@@ -71,6 +90,16 @@ class AccountManagementEnvironmentPostProcessorTests {
     assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isNull();
   }
 
+  @Test
+  void accountProvisioningIsNotNeededWithUnixSocketProxy() {
+    MockEnvironment environment = new MockEnvironment();
+    environment.setProperty(URI_PROPERTY, "unix:///var/run/wavefront/proxy.sock");
+    TestAccountManagementEnvironmentPostProcessor.forConfiguredAccount()
+        .postProcessEnvironment(environment, this.application);
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isNull();
+    assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isNull();
+  }
+
   @Test
   void accountProvisioningIsNotTriggeredWhenRunningATest() {
     MockEnvironment environment = new MockEnvironment();
@@ -165,6 +194,25 @@ class AccountManagementEnvironmentPostProcessorTests {
         """);
   }
 
+  @Test
+  void existingAccountRecordsStartupSteps(CapturedOutput output) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(16);
+    given(this.application.getApplicationStartup()).willReturn(applicationStartup);
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> new AccountInfo("abc-def", "https://wavefront.surf/us/test1"));
+    postProcessor.postProcessEnvironment(new MockEnvironment(), this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(applicationStartup.getBufferedTimeline().getEvents()).extracting((event) -> event.getStartupStep()
+        .getName()).containsExactly("wavefront.account.api-token.read", "wavefront.account.client",
+            "wavefront.account.application-tags", "wavefront.account.exchange");
+    StartupStep exchange = applicationStartup.getBufferedTimeline().getEvents().get(3).getStartupStep();
+    assertThat(exchange.getTags()).extracting(Tag::getKey, Tag::getValue).containsExactly(
+        tuple("cluster", "https://wavefront.surf"), tuple("outcome", "success"));
+    assertThat(output).containsPattern("Wavefront account management took \\d+ms \\(api token read: \\d+ms, "
+        + "client: \\d+ms, application tags: \\d+ms, exchange with https://wavefront.surf: \\d+ms\\)\\.");
+  }
+
   @Test
   void existingAccountIsConfiguredWhenApiTokenFileExistWithNewLines() throws IOException {
     Resource apiTokenResource = mockApiTokenResource("\nabc-def\n");
@@ -276,6 +324,269 @@ class AccountManagementEnvironmentPostProcessorTests {
     assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isEqualTo("true");
   }
 
+  @Test
+  void asyncAccountProvisioningPublishesApiTokenOnceAvailable(@TempDir Path directory, CapturedOutput output) {
+    Path apiTokenFile = directory.resolve("test.token");
+    CountDownLatch latch = new CountDownLatch(1);
+    MockEnvironment environment = new MockEnvironment().withProperty(ASYNC_NEGOTIATION_PROPERTY, "true");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forNewAccount(new PathResource(apiTokenFile), () -> {
+          awaitLatch(latch);
+          return new AccountInfo("abc-def", "https://wavefront.surf/us/test");
+        });
+    postProcessor.postProcessEnvironment(environment, this.application);
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isNull();
+    assertThat(environment.getProperty(URI_PROPERTY)).isEqualTo("https://wavefront.surf");
+    assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isEqualTo("true");
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("Wavefront account negotiation is still in progress");
+    latch.countDown();
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+      assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isEqualTo("abc-def");
+      assertThat(output).contains(
+          "A Wavefront account has been provisioned successfully and the API token has been saved to disk.");
+    });
+    assertThat(apiTokenFile).hasContent("abc-def");
+  }
+
+  @Test
+  void asyncAccountProvisioningFailureDoesNotPublishApiToken(CapturedOutput output) {
+    Resource apiTokenResource = mock(Resource.class);
+    given(apiTokenResource.isReadable()).willReturn(false);
+    MockEnvironment environment = new MockEnvironment().withProperty(ASYNC_NEGOTIATION_PROPERTY, "true");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forNewAccount(apiTokenResource, () -> {
+          throw new AccountManagementFailedException("test message");
+        });
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(output)
+        .contains("Failed to auto-negotiate a Wavefront api token from https://wavefront.surf."));
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isNull();
+  }
+
+  @Test
+  void asyncExistingAccountRegistersApiTokenImmediately(CapturedOutput output) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    CountDownLatch latch = new CountDownLatch(1);
+    MockEnvironment environment = new MockEnvironment().withProperty(ASYNC_NEGOTIATION_PROPERTY, "true");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> {
+          awaitLatch(latch);
+          return new AccountInfo("abc-def", "https://wavefront.surf/us/test1");
+        });
+    postProcessor.postProcessEnvironment(environment, this.application);
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isEqualTo("abc-def");
+    assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isEqualTo("true");
+    latch.countDown();
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(output).contains("""
+        Connect to your Wavefront dashboard using this one-time use link:
+        https://wavefront.surf/us/test1
+        """));
+  }
+
+  @Test
+  void existingAccountUsesCachedAccountInfo(@TempDir Path directory, CapturedOutput output) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    AtomicInteger counter = new AtomicInteger();
+    MockEnvironment environment = new MockEnvironment().withProperty(ACCOUNT_CACHE_ENABLED_PROPERTY, "true");
+    PathResource cacheResource = new PathResource(directory.resolve("test.cache"));
+    new AccountInfoCache(cacheResource, Duration.ofMinutes(10)).put("https://wavefront.surf",
+        new AccountInfo("abc-def", "https://wavefront.surf/us/cached"));
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource,
+            () -> new AccountInfo("abc-def", "https://wavefront.surf/us/" + counter.incrementAndGet()));
+    postProcessor.localAccountInfoCacheResource = cacheResource;
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("""
+        Connect to your Wavefront dashboard using this one-time use link:
+        https://wavefront.surf/us/cached
+        """);
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(new AccountInfoCache(cacheResource,
+        Duration.ofMinutes(10)).consume("https://wavefront.surf", "abc-def"))
+        .isEqualTo(new AccountInfo("abc-def", "https://wavefront.surf/us/1")));
+  }
+
+  @Test
+  void existingAccountWithoutCachedAccountInfoPopulatesCache(@TempDir Path directory, CapturedOutput output)
+      throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    AtomicInteger counter = new AtomicInteger();
+    MockEnvironment environment = new MockEnvironment().withProperty(ACCOUNT_CACHE_ENABLED_PROPERTY, "true");
+    PathResource cacheResource = new PathResource(directory.resolve("test.cache"));
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource,
+            () -> new AccountInfo("abc-def", "https://wavefront.surf/us/" + counter.incrementAndGet()));
+    postProcessor.localAccountInfoCacheResource = cacheResource;
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("""
+        Connect to your Wavefront dashboard using this one-time use link:
+        https://wavefront.surf/us/1
+        """);
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(new AccountInfoCache(cacheResource,
+        Duration.ofMinutes(10)).consume("https://wavefront.surf", "abc-def"))
+        .isEqualTo(new AccountInfo("abc-def", "https://wavefront.surf/us/2")));
+  }
+
+  @Test
+  void existingAccountConnectionFailureRecordsUnreachableCluster(@TempDir Path directory) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    PathResource unreachableClusterCacheResource = new PathResource(directory.resolve("test.unreachable"));
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> {
+          throw new ResourceAccessException("Connect timed out");
+        });
+    postProcessor.localUnreachableClusterCacheResource = unreachableClusterCacheResource;
+    postProcessor.postProcessEnvironment(unreachableClusterCacheEnvironment(), this.application);
+    assertThat(new UnreachableClusterCache(unreachableClusterCacheResource, Duration.ofMinutes(5))
+        .isUnreachable("https://wavefront.surf")).isTrue();
+  }
+
+  @Test
+  void existingAccountFailureDoesNotRecordUnreachableCluster(@TempDir Path directory) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    PathResource unreachableClusterCacheResource = new PathResource(directory.resolve("test.unreachable"));
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> {
+          throw new AccountManagementFailedException("test message");
+        });
+    postProcessor.localUnreachableClusterCacheResource = unreachableClusterCacheResource;
+    postProcessor.postProcessEnvironment(unreachableClusterCacheEnvironment(), this.application);
+    assertThat(new UnreachableClusterCache(unreachableClusterCacheResource, Duration.ofMinutes(5))
+        .isUnreachable("https://wavefront.surf")).isFalse();
+  }
+
+  @Test
+  void existingAccountWithUnreachableClusterRetriesInBackground(@TempDir Path directory, CapturedOutput output)
+      throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    PathResource unreachableClusterCacheResource = new PathResource(directory.resolve("test.unreachable"));
+    UnreachableClusterCache unreachableClusters = new UnreachableClusterCache(unreachableClusterCacheResource,
+        Duration.ofMinutes(5));
+    unreachableClusters.markUnreachable("https://wavefront.surf");
+    CountDownLatch latch = new CountDownLatch(1);
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> {
+          awaitLatch(latch);
+          return new AccountInfo("abc-def", "https://wavefront.surf/us/test1");
+        });
+    postProcessor.localUnreachableClusterCacheResource = unreachableClusterCacheResource;
+    postProcessor.postProcessEnvironment(unreachableClusterCacheEnvironment(), this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("""
+        Skipped Wavefront account negotiation as https://wavefront.surf could not be reached recently. \
+        A new attempt is made in the background.
+        """);
+    assertThat(unreachableClusters.isUnreachable("https://wavefront.surf")).isTrue();
+    latch.countDown();
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+      assertThat(unreachableClusters.isUnreachable("https://wavefront.surf")).isFalse();
+      assertThat(AccountManagementState.isConfigured("https://wavefront.surf", "abc-def")).isTrue();
+      assertThat(output).contains("""
+          Connect to your Wavefront dashboard using this one-time use link:
+          https://wavefront.surf/us/test1
+          """);
+    });
+  }
+
+  @Test
+  void existingAccountWithUnreachableClusterInvokesClusterByDefault(@TempDir Path directory, CapturedOutput output)
+      throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    PathResource unreachableClusterCacheResource = new PathResource(directory.resolve("test.unreachable"));
+    new UnreachableClusterCache(unreachableClusterCacheResource, Duration.ofMinutes(5))
+        .markUnreachable("https://wavefront.surf");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> new AccountInfo("abc-def", "https://wavefront.surf/us/test1"));
+    postProcessor.localUnreachableClusterCacheResource = unreachableClusterCacheResource;
+    postProcessor.postProcessEnvironment(new MockEnvironment(), this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("https://wavefront.surf/us/test1").doesNotContain("Skipped");
+  }
+
+  @Test
+  void existingAccountWithUnreachableClusterCacheDisabledInvokesCluster(@TempDir Path directory,
+      CapturedOutput output) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    PathResource unreachableClusterCacheResource = new PathResource(directory.resolve("test.unreachable"));
+    new UnreachableClusterCache(unreachableClusterCacheResource, Duration.ofMinutes(5))
+        .markUnreachable("https://wavefront.surf");
+    MockEnvironment environment = new MockEnvironment()
+        .withProperty("wavefront.account.unreachable-cluster-cache.enabled", "false");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> new AccountInfo("abc-def", "https://wavefront.surf/us/test1"));
+    postProcessor.localUnreachableClusterCacheResource = unreachableClusterCacheResource;
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).contains("https://wavefront.surf/us/test1");
+  }
+
+  private static MockEnvironment unreachableClusterCacheEnvironment() {
+    return new MockEnvironment().withProperty("wavefront.account.unreachable-cluster-cache.enabled", "true");
+  }
+
+  @Test
+  void restartReusesExistingAccount(CapturedOutput output) throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    AtomicInteger counter = new AtomicInteger();
+    Supplier<AccountInfo> existingAccount = () -> new AccountInfo("abc-def",
+        "https://wavefront.surf/us/" + counter.incrementAndGet());
+    TestAccountManagementEnvironmentPostProcessor.forExistingAccount(apiTokenResource, existingAccount)
+        .postProcessEnvironment(new MockEnvironment(), this.application);
+    MockEnvironment environment = new MockEnvironment();
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, existingAccount);
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(counter).hasValue(1);
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isEqualTo("abc-def");
+    assertThat(environment.getProperty(URI_PROPERTY)).isEqualTo("https://wavefront.surf");
+    assertThat(environment.getProperty(FREEMIUM_ACCOUNT_PROPERTY)).isEqualTo("true");
+    assertThat(output).doesNotContain("https://wavefront.surf/us/2");
+  }
+
+  @Test
+  void restartReusesProvisionedAccount(@TempDir Path directory) {
+    Path apiTokenFile = directory.resolve("test.token");
+    TestAccountManagementEnvironmentPostProcessor.forNewAccount(new PathResource(apiTokenFile),
+        () -> new AccountInfo("abc-def", "https://wavefront.surf/us/test"))
+        .postProcessEnvironment(new MockEnvironment(), this.application);
+    MockEnvironment environment = new MockEnvironment();
+    TestAccountManagementEnvironmentPostProcessor.forNewAccount(mock(Resource.class), () -> {
+      throw new IllegalStateException("Should not attempt to provision account");
+    }).postProcessEnvironment(environment, this.application);
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isEqualTo("abc-def");
+  }
+
+  @Test
+  void restartAfterFailureNegotiatesAgain() throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    TestAccountManagementEnvironmentPostProcessor.forExistingAccount(apiTokenResource, () -> {
+      throw new AccountManagementFailedException("test message");
+    }).postProcessEnvironment(new MockEnvironment(), this.application);
+    AtomicInteger counter = new AtomicInteger();
+    TestAccountManagementEnvironmentPostProcessor.forExistingAccount(apiTokenResource, () -> {
+      counter.incrementAndGet();
+      return new AccountInfo("abc-def", "https://wavefront.surf/us/test");
+    }).postProcessEnvironment(new MockEnvironment(), this.application);
+    assertThat(counter).hasValue(1);
+  }
+
+  @Test
+  void restartWithConfiguredFreemiumAccountDoesNotRetrieveOneTimeLoginUrl(CapturedOutput output) {
+    MockEnvironment environment = new MockEnvironment().withProperty(API_TOKEN_PROPERTY, "abc-def")
+        .withProperty(FREEMIUM_ACCOUNT_PROPERTY, "true");
+    AccountManagementState.registerAccount("https://wavefront.surf", "abc-def");
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forConfiguredAccount();
+    postProcessor.postProcessEnvironment(environment, this.application);
+    postProcessor.onApplicationEvent(mockApplicationStartedEvent());
+    assertThat(output).doesNotContain("one-time use link");
+  }
+
   @SuppressWarnings("ConstantConditions")
   @Test
   void uriIsNotSetIfACustomUriIsSet() throws IOException {
@@ -317,6 +628,23 @@ class AccountManagementEnvironmentPostProcessorTests {
     verify(client).getExistingAccount(clusterUri, applicationTags, apiToken);
   }
 
+  @Test
+  void environmentPostProcessorIgnoresAotProcessing() throws IOException {
+    Resource apiTokenResource = mockApiTokenResource("abc-def");
+    MockEnvironment environment = new MockEnvironment();
+    TestAccountManagementEnvironmentPostProcessor postProcessor = TestAccountManagementEnvironmentPostProcessor
+        .forExistingAccount(apiTokenResource, () -> new AccountInfo("abc-def", "/us/test1"));
+    System.setProperty("spring.aot.processing", "true");
+    try {
+      postProcessor.postProcessEnvironment(environment, this.application);
+    }
+    finally {
+      System.clearProperty("spring.aot.processing");
+    }
+    assertThat(environment.getProperty(API_TOKEN_PROPERTY)).isNull();
+    verifyNoInteractions(apiTokenResource);
+  }
+
   @Test
   void environmentPostProcessorIgnoresBootstrapPhase() throws IOException {
     Resource apiTokenResource = mockApiTokenResource("abc-def");
@@ -340,6 +668,15 @@ class AccountManagementEnvironmentPostProcessorTests {
     return apiTokenResource;
   }
 
+  private static void awaitLatch(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private ApplicationStartedEvent mockApplicationStartedEvent() {
     return new ApplicationStartedEvent(this.application, new String[0], mock(ConfigurableApplicationContext.class), Duration.ZERO);
   }
@@ -352,6 +689,10 @@ class AccountManagementEnvironmentPostProcessorTests {
 
     private final Supplier<AccountInfo> existingAccount;
 
+    private Resource localAccountInfoCacheResource = mock(Resource.class);
+
+    private Resource localUnreachableClusterCacheResource = mock(Resource.class);
+
     TestAccountManagementEnvironmentPostProcessor(Resource localApiTokenResource,
         Supplier<AccountInfo> existingAccount, Supplier<AccountInfo> accountProvisioning) {
       this.localApiTokenResource = localApiTokenResource;
@@ -401,6 +742,16 @@ class AccountManagementEnvironmentPostProcessorTests {
       return this.localApiTokenResource;
     }
 
+    @Override
+    protected Resource getLocalAccountInfoCacheResource() {
+      return this.localAccountInfoCacheResource;
+    }
+
+    @Override
+    protected Resource getLocalUnreachableClusterCacheResource() {
+      return this.localUnreachableClusterCacheResource;
+    }
+
     @Override
     protected AccountInfo getExistingAccount(AccountManagementClient client, String clusterUri,
         ApplicationTags applicationTags, String apiToken) {
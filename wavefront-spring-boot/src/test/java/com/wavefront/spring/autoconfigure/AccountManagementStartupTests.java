@@ -0,0 +1,87 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.core.metrics.StartupStep.Tag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Tests for {@link AccountManagementStartup}.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountManagementStartupTests {
+
+  private final BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(16);
+
+  @Test
+  void recordSuccessfulPhase() {
+    AccountManagementStartup startup = new AccountManagementStartup(this.applicationStartup);
+    String result = startup.record("test", "test phase", (step) -> {
+      step.tag("cluster", "https://example.com");
+      return "result";
+    });
+    assertThat(result).isEqualTo("result");
+    List<TimelineEvent> events = this.applicationStartup.getBufferedTimeline().getEvents();
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getStartupStep().getName()).isEqualTo("wavefront.account.test");
+    assertThat(events.get(0).getStartupStep().getTags()).extracting(Tag::getKey, Tag::getValue)
+        .containsExactly(tuple("cluster", "https://example.com"), tuple("outcome", "success"));
+    assertThat(startup.getSummary())
+        .matches("Wavefront account management took \\d+ms \\(test phase: \\d+ms\\)\\.");
+  }
+
+  @Test
+  void recordFailedPhase() {
+    AccountManagementStartup startup = new AccountManagementStartup(this.applicationStartup);
+    assertThatIllegalStateException().isThrownBy(() -> startup.record("test", "test phase", (step) -> {
+      throw new IllegalStateException("test");
+    }));
+    List<TimelineEvent> events = this.applicationStartup.getBufferedTimeline().getEvents();
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getStartupStep().getTags()).extracting(Tag::getValue).containsExactly("failure");
+    assertThat(startup.getSummary()).contains("test phase");
+  }
+
+  @Test
+  void recordSeveralPhases() {
+    AccountManagementStartup startup = new AccountManagementStartup(this.applicationStartup);
+    startup.record("one", "first phase", (step) -> null);
+    startup.record("two", "second phase", (step) -> null);
+    assertThat(startup.getSummary()).matches(
+        "Wavefront account management took \\d+ms \\(first phase: \\d+ms, second phase: \\d+ms\\)\\.");
+  }
+
+  @Test
+  void recordOnAnotherThreadIsIgnored() {
+    AccountManagementStartup startup = new AccountManagementStartup(this.applicationStartup);
+    CompletableFuture.runAsync(() -> startup.record("test", "test phase", (step) -> null)).join();
+    assertThat(this.applicationStartup.getBufferedTimeline().getEvents()).isEmpty();
+    assertThat(startup.getSummary()).isNull();
+  }
+
+  @Test
+  void recordOnNegotiationThreadIsTimedOnly() {
+    AccountManagementStartup startup = new AccountManagementStartup(this.applicationStartup);
+    CompletableFuture.runAsync(() -> {
+      startup.negotiateOnCurrentThread();
+      startup.record("test", "test phase", (step) -> null);
+    }).join();
+    assertThat(this.applicationStartup.getBufferedTimeline().getEvents()).isEmpty();
+    assertThat(startup.getSummary()).contains("test phase");
+  }
+
+  @Test
+  void getSummaryWithNoPhase() {
+    assertThat(new AccountManagementStartup(this.applicationStartup).getSummary()).isNull();
+  }
+
+}
@@ -0,0 +1,41 @@
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.spring.account.AccountManagementClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AccountManagementState}.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountManagementStateTests {
+
+  @AfterEach
+  void reset() {
+    AccountManagementState.reset();
+  }
+
+  @Test
+  void registerAccount() {
+    AccountManagementState.registerAccount("https://example.com", "abc-def");
+    assertThat(AccountManagementState.getApiToken("https://example.com")).isEqualTo("abc-def");
+    assertThat(AccountManagementState.isConfigured("https://example.com", "abc-def")).isTrue();
+    assertThat(AccountManagementState.isConfigured("https://example.com", "another")).isFalse();
+    assertThat(AccountManagementState.isConfigured("https://another.example.com", "abc-def")).isFalse();
+  }
+
+  @Test
+  void getClientIsCreatedOnce() {
+    AccountManagementClient client = AccountManagementState
+        .getClient(() -> new AccountManagementClient(new RestTemplateBuilder(), null));
+    assertThat(AccountManagementState.getClient(() -> {
+      throw new IllegalStateException("Should not be called");
+    })).isSameAs(client);
+  }
+
+}
@@ -0,0 +1,66 @@
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import io.micrometer.wavefront.WavefrontConfig;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AccountNegotiationAutoConfiguration}.
+ *
+ * @author Stephane Nicoll
+ */
+class AccountNegotiationAutoConfigurationTests {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(MetricsAutoConfiguration.class,
+          WavefrontMetricsExportAutoConfiguration.class, AccountNegotiationAutoConfiguration.class));
+
+  @Test
+  void runWithoutAccountNegotiationUsesDefaultSender() {
+    this.contextRunner.withPropertyValues("management.wavefront.api-token=abc-def")
+        .run((context) -> {
+          assertThat(context).hasSingleBean(WavefrontSender.class);
+          assertThat(context.getBean(WavefrontSender.class)).isNotInstanceOf(DeferredWavefrontSender.class);
+        });
+  }
+
+  @Test
+  void runWithPendingAccountNegotiationUsesDeferredSender() {
+    AccountNegotiation accountNegotiation = new AccountNegotiation();
+    this.contextRunner.withBean(AccountNegotiation.class, () -> accountNegotiation)
+        .run((context) -> {
+          assertThat(context).hasNotFailed();
+          assertThat(context).hasSingleBean(WavefrontSender.class);
+          assertThat(context.getBean(WavefrontSender.class)).isInstanceOf(DeferredWavefrontSender.class);
+        });
+  }
+
+  @Test
+  void runWithPendingAccountNegotiationExposesNegotiatedApiToken() {
+    AccountNegotiation accountNegotiation = new AccountNegotiation();
+    this.contextRunner.withBean(AccountNegotiation.class, () -> accountNegotiation)
+        .run((context) -> {
+          WavefrontConfig wavefrontConfig = context.getBean(WavefrontConfig.class);
+          accountNegotiation.complete("abc-def");
+          assertThat(wavefrontConfig.apiToken()).isEqualTo("abc-def");
+          assertThat(context.getBean(DeferredWavefrontSender.class).getClientId()).isNotEqualTo("deferred");
+        });
+  }
+
+  @Test
+  void runWithPendingAccountNegotiationAndMetricsExportDisabled() {
+    this.contextRunner.withBean(AccountNegotiation.class, AccountNegotiation::new)
+        .withPropertyValues("management.wavefront.metrics.export.enabled=false",
+            "management.tracing.enabled=false")
+        .run((context) -> assertThat(context).doesNotHaveBean(WavefrontSender.class)
+            .doesNotHaveBean(WavefrontConfig.class));
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Tests for {@link DeferredWavefrontSender}.
+ *
+ * @author Stephane Nicoll
+ */
+class DeferredWavefrontSenderTests {
+
+  private final AccountNegotiation accountNegotiation = new AccountNegotiation();
+
+  private final WavefrontSender target = mock(WavefrontSender.class);
+
+  @Test
+  void dataIsBufferedUntilApiTokenIsAvailable() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, this::createSender, 10);
+    sender.sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    assertThat(sender.getPendingCount()).isEqualTo(1);
+    verifyNoInteractions(this.target);
+    this.accountNegotiation.complete("abc-def");
+    verify(this.target).sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    assertThat(sender.getPendingCount()).isZero();
+  }
+
+  @Test
+  void dataIsSentDirectlyOnceApiTokenIsAvailable() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, this::createSender, 10);
+    this.accountNegotiation.complete("abc-def");
+    sender.sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    verify(this.target).sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    assertThat(sender.getPendingCount()).isZero();
+  }
+
+  @Test
+  void dataIsDroppedWhenBufferIsFull() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, this::createSender, 2);
+    for (int i = 0; i < 5; i++) {
+      sender.sendMetric("test" + i, 1.0, 123L, "source", Collections.emptyMap());
+    }
+    assertThat(sender.getPendingCount()).isEqualTo(2);
+    assertThat(sender.getDroppedCount()).isEqualTo(3);
+    this.accountNegotiation.complete("abc-def");
+    verify(this.target).sendMetric("test0", 1.0, 123L, "source", Collections.emptyMap());
+    verify(this.target).sendMetric("test1", 1.0, 123L, "source", Collections.emptyMap());
+    verify(this.target, never()).sendMetric("test2", 1.0, 123L, "source", Collections.emptyMap());
+  }
+
+  @Test
+  void dataIsDiscardedWhenNegotiationFails() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, this::createSender, 10);
+    sender.sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    this.accountNegotiation.abandon();
+    sender.sendMetric("test", 2.0, 456L, "source", Collections.emptyMap());
+    assertThat(sender.getPendingCount()).isZero();
+    assertThat(sender.getClientId()).isNotEqualTo("deferred");
+    verifyNoInteractions(this.target);
+  }
+
+  @Test
+  void senderIsNotCreatedIfClosedBeforeApiTokenIsAvailable() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, (apiToken) -> {
+      throw new IllegalStateException("Should not be called");
+    }, 10);
+    sender.sendMetric("test", 1.0, 123L, "source", Collections.emptyMap());
+    sender.close();
+    this.accountNegotiation.complete("abc-def");
+    assertThat(sender.getPendingCount()).isZero();
+  }
+
+  @Test
+  void closeDelegatesToSender() throws IOException {
+    DeferredWavefrontSender sender = new DeferredWavefrontSender(this.accountNegotiation, this::createSender, 10);
+    this.accountNegotiation.complete("abc-def");
+    sender.flush();
+    sender.close();
+    verify(this.target).flush();
+    verify(this.target).close();
+    verify(this.target, never()).sendMetric(any(), any(Double.class), any(), any(), any());
+  }
+
+  private WavefrontSender createSender(String apiToken) {
+    assertThat(apiToken).isEqualTo("abc-def");
+    return this.target;
+  }
+
+}
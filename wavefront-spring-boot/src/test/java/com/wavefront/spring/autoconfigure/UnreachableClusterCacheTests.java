@@ -0,0 +1,71 @@
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.PathResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link UnreachableClusterCache}.
+ *
+ * @author Stephane Nicoll
+ */
+class UnreachableClusterCacheTests {
+
+  private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void isUnreachableWithNoRecord() {
+    assertThat(createCache(NOW).isUnreachable("https://example.com")).isFalse();
+  }
+
+  @Test
+  void isUnreachableWithRecord() throws IOException {
+    UnreachableClusterCache cache = createCache(NOW);
+    cache.markUnreachable("https://example.com");
+    assertThat(cache.isUnreachable("https://example.com")).isTrue();
+    assertThat(cache.isUnreachable("https://another.example.com")).isFalse();
+  }
+
+  @Test
+  void isUnreachableWithExpiredRecord() throws IOException {
+    createCache(NOW).markUnreachable("https://example.com");
+    assertThat(createCache(NOW.plus(Duration.ofMinutes(4))).isUnreachable("https://example.com")).isTrue();
+    assertThat(createCache(NOW.plus(Duration.ofMinutes(6))).isUnreachable("https://example.com")).isFalse();
+  }
+
+  @Test
+  void markReachableRemovesRecord() throws IOException {
+    UnreachableClusterCache cache = createCache(NOW);
+    cache.markUnreachable("https://example.com");
+    cache.markUnreachable("https://another.example.com");
+    cache.markReachable("https://example.com");
+    assertThat(cache.isUnreachable("https://example.com")).isFalse();
+    assertThat(cache.isUnreachable("https://another.example.com")).isTrue();
+  }
+
+  @Test
+  void isUnreachableWithCorruptedRecord() throws IOException {
+    Files.writeString(this.directory.resolve("test.unreachable"), "https\\://example.com=invalid");
+    assertThat(createCache(NOW).isUnreachable("https://example.com")).isFalse();
+  }
+
+  private UnreachableClusterCache createCache(Instant now) {
+    return new UnreachableClusterCache(new PathResource(this.directory.resolve("test.unreachable")),
+        Duration.ofMinutes(5), Clock.fixed(now, ZoneOffset.UTC));
+  }
+
+}
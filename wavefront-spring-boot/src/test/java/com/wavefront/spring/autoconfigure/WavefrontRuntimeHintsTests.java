@@ -0,0 +1,34 @@
+package com.wavefront.spring.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WavefrontRuntimeHints}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontRuntimeHintsTests {
+
+  @Test
+  void wavefrontRuntimeHintsIsRegistered() {
+    assertThat(SpringFactoriesLoader.forResourceLocation("META-INF/spring/aot.factories")
+        .load(RuntimeHintsRegistrar.class)).hasAtLeastOneElementOfType(WavefrontRuntimeHints.class);
+  }
+
+  @Test
+  void buildPropertiesHasHints() {
+    RuntimeHints hints = new RuntimeHints();
+    new WavefrontRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/wavefront-spring-boot/build.properties"))
+        .accepts(hints);
+    assertThat(RuntimeHintsPredicates.resource().forBundle("META-INF/wavefront-spring-boot/build")).accepts(hints);
+  }
+
+}
@@ -0,0 +1,52 @@
+package com.wavefront.spring.export;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link CompressionStatistics}.
+ *
+ * @author Stephane Nicoll
+ */
+class CompressionStatisticsTests {
+
+  private final CompressionStatistics statistics = new CompressionStatistics();
+
+  @Test
+  void compressionRatioIsUnknownByDefault() {
+    assertThat(this.statistics.getCompressionRatio(ReportFormat.METRIC)).isNaN();
+  }
+
+  @Test
+  void compressionRatioIsSmoothed() {
+    this.statistics.record(ReportFormat.METRIC, 1000, 100, 1000);
+    assertThat(this.statistics.getCompressionRatio(ReportFormat.METRIC)).isEqualTo(10);
+    this.statistics.record(ReportFormat.METRIC, 1000, 50, 1000);
+    assertThat(this.statistics.getCompressionRatio(ReportFormat.METRIC)).isCloseTo(12, within(0.001));
+    assertThat(this.statistics.getCompressionRatio(ReportFormat.HISTOGRAM)).isNaN();
+  }
+
+  @Test
+  void emptyBatchIsIgnored() {
+    this.statistics.record(ReportFormat.METRIC, 0, 20, 1000);
+    assertThat(this.statistics.getCompressionRatio(ReportFormat.METRIC)).isNaN();
+  }
+
+  @Test
+  void bindToRecordsMetrics() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    this.statistics.bindTo(registry);
+    this.statistics.record(ReportFormat.SPAN, 1000, 100, 2_000_000);
+    assertThat(registry.get("wavefront.export.compression.ratio").tag("format", "trace").summary().mean())
+        .isEqualTo(10);
+    assertThat(registry.get("wavefront.export.compression").tag("format", "trace").timer()
+        .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2);
+    assertThat(registry.get("wavefront.export.compression").tag("format", "wavefront").timer().count()).isZero();
+  }
+
+}
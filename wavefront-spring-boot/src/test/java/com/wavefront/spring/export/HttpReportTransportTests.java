@@ -0,0 +1,149 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+/**
+ * Tests for {@link HttpReportTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class HttpReportTransportTests {
+
+  private final AtomicReference<String> requestUri = new AtomicReference<>();
+
+  private final AtomicReference<Headers> requestHeaders = new AtomicReference<>();
+
+  private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+  private volatile int status = 202;
+
+  private HttpServer server;
+
+  private URI uri;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/report", (exchange) -> {
+      this.requestUri.set(exchange.getRequestURI().toString());
+      this.requestHeaders.set(exchange.getRequestHeaders());
+      try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+        this.requestBody.set(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+      }
+      exchange.sendResponseHeaders(this.status, -1);
+      exchange.close();
+    });
+    this.server.start();
+    this.uri = URI.create("http://localhost:" + this.server.getAddress().getPort());
+  }
+
+  @AfterEach
+  void stopServer() {
+    this.server.stop(0);
+  }
+
+  @Test
+  void sendPostsCompressedBatch() throws IOException {
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123");
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test.metric 42 source=test\n".getBytes()));
+    assertThat(this.requestUri.get()).isEqualTo("/report?f=wavefront");
+    assertThat(this.requestHeaders.get().getFirst("Authorization")).isEqualTo("Bearer abc-123");
+    assertThat(this.requestHeaders.get().getFirst("Content-Encoding")).isEqualTo("gzip");
+    assertThat(this.requestBody.get()).isEqualTo("test.metric 42 source=test\n");
+  }
+
+  @Test
+  void sendWithoutApiTokenDoesNotSetAuthorizationHeader() throws IOException {
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, null);
+    transport.send(ReportFormat.SPAN, ByteBuffer.wrap("test\n".getBytes()));
+    assertThat(this.requestUri.get()).isEqualTo("/report?f=trace");
+    assertThat(this.requestHeaders.get().containsKey("Authorization")).isFalse();
+  }
+
+  @Test
+  void sendWithErrorStatusThrowsIOException() {
+    this.status = 500;
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123");
+    assertThatIOException()
+        .isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes())))
+        .withMessageContaining("status 500");
+  }
+
+  @Test
+  void sendWithClientErrorStatusThrowsReportRejectedException() {
+    this.status = 401;
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123");
+    assertThatExceptionOfType(ReportRejectedException.class)
+        .isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes())))
+        .withMessageContaining("status 401");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 408, 429, 503 })
+  void sendWithTransientErrorStatusThrowsRetryableIOException(int status) {
+    this.status = status;
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123");
+    assertThatIOException()
+        .isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes())))
+        .isNotInstanceOf(ReportRejectedException.class);
+  }
+
+  @Test
+  void sendReusesCompressorForLargeBatches() throws IOException {
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123");
+    String large = randomLines(2000);
+    ByteBuffer batch = ByteBuffer.allocateDirect(large.length());
+    batch.put(large.getBytes(StandardCharsets.US_ASCII)).flip();
+    transport.send(ReportFormat.METRIC, batch);
+    assertThat(this.requestBody.get()).isEqualTo(large);
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test.metric 42 source=test\n".getBytes()));
+    assertThat(this.requestBody.get()).isEqualTo("test.metric 42 source=test\n");
+  }
+
+  @Test
+  void sendRecordsCompressionStatistics() throws IOException {
+    CompressionStatistics statistics = new CompressionStatistics();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    statistics.bindTo(registry);
+    HttpReportTransport transport = new HttpReportTransport(HttpClient.newHttpClient(), this.uri, "abc-123",
+        statistics);
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test.metric 42 source=test\n".repeat(100).getBytes()));
+    assertThat(statistics.getCompressionRatio(ReportFormat.METRIC)).isGreaterThan(10);
+    assertThat(statistics.getCompressionRatio(ReportFormat.SPAN)).isNaN();
+    assertThat(registry.get("wavefront.export.compression").tag("format", "wavefront").timer().count()).isOne();
+  }
+
+  private String randomLines(int count) {
+    Random random = new Random(42);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      content.append("test.metric.").append(random.nextInt()).append(' ').append(random.nextDouble())
+          .append(" source=test\n");
+    }
+    return content.toString();
+  }
+
+}
@@ -0,0 +1,358 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Tests for {@link RingBufferWavefrontSender}.
+ *
+ * @author Stephane Nicoll
+ */
+@ExtendWith(OutputCaptureExtension.class)
+class RingBufferWavefrontSenderTests {
+
+  private final RecordingReportTransport transport = new RecordingReportTransport();
+
+  private RingBufferWavefrontSender sender;
+
+  @AfterEach
+  void close() throws IOException {
+    if (this.sender != null) {
+      this.sender.close();
+    }
+  }
+
+  @Test
+  void sendMetricIsBatchedUntilFlush() throws IOException {
+    this.sender = createSender(1024, 2);
+    this.sender.sendMetric("test.metric", 42, 1000L, "test-source", Map.of("region", "us"));
+    this.sender.sendMetric("test.metric", 43, 2000L, "test-source", Map.of("region", "us"));
+    assertThat(this.transport.batches).isEmpty();
+    this.sender.flush();
+    assertThat(this.transport.batches).singleElement().satisfies((batch) -> {
+      assertThat(batch.format()).isEqualTo(ReportFormat.METRIC);
+      assertThat(batch.content()).isEqualTo("\"test.metric\" 42.0 1000 source=\"test-source\" \"region\"=\"us\"\n"
+          + "\"test.metric\" 43.0 2000 source=\"test-source\" \"region\"=\"us\"\n");
+    });
+  }
+
+  @Test
+  void sendFormattedMetricAddsNewLine() throws IOException {
+    this.sender = createSender(1024, 2);
+    this.sender.sendFormattedMetric("test.metric 42 source=test");
+    this.sender.flush();
+    assertThat(this.transport.batches).singleElement()
+        .satisfies((batch) -> assertThat(batch.content()).isEqualTo("test.metric 42 source=test\n"));
+  }
+
+  @Test
+  void sendMetricWithInvalidNameThrowsIOException() {
+    this.sender = createSender(1024, 2);
+    assertThatIOException().isThrownBy(() -> this.sender.sendMetric("", 42, 1000L, "test", Map.of()));
+  }
+
+  @Test
+  void sendDistributionUsesHistogramFormat() throws IOException {
+    this.sender = createSender(1024, 2);
+    this.sender.sendDistribution("test.histogram", List.of(new Pair<>(1.5, 3)),
+        Set.of(HistogramGranularity.MINUTE), 1000L, "test-source", Map.of());
+    this.sender.flush();
+    assertThat(this.transport.batches).singleElement().satisfies((batch) -> {
+      assertThat(batch.format()).isEqualTo(ReportFormat.HISTOGRAM);
+      assertThat(batch.content()).isEqualTo("!M 1000 #3 1.5 \"test.histogram\" source=\"test-source\"\n");
+    });
+  }
+
+  @Test
+  void sendSpanWithSpanLogsUsesBothFormats() throws IOException {
+    this.sender = createSender(4096, 2);
+    UUID traceId = UUID.randomUUID();
+    UUID spanId = UUID.randomUUID();
+    this.sender.sendSpan("test-span", 1000L, 10L, "test-source", traceId, spanId, null, null,
+        List.of(new Pair<>("application", "test")), List.of(new SpanLog(1000L, Map.of("event", "error"))));
+    this.sender.flush();
+    assertThat(this.transport.batches).extracting(RecordedBatch::format)
+        .containsExactlyInAnyOrder(ReportFormat.SPAN, ReportFormat.SPAN_LOG);
+  }
+
+  @Test
+  void sendEncodedIsCopiedInBatchOfFormat() throws IOException {
+    this.sender = createSender(1024, 2);
+    ByteBuffer lines = StandardCharsets.UTF_8.encode("!M 1000 #1 1.5 \"test\" source=\"a\"\n");
+    this.sender.sendEncoded(ReportFormat.HISTOGRAM, lines);
+    assertThat(lines.position()).isZero();
+    this.sender.flush();
+    assertThat(this.transport.batches).singleElement().satisfies((batch) -> {
+      assertThat(batch.format()).isEqualTo(ReportFormat.HISTOGRAM);
+      assertThat(batch.content()).isEqualTo("!M 1000 #1 1.5 \"test\" source=\"a\"\n");
+    });
+  }
+
+  @Test
+  void sendEncodedSplitsLinesAcrossBatches() throws Exception {
+    this.sender = createSender(24, 4);
+    String content = "test.metric.a 1\ntest.metric.b 2\ntest.metric.c 3\n";
+    this.sender.sendEncoded(ReportFormat.METRIC, StandardCharsets.UTF_8.encode(content));
+    this.sender.flush();
+    this.transport.awaitBatches(3);
+    assertThat(this.transport.batches).hasSize(3)
+        .allSatisfy((batch) -> assertThat(batch.content()).endsWith("\n").containsOnlyOnce("\n"));
+    assertThat(this.transport.batches.stream().map(RecordedBatch::content))
+        .containsExactlyInAnyOrder("test.metric.a 1\n", "test.metric.b 2\n", "test.metric.c 3\n");
+    assertThat(this.sender.getDroppedCount()).isZero();
+  }
+
+  @Test
+  void sendEncodedDropsLineLargerThanBatch() throws Exception {
+    this.sender = createSender(16, 2);
+    String content = "short 1\n" + "x".repeat(30) + "\n" + "tail 2\n";
+    this.sender.sendEncoded(ReportFormat.METRIC, StandardCharsets.UTF_8.encode(content));
+    this.sender.flush();
+    this.transport.awaitBatches(2);
+    assertThat(this.sender.getDroppedCount()).isOne();
+    assertThat(this.transport.batches.stream().map(RecordedBatch::content)).containsExactlyInAnyOrder("short 1\n",
+        "tail 2\n");
+  }
+
+  @Test
+  void fullBatchIsSentWithoutWaitingForFlush() throws Exception {
+    this.sender = createSender(128, 2);
+    for (int i = 0; i < 3; i++) {
+      this.sender.sendMetric("test.metric", i, 1000L, "test-source", Map.of());
+    }
+    this.transport.awaitBatches(1);
+    assertThat(this.transport.batches.get(0).content()).startsWith("\"test.metric\" 0.0");
+  }
+
+  @Test
+  void batchSizeIsAdaptedToTargetCompressedSize() throws Exception {
+    CompressionStatistics statistics = new CompressionStatistics();
+    statistics.record(ReportFormat.METRIC, 10_000, 1_000, 1000);
+    this.sender = createSender(8192, 4);
+    this.sender.setTargetCompressedSize(150, statistics);
+    for (int i = 0; i < 40; i++) {
+      this.sender.sendMetric("test.metric", i, 1000L, "test-source", Map.of());
+    }
+    this.transport.awaitBatches(1);
+    assertThat(this.transport.batches.get(0).content().length()).isLessThanOrEqualTo(1500).isGreaterThan(1400);
+  }
+
+  @Test
+  void itemLargerThanAdaptedBatchSizeUsesWholeBatch() throws IOException {
+    CompressionStatistics statistics = new CompressionStatistics();
+    statistics.record(ReportFormat.METRIC, 1_000, 1_000, 1000);
+    this.sender = createSender(4096, 2);
+    this.sender.setTargetCompressedSize(10, statistics);
+    String name = "test.metric." + "a".repeat(2000);
+    this.sender.sendMetric(name, 1, 1000L, "test-source", Map.of());
+    this.sender.flush();
+    assertThat(this.sender.getDroppedCount()).isZero();
+    assertThat(this.transport.batches).singleElement().satisfies((batch) -> assertThat(batch.content()).contains(name));
+  }
+
+  @Test
+  void itemIsDroppedWhenNoBatchIsAvailable() throws IOException {
+    this.transport.blocked = true;
+    this.sender = createSender(64, 1);
+    this.sender.sendMetric("test.metric", 1, 1000L, "test-source", Map.of());
+    this.sender.sendMetric("test.metric", 2, 1000L, "test-source", Map.of());
+    this.sender.sendMetric("test.metric", 3, 1000L, "test-source", Map.of());
+    assertThat(this.sender.getDroppedCount()).isGreaterThanOrEqualTo(1);
+    this.transport.blocked = false;
+  }
+
+  @Test
+  void producerWaitingForBatchDoesNotBlockFlush() throws Exception {
+    this.transport.blocked = true;
+    this.sender = new RingBufferWavefrontSender(this.transport, "test", 64, 1, Duration.ofHours(1),
+        Duration.ofSeconds(10));
+    Thread producer = new Thread(() -> {
+      try {
+        this.sender.sendMetric("test.metric", 1, 1000L, "test-source", Map.of());
+        this.sender.sendMetric("test.metric", 2, 1000L, "test-source", Map.of());
+      }
+      catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+    producer.start();
+    await().atMost(5, TimeUnit.SECONDS)
+        .until(() -> this.transport.sending.get() > 0 && producer.getState() == Thread.State.TIMED_WAITING);
+    CompletableFuture<Void> flush = CompletableFuture.runAsync(this.sender::flush);
+    this.transport.blocked = false;
+    flush.get(1, TimeUnit.SECONDS);
+    producer.join(5000);
+    this.sender.flush();
+    assertThat(this.transport.batches).hasSize(2);
+    assertThat(this.sender.getDroppedCount()).isZero();
+  }
+
+  @Test
+  void flushWaitsForBatchesBeingSent() throws Exception {
+    this.transport.blocked = true;
+    this.sender = createSender(1024, 2);
+    this.sender.sendMetric("test.metric", 1, 1000L, "test-source", Map.of());
+    CompletableFuture<Void> firstFlush = CompletableFuture.runAsync(this.sender::flush);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> this.transport.sending.get() > 0);
+    this.sender.sendMetric("test.metric", 2, 1000L, "test-source", Map.of());
+    CompletableFuture<Void> secondFlush = CompletableFuture.runAsync(this.sender::flush);
+    Thread.sleep(100);
+    assertThat(secondFlush).isNotDone();
+    this.transport.blocked = false;
+    CompletableFuture.allOf(firstFlush, secondFlush).get(1, TimeUnit.SECONDS);
+    assertThat(this.transport.maxConcurrentSends).hasValue(1);
+    assertThat(this.transport.batches).extracting(RecordedBatch::content)
+        .satisfiesExactly((batch) -> assertThat(batch).contains("1.0"), (batch) -> assertThat(batch).contains("2.0"));
+  }
+
+  @Test
+  void itemLargerThanBatchIsDropped() throws IOException {
+    this.sender = createSender(16, 2);
+    this.sender.sendMetric("test.metric.with.a.long.name", 1, 1000L, "test-source", Map.of());
+    assertThat(this.sender.getDroppedCount()).isOne();
+  }
+
+  @Test
+  void failedBatchIsAccountedForAndReused() throws IOException {
+    this.transport.failure = new IOException("test");
+    this.sender = createSender(1024, 1);
+    this.sender.sendMetric("test.metric", 1, 1000L, "test-source", Map.of());
+    this.sender.sendMetric("test.metric", 2, 1000L, "test-source", Map.of());
+    this.sender.flush();
+    assertThat(this.sender.getFailureCount()).isOne();
+    assertThat(this.sender.getDroppedCount()).isEqualTo(2);
+    this.transport.failure = null;
+    this.sender.sendMetric("test.metric", 3, 1000L, "test-source", Map.of());
+    this.sender.flush();
+    assertThat(this.transport.batches).hasSize(1);
+  }
+
+  @Test
+  void eventsAndLogsAreDroppedAndLoggedOnce(CapturedOutput output) throws IOException {
+    this.sender = createSender(1024, 1);
+    this.sender.sendEvent("test", 1000L, 2000L, "test-source", Map.of(), Map.of());
+    this.sender.sendEvent("test", 1000L, 2000L, "test-source", Map.of(), Map.of());
+    this.sender.sendLog("test", 1, 1000L, "test-source", Map.of());
+    assertThat(this.sender.getDroppedCount()).isEqualTo(3);
+    assertThat(output).containsOnlyOnce("Events are not supported").containsOnlyOnce("Logs are not supported");
+  }
+
+  @Test
+  void droppedItemsArePublishedWhenBound() throws IOException {
+    this.sender = createSender(1024, 1);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    this.sender.bindTo(registry);
+    this.sender.sendEvent("test", 1000L, 2000L, "test-source", Map.of(), Map.of());
+    assertThat(registry.get("wavefront.export.dropped").functionCounter().count()).isOne();
+  }
+
+  @Test
+  void batchesThatExceedMaximumBufferSizeAreRejected() {
+    assertThatIllegalArgumentException().isThrownBy(() -> createSender(1024 * 1024 * 1024, 2));
+  }
+
+  @Test
+  void closeFlushesPendingItems() throws IOException {
+    this.sender = createSender(1024, 1);
+    this.sender.sendMetric("test.metric", 1, 1000L, "test-source", Map.of());
+    this.sender.close();
+    assertThat(this.transport.batches).hasSize(1);
+    assertThat(this.transport.closed).isTrue();
+    this.sender.sendMetric("test.metric", 2, 1000L, "test-source", Map.of());
+    assertThat(this.sender.getDroppedCount()).isOne();
+    this.sender = null;
+  }
+
+  private RingBufferWavefrontSender createSender(int batchSize, int batchCount) {
+    return new RingBufferWavefrontSender(this.transport, "test", batchSize, batchCount, Duration.ofHours(1),
+        Duration.ZERO);
+  }
+
+  record RecordedBatch(ReportFormat format, String content) {
+
+  }
+
+  static class RecordingReportTransport implements ReportTransport {
+
+    private final List<RecordedBatch> batches = new ArrayList<>();
+
+    private volatile boolean blocked;
+
+    private final AtomicInteger sending = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrentSends = new AtomicInteger();
+
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    @Override
+    public void send(ReportFormat format, ByteBuffer batch) throws IOException {
+      this.maxConcurrentSends.accumulateAndGet(this.sending.incrementAndGet(), Math::max);
+      try {
+        while (this.blocked) {
+          try {
+            Thread.sleep(10);
+          }
+          catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        record(format, batch);
+      }
+      finally {
+        this.sending.decrementAndGet();
+      }
+    }
+
+    private synchronized void record(ReportFormat format, ByteBuffer batch) throws IOException {
+      if (this.failure != null) {
+        throw this.failure;
+      }
+      this.batches.add(new RecordedBatch(format, StandardCharsets.UTF_8.decode(batch).toString()));
+      notifyAll();
+    }
+
+    synchronized void awaitBatches(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (this.batches.size() < count && System.currentTimeMillis() < deadline) {
+        wait(100);
+      }
+    }
+
+    @Override
+    public void close() {
+      this.blocked = false;
+      this.closed = true;
+    }
+
+  }
+
+}
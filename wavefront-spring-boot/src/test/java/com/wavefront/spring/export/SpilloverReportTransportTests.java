@@ -0,0 +1,349 @@
+package com.wavefront.spring.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Tests for {@link SpilloverReportTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class SpilloverReportTransportTests {
+
+  private static final String DESTINATION = "https://example.wavefront.com";
+
+  @TempDir
+  Path directory;
+
+  private final ControllableReportTransport delegate = new ControllableReportTransport();
+
+  private final List<SpilloverReportTransport> transports = new ArrayList<>();
+
+  @AfterEach
+  void close() throws IOException {
+    for (SpilloverReportTransport transport : this.transports) {
+      transport.close();
+    }
+  }
+
+  @Test
+  void sendWhenDelegateIsAvailableDoesNotSpill() throws IOException {
+    SpilloverReportTransport transport = createTransport(1024, 4096, Duration.ofMillis(10));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    assertThat(this.delegate.sent()).containsExactly("wavefront:first");
+    assertThat(transport.getSpilledCount()).isZero();
+    assertThat(segmentFiles()).isEmpty();
+  }
+
+  @Test
+  void sendWhenDelegateFailsSpillsAndReplaysInOrder() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(1024, 4096, Duration.ofMillis(10));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.SPAN, batch("second"));
+    assertThat(transport.getSpilledCount()).isEqualTo(2);
+    int attempts = this.delegate.attempts;
+    transport.send(ReportFormat.METRIC, batch("third"));
+    assertThat(this.delegate.attempts).isLessThanOrEqualTo(attempts + 1);
+    this.delegate.available = true;
+    awaitReplayed(transport);
+    assertThat(this.delegate.sent()).containsExactly("wavefront:first", "trace:second", "wavefront:third");
+    assertThat(segmentFiles()).isEmpty();
+  }
+
+  @Test
+  void spilledBatchesAreReplayedOnNextStart() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory, 1024,
+        4096, 1024 * 1024, Duration.ofHours(1));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.HISTOGRAM, batch("second"));
+    transport.close();
+    assertThat(segmentFiles()).hasSize(1);
+    this.delegate.available = true;
+    SpilloverReportTransport restarted = createTransport(1024, 4096, Duration.ofHours(1));
+    awaitReplayed(restarted);
+    assertThat(this.delegate.sent()).containsExactly("wavefront:first", "histogram:second");
+  }
+
+  @Test
+  void spilledBatchesOfAnotherDestinationAreNotReplayed() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, "proxy://localhost:2878",
+        this.directory, 1024, 4096, 1024 * 1024, Duration.ofHours(1));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.close();
+    this.delegate.available = true;
+    SpilloverReportTransport other = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory, 1024,
+        4096, 1024 * 1024, Duration.ofMillis(10));
+    assertThat(other.getSpilledCount()).isZero();
+    other.send(ReportFormat.METRIC, batch("second"));
+    other.close();
+    assertThat(this.delegate.sent()).containsExactly("wavefront:second");
+    assertThat(segmentFiles()).hasSize(1);
+    SpilloverReportTransport restarted = new SpilloverReportTransport(this.delegate, "proxy://localhost:2878",
+        this.directory, 1024, 4096, 1024 * 1024, Duration.ofHours(1));
+    this.transports.add(restarted);
+    awaitReplayed(restarted);
+    assertThat(this.delegate.sent()).containsExactly("wavefront:second", "wavefront:first");
+  }
+
+  @Test
+  void destinationUuidIsStable() {
+    assertThat(SpilloverReportTransport.getDestinationUuid(DESTINATION))
+        .isEqualTo(SpilloverReportTransport.getDestinationUuid("https://example.wavefront.com"))
+        .isNotEqualTo(SpilloverReportTransport.getDestinationUuid("proxy://localhost:2878"));
+  }
+
+  @Test
+  void oldestSegmentIsDiscardedWhenMaxSizeIsReached() throws IOException {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(64, 128, Duration.ofHours(1));
+    for (int i = 0; i < 10; i++) {
+      transport.send(ReportFormat.METRIC, batch("batch-" + i + "-" + "x".repeat(20)));
+    }
+    assertThat(segmentFiles()).hasSize(2);
+    assertThat(transport.getDroppedCount()).isEqualTo(10 - transport.getSpilledCount());
+    assertThat(transport.getSpilledCount()).isEqualTo(2);
+  }
+
+  @Test
+  void oldestSegmentIsDeletedOnceItsReplayHasCompleted() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory, 64,
+        128, 1024 * 1024, Duration.ofHours(1));
+    transport.send(ReportFormat.METRIC, batch("first-" + "x".repeat(24)));
+    transport.close();
+    List<Path> replayed = segmentFiles();
+    CountDownLatch replaying = this.delegate.block();
+    SpilloverReportTransport restarted = createTransport(64, 128, Duration.ofHours(1));
+    assertThat(replaying.await(5, TimeUnit.SECONDS)).isTrue();
+    restarted.send(ReportFormat.METRIC, batch("second-" + "x".repeat(24)));
+    restarted.send(ReportFormat.METRIC, batch("third-" + "x".repeat(24)));
+    assertThat(segmentFiles()).hasSize(3).containsAll(replayed);
+    this.delegate.available = true;
+    this.delegate.release();
+    awaitReplayed(restarted);
+    assertThat(this.delegate.sent()).containsExactly("wavefront:first-" + "x".repeat(24),
+        "wavefront:second-" + "x".repeat(24), "wavefront:third-" + "x".repeat(24));
+    assertThat(restarted.getDroppedCount()).isZero();
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(segmentFiles()).isEmpty());
+  }
+
+  @Test
+  void batchLargerThanSegmentIsNotSpilled() throws IOException {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(32, 128, Duration.ofHours(1));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.METRIC, batch("x".repeat(64)));
+    assertThat(transport.getSpilledCount()).isOne();
+    assertThat(transport.getDroppedCount()).isOne();
+  }
+
+  @Test
+  void replayIsRateLimited() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory, 4096,
+        8192, 1000, Duration.ofMillis(10));
+    this.transports.add(transport);
+    for (int i = 0; i < 3; i++) {
+      transport.send(ReportFormat.METRIC, batch("x".repeat(500)));
+    }
+    this.delegate.available = true;
+    this.delegate.awaitSent(1);
+    Thread.sleep(200);
+    assertThat(this.delegate.sent()).hasSize(1);
+    assertThat(transport.getSpilledCount()).isEqualTo(2);
+  }
+
+  @Test
+  void sendWhenBatchIsRejectedDoesNotSpill() throws IOException {
+    this.delegate.rejected = "first";
+    SpilloverReportTransport transport = createTransport(1024, 4096, Duration.ofHours(1));
+    assertThatExceptionOfType(ReportRejectedException.class)
+        .isThrownBy(() -> transport.send(ReportFormat.METRIC, batch("first")));
+    assertThat(transport.getSpilledCount()).isZero();
+    assertThat(segmentFiles()).isEmpty();
+    transport.send(ReportFormat.METRIC, batch("second"));
+    assertThat(this.delegate.sent()).containsExactly("wavefront:second");
+  }
+
+  @Test
+  void replayOfRejectedBatchDropsItAndContinues() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(1024, 4096, Duration.ofMillis(10));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.METRIC, batch("second"));
+    this.delegate.rejected = "first";
+    this.delegate.available = true;
+    awaitReplayed(transport);
+    assertThat(this.delegate.sent()).containsExactly("wavefront:second");
+    assertThat(transport.getDroppedCount()).isOne();
+  }
+
+  @Test
+  void sendWhenDelegateRecoveredDoesNotWaitForReplay() throws Exception {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory, 4096,
+        8192, 1, Duration.ofMillis(10));
+    this.transports.add(transport);
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.METRIC, batch("second"));
+    this.delegate.available = true;
+    this.delegate.awaitSent(1);
+    Thread.sleep(20);
+    transport.send(ReportFormat.METRIC, batch("third"));
+    assertThat(this.delegate.sent()).containsExactly("wavefront:first", "wavefront:third");
+    assertThat(transport.getSpilledCount()).isOne();
+  }
+
+  @Test
+  void sendWithinRetryIntervalAfterFailureSpillsWithoutTryingDelegate() throws IOException {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(1024, 4096, Duration.ofHours(1));
+    transport.send(ReportFormat.METRIC, batch("first"));
+    int attempts = this.delegate.attempts;
+    this.delegate.available = true;
+    transport.send(ReportFormat.METRIC, batch("second"));
+    assertThat(this.delegate.attempts).isEqualTo(attempts);
+    assertThat(transport.getSpilledCount()).isEqualTo(2);
+  }
+
+  @Test
+  void bindToRegistersMeters() throws IOException {
+    this.delegate.available = false;
+    SpilloverReportTransport transport = createTransport(32, 128, Duration.ofHours(1));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    transport.bindTo(registry);
+    transport.send(ReportFormat.METRIC, batch("first"));
+    transport.send(ReportFormat.METRIC, batch("x".repeat(64)));
+    assertThat(registry.get("wavefront.export.spill.pending").gauge().value()).isOne();
+    assertThat(registry.get("wavefront.export.spill.dropped").functionCounter().count()).isOne();
+  }
+
+  @Test
+  void directoryInUseDoesNotSpill() throws IOException {
+    createTransport(1024, 4096, Duration.ofHours(1));
+    SpilloverReportTransport other = createTransport(1024, 4096, Duration.ofHours(1));
+    this.delegate.available = false;
+    assertThatIOException().isThrownBy(() -> other.send(ReportFormat.METRIC, batch("first")))
+        .withMessage("unavailable");
+    assertThat(other.getSpilledCount()).isZero();
+    assertThat(segmentFiles()).isEmpty();
+  }
+
+  private SpilloverReportTransport createTransport(int segmentSize, long maxSize, Duration retryInterval)
+      throws IOException {
+    SpilloverReportTransport transport = new SpilloverReportTransport(this.delegate, DESTINATION, this.directory,
+        segmentSize, maxSize, 1024 * 1024, retryInterval);
+    this.transports.add(transport);
+    return transport;
+  }
+
+  private void awaitReplayed(SpilloverReportTransport transport) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (transport.getSpilledCount() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(transport.getSpilledCount()).isZero();
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.filter((file) -> file.getFileName().toString().startsWith("segment-")).toList();
+    }
+  }
+
+  private static ByteBuffer batch(String content) {
+    return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static class ControllableReportTransport implements ReportTransport {
+
+    private final List<String> sent = new ArrayList<>();
+
+    private volatile boolean available = true;
+
+    private volatile String rejected;
+
+    private volatile int attempts;
+
+    private volatile CountDownLatch blocked;
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    /**
+     * Block the next batch until {@link #release()} is called.
+     * @return a latch that is counted down once the next batch is blocked
+     */
+    CountDownLatch block() {
+      this.blocked = new CountDownLatch(1);
+      return this.blocked;
+    }
+
+    void release() {
+      this.released.countDown();
+    }
+
+    @Override
+    public void send(ReportFormat format, ByteBuffer batch) throws IOException {
+      CountDownLatch blocked = this.blocked;
+      if (blocked != null) {
+        this.blocked = null;
+        blocked.countDown();
+        try {
+          this.released.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      doSend(format, batch);
+    }
+
+    private synchronized void doSend(ReportFormat format, ByteBuffer batch) throws IOException {
+      this.attempts++;
+      if (!this.available) {
+        throw new IOException("unavailable");
+      }
+      String content = StandardCharsets.UTF_8.decode(batch).toString();
+      if (content.equals(this.rejected)) {
+        throw new ReportRejectedException("rejected");
+      }
+      this.sent.add(format.getId() + ":" + content);
+      notifyAll();
+    }
+
+    synchronized List<String> sent() {
+      return new ArrayList<>(this.sent);
+    }
+
+    synchronized void awaitSent(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (this.sent.size() < count && System.currentTimeMillis() < deadline) {
+        wait(50);
+      }
+    }
+
+  }
+
+}
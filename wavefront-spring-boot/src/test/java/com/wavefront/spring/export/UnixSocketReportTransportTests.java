@@ -0,0 +1,213 @@
+package com.wavefront.spring.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Tests for {@link UnixSocketReportTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class UnixSocketReportTransportTests {
+
+  @TempDir
+  Path directory;
+
+  private ProxyServer server;
+
+  @AfterEach
+  void stopServer() throws Exception {
+    if (this.server != null) {
+      this.server.stop();
+    }
+  }
+
+  @Test
+  void sendWritesBatchAsIs() throws Exception {
+    this.server = ProxyServer.start(socket(), true);
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    ByteBuffer batch = ByteBuffer.wrap("test.metric 42 source=test\n".getBytes(StandardCharsets.UTF_8));
+    transport.send(ReportFormat.METRIC, batch);
+    transport.close();
+    assertThat(batch.position()).isZero();
+    assertThat(this.server.awaitContent("test.metric 42 source=test\n".length()))
+        .isEqualTo("test.metric 42 source=test\n");
+  }
+
+  @Test
+  void sendReusesConnectionOfFormat() throws Exception {
+    this.server = ProxyServer.start(socket(), true);
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("first 1 source=test\n".getBytes(StandardCharsets.UTF_8)));
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("second 2 source=test\n".getBytes(StandardCharsets.UTF_8)));
+    transport.close();
+    assertThat(this.server.awaitContent(41)).isEqualTo("first 1 source=test\nsecond 2 source=test\n");
+    assertThat(this.server.connections.get()).isOne();
+  }
+
+  @Test
+  void sendUsesOneConnectionPerFormat() throws Exception {
+    this.server = ProxyServer.start(socket(), true);
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("metric 1 source=test\n".getBytes(StandardCharsets.UTF_8)));
+    transport.send(ReportFormat.SPAN, ByteBuffer.wrap("span source=test\n".getBytes(StandardCharsets.UTF_8)));
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("metric 2 source=test\n".getBytes(StandardCharsets.UTF_8)));
+    transport.close();
+    assertThat(this.server.awaitContent(59).split("\n")).containsExactlyInAnyOrder("metric 1 source=test",
+        "span source=test", "metric 2 source=test");
+    assertThat(this.server.connections.get()).isEqualTo(2);
+  }
+
+  @Test
+  void sendWhenSocketIsMissingFails() {
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    assertThatIOException().isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes())));
+  }
+
+  @Test
+  void sendAfterFailureReconnects() throws Exception {
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    assertThatIOException().isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("lost\n".getBytes())));
+    this.server = ProxyServer.start(socket(), true);
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes()));
+    transport.close();
+    assertThat(this.server.awaitContent(5)).isEqualTo("test\n");
+  }
+
+  @Test
+  void sendWhenProxyDoesNotReadTimesOut() throws Exception {
+    this.server = ProxyServer.start(socket(), false);
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket(), Duration.ofMillis(200));
+    ByteBuffer batch = ByteBuffer.allocate(64 * 1024 * 1024);
+    assertThatIOException().isThrownBy(() -> transport.send(ReportFormat.METRIC, batch))
+        .withMessageContaining("Timed out");
+    transport.close();
+  }
+
+  @Test
+  void sendAfterPartialWriteReconnects() throws Exception {
+    this.server = ProxyServer.start(socket(), false);
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket(), Duration.ofMillis(200));
+    ByteBuffer batch = ByteBuffer.allocate(64 * 1024 * 1024);
+    assertThatIOException().isThrownBy(() -> transport.send(ReportFormat.METRIC, batch));
+    transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes()));
+    transport.close();
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(this.server.connections).hasValue(2));
+  }
+
+  @Test
+  void sendAfterCloseFails() {
+    UnixSocketReportTransport transport = new UnixSocketReportTransport(socket());
+    transport.close();
+    assertThatIOException().isThrownBy(() -> transport.send(ReportFormat.METRIC, ByteBuffer.wrap("test\n".getBytes())))
+        .withMessageContaining("is closed");
+  }
+
+  private Path socket() {
+    return this.directory.resolve("proxy.sock");
+  }
+
+  /**
+   * A stand-in for a proxy listening on a Unix domain socket.
+   */
+  private static final class ProxyServer {
+
+    private final ServerSocketChannel channel;
+
+    private final Path path;
+
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final Thread thread;
+
+    private ProxyServer(Path path, boolean read) throws IOException {
+      this.path = path;
+      this.channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      this.channel.bind(UnixDomainSocketAddress.of(path));
+      this.thread = new Thread(() -> accept(read));
+      this.thread.setDaemon(true);
+    }
+
+    static ProxyServer start(Path path, boolean read) throws IOException {
+      ProxyServer server = new ProxyServer(path, read);
+      server.thread.start();
+      return server;
+    }
+
+    private void accept(boolean read) {
+      try {
+        while (true) {
+          SocketChannel client = this.channel.accept();
+          this.connections.incrementAndGet();
+          if (read) {
+            Thread reader = new Thread(() -> read(client));
+            reader.setDaemon(true);
+            reader.start();
+          }
+        }
+      }
+      catch (IOException ex) {
+        // Server stopped
+      }
+    }
+
+    private void read(SocketChannel client) {
+      try (client) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (client.read(buffer) != -1) {
+          synchronized (this.content) {
+            this.content.write(buffer.array(), 0, buffer.position());
+          }
+          buffer.clear();
+        }
+      }
+      catch (IOException ex) {
+        // Client disconnected
+      }
+    }
+
+    String awaitContent(int length) throws InterruptedException {
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (System.nanoTime() < deadline) {
+        synchronized (this.content) {
+          if (this.content.size() >= length) {
+            break;
+          }
+        }
+        Thread.sleep(10);
+      }
+      synchronized (this.content) {
+        return this.content.toString(StandardCharsets.UTF_8);
+      }
+    }
+
+    void stop() throws Exception {
+      this.channel.close();
+      this.thread.join(5000);
+      Files.deleteIfExists(this.path);
+    }
+
+  }
+
+}
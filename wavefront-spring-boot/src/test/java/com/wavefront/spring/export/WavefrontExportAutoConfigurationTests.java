@@ -0,0 +1,164 @@
+package com.wavefront.spring.export;
+
+import java.nio.file.Path;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.context.properties.source.InvalidConfigurationPropertyValueException;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link WavefrontExportAutoConfiguration}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontExportAutoConfigurationTests {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(WavefrontExportAutoConfiguration.class))
+      .withPropertyValues("management.wavefront.uri=https://example.com", "management.wavefront.api-token=abc-123");
+
+  @Test
+  void runByDefaultDoesNotConfigureSender() {
+    this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(WavefrontSender.class)
+        .doesNotHaveBean(ReportTransport.class));
+  }
+
+  @Test
+  void runWhenEnabledConfiguresRingBufferSender() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "wavefront.export.buffer.batch-size=16KB", "wavefront.export.buffer.batches=2").run((context) -> {
+          assertThat(context).hasSingleBean(WavefrontSender.class).hasSingleBean(ReportTransport.class);
+          assertThat(context.getBean(WavefrontSender.class)).isInstanceOf(RingBufferWavefrontSender.class)
+              .hasFieldOrPropertyWithValue("batchSize", 16 * 1024).hasFieldOrPropertyWithValue("batchCount", 2);
+          assertThat(context.getBean(ReportTransport.class)).isInstanceOf(HttpReportTransport.class)
+              .hasFieldOrPropertyWithValue("apiToken", "abc-123");
+        });
+  }
+
+  @Test
+  void runWhenEnabledBindsDroppedItemsToMeterRegistry() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true").run((context) -> {
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      context.getBeanProvider(MeterBinder.class).forEach((binder) -> binder.bindTo(registry));
+      assertThat(registry.find("wavefront.export.dropped").functionCounter()).isNotNull();
+    });
+  }
+
+  @Test
+  void runWhenEnabledWithBuffersLargerThanMaximumSizeFails() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "wavefront.export.buffer.batch-size=1GB", "wavefront.export.buffer.batches=4")
+        .run((context) -> assertThat(context).hasFailed().getFailure()
+            .hasRootCauseInstanceOf(InvalidConfigurationPropertyValueException.class)
+            .rootCause().hasMessageContaining("wavefront.export.buffer.batches"));
+  }
+
+  @Test
+  void runWhenEnabledWithTargetCompressedSizeAdaptsBatchSize() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "wavefront.export.buffer.target-compressed-size=8KB").run((context) -> {
+          assertThat(context).hasSingleBean(CompressionStatistics.class);
+          CompressionStatistics statistics = context.getBean(CompressionStatistics.class);
+          assertThat(context.getBean(WavefrontSender.class))
+              .hasFieldOrPropertyWithValue("targetCompressedSize", 8 * 1024)
+              .hasFieldOrPropertyWithValue("compressionStatistics", statistics);
+          assertThat(context.getBean(ReportTransport.class)).hasFieldOrPropertyWithValue("statistics", statistics);
+        });
+  }
+
+  @Test
+  void runWhenSpillEnabledWrapsTransport(@TempDir Path directory) {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "wavefront.export.spill.enabled=true", "wavefront.export.spill.directory=" + directory).run((context) -> {
+          assertThat(context.getBean(WavefrontSender.class)).extracting("transport")
+              .isInstanceOf(SpilloverReportTransport.class).hasFieldOrPropertyWithValue("directory", directory)
+              .hasFieldOrPropertyWithValue("delegate", context.getBean(ReportTransport.class));
+          assertThat(directory.resolve("lock")).exists();
+        });
+  }
+
+  @Test
+  void runWhenSpillEnabledBindsSpillMetersToMeterRegistry(@TempDir Path directory) {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true", "wavefront.export.spill.enabled=true",
+        "wavefront.export.spill.directory=" + directory).run((context) -> {
+          SimpleMeterRegistry registry = new SimpleMeterRegistry();
+          context.getBeanProvider(MeterBinder.class).forEach((binder) -> binder.bindTo(registry));
+          assertThat(registry.find("wavefront.export.spill.dropped").functionCounter()).isNotNull();
+          assertThat(registry.find("wavefront.export.spill.pending").gauge()).isNotNull();
+        });
+  }
+
+  @Test
+  void runWhenEnabledUsesApplicationTags() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("app", "svc").build();
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true")
+        .withBean(ApplicationTags.class, () -> applicationTags).run((context) -> {
+          assertThat(context).hasSingleBean(WavefrontSender.class);
+          assertThat(context.getBean(WavefrontSender.class)).extracting("encoder.applicationTagsSuffix")
+              .hasFieldOrPropertyWithValue("applicationTags", applicationTags);
+        });
+  }
+
+  @Test
+  void runWhenEnabledWithProxyDoesNotUseApiToken() {
+    new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(WavefrontExportAutoConfiguration.class))
+        .withPropertyValues("management.wavefront.uri=proxy://localhost:2878", "wavefront.export.buffer.enabled=true")
+        .run((context) -> assertThat(context.getBean(ReportTransport.class))
+            .hasFieldOrPropertyWithValue("apiToken", null));
+  }
+
+  @Test
+  void runWithUnixSocketUriConfiguresRingBufferSenderWithoutApiToken() {
+    new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(WavefrontExportAutoConfiguration.class))
+        .withPropertyValues("management.wavefront.uri=unix:///var/run/wavefront/proxy.sock")
+        .run((context) -> {
+          assertThat(context).getBean(WavefrontSender.class).isInstanceOf(RingBufferWavefrontSender.class);
+          assertThat(context.getBean(ReportTransport.class)).isInstanceOf(UnixSocketReportTransport.class)
+              .hasToString("unix:///var/run/wavefront/proxy.sock");
+        });
+  }
+
+  @Test
+  void runWithUnixSocketUriWithoutPathFails() {
+    new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(WavefrontExportAutoConfiguration.class))
+        .withPropertyValues("management.wavefront.uri=unix:proxy.sock")
+        .run((context) -> assertThat(context).hasFailed().getFailure()
+            .hasRootCauseInstanceOf(InvalidConfigurationPropertyValueException.class));
+  }
+
+  @Test
+  void runWhenEnabledWithCspTokenFails() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "management.wavefront.api-token-type=CSP_API_TOKEN").run((context) -> assertThat(context).hasFailed()
+            .getFailure().hasRootCauseInstanceOf(InvalidConfigurationPropertyValueException.class));
+  }
+
+  @Test
+  void runWhenEnabledAndMetricsAndTracingDisabledDoesNotConfigureSender() {
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true",
+        "management.wavefront.metrics.export.enabled=false", "management.tracing.enabled=false")
+        .run((context) -> assertThat(context).doesNotHaveBean(WavefrontSender.class));
+  }
+
+  @Test
+  void runWithUserSenderBacksOff() {
+    WavefrontSender sender = mock(WavefrontSender.class);
+    this.contextRunner.withPropertyValues("wavefront.export.buffer.enabled=true")
+        .withBean(WavefrontSender.class, () -> sender)
+        .run((context) -> assertThat(context).getBean(WavefrontSender.class).isSameAs(sender));
+  }
+
+}
@@ -0,0 +1,242 @@
+package com.wavefront.spring.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link WavefrontLineEncoder}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontLineEncoderTests {
+
+  private static final double[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000, 100_000 };
+
+  private final WavefrontLineEncoder encoder = new WavefrontLineEncoder("default-source");
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+  @Test
+  void encodeMetricMatchesSdk() {
+    Map<String, String> tags = new LinkedHashMap<>();
+    tags.put("region", "us-west");
+    tags.put("key with space", "value \"quoted\"");
+    assertThat(this.encoder.encodeMetric(this.buffer, "test.metric", 42, 1000L, "test-source", tags)).isTrue();
+    assertThat(content()).isEqualTo(Utils.metricToLineData("test.metric", 42, 1000L, "test-source", tags, null));
+  }
+
+  @Test
+  void encodeMetricWithoutTimestampAndSourceMatchesSdk() {
+    assertThat(this.encoder.encodeMetric(this.buffer, "test/metric", 1.5, null, null, null)).isTrue();
+    assertThat(content())
+        .isEqualTo(Utils.metricToLineData("test/metric", 1.5, null, null, null, "default-source"));
+  }
+
+  @Test
+  void encodeMetricWithUnicodeTagValue() {
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", 1, 1000L, "test", Map.of("city", "Zürich"))).isTrue();
+    assertThat(content()).isEqualTo(Utils.metricToLineData("test", 1, 1000L, "test", Map.of("city", "Zürich"), null));
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = { 0, 1, -1, 42, 0.1, 0.25, -3.75, 1.05, 0.001, 123.456, 1e-4, 9999999.5, 1e7, 1e20,
+      -1e20, 123456789.123, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY, -0.0, 0.1 + 0.2 })
+  void encodeMetricValueIsParsedToSameValue(double value) {
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", value, null, "test", null)).isTrue();
+    String line = content();
+    String encodedValue = line.substring("\"test\" ".length(), line.indexOf(" source="));
+    assertThat(Double.valueOf(encodedValue)).isEqualTo(Double.valueOf(value));
+  }
+
+  @Test
+  void encodeMetricWritesShortDecimalsDigitByDigit() {
+    assertThat(value(0.1)).isEqualTo("0.1");
+    assertThat(value(1.05)).isEqualTo("1.05");
+    assertThat(value(-3.75)).isEqualTo("-3.75");
+    assertThat(value(0.001)).isEqualTo("0.001");
+    assertThat(value(100)).isEqualTo("100.0");
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = { 0, -0.0, 1, -1, 0.001, 0.000999, 9999999.0, 9999999.5, -9999999.0, 1e7, -1e7, 1.5e7,
+      123456789.0, 9007199254740991.0, 9007199254740992.0, 1e20, 0.1 + 0.2, 123.456, 1e-4, Double.MIN_VALUE,
+      Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY })
+  void writeDoubleMatchesDoubleToString(double value) {
+    assertThat(value(value)).isEqualTo(Double.toString(value));
+  }
+
+  @Test
+  void writeDoubleMatchesDoubleToStringForShortDecimals() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      double value = Math.round(random.nextGaussian() * 1e6) / POWERS_OF_TEN[random.nextInt(POWERS_OF_TEN.length)];
+      assertThat(value(value)).isEqualTo(Double.toString(value));
+    }
+  }
+
+  @Test
+  void encodeMetricWithTooSmallBufferLeavesPositionUnchanged() {
+    ByteBuffer target = ByteBuffer.allocate(20);
+    target.put((byte) 'x');
+    assertThat(this.encoder.encodeMetric(target, "test.metric.with.a.long.name", 42, 1000L, "test", null)).isFalse();
+    assertThat(target.position()).isOne();
+  }
+
+  @Test
+  void encodeMetricWithBlankNameThrowsException() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> this.encoder.encodeMetric(this.buffer, "", 42, 1000L, "test", null))
+        .withMessage("metrics name cannot be blank");
+  }
+
+  @Test
+  void encodeDistributionMatchesSdk() {
+    List<Pair<Double, Integer>> centroids = List.of(new Pair<>(1.5, 3), new Pair<>(1.5, 2), new Pair<>(2.25, 1));
+    Set<HistogramGranularity> granularities = Set.of(HistogramGranularity.MINUTE);
+    Map<String, String> tags = Map.of("region", "us");
+    assertThat(this.encoder.encodeDistribution(this.buffer, "test.histogram", centroids, granularities, 1000L,
+        "test-source", tags)).isTrue();
+    assertThat(content())
+        .isEqualTo("!M 1000 #5 1.5 #1 2.25 \"test.histogram\" source=\"test-source\" \"region\"=\"us\"\n")
+        .isEqualTo(Utils.histogramToLineData("test.histogram", centroids, granularities, 1000L, "test-source", tags,
+            null));
+  }
+
+  @Test
+  void encodeDistributionWithSeveralGranularities() {
+    List<Pair<Double, Integer>> centroids = List.of(new Pair<>(1.0, 1));
+    assertThat(this.encoder.encodeDistribution(this.buffer, "test", centroids,
+        Set.of(HistogramGranularity.MINUTE, HistogramGranularity.HOUR), null, "test", null)).isTrue();
+    assertThat(content().split("\n")).containsExactlyInAnyOrder("!M #1 1.0 \"test\" source=\"test\"",
+        "!H #1 1.0 \"test\" source=\"test\"");
+  }
+
+  @Test
+  void encodeDistributionWithoutCentroidsThrowsException() {
+    assertThatIllegalArgumentException().isThrownBy(() -> this.encoder.encodeDistribution(this.buffer, "test",
+        List.of(), Set.of(HistogramGranularity.MINUTE), 1000L, "test", null));
+  }
+
+  @Test
+  void encodeDistributionWithBlankTagValueLeavesPositionUnchanged() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> this.encoder.encodeDistribution(this.buffer, "test", List.of(new Pair<>(1.0, 1)),
+            Set.of(HistogramGranularity.MINUTE), 1000L, "test", Map.of("region", "")))
+        .withMessage("histogram tag value cannot be blank for tag key: region");
+    assertThat(this.buffer.position()).isZero();
+  }
+
+  @Test
+  void encodeSpanMatchesSdk() {
+    UUID traceId = UUID.randomUUID();
+    UUID spanId = UUID.randomUUID();
+    List<UUID> parents = List.of(UUID.randomUUID());
+    List<UUID> followsFrom = List.of(UUID.randomUUID(), UUID.randomUUID());
+    List<Pair<String, String>> tags = List.of(new Pair<>("application", "test"), new Pair<>("service", "api"));
+    assertThat(this.encoder.encodeSpan(this.buffer, "GET /test", 1000L, 25L, "test-source", traceId, spanId, parents,
+        followsFrom, tags, false)).isTrue();
+    assertThat(content()).isEqualTo(Utils.tracingSpanToLineData("GET /test", 1000L, 25L, "test-source", traceId,
+        spanId, parents, followsFrom, tags, null, null));
+  }
+
+  @Test
+  void encodeSpanWithSpanLogsAddsTag() {
+    UUID traceId = new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+    UUID spanId = new UUID(0, 1);
+    assertThat(this.encoder.encodeSpan(this.buffer, "test", 1000L, 25L, "test", traceId, spanId, null, null, null,
+        true)).isTrue();
+    assertThat(content()).isEqualTo("\"test\" source=\"test\" traceId=01234567-89ab-cdef-fedc-ba9876543210 "
+        + "spanId=00000000-0000-0000-0000-000000000001 \"_spanLogs\"=\"true\" 1000 25\n");
+  }
+
+  @Test
+  void encodeMetricWithApplicationTagsUsesEncodedSuffix() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("app", "svc").cluster("cluster-1").build();
+    this.encoder.setApplicationTags(applicationTags);
+    Map<String, String> tags = new LinkedHashMap<>(applicationTags.toPointTags());
+    tags.put("region", "us");
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", 1, 1000L, "test", tags)).isTrue();
+    assertThat(content()).isEqualTo("\"test\" 1.0 1000 source=\"test\" " + suffix(applicationTags)
+        + " \"region\"=\"us\"\n");
+  }
+
+  @Test
+  void encodeMetricWithOnlyApplicationTags() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("app", "svc").build();
+    this.encoder.setApplicationTags(applicationTags);
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", 1, 1000L, "test", applicationTags.toPointTags()))
+        .isTrue();
+    assertThat(content()).isEqualTo("\"test\" 1.0 1000 source=\"test\" " + suffix(applicationTags) + "\n");
+  }
+
+  @Test
+  void encodeMetricWithDifferentApplicationTagValueDoesNotUseSuffix() {
+    this.encoder.setApplicationTags(new ApplicationTags.Builder("app", "svc").build());
+    Map<String, String> tags = new LinkedHashMap<>();
+    tags.put("application", "other");
+    tags.put("service", "svc");
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", 1, 1000L, "test", tags)).isTrue();
+    assertThat(content()).isEqualTo(Utils.metricToLineData("test", 1, 1000L, "test", tags, null));
+  }
+
+  @Test
+  void encodeSpanWithApplicationTagsUsesEncodedSuffix() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("app", "svc").build();
+    this.encoder.setApplicationTags(applicationTags);
+    List<Pair<String, String>> tags = new ArrayList<>();
+    tags.add(new Pair<>("http.method", "GET"));
+    applicationTags.toPointTags().forEach((key, value) -> tags.add(new Pair<>(key, value)));
+    UUID id = new UUID(0, 1);
+    assertThat(this.encoder.encodeSpan(this.buffer, "test", 1000L, 25L, "test", id, id, null, null, tags, false))
+        .isTrue();
+    assertThat(content()).contains("spanId=00000000-0000-0000-0000-000000000001 " + suffix(applicationTags)
+        + " \"http.method\"=\"GET\" 1000 25\n");
+  }
+
+  @Test
+  void setApplicationTagsWithNewInstanceRebuildsSuffix() {
+    this.encoder.setApplicationTags(new ApplicationTags.Builder("app", "svc").build());
+    ApplicationTags rebuilt = new ApplicationTags.Builder("app", "other").build();
+    this.encoder.setApplicationTags(rebuilt);
+    Map<String, String> tags = rebuilt.toPointTags();
+    assertThat(this.encoder.encodeMetric(this.buffer, "test", 1, 1000L, "test", tags)).isTrue();
+    assertThat(content()).isEqualTo("\"test\" 1.0 1000 source=\"test\" " + suffix(rebuilt) + "\n");
+  }
+
+  private String suffix(ApplicationTags applicationTags) {
+    return applicationTags.toPointTags().entrySet().stream()
+        .map((tag) -> Utils.sanitize(tag.getKey()) + "=" + Utils.sanitizeValue(tag.getValue()))
+        .collect(Collectors.joining(" "));
+  }
+
+  private String value(double value) {
+    ByteBuffer target = ByteBuffer.allocate(64);
+    WavefrontLineEncoder.writeDouble(target, value);
+    return new String(target.array(), 0, target.position(), StandardCharsets.US_ASCII);
+  }
+
+  private String content() {
+    return new String(this.buffer.array(), 0, this.buffer.position(), StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,193 @@
+package com.wavefront.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link CardinalityGuardMeterFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+class CardinalityGuardMeterFilterTests {
+
+  private final CardinalityGuardMeterFilter filter = new CardinalityGuardMeterFilter(3);
+
+  @Test
+  void createWithInvalidMaxTagValues() {
+    assertThatIllegalArgumentException().isThrownBy(() -> new CardinalityGuardMeterFilter(0))
+        .withMessage("Maximum number of tag values must be at least 1");
+  }
+
+  @Test
+  void mapWhenBelowMaxTagValuesKeepsId() {
+    for (int i = 0; i < 3; i++) {
+      Meter.Id id = id("http.requests", "uri", "/" + i, "status", "200");
+      assertThat(this.filter.map(id)).isSameAs(id);
+    }
+    assertThat(this.filter.getCappedTags()).isEmpty();
+  }
+
+  @Test
+  void mapWhenAboveMaxTagValuesReplacesValue() {
+    for (int i = 0; i < 3; i++) {
+      this.filter.map(id("http.requests", "uri", "/" + i, "status", "200"));
+    }
+    Meter.Id mapped = this.filter.map(id("http.requests", "uri", "/3", "status", "200"));
+    assertThat(mapped.getName()).isEqualTo("http.requests");
+    assertThat(mapped.getTags()).isEqualTo(Tags.of("uri", "other", "status", "200").stream().toList());
+    assertThat(this.filter.getCappedTags()).containsOnlyKeys("http.requests:uri");
+  }
+
+  @Test
+  void mapWhenAboveMaxTagValuesKeepsKnownValue() {
+    for (int i = 0; i < 3; i++) {
+      this.filter.map(id("http.requests", "uri", "/" + i, "status", "200"));
+    }
+    this.filter.map(id("http.requests", "uri", "/3", "status", "200"));
+    Meter.Id id = id("http.requests", "uri", "/1", "status", "200");
+    assertThat(this.filter.map(id)).isSameAs(id);
+  }
+
+  @Test
+  void tagsOfDifferentMetersAreLimitedIndependently() {
+    for (int i = 0; i < 3; i++) {
+      this.filter.map(id("http.requests", "uri", "/" + i));
+    }
+    Meter.Id id = id("http.client.requests", "uri", "/3");
+    assertThat(this.filter.map(id)).isSameAs(id);
+  }
+
+  @Test
+  void cappedTagReportsEstimatedCardinality() {
+    for (int i = 0; i < 10_000; i++) {
+      this.filter.map(id("http.requests", "user", "user-" + i));
+    }
+    assertThat(this.filter.getCappedTags().get("http.requests:user").doubleValue()).isCloseTo(10_000,
+        within(1_000.0));
+  }
+
+  @Test
+  void filterAppliedToRegistryCollapsesOverflowValues() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    registry.config().meterFilter(this.filter);
+    this.filter.bindTo(registry);
+    for (int i = 0; i < 10; i++) {
+      registry.counter("test", "user", "user-" + i).increment();
+    }
+    assertThat(registry.find("test").counters()).hasSize(4);
+    assertThat(registry.get("test").tag("user", "other").counter().count()).isEqualTo(7);
+    assertThat(registry.get("wavefront.metrics.cardinality.capped").gauge().value()).isEqualTo(1);
+  }
+
+  @Test
+  void lookupOfExistingMeterKeepsId() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    registry.config().meterFilter(this.filter);
+    Counter counter = registry.counter("test", "user", "user-1");
+    for (int i = 0; i < 1000; i++) {
+      assertThat(registry.counter("test", "user", "user-1")).isSameAs(counter);
+    }
+    assertThat(registry.find("test").counters()).hasSize(1);
+    assertThat(this.filter.getCappedTags()).isEmpty();
+  }
+
+  @Test
+  void mapOfAcceptedValueDoesNotLock() throws Exception {
+    this.filter.map(id("http.requests", "uri", "/0"));
+    Object values = getTagValues("http.requests", "uri");
+    synchronized (values) {
+      CompletableFuture<Meter.Id> lookup = CompletableFuture
+          .supplyAsync(() -> this.filter.map(id("http.requests", "uri", "/0")));
+      assertThat(lookup.get(5, TimeUnit.SECONDS).getTags()).containsExactly(Tag.of("uri", "/0"));
+    }
+  }
+
+  @Test
+  void mapOfOverflowValueSeenBeforeDoesNotLock() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      this.filter.map(id("http.requests", "uri", "/" + i));
+    }
+    Object values = getTagValues("http.requests", "uri");
+    synchronized (values) {
+      CompletableFuture<Meter.Id> lookup = CompletableFuture
+          .supplyAsync(() -> this.filter.map(id("http.requests", "uri", "/3")));
+      assertThat(lookup.get(5, TimeUnit.SECONDS).getTags()).containsExactly(Tag.of("uri", "other"));
+    }
+  }
+
+  @Test
+  void concurrentLookupsAcceptAtMostMaxTagValues() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            this.filter.map(id("http.requests", "uri", "/" + (i % 10)));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    long accepted = IntStream.range(0, 10)
+        .mapToObj((i) -> this.filter.map(id("http.requests", "uri", "/" + i)).getTags().get(0).getValue())
+        .filter((value) -> !"other".equals(value)).count();
+    assertThat(accepted).isEqualTo(3);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object getTagValues(String name, String key) {
+    Map<String, Map<String, Object>> tagValues = (Map<String, Map<String, Object>>) ReflectionTestUtils
+        .getField(this.filter, "tagValues");
+    return tagValues.get(name).get(key);
+  }
+
+  @Test
+  void hyperLogLogEstimatesLargeCardinality() {
+    CardinalityGuardMeterFilter.HyperLogLog sketch = new CardinalityGuardMeterFilter.HyperLogLog();
+    for (int i = 0; i < 1_000_000; i++) {
+      sketch.add(CardinalityGuardMeterFilter.hash("value-" + i));
+    }
+    assertThat((double) sketch.estimate()).isCloseTo(1_000_000, within(100_000.0));
+  }
+
+  @Test
+  void hyperLogLogEstimatesSmallCardinality() {
+    CardinalityGuardMeterFilter.HyperLogLog sketch = new CardinalityGuardMeterFilter.HyperLogLog();
+    for (int i = 0; i < 50; i++) {
+      sketch.add(CardinalityGuardMeterFilter.hash("value-" + i));
+      sketch.add(CardinalityGuardMeterFilter.hash("value-" + i));
+    }
+    assertThat((double) sketch.estimate()).isCloseTo(50, within(3.0));
+  }
+
+  private static Meter.Id id(String name, String... tags) {
+    return new Meter.Id(name, Tags.of(tags), null, null, Meter.Type.COUNTER);
+  }
+
+}
@@ -0,0 +1,391 @@
+package com.wavefront.spring.metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import com.wavefront.spring.export.EncodedWavefrontSender;
+import com.wavefront.spring.export.ReportFormat;
+import com.wavefront.spring.export.WavefrontLineEncoder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.wavefront.WavefrontConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Tests for {@link MeterPublisher}.
+ *
+ * @author Stephane Nicoll
+ */
+class MeterPublisherTests {
+
+  private final MockClock clock = new MockClock();
+
+  private final List<PublishingWavefrontMeterRegistry> registries = new ArrayList<>();
+
+  @AfterEach
+  void close() {
+    this.registries.forEach(PublishingWavefrontMeterRegistry::close);
+  }
+
+  @Test
+  void createWithInvalidParallelism() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> new MeterPublisher(createRegistry(new CapturingWavefrontSender(), 1),
+            new TestWavefrontConfig(), TimeUnit.SECONDS, new CapturingWavefrontSender(), 0))
+        .withMessage("Parallelism must be at least 1");
+  }
+
+  @Test
+  void publishSendsMetersInRegistryOrder() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 4);
+    registerGauges(registry, 5000);
+    registry.getPublisher().publish();
+    assertThat(sender.points).hasSize(5000);
+    assertThat(names(sender.points)).isEqualTo(names(registry));
+  }
+
+  @Test
+  void publishWithEncodedSenderSendsEncodedChunksInRegistryOrder() {
+    CapturingEncodedWavefrontSender sender = new CapturingEncodedWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 4);
+    registerGauges(registry, 5000);
+    registry.getPublisher().publish();
+    assertThat(sender.chunks).hasSizeGreaterThan(1);
+    assertThat(sender.points).hasSize(5000);
+    assertThat(names(sender.points)).isEqualTo(names(registry));
+  }
+
+  @Test
+  void publishWithEncodedSenderEncodesMetricLines() {
+    CapturingEncodedWavefrontSender sender = new CapturingEncodedWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    Gauge.builder("test.gauge", () -> 1.0).tag("region", "us-west").register(registry);
+    registry.getPublisher().publish();
+    assertThat(sender.points).containsExactly("\"test.gauge\" 1.0 " + this.clock.wallTime()
+        + " source=\"test\" \"region\"=\"us-west\" \"statistic\"=\"value\"\n");
+  }
+
+  @Test
+  void publishTimerSendsStatistics() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 2);
+    Timer timer = Timer.builder("test.timer").register(registry);
+    timer.record(Duration.ofMillis(10));
+    this.clock.add(new TestWavefrontConfig().step());
+    registry.getPublisher().publish();
+    assertThat(sender.points).anySatisfy((point) -> assertThat(point).startsWith("\"test.timer.count\" 1.0"))
+        .anySatisfy((point) -> assertThat(point).startsWith("\"test.timer.sum\" 0.01"));
+    assertThat(sender.distributions).isEmpty();
+  }
+
+  @Test
+  void publishTimerWithHistogramSendsDistributions() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    Timer timer = Timer.builder("test.timer").publishPercentileHistogram().register(registry);
+    timer.record(Duration.ofMillis(10));
+    this.clock.add(Duration.ofMinutes(1));
+    registry.getPublisher().publish();
+    assertThat(sender.points).noneSatisfy((point) -> assertThat(point).startsWith("\"test.timer"));
+    assertThat(sender.distributions).containsExactly("test.timer [0.01 x 1]");
+  }
+
+  @Test
+  void publishTimerWithHistogramAndEncodedSenderSendsEncodedDistributions() {
+    CapturingEncodedWavefrontSender sender = new CapturingEncodedWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    Timer timer = Timer.builder("test.timer").publishPercentileHistogram().register(registry);
+    timer.record(Duration.ofMillis(10));
+    this.clock.add(Duration.ofMinutes(1));
+    registry.getPublisher().publish();
+    assertThat(sender.histograms).singleElement()
+        .satisfies((line) -> assertThat(line).startsWith("!M 0 #1 0.01 \"test.timer\" source=\"test\""));
+  }
+
+  @Test
+  void publishWithSingleThreadDoesNotUsePool() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    registerGauges(registry, 1000);
+    MeterPublisher publisher = registry.getPublisher();
+    assertThat(publisher).extracting("pool").isNull();
+    publisher.publish();
+    assertThat(sender.points).hasSize(1000);
+  }
+
+  @Test
+  void publishWithMeterSnapshotsSkipsUnchangedMeters() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    AtomicLong value = new AtomicLong(1);
+    Gauge.builder("test.changing", value, AtomicLong::get).register(registry);
+    Gauge.builder("test.constant", () -> 42.0).register(registry);
+    MeterPublisher publisher = registry.getPublisher();
+    publisher.setMeterSnapshots(new MeterSnapshots(Duration.ofMinutes(5)));
+    publisher.publish();
+    assertThat(sender.points).hasSize(2);
+    value.set(2);
+    this.clock.add(Duration.ofMinutes(1));
+    publisher.publish();
+    assertThat(sender.points).hasSize(3).last()
+        .satisfies((point) -> assertThat(point).startsWith("\"test.changing\" 2.0"));
+    this.clock.add(Duration.ofMinutes(4));
+    publisher.publish();
+    assertThat(sender.points).hasSize(4).last()
+        .satisfies((point) -> assertThat(point).startsWith("\"test.constant\" 42.0"));
+  }
+
+  @Test
+  void publishWithMeterSnapshotsForgetsRemovedMeters() {
+    PublishingWavefrontMeterRegistry registry = createRegistry(new CapturingWavefrontSender(), 2);
+    Gauge gauge = Gauge.builder("test.gauge", () -> 1.0).register(registry);
+    MeterPublisher publisher = registry.getPublisher();
+    MeterSnapshots snapshots = new MeterSnapshots(Duration.ofMinutes(5));
+    publisher.setMeterSnapshots(snapshots);
+    publisher.publish();
+    assertThat(snapshots.size()).isOne();
+    registry.remove(gauge);
+    assertThat(snapshots.size()).isZero();
+  }
+
+  @Test
+  void publishWithReleasedMeterGracePeriodRemovesReleasedMeters() {
+    PublishingWavefrontMeterRegistry registry = createRegistry(new CapturingWavefrontSender(), 2);
+    Gauge released = Gauge.builder("test.released", new AtomicInteger(42), AtomicInteger::get).register(registry);
+    AtomicInteger held = new AtomicInteger(42);
+    Gauge.builder("test.held", held, AtomicInteger::get).register(registry);
+    MeterPublisher publisher = registry.getPublisher();
+    publisher.setMeterSnapshots(new MeterSnapshots(Duration.ZERO));
+    publisher.setReleasedMeterGracePeriod(Duration.ofMinutes(2));
+    await().atMost(5, TimeUnit.SECONDS).until(() -> {
+      System.gc();
+      return ((ReleasableMeter) released).isReleased();
+    });
+    for (int i = 0; i < 2; i++) {
+      publisher.publish();
+      this.clock.add(Duration.ofMinutes(1));
+    }
+    assertThat(registry.getMeters()).contains(released);
+    publisher.publish();
+    assertThat(registry.getMeters()).doesNotContain(released);
+    assertThat(registry.find("test.held").gauge()).isNotNull();
+    assertThat(held).hasValue(42);
+    assertThat(publisher.getReleasedMeterRemovalCount()).isOne();
+    assertThat(registry.get("wavefront.metrics.released.removed").functionCounter().count()).isOne();
+  }
+
+  @Test
+  void publishWithReleasedMeterGracePeriodDoesNotRemoveCountersAndTimers() {
+    PublishingWavefrontMeterRegistry registry = createRegistry(new CapturingWavefrontSender(), 1);
+    Counter counter = registry.counter("test.counter");
+    Timer timer = registry.timer("test.timer");
+    MeterPublisher publisher = registry.getPublisher();
+    publisher.setMeterSnapshots(new MeterSnapshots(Duration.ZERO));
+    publisher.setReleasedMeterGracePeriod(Duration.ofMinutes(2));
+    for (int i = 0; i < 4; i++) {
+      publisher.publish();
+      this.clock.add(Duration.ofMinutes(1));
+    }
+    assertThat(registry.getMeters()).contains(counter, timer);
+    assertThat(publisher.getReleasedMeterRemovalCount()).isZero();
+  }
+
+  @Test
+  void setReleasedMeterGracePeriodWithoutMeterSnapshots() {
+    MeterPublisher publisher = createRegistry(new CapturingWavefrontSender(), 1).getPublisher();
+    assertThatIllegalStateException().isThrownBy(() -> publisher.setReleasedMeterGracePeriod(Duration.ofMinutes(1)))
+        .withMessage("Meter snapshots are required to remove released meters");
+  }
+
+  @Test
+  void publishWhenRegistryIsClosedDoesNothing() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 2);
+    Gauge.builder("test.gauge", () -> 1.0).register(registry);
+    registry.close();
+    int published = sender.points.size();
+    registry.getPublisher().publish();
+    assertThat(sender.points).hasSize(published);
+  }
+
+  @Test
+  void publishSkipsMeterThatFails() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 2);
+    Gauge.builder("test.valid", () -> 1.0).register(registry);
+    Gauge.builder("test.invalid", () -> {
+      throw new IllegalStateException("test");
+    }).register(registry);
+    registry.getPublisher().publish();
+    assertThat(sender.points).singleElement()
+        .satisfies((point) -> assertThat(point).startsWith("\"test.valid\" 1.0"));
+  }
+
+  @Test
+  void publishDiscardsLinesOfMeterThatFailsPartially() {
+    CapturingWavefrontSender sender = new CapturingWavefrontSender();
+    PublishingWavefrontMeterRegistry registry = createRegistry(sender, 1);
+    FunctionTimer.builder("test.invalid", this, (target) -> 1L, (target) -> {
+      throw new IllegalStateException("test");
+    }, TimeUnit.SECONDS).register(registry);
+    Gauge.builder("test.valid", () -> 1.0).register(registry);
+    registry.getPublisher().publish();
+    assertThat(sender.points).singleElement()
+        .satisfies((point) -> assertThat(point).startsWith("\"test.valid\" 1.0"));
+  }
+
+  private PublishingWavefrontMeterRegistry createRegistry(WavefrontSender sender, int parallelism) {
+    PublishingWavefrontMeterRegistry registry = new PublishingWavefrontMeterRegistry(new TestWavefrontConfig(),
+        this.clock, sender, parallelism);
+    this.registries.add(registry);
+    return registry;
+  }
+
+  private static void registerGauges(PublishingWavefrontMeterRegistry registry, int count) {
+    for (int i = 0; i < count; i++) {
+      double value = i;
+      Gauge.builder("test.gauge." + i, () -> value).register(registry);
+    }
+  }
+
+  private static List<String> names(PublishingWavefrontMeterRegistry registry) {
+    return registry.getMeters().stream().map((meter) -> "\"" + meter.getId().getName() + "\"").toList();
+  }
+
+  private static List<String> names(List<String> points) {
+    return points.stream().map((point) -> point.substring(0, point.indexOf(' '))).toList();
+  }
+
+  static class TestWavefrontConfig implements WavefrontConfig {
+
+    @Override
+    public String get(String key) {
+      return null;
+    }
+
+    @Override
+    public String uri() {
+      return "proxy://localhost:2878";
+    }
+
+    @Override
+    public String source() {
+      return "test";
+    }
+
+    @Override
+    public boolean enabled() {
+      return false;
+    }
+
+  }
+
+  static class CapturingWavefrontSender implements WavefrontSender {
+
+    final List<String> points = Collections.synchronizedList(new ArrayList<>());
+
+    final List<String> distributions = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public String getClientId() {
+      return "test";
+    }
+
+    @Override
+    public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+      this.points.add(Utils.metricToLineData(name, value, timestamp, source, tags, source));
+    }
+
+    @Override
+    public void sendFormattedMetric(String point) {
+      this.points.add(point);
+    }
+
+    @Override
+    public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+        Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags) {
+      StringBuilder distribution = new StringBuilder(name).append(" [");
+      centroids.forEach((centroid) -> distribution.append(centroid._1).append(" x ").append(centroid._2));
+      this.distributions.add(distribution.append("]").toString());
+    }
+
+    @Override
+    public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+        UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+        List<SpanLog> spanLogs) {
+    }
+
+    @Override
+    public void sendEvent(String name, long startMillis, long endMillis, String source, Map<String, String> tags,
+        Map<String, String> annotations) {
+    }
+
+    @Override
+    public void sendLog(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+  static class CapturingEncodedWavefrontSender extends CapturingWavefrontSender implements EncodedWavefrontSender {
+
+    private final WavefrontLineEncoder encoder = new WavefrontLineEncoder("default");
+
+    final List<ByteBuffer> chunks = Collections.synchronizedList(new ArrayList<>());
+
+    final List<String> histograms = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public WavefrontLineEncoder getLineEncoder() {
+      return this.encoder;
+    }
+
+    @Override
+    public void sendEncoded(ReportFormat format, ByteBuffer lines) {
+      this.chunks.add(lines);
+      List<String> target = (format == ReportFormat.HISTOGRAM) ? this.histograms : this.points;
+      for (String line : StandardCharsets.UTF_8.decode(lines.duplicate()).toString().split("(?<=\n)")) {
+        target.add(line);
+      }
+    }
+
+  }
+
+}
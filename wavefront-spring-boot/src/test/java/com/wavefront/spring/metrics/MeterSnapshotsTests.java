@@ -0,0 +1,125 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MeterSnapshots}.
+ *
+ * @author Stephane Nicoll
+ */
+class MeterSnapshotsTests {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final MeterSnapshots snapshots = new MeterSnapshots(Duration.ofMinutes(5));
+
+  @Test
+  void meterIsPublishedTheFirstTime() {
+    Gauge gauge = Gauge.builder("test", () -> 1.0).register(this.registry);
+    assertThat(this.snapshots.shouldPublish(gauge, 0)).isTrue();
+    assertThat(this.snapshots.size()).isOne();
+  }
+
+  @Test
+  void unchangedMeterIsSkipped() {
+    Gauge gauge = Gauge.builder("test", () -> 1.0).register(this.registry);
+    this.snapshots.shouldPublish(gauge, 0);
+    assertThat(this.snapshots.shouldPublish(gauge, 60_000)).isFalse();
+  }
+
+  @Test
+  void changedMeterIsPublished() {
+    AtomicLong value = new AtomicLong(1);
+    Gauge gauge = Gauge.builder("test", value, AtomicLong::get).register(this.registry);
+    this.snapshots.shouldPublish(gauge, 0);
+    value.set(2);
+    assertThat(this.snapshots.shouldPublish(gauge, 60_000)).isTrue();
+    assertThat(this.snapshots.shouldPublish(gauge, 120_000)).isFalse();
+  }
+
+  @Test
+  void meterWithSeveralMeasurementsIsPublishedWhenOneOfThemChanges() {
+    Meter meter = this.registry.timer("test");
+    this.snapshots.shouldPublish(meter, 0);
+    assertThat(this.snapshots.shouldPublish(meter, 60_000)).isFalse();
+    this.registry.timer("test").record(Duration.ofMillis(10));
+    assertThat(this.snapshots.shouldPublish(meter, 120_000)).isTrue();
+  }
+
+  @Test
+  void unchangedMeterIsPublishedOnceHeartbeatIntervalHasElapsed() {
+    Gauge gauge = Gauge.builder("test", () -> 1.0).register(this.registry);
+    this.snapshots.shouldPublish(gauge, 0);
+    assertThat(this.snapshots.shouldPublish(gauge, 299_999)).isFalse();
+    assertThat(this.snapshots.shouldPublish(gauge, 300_000)).isTrue();
+    assertThat(this.snapshots.shouldPublish(gauge, 360_000)).isFalse();
+  }
+
+  @Test
+  void meterIsIdleWhenValuesHaveNotChangedForIdleTime() {
+    Counter counter = this.registry.counter("test");
+    this.snapshots.shouldPublish(counter, 0);
+    this.snapshots.shouldPublish(counter, 60_000);
+    assertThat(this.snapshots.isIdle(counter, 60_000, 120_000)).isFalse();
+    counter.increment();
+    this.snapshots.shouldPublish(counter, 120_000);
+    this.snapshots.shouldPublish(counter, 180_000);
+    assertThat(this.snapshots.isIdle(counter, 180_000, 120_000)).isFalse();
+    this.snapshots.shouldPublish(counter, 240_000);
+    assertThat(this.snapshots.isIdle(counter, 240_000, 120_000)).isTrue();
+  }
+
+  @Test
+  void meterWithoutSnapshotIsNotIdle() {
+    assertThat(this.snapshots.isIdle(this.registry.counter("test"), 60_000, 0)).isFalse();
+  }
+
+  @Test
+  void meterIsPublishedEveryTimeWithoutHeartbeatInterval() {
+    MeterSnapshots snapshots = new MeterSnapshots(Duration.ZERO);
+    Gauge gauge = Gauge.builder("test", () -> 1.0).register(this.registry);
+    assertThat(snapshots.shouldPublish(gauge, 0)).isTrue();
+    assertThat(snapshots.shouldPublish(gauge, 60_000)).isTrue();
+    assertThat(snapshots.isIdle(gauge, 60_000, 60_000)).isTrue();
+  }
+
+  @Test
+  void removedMeterIsPublishedAgain() {
+    Gauge gauge = Gauge.builder("test", () -> 1.0).register(this.registry);
+    this.snapshots.shouldPublish(gauge, 0);
+    this.snapshots.remove(gauge);
+    assertThat(this.snapshots.size()).isZero();
+    assertThat(this.snapshots.shouldPublish(gauge, 60_000)).isTrue();
+  }
+
+  @Test
+  void snapshotsOfManyMetersAreKept() {
+    List<Counter> counters = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      Counter counter = this.registry.counter("test." + i);
+      counter.increment(i);
+      counters.add(counter);
+      assertThat(this.snapshots.shouldPublish(counter, 0)).isTrue();
+    }
+    for (int i = 0; i < counters.size(); i += 2) {
+      this.snapshots.remove(counters.get(i));
+    }
+    assertThat(this.snapshots.size()).isEqualTo(5_000);
+    for (int i = 0; i < counters.size(); i++) {
+      assertThat(this.snapshots.shouldPublish(counters.get(i), 60_000)).isEqualTo(i % 2 == 0);
+    }
+    assertThat(this.snapshots.size()).isEqualTo(10_000);
+  }
+
+}
@@ -0,0 +1,160 @@
+package com.wavefront.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.histograms.WavefrontHistogramImpl.Distribution;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link PrimitiveHistogram}.
+ *
+ * @author Stephane Nicoll
+ */
+class PrimitiveHistogramTests {
+
+  private static final long MINUTE = 60_000;
+
+  private final AtomicLong clock = new AtomicLong(10 * MINUTE + 1000);
+
+  private final PrimitiveHistogram histogram = new PrimitiveHistogram(this.clock::get);
+
+  @Test
+  void flushDistributionsIgnoresCurrentMinute() {
+    this.histogram.update(42);
+    assertThat(this.histogram.flushDistributions()).isEmpty();
+    assertThat(this.histogram.getCount()).isOne();
+  }
+
+  @Test
+  void flushDistributionsOnceMinuteHasElapsed() {
+    this.histogram.update(1);
+    this.histogram.update(2L);
+    this.histogram.update(3.0);
+    this.clock.addAndGet(MINUTE);
+    List<Distribution> distributions = this.histogram.flushDistributions();
+    assertThat(distributions).singleElement().satisfies((distribution) -> {
+      assertThat(distribution.timestamp).isEqualTo(10 * MINUTE);
+      assertThat(distribution.centroids).extracting((centroid) -> centroid._1).containsExactly(1.0, 2.0, 3.0);
+      assertThat(distribution.centroids).extracting((centroid) -> centroid._2).containsExactly(1, 1, 1);
+    });
+    assertThat(this.histogram.flushDistributions()).isEmpty();
+    assertThat(this.histogram.getCount()).isZero();
+  }
+
+  @Test
+  void flushDistributionsWithSeveralMinutes() {
+    this.histogram.update(1);
+    this.clock.addAndGet(MINUTE);
+    this.histogram.update(2);
+    this.histogram.update(2);
+    this.clock.addAndGet(MINUTE);
+    this.histogram.update(3);
+    List<Distribution> distributions = this.histogram.flushDistributions();
+    assertThat(distributions).extracting((distribution) -> distribution.timestamp).containsExactly(10 * MINUTE,
+        11 * MINUTE);
+    assertThat(distributions.get(1).centroids).extracting((centroid) -> centroid._1).containsOnly(2.0);
+    assertThat(distributions.get(1).centroids.stream().mapToLong((centroid) -> centroid._2).sum()).isEqualTo(2);
+    assertThat(this.histogram.getCount()).isOne();
+  }
+
+  @Test
+  void flushDistributionsKeepsMostRecentMinutes() {
+    for (int i = 0; i < 12; i++) {
+      this.histogram.update(i);
+      this.clock.addAndGet(MINUTE);
+    }
+    List<Distribution> distributions = this.histogram.flushDistributions();
+    assertThat(distributions).hasSize(10);
+    assertThat(distributions.get(0).timestamp).isEqualTo(12 * MINUTE);
+  }
+
+  @Test
+  void centroidsAreBoundedAndPreserveDistribution() {
+    for (int i = 0; i < 100_000; i++) {
+      this.histogram.update((i * 7919) % 100_000);
+    }
+    this.clock.addAndGet(MINUTE);
+    List<Pair<Double, Integer>> centroids = this.histogram.flushDistributions().get(0).centroids;
+    assertThat(centroids).hasSizeLessThanOrEqualTo(PrimitiveHistogram.MAX_CENTROIDS);
+    assertThat(centroids.stream().mapToLong((centroid) -> centroid._2).sum()).isEqualTo(100_000);
+    assertThat(quantile(centroids, 0.5)).isCloseTo(50_000, within(1_000.0));
+    assertThat(quantile(centroids, 0.99)).isCloseTo(99_000, within(500.0));
+    for (int i = 1; i < centroids.size(); i++) {
+      assertThat(centroids.get(i)._1).isGreaterThanOrEqualTo(centroids.get(i - 1)._1);
+    }
+  }
+
+  @Test
+  void updateFromSeveralThreadsMergesBins() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      int value = i;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 1_000; j++) {
+          this.histogram.update(value);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    this.clock.addAndGet(MINUTE);
+    List<Distribution> distributions = this.histogram.flushDistributions();
+    assertThat(distributions).hasSize(1);
+    assertThat(distributions.get(0).centroids.stream().mapToLong((centroid) -> centroid._2).sum()).isEqualTo(8_000);
+  }
+
+  @Test
+  void bulkUpdateAddsWeightedCentroids() {
+    this.histogram.bulkUpdate(List.of(5.0, 1.0), List.of(3, 2));
+    assertThat(this.histogram.getCount()).isEqualTo(5);
+    assertThat(this.histogram.getSum()).isEqualTo(17);
+    this.clock.addAndGet(MINUTE);
+    assertThat(this.histogram.flushDistributions().get(0).centroids).containsExactly(new Pair<>(1.0, 2),
+        new Pair<>(5.0, 3));
+  }
+
+  @Test
+  void statisticsOfValuesNotFlushedYet() {
+    this.histogram.update(2);
+    this.histogram.update(4);
+    this.clock.addAndGet(MINUTE);
+    this.histogram.update(9);
+    assertThat(this.histogram.getCount()).isEqualTo(3);
+    assertThat(this.histogram.getMin()).isEqualTo(2);
+    assertThat(this.histogram.getMax()).isEqualTo(9);
+    assertThat(this.histogram.getSum()).isEqualTo(15);
+    assertThat(this.histogram.getMean()).isEqualTo(5);
+    assertThat(this.histogram.stdDev()).isCloseTo(Math.sqrt(26.0 / 3), within(1e-9));
+  }
+
+  @Test
+  void statisticsWhenEmpty() {
+    assertThat(this.histogram.getCount()).isZero();
+    assertThat(this.histogram.getMin()).isNaN();
+    assertThat(this.histogram.getMax()).isNaN();
+    assertThat(this.histogram.getMean()).isNaN();
+    assertThat(this.histogram.stdDev()).isZero();
+  }
+
+  private static double quantile(List<Pair<Double, Integer>> centroids, double quantile) {
+    long total = centroids.stream().mapToLong((centroid) -> centroid._2).sum();
+    double target = quantile * total;
+    long seen = 0;
+    for (Pair<Double, Integer> centroid : centroids) {
+      seen += centroid._2;
+      if (seen >= target) {
+        return centroid._1;
+      }
+    }
+    return centroids.get(centroids.size() - 1)._1;
+  }
+
+}
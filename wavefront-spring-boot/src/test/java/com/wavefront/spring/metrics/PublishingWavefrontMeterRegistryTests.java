@@ -0,0 +1,141 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.spring.metrics.MeterPublisherTests.CapturingWavefrontSender;
+import com.wavefront.spring.metrics.MeterPublisherTests.TestWavefrontConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link PublishingWavefrontMeterRegistry}.
+ *
+ * @author Stephane Nicoll
+ */
+class PublishingWavefrontMeterRegistryTests {
+
+  private final MockClock clock = new MockClock();
+
+  private final CapturingWavefrontSender sender = new CapturingWavefrontSender();
+
+  private final PublishingWavefrontMeterRegistry registry = new PublishingWavefrontMeterRegistry(
+      new TestWavefrontConfig(), this.clock, this.sender, 2);
+
+  @AfterEach
+  void close() {
+    this.registry.close();
+  }
+
+  @Test
+  void timerWithoutHistogramRegistersHistogramGauges() {
+    Timer timer = Timer.builder("test.timer").publishPercentiles(0.5).register(this.registry);
+    assertThat(timer).isInstanceOf(WavefrontHistogramTimer.class);
+    assertThat(((WavefrontHistogramTimer) timer).isPublishingHistogram()).isFalse();
+    assertThat(this.registry.find("test.timer.percentile").tag("phi", "0.5").gauge()).isNotNull();
+  }
+
+  @Test
+  void timerWithHistogramDoesNotRegisterHistogramGauges() {
+    Timer timer = Timer.builder("test.timer").publishPercentileHistogram().register(this.registry);
+    assertThat(((WavefrontHistogramTimer) timer).isPublishingHistogram()).isTrue();
+    assertThat(this.registry.find("test.timer.histogram").gauges()).isEmpty();
+  }
+
+  @Test
+  void timerWithHistogramRecordsInBaseTimeUnit() {
+    Timer timer = Timer.builder("test.timer").publishPercentileHistogram().register(this.registry);
+    timer.record(Duration.ofMillis(250));
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(((WavefrontHistogramTimer) timer).flushDistributions()).singleElement()
+        .satisfies((distribution) -> assertThat(distribution.centroids).singleElement()
+            .satisfies((centroid) -> assertThat(centroid._1).isEqualTo(0.25)));
+  }
+
+  @Test
+  void distributionSummaryWithHistogramRecordsAmounts() {
+    DistributionSummary summary = DistributionSummary.builder("test.summary").publishPercentileHistogram()
+        .register(this.registry);
+    summary.record(42);
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(((WavefrontHistogramDistributionSummary) summary).flushDistributions()).singleElement()
+        .satisfies((distribution) -> assertThat(distribution.centroids).singleElement()
+            .satisfies((centroid) -> assertThat(centroid._1).isEqualTo(42.0)));
+  }
+
+  @Test
+  void longTaskTimerWithHistogramRecordsActiveTasks() {
+    LongTaskTimer longTaskTimer = LongTaskTimer.builder("test.ltt").publishPercentileHistogram()
+        .register(this.registry);
+    longTaskTimer.start();
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(((WavefrontHistogramLongTaskTimer) longTaskTimer).flushDistributions()).isEmpty();
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(((WavefrontHistogramLongTaskTimer) longTaskTimer).flushDistributions()).singleElement();
+  }
+
+  @Test
+  void timerWithPrimitiveHistogramsRecordsInPrimitiveHistogram() {
+    this.registry.setPrimitiveHistograms(true);
+    Timer timer = Timer.builder("test.timer").publishPercentileHistogram().register(this.registry);
+    assertThat(timer).extracting("histogram").isInstanceOf(PrimitiveHistogram.class);
+    timer.record(Duration.ofMillis(10));
+    timer.record(Duration.ofMillis(20));
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(((WavefrontHistogramTimer) timer).flushDistributions()).singleElement()
+        .satisfies((distribution) -> assertThat(distribution.centroids).containsExactly(new Pair<>(0.01, 1),
+            new Pair<>(0.02, 1)));
+  }
+
+  @Test
+  void distributionSummaryWithPrimitiveHistogramsRecordsInPrimitiveHistogram() {
+    this.registry.setPrimitiveHistograms(true);
+    DistributionSummary summary = DistributionSummary.builder("test.summary").publishPercentileHistogram()
+        .register(this.registry);
+    assertThat(summary).extracting("histogram").isInstanceOf(PrimitiveHistogram.class);
+  }
+
+  @Test
+  void timerWithoutHistogramAndPrimitiveHistogramsHasNoHistogram() {
+    this.registry.setPrimitiveHistograms(true);
+    Timer timer = Timer.builder("test.timer").register(this.registry);
+    assertThat(timer).extracting("histogram").isNull();
+  }
+
+  @Test
+  void gaugesAndFunctionMetersAreReleasable() {
+    AtomicLong value = new AtomicLong(42);
+    Gauge gauge = Gauge.builder("test.gauge", value, AtomicLong::get).register(this.registry);
+    FunctionCounter counter = FunctionCounter.builder("test.counter", value, AtomicLong::get)
+        .register(this.registry);
+    FunctionTimer timer = FunctionTimer
+        .builder("test.timer", value, AtomicLong::get, AtomicLong::get, TimeUnit.MILLISECONDS)
+        .register(this.registry);
+    assertThat(gauge).isInstanceOf(ReleasableGauge.class);
+    assertThat(counter).isInstanceOf(ReleasableFunctionCounter.class);
+    assertThat(timer).isInstanceOf(ReleasableFunctionTimer.class);
+    assertThat(((ReleasableMeter) gauge).isReleased()).isFalse();
+    assertThat(timer.totalTime(TimeUnit.SECONDS)).isEqualTo(0.042);
+  }
+
+  @Test
+  void closeShutsDownPublisher() {
+    this.registry.close();
+    assertThat(this.registry.isClosed()).isTrue();
+    assertThat(this.registry.getPublisher()).extracting("pool")
+        .satisfies((pool) -> assertThat(((ForkJoinPool) pool).isShutdown()).isTrue());
+  }
+
+}
@@ -0,0 +1,177 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link StripedMeterObservationHandler}.
+ *
+ * @author Stephane Nicoll
+ */
+class StripedMeterObservationHandlerTests {
+
+  private final MockClock clock = new MockClock();
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, this.clock);
+
+  private final ObservationRegistry observationRegistry = createObservationRegistry(List.of());
+
+  @Test
+  void observationIsRecordedAsFunctionTimer() {
+    Observation observation = Observation.start("test", this.observationRegistry).lowCardinalityKeyValue("uri", "/");
+    this.clock.add(Duration.ofMillis(25));
+    observation.stop();
+    FunctionTimer timer = this.registry.get("test").tag("uri", "/").tag("error", "none").functionTimer();
+    assertThat(timer.count()).isOne();
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(25);
+  }
+
+  @Test
+  void observationWithErrorIsRecordedWithErrorTag() {
+    Observation observation = Observation.start("test", this.observationRegistry);
+    observation.error(new IllegalStateException("test"));
+    observation.stop();
+    assertThat(this.registry.get("test").tag("error", "IllegalStateException").functionTimer().count()).isOne();
+  }
+
+  @Test
+  void observationsWithSameTagsShareTimer() {
+    for (int i = 0; i < 3; i++) {
+      Observation.start("test", this.observationRegistry).lowCardinalityKeyValue("uri", "/").stop();
+    }
+    assertThat(this.registry.find("test").functionTimers()).singleElement()
+        .satisfies((timer) -> assertThat(timer.count()).isEqualTo(3));
+  }
+
+  @Test
+  void maxOfPreviousStepIsRecordedAsTimeGauge() {
+    Observation observation = Observation.start("test", this.observationRegistry);
+    this.clock.add(Duration.ofMillis(40));
+    observation.stop();
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(this.registry.get("test.max").timeGauge().value(TimeUnit.MILLISECONDS)).isEqualTo(40);
+  }
+
+  @Test
+  void activeObservationsAreRecordedAsLongTaskTimer() {
+    Observation observation = Observation.start("test", this.observationRegistry);
+    assertThat(this.registry.get("test.active").longTaskTimer().activeTasks()).isOne();
+    observation.stop();
+    assertThat(this.registry.get("test.active").longTaskTimer().activeTasks()).isZero();
+  }
+
+  @Test
+  void observationsMappedToSameMeterShareTimer() {
+    this.registry.config().meterFilter(MeterFilter.ignoreTags("uri"));
+    Observation.start("test", this.observationRegistry).lowCardinalityKeyValue("uri", "/one").stop();
+    Observation.start("test", this.observationRegistry).lowCardinalityKeyValue("uri", "/two").stop();
+    assertThat(this.registry.get("test").functionTimer().count()).isEqualTo(2);
+  }
+
+  @Test
+  void observationsMappedToSameIdShareEntry() {
+    MeterFilter filter = MeterFilter.ignoreTags("uri");
+    this.registry.config().meterFilter(filter);
+    StripedMeterObservationHandler handler = new StripedMeterObservationHandler(this.registry,
+        Duration.ofMinutes(1).toMillis(), List.of(filter));
+    ObservationRegistry observationRegistry = ObservationRegistry.create();
+    observationRegistry.observationConfig().observationHandler(handler);
+    for (int i = 0; i < 10; i++) {
+      Observation.start("test", observationRegistry).lowCardinalityKeyValue("uri", "/" + i).stop();
+    }
+    assertThat(handler).extracting("timers").asInstanceOf(InstanceOfAssertFactories.MAP).hasSize(1);
+    assertThat(this.registry.get("test").functionTimer().count()).isEqualTo(10);
+  }
+
+  @Test
+  void removedTimerIsForgotten() {
+    StripedMeterObservationHandler handler = new StripedMeterObservationHandler(this.registry,
+        Duration.ofMinutes(1).toMillis(), List.of());
+    ObservationRegistry observationRegistry = ObservationRegistry.create();
+    observationRegistry.observationConfig().observationHandler(handler);
+    Observation.start("test", observationRegistry).stop();
+    this.registry.remove(this.registry.get("test").functionTimer());
+    assertThat(handler).extracting("timers").asInstanceOf(InstanceOfAssertFactories.MAP).isEmpty();
+    assertThat(handler).extracting("registeredTimers").asInstanceOf(InstanceOfAssertFactories.MAP).isEmpty();
+    Observation.start("test", observationRegistry).stop();
+    assertThat(this.registry.get("test").functionTimer().count()).isOne();
+  }
+
+  @Test
+  void observationWithPercentilesIsRecordedAsTimer() {
+    MeterFilter filter = distribution(DistributionStatisticConfig.builder().percentiles(0.5, 0.99).build());
+    this.registry.config().meterFilter(filter);
+    ObservationRegistry observationRegistry = createObservationRegistry(List.of(filter));
+    Observation observation = Observation.start("test", observationRegistry);
+    this.clock.add(Duration.ofMillis(25));
+    observation.stop();
+    Timer timer = this.registry.get("test").tag("error", "none").timer();
+    assertThat(timer.count()).isOne();
+    assertThat(timer.takeSnapshot().percentileValues()).hasSize(2);
+    assertThat(this.registry.find("test").functionTimers()).isEmpty();
+    assertThat(this.registry.find("test.max").timeGauge()).isNull();
+  }
+
+  @Test
+  void observationWithPercentileHistogramIsRecordedAsTimer() {
+    MeterFilter filter = distribution(DistributionStatisticConfig.builder().percentilesHistogram(true).build());
+    this.registry.config().meterFilter(filter);
+    ObservationRegistry observationRegistry = createObservationRegistry(List.of(filter));
+    Observation.start("test", observationRegistry).stop();
+    assertThat(this.registry.get("test").timer().count()).isOne();
+    assertThat(this.registry.find("test").functionTimers()).isEmpty();
+  }
+
+  @Test
+  void observationWithServiceLevelObjectivesIsRecordedAsTimer() {
+    MeterFilter filter = distribution(
+        DistributionStatisticConfig.builder().serviceLevelObjectives(Duration.ofMillis(10).toNanos()).build());
+    this.registry.config().meterFilter(filter);
+    ObservationRegistry observationRegistry = createObservationRegistry(List.of(filter));
+    Observation.start("test", observationRegistry).stop();
+    assertThat(this.registry.get("test").timer().count()).isOne();
+  }
+
+  @Test
+  void observationWithDistributionForAnotherMeterIsRecordedAsFunctionTimer() {
+    MeterFilter filter = distribution(DistributionStatisticConfig.builder().percentiles(0.5).build());
+    ObservationRegistry observationRegistry = createObservationRegistry(List.of(filter));
+    Observation.start("other.test", observationRegistry).stop();
+    assertThat(this.registry.get("other.test").functionTimer().count()).isOne();
+  }
+
+  private static MeterFilter distribution(DistributionStatisticConfig distribution) {
+    return new MeterFilter() {
+
+      @Override
+      public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        return id.getName().equals("test") ? distribution.merge(config) : config;
+      }
+
+    };
+  }
+
+  private ObservationRegistry createObservationRegistry(List<MeterFilter> meterFilters) {
+    ObservationRegistry observationRegistry = ObservationRegistry.create();
+    observationRegistry.observationConfig().observationHandler(
+        new StripedMeterObservationHandler(this.registry, Duration.ofMinutes(1).toMillis(), meterFilters));
+    return observationRegistry;
+  }
+
+}
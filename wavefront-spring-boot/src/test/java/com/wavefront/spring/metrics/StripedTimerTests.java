@@ -0,0 +1,71 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MockClock;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link StripedTimer}.
+ *
+ * @author Stephane Nicoll
+ */
+class StripedTimerTests {
+
+  private final MockClock clock = new MockClock();
+
+  private final StripedTimer timer = new StripedTimer(this.clock, Duration.ofMinutes(1).toMillis());
+
+  @Test
+  void recordAccumulatesCountAndTotalTime() {
+    this.timer.record(Duration.ofMillis(10).toNanos());
+    this.timer.record(Duration.ofMillis(30).toNanos());
+    assertThat(this.timer.count()).isEqualTo(2);
+    assertThat(this.timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(40);
+  }
+
+  @Test
+  void recordIgnoresNegativeDuration() {
+    this.timer.record(-1);
+    assertThat(this.timer.count()).isZero();
+  }
+
+  @Test
+  void recordFromSeveralThreadsMergesCells() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          this.timer.record(2);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(this.timer.count()).isEqualTo(80_000);
+    assertThat(this.timer.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(160_000);
+  }
+
+  @Test
+  void maxIsTheMaximumOfThePreviousStep() {
+    this.timer.record(Duration.ofMillis(10).toNanos());
+    this.timer.record(Duration.ofMillis(50).toNanos());
+    assertThat(this.timer.max(TimeUnit.MILLISECONDS)).isZero();
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(this.timer.max(TimeUnit.MILLISECONDS)).isEqualTo(50);
+    this.timer.record(Duration.ofMillis(20).toNanos());
+    assertThat(this.timer.max(TimeUnit.MILLISECONDS)).isEqualTo(50);
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(this.timer.max(TimeUnit.MILLISECONDS)).isEqualTo(20);
+    this.clock.add(Duration.ofMinutes(1));
+    assertThat(this.timer.max(TimeUnit.MILLISECONDS)).isZero();
+  }
+
+}
@@ -0,0 +1,177 @@
+package com.wavefront.spring.metrics;
+
+import java.time.Duration;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link WavefrontMetricsAutoConfiguration}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontMetricsAutoConfigurationTests {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withUserConfiguration(MetricsConfiguration.class)
+      .withBean(WavefrontSender.class, () -> mock(WavefrontSender.class))
+      .withPropertyValues("management.wavefront.uri=https://example.com", "management.wavefront.api-token=abc-123");
+
+  @Test
+  void runByDefaultDoesNotConfigureParallelPublisher() {
+    this.contextRunner.run((context) -> assertThat(context).hasSingleBean(WavefrontMeterRegistry.class)
+        .doesNotHaveBean(PublishingWavefrontMeterRegistry.class));
+  }
+
+  @Test
+  void runWhenEnabledConfiguresParallelPublisher() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.parallel-publish.enabled=true",
+        "wavefront.metrics.parallel-publish.parallelism=3").run((context) -> {
+          assertThat(context).hasSingleBean(MeterRegistry.class)
+              .hasSingleBean(PublishingWavefrontMeterRegistry.class);
+          MeterPublisher publisher = context.getBean(PublishingWavefrontMeterRegistry.class).getPublisher();
+          assertThat(publisher).hasFieldOrPropertyWithValue("parallelism", 3);
+          assertThat(publisher).extracting("sender").isSameAs(context.getBean(WavefrontSender.class));
+        });
+  }
+
+  @Test
+  void runWhenChangeOnlyEnabledConfiguresPublisherWithMeterSnapshots() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.change-only.enabled=true",
+        "wavefront.metrics.change-only.heartbeat-interval=10m").run((context) -> {
+          assertThat(context).hasSingleBean(PublishingWavefrontMeterRegistry.class);
+          MeterPublisher publisher = context.getBean(PublishingWavefrontMeterRegistry.class).getPublisher();
+          assertThat(publisher).hasFieldOrPropertyWithValue("parallelism", 1);
+          assertThat(publisher).extracting("snapshots").hasFieldOrPropertyWithValue("heartbeatMillis",
+              Duration.ofMinutes(10).toMillis());
+        });
+  }
+
+  @Test
+  void runWhenEnabledDoesNotConfigureWavefrontMeterRegistry() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.change-only.enabled=true")
+        .run((context) -> assertThat(context).hasSingleBean(MeterRegistry.class)
+            .hasSingleBean(PublishingWavefrontMeterRegistry.class).doesNotHaveBean(WavefrontMeterRegistry.class));
+  }
+
+  @Test
+  void runWhenEnabledWithoutSenderConfiguresSender() {
+    new ApplicationContextRunner().withUserConfiguration(MetricsConfiguration.class)
+        .withPropertyValues("management.wavefront.uri=proxy://localhost:2878",
+            "wavefront.metrics.change-only.enabled=true")
+        .run((context) -> assertThat(context.getBean(PublishingWavefrontMeterRegistry.class).getPublisher())
+            .extracting("sender").isSameAs(context.getBean(WavefrontSender.class)));
+  }
+
+  @Test
+  void runWhenEnabledAppliesApplicationTags() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("test-application", "test-service").build();
+    this.contextRunner.withPropertyValues("wavefront.metrics.change-only.enabled=true")
+        .withBean(ApplicationTags.class, () -> applicationTags).run((context) -> {
+          Counter counter = context.getBean(MeterRegistry.class).counter("test");
+          assertThat(counter.getId().getTag("application")).isEqualTo("test-application");
+          assertThat(counter.getId().getTag("service")).isEqualTo("test-service");
+        });
+  }
+
+  @Test
+  void runWhenParallelPublishEnabledDoesNotConfigureMeterSnapshots() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.parallel-publish.enabled=true")
+        .run((context) -> assertThat(context.getBean(PublishingWavefrontMeterRegistry.class).getPublisher())
+            .extracting("snapshots").isNull());
+  }
+
+  @Test
+  void runWhenReleasedMeterRemovalEnabledConfiguresPublisherWithGracePeriod() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.released-meter-removal.enabled=true",
+        "wavefront.metrics.released-meter-removal.grace-steps=5", "management.wavefront.metrics.export.step=30s")
+        .run((context) -> {
+          PublishingWavefrontMeterRegistry registry = context.getBean(PublishingWavefrontMeterRegistry.class);
+          MeterPublisher publisher = registry.getPublisher();
+          assertThat(publisher).hasFieldOrPropertyWithValue("releasedMeterGracePeriodMillis",
+              Duration.ofSeconds(150).toMillis());
+          assertThat(publisher).extracting("snapshots").hasFieldOrPropertyWithValue("heartbeatMillis", 0L);
+          assertThat(registry.find("wavefront.metrics.released.removed").functionCounter()).isNotNull();
+        });
+  }
+
+  @Test
+  void runWhenParallelPublishEnabledUsesWavefrontHistograms() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.parallel-publish.enabled=true").run((context) -> {
+      Timer timer = Timer.builder("test").publishPercentileHistogram()
+          .register(context.getBean(MeterRegistry.class));
+      assertThat(timer).extracting("histogram").isNotNull().isNotInstanceOf(PrimitiveHistogram.class);
+    });
+  }
+
+  @Test
+  void runWhenPrimitiveHistogramsEnabledUsesPrimitiveHistograms() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.primitive-histograms.enabled=true").run((context) -> {
+      assertThat(context).hasSingleBean(PublishingWavefrontMeterRegistry.class);
+      Timer timer = Timer.builder("test").publishPercentileHistogram()
+          .register(context.getBean(MeterRegistry.class));
+      assertThat(timer).extracting("histogram").isInstanceOf(PrimitiveHistogram.class);
+    });
+  }
+
+  @Test
+  void runByDefaultDoesNotConfigureCardinalityGuard() {
+    this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(CardinalityGuardMeterFilter.class));
+  }
+
+  @Test
+  void runWhenCardinalityGuardEnabledConfiguresMeterFilter() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.cardinality-guard.enabled=true",
+        "wavefront.metrics.cardinality-guard.max-tag-values=2").run((context) -> {
+          assertThat(context).hasSingleBean(CardinalityGuardMeterFilter.class)
+              .doesNotHaveBean(PublishingWavefrontMeterRegistry.class);
+          WavefrontMeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+          for (int i = 0; i < 5; i++) {
+            registry.counter("test", "user", "user-" + i);
+          }
+          assertThat(registry.find("test").counters()).hasSize(3);
+          assertThat(registry.find("wavefront.metrics.cardinality.capped").gauge()).isNotNull();
+        });
+  }
+
+  @Test
+  void runWhenEnabledAndMetricsExportDisabledDoesNotConfigureParallelPublisher() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.parallel-publish.enabled=true",
+        "management.wavefront.metrics.export.enabled=false")
+        .run((context) -> assertThat(context).doesNotHaveBean(PublishingWavefrontMeterRegistry.class));
+  }
+
+  @Test
+  void runWhenEnabledWithCustomRegistryDoesNotConfigureParallelPublisher() {
+    WavefrontMeterRegistry registry = WavefrontMeterRegistry
+        .builder(new MeterPublisherTests.TestWavefrontConfig()).wavefrontSender(mock(WavefrontSender.class))
+        .build();
+    this.contextRunner.withPropertyValues("wavefront.metrics.parallel-publish.enabled=true")
+        .withBean(WavefrontMeterRegistry.class, () -> registry).run((context) -> {
+          assertThat(context).doesNotHaveBean(PublishingWavefrontMeterRegistry.class);
+          assertThat(context.getBean(WavefrontMeterRegistry.class)).isSameAs(registry);
+        });
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ImportAutoConfiguration({ MetricsAutoConfiguration.class, WavefrontMetricsExportAutoConfiguration.class,
+      WavefrontMetricsAutoConfiguration.class })
+  static class MetricsConfiguration {
+
+  }
+
+}
@@ -0,0 +1,75 @@
+package com.wavefront.spring.metrics;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.observation.MeterObservationHandler;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link WavefrontObservationAutoConfiguration}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontObservationAutoConfigurationTests {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(MetricsAutoConfiguration.class,
+          WavefrontMetricsExportAutoConfiguration.class, ObservationAutoConfiguration.class,
+          WavefrontObservationAutoConfiguration.class))
+      .withBean(WavefrontSender.class, () -> mock(WavefrontSender.class))
+      .withPropertyValues("management.wavefront.uri=https://example.com", "management.wavefront.api-token=abc-123");
+
+  @Test
+  void runByDefaultUsesDefaultMeterObservationHandler() {
+    this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(StripedMeterObservationHandler.class)
+        .hasSingleBean(DefaultMeterObservationHandler.class));
+  }
+
+  @Test
+  void runWhenStripedRecordingEnabledReplacesDefaultMeterObservationHandler() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.striped-recording.enabled=true")
+        .run((context) -> assertThat(context).hasSingleBean(MeterObservationHandler.class)
+            .hasSingleBean(StripedMeterObservationHandler.class));
+  }
+
+  @Test
+  void runWhenStripedRecordingEnabledAppliesDistributionProperties() {
+    this.contextRunner
+        .withPropertyValues("wavefront.metrics.striped-recording.enabled=true",
+            "management.metrics.distribution.percentiles.test=0.5")
+        .run((context) -> {
+          Observation.createNotStarted("test", context.getBean(ObservationRegistry.class)).observe(() -> {
+          });
+          assertThat(context.getBean(MeterRegistry.class).find("test").meter()).isInstanceOf(Timer.class);
+        });
+  }
+
+  @Test
+  void runWhenStripedRecordingEnabledAndExportDisabledDoesNotConfigureHandler() {
+    this.contextRunner
+        .withPropertyValues("wavefront.metrics.striped-recording.enabled=true",
+            "management.wavefront.metrics.export.enabled=false")
+        .run((context) -> assertThat(context).doesNotHaveBean(StripedMeterObservationHandler.class));
+  }
+
+  @Test
+  void runWhenCustomMeterObservationHandlerBacksOff() {
+    this.contextRunner.withPropertyValues("wavefront.metrics.striped-recording.enabled=true")
+        .withBean("customHandler", MeterObservationHandler.class, () -> mock(MeterObservationHandler.class))
+        .run((context) -> assertThat(context).doesNotHaveBean(StripedMeterObservationHandler.class));
+  }
+
+}